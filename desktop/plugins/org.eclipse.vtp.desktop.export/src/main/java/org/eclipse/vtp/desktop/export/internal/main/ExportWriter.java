@@ -11,16 +11,35 @@ import java.io.FilenameFilter;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipOutputStream;
 
 public abstract class ExportWriter implements Closeable, Flushable {
 
+	/** The extensions of files that are already compressed or do not compress. */
+	private static final Set<String> STORED_EXTENSIONS = Collections
+			.unmodifiableSet(new HashSet<String>(Arrays.asList(new String[] {
+					"wav", "vox", "au", "mp3", "ogg", "jar", "zip", "gz",
+					"png", "jpg", "jpeg", "gif" })));
+
 	public static ExportWriter create(File file) throws IOException {
 		if (file.isDirectory())
 			return new DirectoryWriter(file);
@@ -28,7 +47,7 @@ public abstract class ExportWriter implements Closeable, Flushable {
 			return new ArchiveWriter(file);
 	}
 
-	private final byte[] buffer = new byte[1024 * 10];
+	private final byte[] buffer = new byte[1024 * 64];
 
 	public abstract OutputStream write(String entryName) throws IOException;
 
@@ -40,27 +59,66 @@ public abstract class ExportWriter implements Closeable, Flushable {
 	public abstract void writeFile(String entryName, File file, FilenameFilter filter)
 			throws IOException;
 
+	/**
+	 * Excludes a file or directory that is written separately from the files
+	 * this writer removes when it is closed.
+	 */
+	public void exclude(File file) throws IOException {
+		// Nothing to do.
+	}
+
 	protected void copy(InputStream input, OutputStream output)
 			throws IOException {
 		for (int i = input.read(buffer); i >= 0; i = input.read(buffer))
 			output.write(buffer, 0, i);
 	}
 
+	/**
+	 * Returns true if the named entry should be stored without compression.
+	 */
+	protected static boolean isStored(String entryName) {
+		int dot = entryName.lastIndexOf('.');
+		if (dot < 0 || dot < entryName.lastIndexOf('/'))
+			return false;
+		return STORED_EXTENSIONS.contains(entryName.substring(dot + 1)
+				.toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * Collects the files below a file or directory in the order they are
+	 * written, keyed by entry name.
+	 */
+	protected static void collectFiles(String entryName, File canonical,
+			FilenameFilter filter, Map<String, File> files) throws IOException {
+		if (canonical.isFile()) {
+			files.put(entryName, canonical);
+			return;
+		}
+		File[] children = filter == null ? canonical.listFiles() : canonical.listFiles(filter);
+		if (children != null)
+			for (File child : children)
+				collectFiles(
+						entryName
+								+ (child.isFile() ? child.getName()
+										: child.getName() + "/"), child.getCanonicalFile(), filter, files);
+	}
+
 	/** Implementation that writes to a directory. */
 	private static final class DirectoryWriter extends ExportWriter {
 
 		private File directory;
+		/** The files written or confirmed up to date by this export. */
+		private final Set<File> writtenFiles = new HashSet<File>();
+		/** The files and directories that are never removed. */
+		private final Set<File> excludedFiles = new HashSet<File>();
 
 		public DirectoryWriter(File directory) throws IOException {
-			this.directory = directory;
+			this.directory = directory.getCanonicalFile();
 		}
 
 		public OutputStream write(String entryName) throws IOException {
-			File target = new File(directory, entryName).getCanonicalFile();
-			File parent = target.getParentFile().getCanonicalFile();
-			if (!parent.isDirectory() & !parent.mkdirs())
-				throw new FileNotFoundException(parent.getAbsolutePath());
-			return new BufferedOutputStream(new FileOutputStream(target));
+			return new BufferedOutputStream(new FileOutputStream(
+					prepareTarget(entryName)));
 		}
 
 		public void writeStream(String entryName, InputStream stream)
@@ -87,41 +145,85 @@ public abstract class ExportWriter implements Closeable, Flushable {
 			}
 		}
 
+		/**
+		 * Copies files into the directory, skipping those whose copy from a
+		 * previous export still has the same size and modification time.
+		 */
 		public void writeFile(String entryName, File file, FilenameFilter filter) throws IOException {
-			File canonical = file.getCanonicalFile();
-			if (canonical.isFile()) {
-				OutputStream output = write(entryName);
+			Map<String, File> files = new LinkedHashMap<String, File>();
+			collectFiles(entryName, file.getCanonicalFile(), filter, files);
+			for (Map.Entry<String, File> entry : files.entrySet()) {
+				File source = entry.getValue();
+				File target = prepareTarget(entry.getKey());
+				if (target.isFile() && target.length() == source.length()
+						&& target.lastModified() == source.lastModified())
+					continue;
+				OutputStream output = new BufferedOutputStream(
+						new FileOutputStream(target));
 				try {
-					FileInputStream stream = new FileInputStream(canonical);
+					FileInputStream stream = new FileInputStream(source);
 					try {
-						copy(new BufferedInputStream(stream), output);
+						copy(stream, output);
 					} finally {
 						stream.close();
 					}
 				} finally {
 					output.close();
 				}
-			} else {
-				File[] children = filter == null ? canonical.listFiles() : canonical.listFiles(filter);
-				if (children != null)
-					for (File child : children)
-						writeFile(
-								entryName
-										+ (child.isFile() ? child.getName()
-												: child.getName() + "/"), child, filter);
+				target.setLastModified(source.lastModified());
 			}
 		}
 		
+		@Override
+		public void exclude(File file) throws IOException {
+			excludedFiles.add(file.getCanonicalFile());
+		}
+
 		@Override
 		public void flush() throws IOException {
 			// Nothing to do.
 		}
 		
+		/**
+		 * Removes the files left over from previous exports that were not
+		 * written by this one.
+		 */
 		@Override
 		public void close() throws IOException {
+			if (directory != null)
+				prune(directory);
+			writtenFiles.clear();
+			excludedFiles.clear();
 			directory = null;
 		}
 
+		private File prepareTarget(String entryName) throws IOException {
+			File target = new File(directory, entryName).getCanonicalFile();
+			File parent = target.getParentFile().getCanonicalFile();
+			if (!parent.isDirectory() & !parent.mkdirs())
+				throw new FileNotFoundException(parent.getAbsolutePath());
+			writtenFiles.add(target);
+			return target;
+		}
+
+		private boolean prune(File canonical) throws IOException {
+			File[] children = canonical.listFiles();
+			boolean empty = true;
+			if (children != null)
+				for (File child : children) {
+					if (excludedFiles.contains(child.getCanonicalFile())) {
+						empty = false;
+						continue;
+					}
+					if (child.isDirectory() ? prune(child) && child.delete()
+							: !writtenFiles.contains(child.getCanonicalFile())
+									&& child.delete())
+						continue;
+					empty = false;
+				}
+			return empty;
+		}
+
 	}
 
 	/** Implementation that writes to a ZIP file. */
@@ -129,13 +231,15 @@ public abstract class ExportWriter implements Closeable, Flushable {
 
 		private final ZipOutputStream output;
 		private final Set<String> writtenEntries = new HashSet<String>();
+		/** Computes the checksums of stored files ahead of the writer. */
+		private ExecutorService checksums = null;
 
 		public ArchiveWriter(File archive) throws IOException {
 			FileOutputStream fileOutput = new FileOutputStream(archive);
 			boolean failed = true;
 			try {
 				output = new ZipOutputStream(new BufferedOutputStream(
-						fileOutput));
+						fileOutput, 1024 * 64));
 				failed = false;
 			} finally {
 				if (failed)
@@ -145,7 +249,7 @@ public abstract class ExportWriter implements Closeable, Flushable {
 
 		public OutputStream write(String entryName) throws IOException {
 			writeParentEntries(entryName);
-			startEntry(entryName, true);
+			startEntry(new ZipEntry(entryName), true);
 			return new OutputStream() {
 				public void write(int b) throws IOException {
 					output.write(b);
@@ -169,7 +273,7 @@ public abstract class ExportWriter implements Closeable, Flushable {
 		public void writeStream(String entryName, InputStream stream)
 				throws IOException {
 			writeParentEntries(entryName);
-			startEntry(entryName, true);
+			startEntry(new ZipEntry(entryName), true);
 			try {
 				copy(stream, output);
 			} finally {
@@ -179,7 +283,7 @@ public abstract class ExportWriter implements Closeable, Flushable {
 
 		public void writeURL(String entryName, URL url) throws IOException {
 			writeParentEntries(entryName);
-			startEntry(entryName, true);
+			startEntry(new ZipEntry(entryName), true);
 			try {
 				InputStream stream = url.openStream();
 				try {
@@ -192,29 +296,39 @@ public abstract class ExportWriter implements Closeable, Flushable {
 			}
 		}
 
+		/**
+		 * Writes files into the archive. Files that are already compressed are
+		 * stored as-is; their checksums are computed on background threads
+		 * while the preceding entries are being written.
+		 */
 		public void writeFile(String entryName, File file, FilenameFilter filter) throws IOException {
-			File canonical = file.getCanonicalFile();
-			if (canonical.isFile()) {
-				writeParentEntries(entryName);
-				startEntry(entryName, true);
-				try {
-					FileInputStream stream = new FileInputStream(canonical);
+			Map<String, File> files = new LinkedHashMap<String, File>();
+			collectFiles(entryName, file.getCanonicalFile(), filter, files);
+			Map<String, Future<ZipEntry>> storedEntries = new HashMap<String, Future<ZipEntry>>();
+			try {
+				for (Map.Entry<String, File> entry : files.entrySet())
+					if (isStored(entry.getKey()))
+						storedEntries.put(entry.getKey(), getChecksums().submit(
+								new StoredEntry(entry.getKey(), entry.getValue())));
+				for (Map.Entry<String, File> entry : files.entrySet()) {
+					Future<ZipEntry> storedEntry = storedEntries.remove(entry.getKey());
+					writeParentEntries(entry.getKey());
+					startEntry(storedEntry == null ? new ZipEntry(entry.getKey())
+							: getResult(storedEntry), true);
 					try {
-						copy(new BufferedInputStream(stream), output);
+						FileInputStream stream = new FileInputStream(entry.getValue());
+						try {
+							copy(stream, output);
+						} finally {
+							stream.close();
+						}
 					} finally {
-						stream.close();
+						output.closeEntry();
 					}
-				} finally {
-					output.closeEntry();
 				}
-			} else {
-				File[] children = filter == null ? canonical.listFiles() : canonical.listFiles(filter);
-				if (children != null)
-					for (File child : children)
-						writeFile(
-								entryName
-										+ (child.isFile() ? child.getName()
-												: child.getName() + "/"), child, filter);
+			} finally {
+				for (Future<ZipEntry> storedEntry : storedEntries.values())
+					storedEntry.cancel(true);
 			}
 		}
 
@@ -223,7 +337,34 @@ public abstract class ExportWriter implements Closeable, Flushable {
 		}
 
 		public void close() throws IOException {
-			output.close();
+			try {
+				output.close();
+			} finally {
+				if (checksums != null)
+					checksums.shutdownNow();
+				checksums = null;
+			}
+		}
+
+		private ExecutorService getChecksums() {
+			if (checksums == null)
+				checksums = Executors.newFixedThreadPool(Math.max(1, Runtime
+						.getRuntime().availableProcessors() - 1));
+			return checksums;
+		}
+
+		private ZipEntry getResult(Future<ZipEntry> storedEntry)
+				throws IOException {
+			try {
+				return storedEntry.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException)
+					throw (IOException)e.getCause();
+				throw new IOException(e.getCause());
+			}
 		}
 
 		private void writeParentEntries(String entryName) throws IOException {
@@ -234,12 +375,13 @@ public abstract class ExportWriter implements Closeable, Flushable {
 				return;
 			String parentEntryName = entryName.substring(0, lastSlash + 1);
 			writeParentEntries(parentEntryName);
-			if (startEntry(parentEntryName, false))
+			if (startEntry(new ZipEntry(parentEntryName), false))
 				output.closeEntry();
 		}
 
-		private boolean startEntry(String entryName, boolean failOnDuplicate)
+		private boolean startEntry(ZipEntry entry, boolean failOnDuplicate)
 				throws IOException {
+			String entryName = entry.getName();
 			writeParentEntries(entryName);
 			if (!writtenEntries.add(entryName)) {
 				if (failOnDuplicate)
@@ -249,10 +391,44 @@ public abstract class ExportWriter implements Closeable, Flushable {
 				else
 					return false;
 			}
-			output.putNextEntry(new ZipEntry(entryName));
+			output.putNextEntry(entry);
 			return true;
 		}
 
 	}
 
+	/** Prepares the stored entry for a file by computing its checksum. */
+	private static final class StoredEntry implements Callable<ZipEntry> {
+
+		private final String entryName;
+		private final File file;
+
+		public StoredEntry(String entryName, File file) {
+			this.entryName = entryName;
+			this.file = file;
+		}
+
+		public ZipEntry call() throws IOException {
+			CRC32 crc = new CRC32();
+			byte[] buffer = new byte[1024 * 64];
+			long size = 0;
+			FileInputStream stream = new FileInputStream(file);
+			try {
+				for (int i = stream.read(buffer); i >= 0; i = stream.read(buffer)) {
+					crc.update(buffer, 0, i);
+					size += i;
+				}
+			} finally {
+				stream.close();
+			}
+			ZipEntry entry = new ZipEntry(entryName);
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(size);
+			entry.setCompressedSize(size);
+			entry.setCrc(crc.getValue());
+			return entry;
+		}
+
+	}
+
 }
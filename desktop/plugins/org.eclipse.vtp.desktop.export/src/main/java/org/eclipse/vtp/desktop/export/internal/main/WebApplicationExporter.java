@@ -123,20 +123,26 @@ public class WebApplicationExporter {
 		boolean completed = false;
 		try {
 			this.uniqueToken = Guid.createGUID();
+			// Directory targets are updated in place; the writer skips files
+			// that are unchanged and removes the ones no longer exported.
 			if (canonical.isFile())
 				delete(canonical);
-			if (canonical.isDirectory())
-				deleteChildren(canonical);
 			this.output = ExportWriter.create(canonical);
 			this.mediaOutput = output;
 			if(separateMedia)
 			{
 				File mediaCanonical = mediaDestination.getCanonicalFile();
-				if (mediaCanonical.isFile())
-					delete(mediaCanonical);
-				if (mediaCanonical.isDirectory())
-					deleteChildren(mediaCanonical);
-				this.mediaOutput = ExportWriter.create(mediaCanonical);
+				// A media destination equal to the output shares its writer
+				// so that each sees every file written to the directory.
+				if (!mediaCanonical.equals(canonical)) {
+					if (mediaCanonical.isFile())
+						delete(mediaCanonical);
+					this.mediaOutput = ExportWriter.create(mediaCanonical);
+					// Either target may be nested in the other; neither writer
+					// may remove what the other wrote.
+					output.exclude(mediaCanonical);
+					mediaOutput.exclude(canonical);
+				}
 			}
 			this.workflowExporters = workflowProjects;
 			this.mediaExporters = mediaProjects;
@@ -151,11 +157,17 @@ public class WebApplicationExporter {
 			return completed = run();
 		} finally {
 			try {
-				if (output != null)
-					output.close();
+				try {
+					if (output != null)
+						output.close();
+				} finally {
+					if (mediaOutput != null && mediaOutput != output)
+						mediaOutput.close();
+				}
 			} finally {
 				this.uniqueToken = null;
 				this.output = null;
+				this.mediaOutput = null;
 				this.workflowExporters = null;
 				this.mediaExporters = null;
 				this.bundleExporters = null;
@@ -223,6 +235,34 @@ public class WebApplicationExporter {
 		return true;
 	}
 
+	/**
+	 * Builds the process definition of a workflow project.
+	 */
+	private Document buildDefinition(WorkflowExporter project)
+			throws Exception {
+		Map<String, MediaExporter> mediaProjects = project
+				.getMediaDependencyMap();
+		Map<String, String> formatterIDsByLanguage = new HashMap<String, String>(
+				mediaProjects.size());
+		Map<String, String> resourceManagerIDsByLanguage = new HashMap<String, String>(
+				mediaProjects.size());
+		for (Map.Entry<String, MediaExporter> entry : mediaProjects.entrySet()) {
+			formatterIDsByLanguage.put(entry.getKey(), entry.getValue()
+					.getFormatter());
+			resourceManagerIDsByLanguage.put(entry.getKey(), entry.getValue()
+					.getProject().getName());
+		}
+		Collection<DesignReference> callDesigns = new LinkedList<DesignReference>();
+		for (IDesignDocument document : project.getDesignDocuments())
+			callDesigns.add(new DesignReference(document, documentBuilder.parse(document.getUnderlyingFile()
+					.getLocation().toFile().getCanonicalFile())));
+		return new DefinitionBuilder(
+				callDesigns.toArray(new DesignReference[callDesigns.size()]),
+				documentBuilder, project.getWorkflowProject(),
+				formatterIDsByLanguage, resourceManagerIDsByLanguage, project.getLanguageMapping())
+				.getDefinition();
+	}
+
 	private void constructRuntime() {
 		// Locate all the bundles that will be included in the export.
 		for (String name : REQUIRED_BUNDLES)
@@ -495,27 +535,7 @@ public class WebApplicationExporter {
 				new XMLWriter(stream).toXMLResult());
 		stream.close();
 		// Create the process.xml file.
-		Map<String, MediaExporter> mediaProjects = project
-				.getMediaDependencyMap();
-		Map<String, String> formatterIDsByLanguage = new HashMap<String, String>(
-				mediaProjects.size());
-		Map<String, String> resourceManagerIDsByLanguage = new HashMap<String, String>(
-				mediaProjects.size());
-		for (Map.Entry<String, MediaExporter> entry : mediaProjects.entrySet()) {
-			formatterIDsByLanguage.put(entry.getKey(), entry.getValue()
-					.getFormatter());
-			resourceManagerIDsByLanguage.put(entry.getKey(), entry.getValue()
-					.getProject().getName());
-		}
-		Collection<DesignReference> callDesigns = new LinkedList<DesignReference>();
-		for (IDesignDocument document : project.getDesignDocuments())
-			callDesigns.add(new DesignReference(document, documentBuilder.parse(document.getUnderlyingFile()
-					.getLocation().toFile().getCanonicalFile())));
-		Document definition = new DefinitionBuilder(
-				callDesigns.toArray(new DesignReference[callDesigns.size()]),
-				documentBuilder, project.getWorkflowProject(),
-				formatterIDsByLanguage, resourceManagerIDsByLanguage, project.getLanguageMapping())
-				.getDefinition();
+		Document definition = buildDefinition(project);
 		Element servicesElement = (Element) definition
 				.getDocumentElement()
 				.getElementsByTagNameNS(
@@ -6,11 +6,15 @@ package org.eclipse.vtp.desktop.model.core.internal;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -37,14 +41,61 @@ import org.eclipse.vtp.desktop.model.core.internal.DesignDocument.IndexedWorkflo
 import org.eclipse.vtp.framework.util.Guid;
 
 /**
+ * The index of the design documents of a workflow project, kept in an
+ * embedded Derby database.
+ * <p>
+ * A single connection is opened for the life of the index, and every SQL
+ * statement is prepared once on it and reused. The connection and its
+ * statements are guarded by the <code>database</code> monitor; the read and
+ * write locks keep queries and updates of the index apart.
+ * </p>
+ * 
  * @author trip
  *
  */
 public class WorkflowIndex
 {
+	private static final String SELECT_DOCUMENT_ID = "select id from designdocuments where path = ?";
+	private static final String SELECT_DOCUMENT_PATH = "select path from designdocuments where id = ?";
+	private static final String SELECT_VARIABLES = "select elementid, name, type, basetype, precision from variables where documentid = ?";
+	private static final String SELECT_WORKFLOW_ENTRIES = "select id, name from workflowentries where documentid = ?";
+	private static final String SELECT_WORKFLOW_EXITS = "select id, name, type from workflowexits where documentid = ?";
+	private static final String SELECT_WORKFLOW_REFERENCES = "select id, target, entry from workflowreferences where documentid = ?";
+	private static final String SELECT_ALL_WORKFLOW_REFERENCES = "select id, target, entry from workflowreferences";
+	private static final String SELECT_DESIGN_ENTRIES = "select id, name from designentries where documentid = ?";
+	private static final String SELECT_DESIGN_EXITS = "select id, targetid, targetname from designexits where documentid = ?";
+	private static final String SELECT_UPSTREAM_WORKFLOW_ENTRIES = "select id, name from workflowentries where documentid = ? and id in (select upstreamid from streamindex where documentid = ? and downstreamid = ?)";
+	private static final String SELECT_UPSTREAM_DESIGN_ENTRIES = "select id, name from designentries where documentid = ? and id in (select upstreamid from streamindex where documentid = ? and downstreamid = ?)";
+	private static final String SELECT_DOWNSTREAM_WORKFLOW_EXITS = "select id, name, type from workflowexits where documentid = ? and id in (select downstreamid from streamindex where documentid = ? and upstreamid = ?)";
+	private static final String SELECT_DOWNSTREAM_DESIGN_EXITS = "select id, targetid, targetname from designexits where documentid = ? and id in (select downstreamid from streamindex where documentid = ? and upstreamid = ?)";
+	private static final String SELECT_ELEMENT = "select documentid from elementindex where elementid = ?";
+	private static final String SELECT_FOREIGN_ELEMENT = "select documentid from elementindex where elementid = ? and documentid != ?";
+	private static final String INSERT_DOCUMENT = "insert into designdocuments values (?, ?)";
+	private static final String INSERT_WORKFLOW_ENTRY = "insert into workflowentries values (?, ?, ?)";
+	private static final String INSERT_WORKFLOW_EXIT = "insert into workflowexits values (?, ?, ?, ?)";
+	private static final String INSERT_WORKFLOW_REFERENCE = "insert into workflowreferences values (?, ?, ?, ?)";
+	private static final String INSERT_DESIGN_ENTRY = "insert into designentries values (?, ?, ?)";
+	private static final String INSERT_DESIGN_EXIT = "insert into designexits values (?, ?, ?, ?)";
+	private static final String INSERT_VARIABLE = "insert into variables values (?, ?, ?, ?, ?, ?)";
+	private static final String INSERT_STREAM = "insert into streamindex values (?, ?, ?)";
+	private static final String INSERT_ELEMENT = "insert into elementindex values (?, ?)";
+	private static final String DELETE_ELEMENT_VARIABLES = "delete from variables where elementid = ? and documentid = ?";
+	private static final String DELETE_DOCUMENT = "delete from designdocuments where id = ?";
+	private static final String UPDATE_DOCUMENT_PATH = "update designdocuments set path = ? where path = ?";
+	/** The tables that hold the contents of a document. */
+	private static final String[] DOCUMENT_TABLES = { "workflowentries",
+			"variables", "workflowexits", "workflowreferences", "designentries",
+			"designexits", "streamindex", "elementindex" };
+
 	IProject project = null;
 	private boolean validated = false;
 	private ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+	/** Guards the connection and the prepared statements. */
+	private final Object database = new Object();
+	/** The connection to the index database or <code>null</code>. */
+	private Connection connection = null;
+	/** The statements prepared on the connection by SQL text. */
+	private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
 
 	/**
 	 * 
@@ -63,6 +114,22 @@ public class WorkflowIndex
 		}
 	}
 	
+	/**
+	 * Closes the connection to the index database.
+	 */
+	void close()
+	{
+		lock.writeLock().lock();
+		try
+		{
+			closeConnection();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+	
 	public Lock getReadLock()
 	{
 		return lock.readLock();
@@ -85,64 +152,12 @@ public class WorkflowIndex
 	
 	public List<IWorkflowEntry> getWorkflowEntries(IDesignDocument designDocument)
 	{
-		List<IWorkflowEntry> ret = new ArrayList<IWorkflowEntry>();
 		lock.readLock().lock();
-		String documentId = getDocumentId(designDocument);
 		try
 		{
+			String documentId = getDocumentId(designDocument);
 			if(documentId != null)
-			{
-				Connection con = createConnection(true);
-				Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("select id, name from workflowentries where documentid = '" + documentId + "'");
-				while(rs.next())
-				{
-					String id = rs.getString(1);
-					String name = rs.getString(2);
-					IndexedWorkflowEntry workflowEntry = ((DesignDocument)designDocument).new IndexedWorkflowEntry(id, name);
-					ret.add(workflowEntry);
-				}
-				rs.close();
-				for(IWorkflowEntry workflowEntry : ret)
-				{
-					rs = st.executeQuery("select name, type, basetype, precision from variables where documentid = '" + documentId + "' and elementid = '" + workflowEntry.getId() + "'");
-					while(rs.next())
-					{
-						String name = rs.getString(1);
-						String type = rs.getString(2);
-						String baseType = rs.getString(3);
-						int precision = rs.getInt(4);
-						FieldType ft = null;
-						Primitive prim = Primitive.find(type);
-						if(prim != null)
-						{
-							if(prim.hasBaseType())
-							{
-								Primitive basePrim = Primitive.find(baseType);
-								if(basePrim != null)
-								{
-									ft = new FieldType(prim, basePrim);
-								}
-								else
-								{
-									ft = new FieldType(prim, designDocument.getProject().getBusinessObjectSet().getBusinessObject(baseType));
-								}
-							}
-							else
-								ft = new FieldType(prim);
-							ft.setPrecision(precision);
-						}
-						else
-							ft = new FieldType(designDocument.getProject().getBusinessObjectSet().getBusinessObject(type));
-						Variable v = new Variable(name, ft);
-						VariableHelper.buildObjectFields(v, designDocument.getProject().getBusinessObjectSet());
-						((IndexedWorkflowEntry)workflowEntry).addInputVariable(v);
-					}
-					rs.close();
-				}
-				st.close();
-				con.close();
-			}
+				return createWorkflowEntries(designDocument, documentId, query(SELECT_WORKFLOW_ENTRIES, 2, documentId));
 		}
 		catch (SQLException e)
 		{
@@ -152,70 +167,17 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IWorkflowEntry>();
 	}
 	
 	public List<IWorkflowExit> getWorkflowExits(IDesignDocument designDocument)
 	{
-		List<IWorkflowExit> ret = new ArrayList<IWorkflowExit>();
 		lock.readLock().lock();
-		String documentId = getDocumentId(designDocument);
 		try
 		{
+			String documentId = getDocumentId(designDocument);
 			if(documentId != null)
-			{
-				Connection con = createConnection(true);
-				Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("select id, name, type from workflowexits where documentid = '" + documentId + "'");
-				while(rs.next())
-				{
-					String id = rs.getString(1);
-					String name = rs.getString(2);
-					String type = rs.getString(3);
-					IndexedWorkflowExit workflowExit = ((DesignDocument)designDocument).new IndexedWorkflowExit(id, name, type);
-					ret.add(workflowExit);
-				}
-				rs.close();
-				for(IWorkflowExit workflowExit : ret)
-				{
-					rs = st.executeQuery("select name, type, basetype, precision from variables where documentid = '" + documentId + "' and elementid = '" + workflowExit.getId() + "'");
-					while(rs.next())
-					{
-						String name = rs.getString(1);
-						String type = rs.getString(2);
-						String baseType = rs.getString(3);
-						int precision = rs.getInt(4);
-						FieldType ft = null;
-						Primitive prim = Primitive.find(type);
-						if(prim != null)
-						{
-							if(prim.hasBaseType())
-							{
-								Primitive basePrim = Primitive.find(baseType);
-								if(basePrim != null)
-								{
-									ft = new FieldType(prim, basePrim);
-								}
-								else
-								{
-									ft = new FieldType(prim, designDocument.getProject().getBusinessObjectSet().getBusinessObject(baseType));
-								}
-							}
-							else
-								ft = new FieldType(prim);
-							ft.setPrecision(precision);
-						}
-						else
-							ft = new FieldType(designDocument.getProject().getBusinessObjectSet().getBusinessObject(type));
-						Variable v = new Variable(name, ft);
-						VariableHelper.buildObjectFields(v, designDocument.getProject().getBusinessObjectSet());
-						((IndexedWorkflowExit)workflowExit).addExportedVariable(v);
-					}
-					rs.close();
-				}
-				st.close();
-				con.close();
-			}
+				return createWorkflowExits(designDocument, documentId, query(SELECT_WORKFLOW_EXITS, 3, documentId));
 		}
 		catch (SQLException e)
 		{
@@ -225,33 +187,17 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IWorkflowExit>();
 	}
 	
 	public List<IWorkflowReference> getWorkflowReferences(IDesignDocument designDocument)
 	{
-		List<IWorkflowReference> ret = new ArrayList<IWorkflowReference>();
 		lock.readLock().lock();
-		String documentId = getDocumentId(designDocument);
 		try
 		{
+			String documentId = getDocumentId(designDocument);
 			if(documentId != null)
-			{
-				Connection con = createConnection(true);
-				Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("select id, target, entry from workflowreferences where documentid = '" + documentId + "'");
-				while(rs.next())
-				{
-					String id = rs.getString(1);
-					String target = rs.getString(2);
-					String entry = rs.getString(3);
-					IndexedWorkflowReference workflowReference = new DesignDocument.IndexedWorkflowReference(id, target, entry);
-					ret.add(workflowReference);
-				}
-				rs.close();
-				st.close();
-				con.close();
-			}
+				return createWorkflowReferences(query(SELECT_WORKFLOW_REFERENCES, 3, documentId));
 		}
 		catch (SQLException e)
 		{
@@ -261,29 +207,15 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IWorkflowReference>();
 	}
 	
 	public List<IWorkflowReference> getWorkflowReferences()
 	{
-		List<IWorkflowReference> ret = new ArrayList<IWorkflowReference>();
 		lock.readLock().lock();
 		try
 		{
-			Connection con = createConnection(true);
-			Statement st = con.createStatement();
-			ResultSet rs = st.executeQuery("select id, target, entry from workflowreferences");
-			while(rs.next())
-			{
-				String id = rs.getString(1);
-				String target = rs.getString(2);
-				String entry = rs.getString(3);
-				IndexedWorkflowReference workflowReference = new DesignDocument.IndexedWorkflowReference(id, target, entry);
-				ret.add(workflowReference);
-			}
-			rs.close();
-			st.close();
-			con.close();
+			return createWorkflowReferences(query(SELECT_ALL_WORKFLOW_REFERENCES, 3));
 		}
 		catch (SQLException e)
 		{
@@ -293,32 +225,17 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IWorkflowReference>();
 	}
 	
 	public List<IDesignEntryPoint> getDesignEntries(IDesignDocument designDocument)
 	{
-		List<IDesignEntryPoint> ret = new ArrayList<IDesignEntryPoint>();
 		lock.readLock().lock();
-		String documentId = getDocumentId(designDocument);
 		try
 		{
+			String documentId = getDocumentId(designDocument);
 			if(documentId != null)
-			{
-				Connection con = createConnection(true);
-				Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("select id, name from designentries where documentid = '" + documentId + "'");
-				while(rs.next())
-				{
-					String id = rs.getString(1);
-					String name = rs.getString(2);
-					IndexedDesignEntry designEntry = ((DesignDocument)designDocument).new IndexedDesignEntry(id, name);
-					ret.add(designEntry);
-				}
-				rs.close();
-				st.close();
-				con.close();
-			}
+				return createDesignEntries(designDocument, query(SELECT_DESIGN_ENTRIES, 2, documentId));
 		}
 		catch (SQLException e)
 		{
@@ -328,70 +245,17 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IDesignEntryPoint>();
 	}
 	
 	public List<IDesignExitPoint> getDesignExits(IDesignDocument designDocument)
 	{
-		List<IDesignExitPoint> ret = new ArrayList<IDesignExitPoint>();
 		lock.readLock().lock();
-		String documentId = getDocumentId(designDocument);
 		try
 		{
+			String documentId = getDocumentId(designDocument);
 			if(documentId != null)
-			{
-				Connection con = createConnection(true);
-				Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("select id, targetid, targetname from designexits where documentid = '" + documentId + "'");
-				while(rs.next())
-				{
-					String id = rs.getString(1);
-					String targetId = rs.getString(2);
-					String targetName = rs.getString(3);
-					IndexedDesignExit designExit = ((DesignDocument)designDocument).new IndexedDesignExit(id, targetId, targetName);
-					ret.add(designExit);
-				}
-				rs.close();
-				for(IDesignExitPoint workflowExit : ret)
-				{
-					rs = st.executeQuery("select name, type, basetype, precision from variables where documentid = '" + documentId + "' and elementid = '" + workflowExit.getId() + "'");
-					while(rs.next())
-					{
-						String name = rs.getString(1);
-						String type = rs.getString(2);
-						String baseType = rs.getString(3);
-						int precision = rs.getInt(4);
-						FieldType ft = null;
-						Primitive prim = Primitive.find(type);
-						if(prim != null)
-						{
-							if(prim.hasBaseType())
-							{
-								Primitive basePrim = Primitive.find(baseType);
-								if(basePrim != null)
-								{
-									ft = new FieldType(prim, basePrim);
-								}
-								else
-								{
-									ft = new FieldType(prim, designDocument.getProject().getBusinessObjectSet().getBusinessObject(baseType));
-								}
-							}
-							else
-								ft = new FieldType(prim);
-							ft.setPrecision(precision);
-						}
-						else
-							ft = new FieldType(designDocument.getProject().getBusinessObjectSet().getBusinessObject(type));
-						Variable v = new Variable(name, ft);
-						VariableHelper.buildObjectFields(v, designDocument.getProject().getBusinessObjectSet());
-						((IndexedDesignExit)workflowExit).addExportedVariable(v);
-					}
-					rs.close();
-				}
-				st.close();
-				con.close();
-			}
+				return createDesignExits(designDocument, documentId, query(SELECT_DESIGN_EXITS, 3, documentId));
 		}
 		catch (SQLException e)
 		{
@@ -401,7 +265,7 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IDesignExitPoint>();
 	}
 	
 	public List<IWorkflowEntry> getUpstreamWorkflowEntries(IDesignDocument designDocument, IWorkflowExit workflowExit)
@@ -416,64 +280,12 @@ public class WorkflowIndex
 	
 	private List<IWorkflowEntry> getUpstreamWorkflowEntries(IDesignDocument designDocument, String sourceId)
 	{
-		List<IWorkflowEntry> ret = new ArrayList<IWorkflowEntry>();
 		lock.readLock().lock();
-		String documentId = getDocumentId(designDocument);
 		try
 		{
+			String documentId = getDocumentId(designDocument);
 			if(documentId != null)
-			{
-				Connection con = createConnection(true);
-				Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("select id, name from workflowentries where documentid = '" + documentId + "' and id in (select upstreamid from streamindex where documentid = '" + documentId + "' and downstreamid = '" + sourceId + "')");
-				while(rs.next())
-				{
-					String id = rs.getString(1);
-					String name = rs.getString(2);
-					IndexedWorkflowEntry workflowEntry = ((DesignDocument)designDocument).new IndexedWorkflowEntry(id, name);
-					ret.add(workflowEntry);
-				}
-				rs.close();
-				for(IWorkflowEntry workflowEntry : ret)
-				{
-					rs = st.executeQuery("select name, type, basetype, precision from variables where documentid = '" + documentId + "' and elementid = '" + workflowEntry.getId() + "'");
-					while(rs.next())
-					{
-						String name = rs.getString(1);
-						String type = rs.getString(2);
-						String baseType = rs.getString(3);
-						int precision = rs.getInt(4);
-						FieldType ft = null;
-						Primitive prim = Primitive.find(type);
-						if(prim != null)
-						{
-							if(prim.hasBaseType())
-							{
-								Primitive basePrim = Primitive.find(baseType);
-								if(basePrim != null)
-								{
-									ft = new FieldType(prim, basePrim);
-								}
-								else
-								{
-									ft = new FieldType(prim, designDocument.getProject().getBusinessObjectSet().getBusinessObject(baseType));
-								}
-							}
-							else
-								ft = new FieldType(prim);
-							ft.setPrecision(precision);
-						}
-						else
-							ft = new FieldType(designDocument.getProject().getBusinessObjectSet().getBusinessObject(type));
-						Variable v = new Variable(name, ft);
-						VariableHelper.buildObjectFields(v, designDocument.getProject().getBusinessObjectSet());
-						((IndexedWorkflowEntry)workflowEntry).addInputVariable(v);
-					}
-					rs.close();
-				}
-				st.close();
-				con.close();
-			}
+				return createWorkflowEntries(designDocument, documentId, query(SELECT_UPSTREAM_WORKFLOW_ENTRIES, 2, documentId, documentId, sourceId));
 		}
 		catch (SQLException e)
 		{
@@ -483,7 +295,7 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IWorkflowEntry>();
 	}
 	
 	public List<IDesignEntryPoint> getUpstreamDesignEntries(IDesignDocument designDocument, IWorkflowExit workflowExit)
@@ -498,27 +310,12 @@ public class WorkflowIndex
 	
 	public List<IDesignEntryPoint> getUpstreamDesignEntries(IDesignDocument designDocument, String sourceId)
 	{
-		List<IDesignEntryPoint> ret = new ArrayList<IDesignEntryPoint>();
 		lock.readLock().lock();
-		String documentId = getDocumentId(designDocument);
 		try
 		{
+			String documentId = getDocumentId(designDocument);
 			if(documentId != null)
-			{
-				Connection con = createConnection(true);
-				Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("select id, name from designentries where documentid = '" + documentId + "' and id in (select upstreamid from streamindex where documentid = '" + documentId + "' and downstreamid = '" + sourceId + "')");
-				while(rs.next())
-				{
-					String id = rs.getString(1);
-					String name = rs.getString(2);
-					IndexedDesignEntry designEntry = ((DesignDocument)designDocument).new IndexedDesignEntry(id, name);
-					ret.add(designEntry);
-				}
-				rs.close();
-				st.close();
-				con.close();
-			}
+				return createDesignEntries(designDocument, query(SELECT_UPSTREAM_DESIGN_ENTRIES, 2, documentId, documentId, sourceId));
 		}
 		catch (SQLException e)
 		{
@@ -528,7 +325,7 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IDesignEntryPoint>();
 	}
 	
 	public List<IWorkflowExit> getDownstreamWorkflowExits(IDesignDocument designDocument, IWorkflowEntry workflowEntry)
@@ -543,65 +340,12 @@ public class WorkflowIndex
 	
 	public List<IWorkflowExit> getDownstreamWorkflowExits(IDesignDocument designDocument, String sourceId)
 	{
-		List<IWorkflowExit> ret = new ArrayList<IWorkflowExit>();
 		lock.readLock().lock();
-		String documentId = getDocumentId(designDocument);
 		try
 		{
+			String documentId = getDocumentId(designDocument);
 			if(documentId != null)
-			{
-				Connection con = createConnection(true);
-				Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("select id, name, type from workflowexits where documentid = '" + documentId + "' and id in (select downstreamid from streamindex where documentid = '" + documentId + "' and upstreamid = '" + sourceId + "')");
-				while(rs.next())
-				{
-					String id = rs.getString(1);
-					String name = rs.getString(2);
-					String type = rs.getString(3);
-					IndexedWorkflowExit workflowExit = ((DesignDocument)designDocument).new IndexedWorkflowExit(id, name, type);
-					ret.add(workflowExit);
-				}
-				rs.close();
-				for(IWorkflowExit workflowExit : ret)
-				{
-					rs = st.executeQuery("select name, type, basetype, precision from variables where documentid = '" + documentId + "' and elementid = '" + workflowExit.getId() + "'");
-					while(rs.next())
-					{
-						String name = rs.getString(1);
-						String type = rs.getString(2);
-						String baseType = rs.getString(3);
-						int precision = rs.getInt(4);
-						FieldType ft = null;
-						Primitive prim = Primitive.find(type);
-						if(prim != null)
-						{
-							if(prim.hasBaseType())
-							{
-								Primitive basePrim = Primitive.find(baseType);
-								if(basePrim != null)
-								{
-									ft = new FieldType(prim, basePrim);
-								}
-								else
-								{
-									ft = new FieldType(prim, designDocument.getProject().getBusinessObjectSet().getBusinessObject(baseType));
-								}
-							}
-							else
-								ft = new FieldType(prim);
-							ft.setPrecision(precision);
-						}
-						else
-							ft = new FieldType(designDocument.getProject().getBusinessObjectSet().getBusinessObject(type));
-						Variable v = new Variable(name, ft);
-						VariableHelper.buildObjectFields(v, designDocument.getProject().getBusinessObjectSet());
-						((IndexedWorkflowExit)workflowExit).addExportedVariable(v);
-					}
-					rs.close();
-				}
-				st.close();
-				con.close();
-			}
+				return createWorkflowExits(designDocument, documentId, query(SELECT_DOWNSTREAM_WORKFLOW_EXITS, 3, documentId, documentId, sourceId));
 		}
 		catch (SQLException e)
 		{
@@ -611,7 +355,7 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IWorkflowExit>();
 	}
 	
 	public List<IDesignExitPoint> getDownstreamDesignExits(IDesignDocument designDocument, IWorkflowEntry workflowEntry)
@@ -626,65 +370,12 @@ public class WorkflowIndex
 	
 	public List<IDesignExitPoint> getDownstreamDesignExits(IDesignDocument designDocument, String sourceId)
 	{
-		List<IDesignExitPoint> ret = new ArrayList<IDesignExitPoint>();
 		lock.readLock().lock();
-		String documentId = getDocumentId(designDocument);
 		try
 		{
+			String documentId = getDocumentId(designDocument);
 			if(documentId != null)
-			{
-				Connection con = createConnection(true);
-				Statement st = con.createStatement();
-				ResultSet rs = st.executeQuery("select id, targetid, targetname from designexits where documentid = '" + documentId + "' and id in (select downstreamid from streamindex where documentid = '" + documentId + "' and upstreamid = '" + sourceId + "')");
-				while(rs.next())
-				{
-					String id = rs.getString(1);
-					String targetId = rs.getString(2);
-					String targetName = rs.getString(3);
-					IndexedDesignExit designExit = ((DesignDocument)designDocument).new IndexedDesignExit(id, targetId, targetName);
-					ret.add(designExit);
-				}
-				rs.close();
-				for(IDesignExitPoint workflowExit : ret)
-				{
-					rs = st.executeQuery("select name, type, basetype, precision from variables where documentid = '" + documentId + "' and elementid = '" + workflowExit.getId() + "'");
-					while(rs.next())
-					{
-						String name = rs.getString(1);
-						String type = rs.getString(2);
-						String baseType = rs.getString(3);
-						int precision = rs.getInt(4);
-						FieldType ft = null;
-						Primitive prim = Primitive.find(type);
-						if(prim != null)
-						{
-							if(prim.hasBaseType())
-							{
-								Primitive basePrim = Primitive.find(baseType);
-								if(basePrim != null)
-								{
-									ft = new FieldType(prim, basePrim);
-								}
-								else
-								{
-									ft = new FieldType(prim, designDocument.getProject().getBusinessObjectSet().getBusinessObject(baseType));
-								}
-							}
-							else
-								ft = new FieldType(prim);
-							ft.setPrecision(precision);
-						}
-						else
-							ft = new FieldType(designDocument.getProject().getBusinessObjectSet().getBusinessObject(type));
-						Variable v = new Variable(name, ft);
-						VariableHelper.buildObjectFields(v, designDocument.getProject().getBusinessObjectSet());
-						((IndexedDesignExit)workflowExit).addExportedVariable(v);
-					}
-					rs.close();
-				}
-				st.close();
-				con.close();
-			}
+				return createDesignExits(designDocument, documentId, query(SELECT_DOWNSTREAM_DESIGN_EXITS, 3, documentId, documentId, sourceId));
 		}
 		catch (SQLException e)
 		{
@@ -694,7 +385,7 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return ret;
+		return new ArrayList<IDesignExitPoint>();
 	}
 	
 	public boolean elementExists(IDesignDocument newDocument, String elementId)
@@ -702,15 +393,10 @@ public class WorkflowIndex
 		lock.readLock().lock();
 		try
 		{
-			Connection con = createConnection(true);
-			Statement st = con.createStatement();
 			String documentId = getDocumentId(newDocument);
-			ResultSet rs = st.executeQuery("select * from elementindex where elementid = '" + elementId + "'" + (documentId == null ? "" : " and documentid != '" + documentId + "'"));
-			boolean ret = rs.next();
-			rs.close();
-			st.close();
-			con.close();
-			return ret;
+			if(documentId == null)
+				return queryValue(SELECT_ELEMENT, elementId) != null;
+			return queryValue(SELECT_FOREIGN_ELEMENT, elementId, documentId) != null;
 		}
 		catch(SQLException e)
 		{
@@ -725,17 +411,11 @@ public class WorkflowIndex
 	
 	public String locateElement(String elementId)
 	{
-		String documentId = null;
 		String documentPath = null;
 		lock.readLock().lock();
 		try
 		{
-			Connection con = createConnection(true);
-			Statement st = con.createStatement();
-			ResultSet rs = st.executeQuery("select documentid from elementindex where elementid = '" + elementId + "'");
-			if(rs.next())
-				documentId = rs.getString(1);
-			rs.close();
+			String documentId = queryValue(SELECT_ELEMENT, elementId);
 			if(documentId != null)
 			{
 				documentPath = getDocumentPath(documentId);
@@ -757,80 +437,6 @@ public class WorkflowIndex
 		IWorkflowProject wproject = WorkflowCore.getDefault().getWorkflowModel().convertToWorkflowProject(project);
 		indexStructure(wproject.getDesignRootFolder());
 		indexExportedData(wproject.getDesignRootFolder());
-		try
-		{
-			Connection con = createConnection(true);
-			Statement st = con.createStatement();
-			System.out.println("Table: designdocuments");
-			ResultSet rs = st.executeQuery("select * from designdocuments");
-			while(rs.next())
-			{
-				System.out.println("id: " + rs.getString(1) + " path: " + rs.getString(2));
-			}
-			rs.close();
-			System.out.println("Table: workflowentries");
-			rs = st.executeQuery("select * from workflowentries");
-			while(rs.next())
-			{
-				System.out.println("id: " + rs.getString(1) + " name: " + rs.getString(2) + " doc: " + rs.getString(3));
-			}
-			rs.close();
-			System.out.println("Table: variables");
-			rs = st.executeQuery("select * from variables");
-			while(rs.next())
-			{
-				System.out.println("name: " + rs.getString(1) + " type: " + rs.getString(2) + " basetype: " + rs.getString(3) + " elementid: " + rs.getString(5) + " doc: " + rs.getString(6));
-			}
-			rs.close();
-			System.out.println("Table: workflowexits");
-			rs = st.executeQuery("select * from workflowexits");
-			while(rs.next())
-			{
-				System.out.println("id: " + rs.getString(1) + " name: " + rs.getString(2) + " type: " + rs.getString(3) + " doc: " + rs.getString(4));
-			}
-			rs.close();
-			System.out.println("Table: workflowreferences");
-			rs = st.executeQuery("select * from workflowreferences");
-			while(rs.next())
-			{
-				System.out.println("id: " + rs.getString(1) + " target: " + rs.getString(2) + " entry: " + rs.getString(3) + " doc: " + rs.getString(4));
-			}
-			rs.close();
-			System.out.println("Table: designentries");
-			rs = st.executeQuery("select * from designentries");
-			while(rs.next())
-			{
-				System.out.println("id: " + rs.getString(1) + " name: " + rs.getString(2) + " doc: " + rs.getString(3));
-			}
-			rs.close();
-			System.out.println("Table: designexits");
-			rs = st.executeQuery("select * from designexits");
-			while(rs.next())
-			{
-				System.out.println("id: " + rs.getString(1) + " targetid: " + rs.getString(2) + " targetname: " + rs.getString(3) + " doc: " + rs.getString(4));
-			}
-			rs.close();
-			System.out.println("Table: streamindex");
-			rs = st.executeQuery("select * from streamindex");
-			while(rs.next())
-			{
-				System.out.println("upstreamid: " + rs.getString(1) + " downstreamid: " + rs.getString(2) + " doc: " + rs.getString(3));
-			}
-			rs.close();
-			System.out.println("Table: elementindex");
-			rs = st.executeQuery("select * from elementindex");
-			while(rs.next())
-			{
-				System.out.println("elementid: " + rs.getString(1) + " doc: " + rs.getString(2));
-			}
-			rs.close();
-			st.close();
-			con.close();
-		}
-		catch(Exception ex)
-		{
-			ex.printStackTrace();
-		}
 	}
 	
 	public void indexExportedData()
@@ -870,41 +476,47 @@ public class WorkflowIndex
 	public void indexExportedData(IDesignDocument designDocument)
 	{
 		validated = false;
-		System.out.println("indexing externals: " + designDocument.getUnderlyingFile().getProjectRelativePath());
-		long t = System.currentTimeMillis();
 		if(!designDocument.isWorkingCopy())
 		{
 			designDocument.becomeWorkingCopy(false);
-			System.out.println("Working copy for " + designDocument.getName() + " in " + Long.toString(System.currentTimeMillis() - t));
 		}
-		t = System.currentTimeMillis();
+		long t = System.currentTimeMillis();
 		lock.writeLock().lock();
 		try
 		{
-			Connection con = createConnection(true);
-			Statement st = con.createStatement();
-			String documentId = getDocumentId(designDocument);
-			//create new statement object for batch isolation purposes
-			if(documentId == null) //should always be true
-			{
-				documentId = Guid.createGUID();
-				st.executeUpdate("insert into designdocuments values ('" + documentId + "', '" + designDocument.getUnderlyingFile().getProjectRelativePath().toString() + "')");
-			}
-			List<IWorkflowExit> workflowExits = designDocument.getWorkflowExits();
-			for(IWorkflowExit workflowExit : workflowExits)
+			synchronized (database)
 			{
-				System.out.println("indexing exports for: " + workflowExit.getId() + " " + workflowExit.getName());
-				st.executeUpdate("insert into workflowexits values ('" + workflowExit.getId() + "', '" + workflowExit.getName() + "', '" + workflowExit.getType() + "', '" + documentId + "')");
-				st.executeUpdate("delete from variables where elementid = '" + workflowExit.getId() + "' and documentid = '" + documentId + "'");
-				List<Variable> exportedVariables = workflowExit.getExportedVariables();
-				for(Variable v : exportedVariables)
+				Connection con = getConnection();
+				con.setAutoCommit(false);
+				try
+				{
+					String documentId = getOrCreateDocumentId(designDocument);
+					PreparedStatement exitInserts = prepare(INSERT_WORKFLOW_EXIT);
+					PreparedStatement variableDeletes = prepare(DELETE_ELEMENT_VARIABLES);
+					PreparedStatement variableInserts = prepare(INSERT_VARIABLE);
+					List<IWorkflowExit> workflowExits = designDocument.getWorkflowExits();
+					for(IWorkflowExit workflowExit : workflowExits)
+					{
+						addBatch(exitInserts, workflowExit.getId(), workflowExit.getName(), workflowExit.getType(), documentId);
+						addBatch(variableDeletes, workflowExit.getId(), documentId);
+						addVariables(variableInserts, workflowExit.getExportedVariables(), workflowExit.getId(), documentId);
+					}
+					exitInserts.executeBatch();
+					variableDeletes.executeBatch();
+					variableInserts.executeBatch();
+					con.commit();
+				}
+				catch (SQLException e)
 				{
-					st.executeUpdate("insert into variables values ('" + v.getName() + "', '" + v.getType().getName() + "', '" + (v.getType().hasBaseType() ? v.getType().getBaseTypeName() : "") + "', " + v.getType().getPrecision() + ", '" + workflowExit.getId() + "', '" + documentId + "')");
+					rollback(con);
+					throw e;
+				}
+				finally
+				{
+					con.setAutoCommit(true);
 				}
 			}
 			System.out.println("indexing exported data for " + designDocument.getName() + " in " + Long.toString(System.currentTimeMillis() - t));
-			st.close();
-			con.close();
 		}
 		catch (SQLException e)
 		{
@@ -919,114 +531,94 @@ public class WorkflowIndex
 	public void indexStructure(IDesignDocument designDocument)
 	{
 		validated = false;
-		System.out.println("indexing: " + designDocument.getUnderlyingFile().getProjectRelativePath());
-		long t = System.currentTimeMillis();
 		if(!designDocument.isWorkingCopy())
 		{
 			designDocument.becomeWorkingCopy(false);
-			System.out.println("Working copy for " + designDocument.getName() + " in " + Long.toString(System.currentTimeMillis() - t));
 		}
-		t = System.currentTimeMillis();
+		long t = System.currentTimeMillis();
 		lock.writeLock().lock();
 		try
 		{
-			long t2 = System.currentTimeMillis();
-			Connection con = createConnection(false);
-			Statement st = con.createStatement();
-			System.out.println("Time: connection: " + Long.toString(System.currentTimeMillis() - t2));
-			t2 = System.currentTimeMillis();
-			String documentId = getDocumentId(designDocument);
-			if(documentId == null) //should always be true
-			{
-				documentId = Guid.createGUID();
-				st.executeUpdate("insert into designdocuments values ('" + documentId + "', '" + designDocument.getUnderlyingFile().getProjectRelativePath().toString() + "')");
-			}
-			System.out.println("Time: document id: " + Long.toString(System.currentTimeMillis() - t2));
-			t2 = System.currentTimeMillis();
-			List<IWorkflowEntry> workflowEntries = designDocument.getWorkflowEntries();
-			for(IWorkflowEntry workflowEntry : workflowEntries)
-			{
-				System.out.println("indexing workflow entry: " + workflowEntry.getId() + " " + workflowEntry.getName());
-				st.executeUpdate("insert into workflowentries values ('" + workflowEntry.getId() + "', '" + workflowEntry.getName() + "', '" + documentId + "')");
-				List<Variable> inputVariables = workflowEntry.getInputVariables();
-				for(Variable v : inputVariables)
-				{
-					st.executeUpdate("insert into variables values ('" + v.getName() + "', '" + v.getType().getName() + "', '" + (v.getType().hasBaseType() ? v.getType().getBaseTypeName() : "") + "', " + v.getType().getPrecision() + ", '" + workflowEntry.getId() + "', '" + documentId + "')");
-				}
-			}
-			System.out.println("Time: workflow entry: " + Long.toString(System.currentTimeMillis() - t2));
-			t2 = System.currentTimeMillis();
-			List<IWorkflowReference> workflowReferences = designDocument.getWorkflowReferences();
-			for(IWorkflowReference workflowReference : workflowReferences)
-			{
-				System.out.println("indexing workflow reference: " + workflowReference.getId() + " " + workflowReference.getTargetId() + " " + workflowReference.getEntryId());
-				st.executeUpdate("insert into workflowreferences values ('" + workflowReference.getId() + "', '" + workflowReference.getTargetId() + "', '" + workflowReference.getEntryId() + "', '" + documentId + "')");
-			}
-			System.out.println("Time: workflow reference: " + Long.toString(System.currentTimeMillis() - t2));
-			t2 = System.currentTimeMillis();
-			List<IDesignEntryPoint> designEntries = designDocument.getDesignEntryPoints();
-			for(IDesignEntryPoint designEntry : designEntries)
-			{
-				System.out.println("indexing design entry: " + designEntry.getId() + " " + designEntry.getName());
-				st.executeUpdate("insert into designentries values ('" + designEntry.getId() + "', '" + designEntry.getName() + "', '" + documentId + "')");
-			}
-			System.out.println("Time: design entry: " + Long.toString(System.currentTimeMillis() - t2));
-			t2 = System.currentTimeMillis();
-			List<IDesignExitPoint> designExits = designDocument.getDesignExitPoints();
-			for(IDesignExitPoint designExit : designExits)
+			synchronized (database)
 			{
-				System.out.println("indexing design exit: " + designExit.getId() + " " + designExit.getTargetId() + " " + designExit.getTargetName());
-				st.executeUpdate("insert into designexits values ('" + designExit.getId() + "', '" + designExit.getTargetId() + "', '" + designExit.getTargetName() + "', '" + documentId + "')");
-				List<Variable> variables = designExit.getExportedDesignVariables();
-				for(Variable v : variables)
-				{
-					st.executeUpdate("insert into variables values ('" + v.getName() + "', '" + v.getType().getName() + "', '" + (v.getType().hasBaseType() ? v.getType().getBaseTypeName() : "") + "', " + v.getType().getPrecision() + ", '" + designExit.getId() + "', '" + documentId + "')");
-				}
-			}
-			System.out.println("Time: design exit: " + Long.toString(System.currentTimeMillis() - t2));
-			t2 = System.currentTimeMillis();
-			for(IWorkflowEntry workflowEntry : workflowEntries)
-			{
-				List<IWorkflowExit> downStreamWorkflowExits = designDocument.getDownStreamWorkflowExits(workflowEntry);
-				for(IWorkflowExit workflowExit : downStreamWorkflowExits)
-				{
-					st.executeUpdate("insert into streamindex values ('" + workflowEntry.getId() + "', '" + workflowExit.getId() + "', '" + documentId + "')");
-				}
-				List<IDesignExitPoint> downStreamDesignExits = designDocument.getDownStreamDesignExits(workflowEntry);
-				for(IDesignExitPoint designExit : downStreamDesignExits)
+				Connection con = getConnection();
+				con.setAutoCommit(false);
+				try
 				{
-					st.executeUpdate("insert into streamindex values ('" + workflowEntry.getId() + "', '" + designExit.getId() + "', '" + documentId + "')");
+					String documentId = getOrCreateDocumentId(designDocument);
+					PreparedStatement variableInserts = prepare(INSERT_VARIABLE);
+					PreparedStatement streamInserts = prepare(INSERT_STREAM);
+					PreparedStatement entryInserts = prepare(INSERT_WORKFLOW_ENTRY);
+					List<IWorkflowEntry> workflowEntries = designDocument.getWorkflowEntries();
+					for(IWorkflowEntry workflowEntry : workflowEntries)
+					{
+						addBatch(entryInserts, workflowEntry.getId(), workflowEntry.getName(), documentId);
+						addVariables(variableInserts, workflowEntry.getInputVariables(), workflowEntry.getId(), documentId);
+					}
+					PreparedStatement referenceInserts = prepare(INSERT_WORKFLOW_REFERENCE);
+					for(IWorkflowReference workflowReference : designDocument.getWorkflowReferences())
+					{
+						addBatch(referenceInserts, workflowReference.getId(), workflowReference.getTargetId(), workflowReference.getEntryId(), documentId);
+					}
+					PreparedStatement designEntryInserts = prepare(INSERT_DESIGN_ENTRY);
+					List<IDesignEntryPoint> designEntries = designDocument.getDesignEntryPoints();
+					for(IDesignEntryPoint designEntry : designEntries)
+					{
+						addBatch(designEntryInserts, designEntry.getId(), designEntry.getName(), documentId);
+					}
+					PreparedStatement designExitInserts = prepare(INSERT_DESIGN_EXIT);
+					for(IDesignExitPoint designExit : designDocument.getDesignExitPoints())
+					{
+						addBatch(designExitInserts, designExit.getId(), designExit.getTargetId(), designExit.getTargetName(), documentId);
+						addVariables(variableInserts, designExit.getExportedDesignVariables(), designExit.getId(), documentId);
+					}
+					for(IWorkflowEntry workflowEntry : workflowEntries)
+					{
+						for(IWorkflowExit workflowExit : designDocument.getDownStreamWorkflowExits(workflowEntry))
+						{
+							addBatch(streamInserts, workflowEntry.getId(), workflowExit.getId(), documentId);
+						}
+						for(IDesignExitPoint designExit : designDocument.getDownStreamDesignExits(workflowEntry))
+						{
+							addBatch(streamInserts, workflowEntry.getId(), designExit.getId(), documentId);
+						}
+					}
+					for(IDesignEntryPoint designEntry : designEntries)
+					{
+						for(IWorkflowExit workflowExit : designDocument.getDownStreamWorkflowExits(designEntry))
+						{
+							addBatch(streamInserts, designEntry.getId(), workflowExit.getId(), documentId);
+						}
+						for(IDesignExitPoint designExit : designDocument.getDownStreamDesignExits(designEntry))
+						{
+							addBatch(streamInserts, designEntry.getId(), designExit.getId(), documentId);
+						}
+					}
+					PreparedStatement elementInserts = prepare(INSERT_ELEMENT);
+					for(IDesignElement designElement : designDocument.getMainDesign().getDesignElements())
+					{
+						addBatch(elementInserts, designElement.getId(), documentId);
+					}
+					entryInserts.executeBatch();
+					referenceInserts.executeBatch();
+					designEntryInserts.executeBatch();
+					designExitInserts.executeBatch();
+					variableInserts.executeBatch();
+					streamInserts.executeBatch();
+					elementInserts.executeBatch();
+					con.commit();
 				}
-			}
-			System.out.println("Time: stream index: workflow entry: " + Long.toString(System.currentTimeMillis() - t2));
-			t2 = System.currentTimeMillis();
-			for(IDesignEntryPoint designEntry : designEntries)
-			{
-				List<IWorkflowExit> downStreamWorkflowExits = designDocument.getDownStreamWorkflowExits(designEntry);
-				for(IWorkflowExit workflowExit : downStreamWorkflowExits)
+				catch (SQLException e)
 				{
-					st.executeUpdate("insert into streamindex values ('" + designEntry.getId() + "', '" + workflowExit.getId() + "', '" + documentId + "')");
+					rollback(con);
+					throw e;
 				}
-				List<IDesignExitPoint> downStreamDesignExits = designDocument.getDownStreamDesignExits(designEntry);
-				for(IDesignExitPoint designExit : downStreamDesignExits)
+				finally
 				{
-					st.executeUpdate("insert into streamindex values ('" + designEntry.getId() + "', '" + designExit.getId() + "', '" + documentId + "')");
+					con.setAutoCommit(true);
 				}
 			}
-			System.out.println("Time: stream index: design entry: " + Long.toString(System.currentTimeMillis() - t2));
-			t2 = System.currentTimeMillis();
-			for(IDesignElement designElement : designDocument.getMainDesign().getDesignElements())
-			{
-				st.executeUpdate("insert into elementindex values('" + designElement.getId() + "', '" + documentId + "')");
-			}
-			System.out.println("Time: element index: " + Long.toString(System.currentTimeMillis() - t2));
-			t2 = System.currentTimeMillis();
-			con.commit();
-			System.out.println("Time: commit: " + Long.toString(System.currentTimeMillis() - t2));
-			System.out.println(Long.toString(System.currentTimeMillis() - t));
 			System.out.println("indexing structure of " + designDocument.getName() + " in " + Long.toString(System.currentTimeMillis() - t));
-			st.close();
-			con.close();
 		}
 		catch (SQLException e)
 		{
@@ -1046,19 +638,7 @@ public class WorkflowIndex
 			String documentId = getDocumentId(designDocument);
 			if(documentId == null)
 				return;
-			Connection con = createConnection(false);
-			Statement st = con.createStatement();
-			st.executeUpdate("delete from workflowentries where documentid = '" + documentId + "'");
-			st.executeUpdate("delete from variables where documentid = '" + documentId + "'");
-			st.executeUpdate("delete from workflowexits where documentid = '" + documentId + "'");
-			st.executeUpdate("delete from workflowreferences where documentid = '" + documentId + "'");
-			st.executeUpdate("delete from designentries where documentid = '" + documentId + "'");
-			st.executeUpdate("delete from designexits where documentid = '" + documentId + "'");
-			st.executeUpdate("delete from streamindex where documentid = '" + documentId + "'");
-			st.executeUpdate("delete from elementindex where documentid = '" + documentId + "'");
-			con.commit();
-			st.close();
-			con.close();
+			deleteDocument(documentId, false);
 		}
 		catch (SQLException e)
 		{
@@ -1075,8 +655,8 @@ public class WorkflowIndex
 		lock.writeLock().lock();
 		try
 		{
-			File dataDirectory = project.getWorkingLocation("org.eclipse.vtp.desktop.model.core").toFile();
-			File indexDirectory = new File(dataDirectory, "index/");
+			closeConnection();
+			File indexDirectory = getIndexDirectory();
 			if(indexDirectory.exists())
 			{
 				try
@@ -1113,31 +693,12 @@ public class WorkflowIndex
 	
 	public void remove(String documentPath)
 	{
-		String documentId = null;
 		lock.writeLock().lock();
 		try
 		{
-			Connection con = createConnection(false);
-			Statement st = con.createStatement();
-			ResultSet rs = st.executeQuery("select id from designdocuments where path = '" + documentPath + "'");
-			if(rs.next())
-				documentId = rs.getString(1);
-			rs.close();
+			String documentId = queryValue(SELECT_DOCUMENT_ID, documentPath);
 			if(documentId != null)
-			{
-				st.executeUpdate("delete from designdocuments where id = '" + documentId + "'");
-				st.executeUpdate("delete from workflowentries where documentid = '" + documentId + "'");
-				st.executeUpdate("delete from variables where documentid = '" + documentId + "'");
-				st.executeUpdate("delete from workflowexits where documentid = '" + documentId + "'");
-				st.executeUpdate("delete from workflowreferences where documentid = '" + documentId + "'");
-				st.executeUpdate("delete from designentries where documentid = '" + documentId + "'");
-				st.executeUpdate("delete from designexits where documentid = '" + documentId + "'");
-				st.executeUpdate("delete from streamindex where documentid = '" + documentId + "'");
-				st.executeUpdate("delete from elementindex where documentid = '" + documentId + "'");
-			}
-			con.commit();
-			st.close();
-			con.close();
+				deleteDocument(documentId, true);
 		}
 		catch (SQLException e)
 		{
@@ -1154,11 +715,13 @@ public class WorkflowIndex
 		lock.writeLock().lock();
 		try
 		{
-			Connection con = createConnection(true);
-			Statement st = con.createStatement();
-			st.executeUpdate("update designdocuments set path = '" + destinationPath + "' where path = '" + originalPath + "'");
-			st.close();
-			con.close();
+			synchronized (database)
+			{
+				PreparedStatement st = prepare(UPDATE_DOCUMENT_PATH);
+				st.setString(1, destinationPath);
+				st.setString(2, originalPath);
+				st.executeUpdate();
+			}
 		}
 		catch (SQLException e)
 		{
@@ -1172,18 +735,10 @@ public class WorkflowIndex
 	
 	private String getDocumentId(IDesignDocument designDocument)
 	{
-		String documentId = null;
 		lock.readLock().lock();
 		try
 		{
-			Connection con = createConnection(true);
-			Statement st = con.createStatement();
-			ResultSet rs = st.executeQuery("select id from designdocuments where path = '" + designDocument.getUnderlyingFile().getProjectRelativePath().toString() + "'");
-			if(rs.next())
-				documentId = rs.getString(1);
-			rs.close();
-			st.close();
-			con.close();
+			return queryValue(SELECT_DOCUMENT_ID, designDocument.getUnderlyingFile().getProjectRelativePath().toString());
 		}
 		catch (SQLException e)
 		{
@@ -1193,23 +748,15 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return documentId;
+		return null;
 	}
 	
 	private String getDocumentPath(String documentId)
 	{
-		String documentPath = null;
 		lock.readLock().lock();
 		try
 		{
-			Connection con = createConnection(true);
-			Statement st = con.createStatement();
-			ResultSet rs = st.executeQuery("select path from designdocuments where id = '" + documentId + "'");
-			if(rs.next())
-				documentPath = rs.getString(1);
-			rs.close();
-			st.close();
-			con.close();
+			return queryValue(SELECT_DOCUMENT_PATH, documentId);
 		}
 		catch (SQLException e)
 		{
@@ -1219,7 +766,356 @@ public class WorkflowIndex
 		{
 			lock.readLock().unlock();
 		}
-		return documentPath;
+		return null;
+	}
+
+	/**
+	 * Returns the ID of a document, adding the document to the index if it is
+	 * not there yet. Must be called while holding the <code>database</code>
+	 * monitor.
+	 */
+	private String getOrCreateDocumentId(IDesignDocument designDocument) throws SQLException
+	{
+		String documentPath = designDocument.getUnderlyingFile().getProjectRelativePath().toString();
+		String documentId = queryValue(SELECT_DOCUMENT_ID, documentPath);
+		if(documentId == null) //should always be true
+		{
+			documentId = Guid.createGUID();
+			PreparedStatement st = prepare(INSERT_DOCUMENT);
+			st.setString(1, documentId);
+			st.setString(2, documentPath);
+			st.executeUpdate();
+		}
+		return documentId;
+	}
+
+	/**
+	 * Removes the contents of a document, and optionally the document itself,
+	 * in a single transaction.
+	 */
+	private void deleteDocument(String documentId, boolean removeDocument) throws SQLException
+	{
+		synchronized (database)
+		{
+			Connection con = getConnection();
+			con.setAutoCommit(false);
+			try
+			{
+				if(removeDocument)
+					update(DELETE_DOCUMENT, documentId);
+				for(String table : DOCUMENT_TABLES)
+					update("delete from " + table + " where documentid = ?", documentId);
+				con.commit();
+			}
+			catch (SQLException e)
+			{
+				rollback(con);
+				throw e;
+			}
+			finally
+			{
+				con.setAutoCommit(true);
+			}
+		}
+	}
+	
+	private List<IWorkflowEntry> createWorkflowEntries(IDesignDocument designDocument, String documentId, List<String[]> rows) throws SQLException
+	{
+		List<IWorkflowEntry> ret = new ArrayList<IWorkflowEntry>(rows.size());
+		if(rows.isEmpty())
+			return ret;
+		Map<String, List<String[]>> variables = queryVariables(documentId);
+		for(String[] row : rows)
+		{
+			IndexedWorkflowEntry workflowEntry = ((DesignDocument)designDocument).new IndexedWorkflowEntry(row[0], row[1]);
+			for(String[] variable : getVariableRows(variables, row[0]))
+				workflowEntry.addInputVariable(createVariable(designDocument, variable));
+			ret.add(workflowEntry);
+		}
+		return ret;
+	}
+	
+	private List<IWorkflowExit> createWorkflowExits(IDesignDocument designDocument, String documentId, List<String[]> rows) throws SQLException
+	{
+		List<IWorkflowExit> ret = new ArrayList<IWorkflowExit>(rows.size());
+		if(rows.isEmpty())
+			return ret;
+		Map<String, List<String[]>> variables = queryVariables(documentId);
+		for(String[] row : rows)
+		{
+			IndexedWorkflowExit workflowExit = ((DesignDocument)designDocument).new IndexedWorkflowExit(row[0], row[1], row[2]);
+			for(String[] variable : getVariableRows(variables, row[0]))
+				workflowExit.addExportedVariable(createVariable(designDocument, variable));
+			ret.add(workflowExit);
+		}
+		return ret;
+	}
+	
+	private List<IWorkflowReference> createWorkflowReferences(List<String[]> rows)
+	{
+		List<IWorkflowReference> ret = new ArrayList<IWorkflowReference>(rows.size());
+		for(String[] row : rows)
+			ret.add(new DesignDocument.IndexedWorkflowReference(row[0], row[1], row[2]));
+		return ret;
+	}
+	
+	private List<IDesignEntryPoint> createDesignEntries(IDesignDocument designDocument, List<String[]> rows)
+	{
+		List<IDesignEntryPoint> ret = new ArrayList<IDesignEntryPoint>(rows.size());
+		for(String[] row : rows)
+			ret.add(((DesignDocument)designDocument).new IndexedDesignEntry(row[0], row[1]));
+		return ret;
+	}
+	
+	private List<IDesignExitPoint> createDesignExits(IDesignDocument designDocument, String documentId, List<String[]> rows) throws SQLException
+	{
+		List<IDesignExitPoint> ret = new ArrayList<IDesignExitPoint>(rows.size());
+		if(rows.isEmpty())
+			return ret;
+		Map<String, List<String[]>> variables = queryVariables(documentId);
+		for(String[] row : rows)
+		{
+			IndexedDesignExit designExit = ((DesignDocument)designDocument).new IndexedDesignExit(row[0], row[1], row[2]);
+			for(String[] variable : getVariableRows(variables, row[0]))
+				designExit.addExportedVariable(createVariable(designDocument, variable));
+			ret.add(designExit);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Reads every variable of a document in one query, grouped by the ID of the
+	 * element that declares it. Each row holds the name, type, base type, and
+	 * precision of a variable.
+	 */
+	private Map<String, List<String[]>> queryVariables(String documentId) throws SQLException
+	{
+		Map<String, List<String[]>> variables = new HashMap<String, List<String[]>>();
+		synchronized (database)
+		{
+			PreparedStatement st = prepare(SELECT_VARIABLES);
+			st.setString(1, documentId);
+			ResultSet rs = st.executeQuery();
+			try
+			{
+				while(rs.next())
+				{
+					String elementId = rs.getString(1);
+					List<String[]> rows = variables.get(elementId);
+					if(rows == null)
+					{
+						rows = new ArrayList<String[]>();
+						variables.put(elementId, rows);
+					}
+					rows.add(new String[] { rs.getString(2), rs.getString(3), rs.getString(4), Integer.toString(rs.getInt(5)) });
+				}
+			}
+			finally
+			{
+				rs.close();
+			}
+		}
+		return variables;
+	}
+	
+	private static List<String[]> getVariableRows(Map<String, List<String[]>> variables, String elementId)
+	{
+		List<String[]> rows = variables.get(elementId);
+		return rows == null ? Collections.<String[]>emptyList() : rows;
+	}
+	
+	private Variable createVariable(IDesignDocument designDocument, String[] row)
+	{
+		String name = row[0];
+		String type = row[1];
+		String baseType = row[2];
+		int precision = Integer.parseInt(row[3]);
+		FieldType ft = null;
+		Primitive prim = Primitive.find(type);
+		if(prim != null)
+		{
+			if(prim.hasBaseType())
+			{
+				Primitive basePrim = Primitive.find(baseType);
+				if(basePrim != null)
+				{
+					ft = new FieldType(prim, basePrim);
+				}
+				else
+				{
+					ft = new FieldType(prim, designDocument.getProject().getBusinessObjectSet().getBusinessObject(baseType));
+				}
+			}
+			else
+				ft = new FieldType(prim);
+			ft.setPrecision(precision);
+		}
+		else
+			ft = new FieldType(designDocument.getProject().getBusinessObjectSet().getBusinessObject(type));
+		Variable v = new Variable(name, ft);
+		VariableHelper.buildObjectFields(v, designDocument.getProject().getBusinessObjectSet());
+		return v;
+	}
+	
+	private static void addVariables(PreparedStatement st, List<Variable> variables, String elementId, String documentId) throws SQLException
+	{
+		for(Variable v : variables)
+		{
+			st.setString(1, v.getName());
+			st.setString(2, v.getType().getName());
+			st.setString(3, v.getType().hasBaseType() ? v.getType().getBaseTypeName() : "");
+			st.setInt(4, v.getType().getPrecision());
+			st.setString(5, elementId);
+			st.setString(6, documentId);
+			st.addBatch();
+		}
+	}
+	
+	private static void addBatch(PreparedStatement st, String... parameters) throws SQLException
+	{
+		for(int i = 0; i < parameters.length; ++i)
+			st.setString(i + 1, parameters[i]);
+		st.addBatch();
+	}
+	
+	private static void rollback(Connection con)
+	{
+		try
+		{
+			con.rollback();
+		}
+		catch (SQLException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Runs a query and returns the first columns of every row as strings.
+	 */
+	private List<String[]> query(String sql, int columns, String... parameters) throws SQLException
+	{
+		List<String[]> rows = new ArrayList<String[]>();
+		synchronized (database)
+		{
+			PreparedStatement st = prepare(sql);
+			for(int i = 0; i < parameters.length; ++i)
+				st.setString(i + 1, parameters[i]);
+			ResultSet rs = st.executeQuery();
+			try
+			{
+				while(rs.next())
+				{
+					String[] row = new String[columns];
+					for(int i = 0; i < columns; ++i)
+						row[i] = rs.getString(i + 1);
+					rows.add(row);
+				}
+			}
+			finally
+			{
+				rs.close();
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Runs a query and returns the first column of the first row, or
+	 * <code>null</code> if there are no rows.
+	 */
+	private String queryValue(String sql, String... parameters) throws SQLException
+	{
+		synchronized (database)
+		{
+			PreparedStatement st = prepare(sql);
+			for(int i = 0; i < parameters.length; ++i)
+				st.setString(i + 1, parameters[i]);
+			ResultSet rs = st.executeQuery();
+			try
+			{
+				return rs.next() ? rs.getString(1) : null;
+			}
+			finally
+			{
+				rs.close();
+			}
+		}
+	}
+	
+	private int update(String sql, String... parameters) throws SQLException
+	{
+		synchronized (database)
+		{
+			PreparedStatement st = prepare(sql);
+			for(int i = 0; i < parameters.length; ++i)
+				st.setString(i + 1, parameters[i]);
+			return st.executeUpdate();
+		}
+	}
+
+	/**
+	 * Returns the statement prepared for the specified SQL, preparing it on
+	 * first use. Must be called while holding the <code>database</code> monitor.
+	 */
+	private PreparedStatement prepare(String sql) throws SQLException
+	{
+		PreparedStatement st = statements.get(sql);
+		if(st == null)
+		{
+			st = getConnection().prepareStatement(sql);
+			statements.put(sql, st);
+		}
+		return st;
+	}
+
+	/**
+	 * Returns the connection to the index database, opening it if necessary.
+	 * Must be called while holding the <code>database</code> monitor.
+	 */
+	private Connection getConnection() throws SQLException
+	{
+		if(connection == null)
+		{
+			connection = DriverManager.getConnection("jdbc:derby:" + getIndexDirectory().getAbsolutePath());
+			connection.setAutoCommit(true);
+		}
+		return connection;
+	}
+	
+	private void closeConnection()
+	{
+		synchronized (database)
+		{
+			for(PreparedStatement st : statements.values())
+			{
+				try
+				{
+					st.close();
+				}
+				catch (SQLException e)
+				{
+				}
+			}
+			statements.clear();
+			if(connection != null)
+			{
+				try
+				{
+					connection.close();
+				}
+				catch (SQLException e)
+				{
+				}
+				connection = null;
+			}
+		}
+	}
+	
+	private File getIndexDirectory()
+	{
+		File dataDirectory = project.getWorkingLocation("org.eclipse.vtp.desktop.model.core").toFile();
+		return new File(dataDirectory, "index/");
 	}
 	
 	private boolean setupDB()
@@ -1230,22 +1126,26 @@ public class WorkflowIndex
 	private boolean setupDB(boolean retry)
 	{
 		lock.writeLock().lock();
-		File dataDirectory = project.getWorkingLocation("org.eclipse.vtp.desktop.model.core").toFile();
-		System.err.println("data directory: " + dataDirectory);
-		File indexDirectory = new File(dataDirectory, "index/");
+		File indexDirectory = getIndexDirectory();
+		System.err.println("data directory: " + indexDirectory.getParentFile());
 		boolean previousIndex = indexDirectory.exists();
 		try
 		{
-			long t = System.currentTimeMillis();
-			Connection con = DriverManager.getConnection("jdbc:derby:" + indexDirectory.getAbsolutePath() + ";create=true");
-			System.err.println("Connection Creation: " + project.getName() + " in " + Long.toString(System.currentTimeMillis() - t));
-			if(!previousIndex)
+			synchronized (database)
 			{
-				Statement st = con.createStatement();
-				createStructure(con, st);
-				st.close();
+				closeConnection();
+				long t = System.currentTimeMillis();
+				Connection con = DriverManager.getConnection("jdbc:derby:" + indexDirectory.getAbsolutePath() + ";create=true");
+				System.err.println("Connection Creation: " + project.getName() + " in " + Long.toString(System.currentTimeMillis() - t));
+				con.setAutoCommit(true);
+				connection = con;
+				if(!previousIndex)
+				{
+					Statement st = con.createStatement();
+					createStructure(con, st);
+					st.close();
+				}
 			}
-			con.close();
 			return !previousIndex;
 		}
 		catch (SQLException e)
@@ -1254,6 +1154,7 @@ public class WorkflowIndex
 			if(retry)
 			{
 				System.err.println("Deleting the database directory and trying again.");
+				closeConnection();
 				try
 				{
 					DriverManager.getConnection("jdbc:derby:" + indexDirectory.getAbsolutePath() + ";shutdown=true");
@@ -1271,15 +1172,6 @@ public class WorkflowIndex
 		}
 	}
 	
-	private Connection createConnection(boolean autoCommit) throws SQLException
-	{
-		File dataDirectory = project.getWorkingLocation("org.eclipse.vtp.desktop.model.core").toFile();
-		File indexDirectory = new File(dataDirectory, "index/");
-		Connection con = DriverManager.getConnection("jdbc:derby:" + indexDirectory.getAbsolutePath());
-		con.setAutoCommit(autoCommit);
-		return con;
-	}
-	
 	private void createStructure(Connection con, Statement st)
 	{
         try
@@ -72,7 +72,9 @@ public final class WorkflowIndexService
 	
 	public synchronized void forgetIndex(IProject project)
 	{
-		activeIndexes.remove(project.getLocation().toPortableString());
+		WorkflowIndex index = activeIndexes.remove(project.getLocation().toPortableString());
+		if(index != null)
+			index.close();
 	}
 	
 	public synchronized boolean isIndexed(IProject project)
@@ -11,6 +11,8 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.common;
 
+import java.util.Collection;
+
 /**
  * Represents a dynamic sequence of other data objects.
  * 
@@ -51,6 +53,17 @@ public interface IArrayObject extends IDataObject
 	void addElement(IDataObject item) throws IllegalArgumentException,
 			IllegalStateException;
 
+	/**
+	 * Adds several items to the end of this array in a single update.
+	 * 
+	 * @param items The items to add to this array.
+	 * @throws IllegalArgumentException If any of the supplied items was not
+	 *           created by the registry that created this array.
+	 * @throws IllegalStateException If this object is read-only.
+	 */
+	void addElements(Collection<? extends IDataObject> items)
+			throws IllegalArgumentException, IllegalStateException;
+
 	/**
 	 * Inserts an item at the specified index in this array.
 	 * 
@@ -42,5 +42,13 @@ public interface IVariableStorage
 	
 	public IDataObject loadObject(String id);
 	
+	/**
+	 * Creates a new ID for a variable record, unique among the records of this
+	 * storage.
+	 * 
+	 * @return A new record ID, including the {@link #RECORD_PREFIX}.
+	 */
+	public String createRecordID();
+	
 	public ILogger getLogger();
 }
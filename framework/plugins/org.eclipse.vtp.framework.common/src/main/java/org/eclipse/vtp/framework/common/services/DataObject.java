@@ -4,7 +4,6 @@ import org.eclipse.vtp.framework.common.IDataObject;
 import org.eclipse.vtp.framework.common.IDataType;
 import org.eclipse.vtp.framework.common.IValueObject;
 import org.eclipse.vtp.framework.common.IVariableStorage;
-import org.eclipse.vtp.framework.util.Guid;
 
 /**
  * Basic implementation of an {@link IDataObject}.
@@ -34,7 +33,7 @@ public abstract class DataObject implements IDataObject
 	{
 		this.variableStorage = variableStorage;
 		if (id == null)
-			this.id = VariableRegistry.RECORD_PREFIX + Guid.createGUID();
+			this.id = variableStorage.createRecordID();
 		else
 			this.id = id;
 		this.type = type;
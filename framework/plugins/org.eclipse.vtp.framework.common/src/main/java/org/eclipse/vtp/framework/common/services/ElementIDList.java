@@ -0,0 +1,208 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.common.services;
+
+import java.io.Serializable;
+import java.util.Collection;
+
+/**
+ * The growable list of element IDs kept in the record of an array object.
+ * <p>
+ * The list keeps spare capacity so elements can be appended in amortized
+ * constant time. When a session is serialized the list is replaced by a plain
+ * <code>String[]</code>, the record format array objects have always used, so
+ * sessions remain readable by both old and new engines.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+final class ElementIDList implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	/** The initial capacity of an empty list. */
+	private static final int MINIMUM_CAPACITY = 8;
+
+	/**
+	 * Returns the list stored in an array record.
+	 *
+	 * @param stored The value of the array record.
+	 * @return The list stored in the record, an empty list if there is none.
+	 */
+	static ElementIDList valueOf(Object stored)
+	{
+		if (stored instanceof ElementIDList)
+			return (ElementIDList)stored;
+		if (stored instanceof String[])
+			return new ElementIDList((String[])stored, ((String[])stored).length);
+		return new ElementIDList(new String[0], 0);
+	}
+
+	/** The element IDs, followed by unused capacity. */
+	private String[] ids;
+	/** The number of element IDs in the list. */
+	private int length;
+
+	/**
+	 * Creates a new ElementIDList.
+	 *
+	 * @param ids The element IDs, followed by unused capacity.
+	 * @param length The number of element IDs in the list.
+	 */
+	private ElementIDList(String[] ids, int length)
+	{
+		this.ids = ids;
+		this.length = length;
+	}
+
+	/**
+	 * Returns a copy of this list that may be modified independently.
+	 *
+	 * @return A copy of this list.
+	 */
+	ElementIDList copy()
+	{
+		String[] copy = new String[Math.max(MINIMUM_CAPACITY, length
+				+ (length >> 1))];
+		System.arraycopy(ids, 0, copy, 0, length);
+		return new ElementIDList(copy, length);
+	}
+
+	/**
+	 * Returns the number of element IDs in this list.
+	 *
+	 * @return The number of element IDs in this list.
+	 */
+	int size()
+	{
+		return length;
+	}
+
+	/**
+	 * Returns the element ID at the specified index.
+	 *
+	 * @param index The index of the element ID.
+	 * @return The element ID at the specified index.
+	 * @throws IndexOutOfBoundsException If the index is not in this list.
+	 */
+	String get(int index) throws IndexOutOfBoundsException
+	{
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		return ids[index];
+	}
+
+	/**
+	 * Appends an element ID to this list.
+	 *
+	 * @param id The element ID to append.
+	 */
+	void add(String id)
+	{
+		ensureCapacity(length + 1);
+		ids[length++] = id;
+	}
+
+	/**
+	 * Appends several element IDs to this list.
+	 *
+	 * @param toAdd The element IDs to append.
+	 */
+	void addAll(Collection<String> toAdd)
+	{
+		ensureCapacity(length + toAdd.size());
+		for (String id : toAdd)
+			ids[length++] = id;
+	}
+
+	/**
+	 * Inserts an element ID into this list.
+	 *
+	 * @param index The index to insert at.
+	 * @param id The element ID to insert.
+	 * @throws IndexOutOfBoundsException If the index is past the end of this
+	 *           list.
+	 */
+	void insert(int index, String id) throws IndexOutOfBoundsException
+	{
+		if (index < 0 || index > length)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		ensureCapacity(length + 1);
+		System.arraycopy(ids, index, ids, index + 1, length - index);
+		ids[index] = id;
+		++length;
+	}
+
+	/**
+	 * Replaces the element ID at the specified index.
+	 *
+	 * @param index The index to replace at.
+	 * @param id The new element ID.
+	 * @throws IndexOutOfBoundsException If the index is not in this list.
+	 */
+	void set(int index, String id) throws IndexOutOfBoundsException
+	{
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		ids[index] = id;
+	}
+
+	/**
+	 * Removes the element ID at the specified index.
+	 *
+	 * @param index The index to remove.
+	 * @throws IndexOutOfBoundsException If the index is not in this list.
+	 */
+	void remove(int index) throws IndexOutOfBoundsException
+	{
+		if (index < 0 || index >= length)
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		System.arraycopy(ids, index + 1, ids, index, length - index - 1);
+		ids[--length] = null;
+	}
+
+	/**
+	 * Returns the element IDs in this list as an array.
+	 *
+	 * @return The element IDs in this list.
+	 */
+	String[] toArray()
+	{
+		String[] array = new String[length];
+		System.arraycopy(ids, 0, array, 0, length);
+		return array;
+	}
+
+	/**
+	 * Grows the backing array to hold at least the specified number of IDs.
+	 *
+	 * @param capacity The number of IDs to hold.
+	 */
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity <= ids.length)
+			return;
+		String[] grown = new String[Math.max(Math.max(MINIMUM_CAPACITY,
+				capacity), ids.length + (ids.length >> 1))];
+		System.arraycopy(ids, 0, grown, 0, length);
+		ids = grown;
+	}
+
+	/**
+	 * Serializes this list as a plain array of element IDs.
+	 *
+	 * @return The element IDs in this list.
+	 */
+	private Object writeReplace()
+	{
+		return toArray();
+	}
+}
@@ -11,7 +11,8 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.common.services;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -21,11 +22,18 @@ import org.eclipse.vtp.framework.common.IScriptable;
 import org.eclipse.vtp.framework.core.ISessionContext;
 
 /**
+ * The results of the last recognition, stored in the session as a single
+ * immutable {@link Snapshot}.
  * 
  * @author Lonnie Pryor
  */
 public class LastResult implements ILastResult, IScriptable
 {
+	/** The session attribute the results are stored in. */
+	private static final String RESULTS_ATTRIBUTE = "lastresult"; //$NON-NLS-1$
+	/** The snapshot that holds no results. */
+	private static final Snapshot EMPTY = new Snapshot(new LastResultData[0]);
+
 	/** The context to use. */
 	private final ISessionContext context;
 	
@@ -43,55 +51,42 @@ public class LastResult implements ILastResult, IScriptable
 	public ILastResultData addResult(int confidence, String utterance,
             String inputMode, String interpretation)
     {
-		String lengthString = (String)context.getAttribute("lastresult.length");
-		if(lengthString == null || "".equals(lengthString))
-			lengthString = "0";
-		int length = Integer.parseInt(lengthString);
-		context.setAttribute("lastresult." + length + ".confidence", Integer.toString(confidence));
-		context.setAttribute("lastresult." + length + ".utterance", utterance);
-		context.setAttribute("lastresult." + length + ".inputmode", inputMode);
-		context.setAttribute("lastresult." + length + ".interpretation", interpretation);
-		context.setAttribute("lastresult.length", Integer.toString(length + 1));
-	    return new LastResultData(confidence, utterance, inputMode, interpretation);
+		LastResultData[] results = getSnapshot().results;
+		LastResultData result = new LastResultData(confidence, utterance, inputMode, interpretation);
+		LastResultData[] added = new LastResultData[results.length + 1];
+		System.arraycopy(results, 0, added, 0, results.length);
+		added[results.length] = result;
+		context.setAttribute(RESULTS_ATTRIBUTE, new Snapshot(added));
+	    return result;
     }
 
 	public void clear()
     {
-		String lengthString = (String)context.getAttribute("lastresult.length");
-		if(lengthString == null || "".equals(lengthString))
-			return;
-		int length = Integer.parseInt(lengthString);
-		for(int i = 0; i < length; i++)
-		{
-			context.clearAttribute("lastresult." + i + ".confidence");
-			context.clearAttribute("lastresult." + i + ".utterance");
-			context.clearAttribute("lastresult." + i + ".inputmode");
-			context.clearAttribute("lastresult." + i + ".interpretation");
-		}
-		context.clearAttribute("lastresult.length");
+		if (context.getAttribute(RESULTS_ATTRIBUTE) != null)
+			context.clearAttribute(RESULTS_ATTRIBUTE);
 		context.clearAttribute("lastresult.markname");
 		context.clearAttribute("lastresult.marktime");
     }
 
 	public List<ILastResultData> getResults()
     {
-		String lengthString = (String)context.getAttribute("lastresult.length");
-		if(lengthString == null || "".equals(lengthString))
+		LastResultData[] results = getSnapshot().results;
+		if (results.length == 0)
 			return Collections.emptyList();
-		int length = Integer.parseInt(lengthString);
-		List<ILastResultData> ret = new ArrayList<ILastResultData>(length);
-		for(int i = 0; i < length; i++)
-		{
-			String confidenceString = (String)context.getAttribute("lastresult." + i + ".confidence");
-			int confidence = Integer.parseInt(confidenceString);
-			String utterance = (String)context.getAttribute("lastresult." + i + ".utterance");
-			String inputMode = (String)context.getAttribute("lastresult." + i + ".inputmode");
-			String interpretation = (String)context.getAttribute("lastresult." + i + ".interpretation");
-			ret.add(new LastResultData(confidence, utterance, inputMode, interpretation));
-		}
-	    return ret;
+		return Collections.<ILastResultData>unmodifiableList(Arrays.asList(results));
     }
 
+	/**
+	 * Returns the results stored in the session.
+	 * 
+	 * @return The results stored in the session, never <code>null</code>.
+	 */
+	private Snapshot getSnapshot()
+	{
+		Object snapshot = context.getAttribute(RESULTS_ATTRIBUTE);
+		return snapshot instanceof Snapshot ? (Snapshot)snapshot : EMPTY;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -150,11 +145,7 @@ public class LastResult implements ILastResult, IScriptable
 	 */
 	public final boolean hasItem(int index)
 	{
-		String lengthString = (String)context.getAttribute("lastresult.length");
-		if(lengthString == null || "".equals(lengthString))
-			lengthString = "0";
-		int length = Integer.parseInt(lengthString);
-		return index >= 0 && index < length;
+		return index >= 0 && index < getSnapshot().results.length;
 	}
 
 	public String[] getPropertyNames()
@@ -180,15 +171,8 @@ public class LastResult implements ILastResult, IScriptable
 	 */
 	public final Object getItem(int index)
 	{
-		String lengthString = (String)context.getAttribute("lastresult.length");
-		if(lengthString == null || "".equals(lengthString))
-			return null;
-		String confidenceString = (String)context.getAttribute("lastresult." + index + ".confidence");
-		int confidence = Integer.parseInt(confidenceString);
-		String utterance = (String)context.getAttribute("lastresult." + index + ".utterance");
-		String inputMode = (String)context.getAttribute("lastresult." + index + ".inputmode");
-		String interpretation = (String)context.getAttribute("lastresult." + index + ".interpretation");
-		return new LastResultData(confidence, utterance, inputMode, interpretation);
+		LastResultData[] results = getSnapshot().results;
+		return index >= 0 && index < results.length ? results[index] : null;
 	}
 
 	/*
@@ -199,19 +183,15 @@ public class LastResult implements ILastResult, IScriptable
 	 */
 	public final Object getEntry(String name)
 	{
+		LastResultData[] results = getSnapshot().results;
 		if("length".equals(name))
 		{
-			String lengthString = (String)context.getAttribute("lastresult.length");
-			if(lengthString == null || "".equals(lengthString))
-				lengthString = "0";
-			int length = Integer.parseInt(lengthString);
-			return new Integer(length);
+			return new Integer(results.length);
 		}
 		ILastResultData lrd = null;
-		List<ILastResultData> results = getResults();
-		if(results.size() > 0)
+		if(results.length > 0)
 		{
-			lrd = results.get(0);
+			lrd = results[0];
 		}
 		if("confidence".equals(name))
 		{
@@ -289,12 +269,37 @@ public class LastResult implements ILastResult, IScriptable
 		return false;
 	}
 
-	private class LastResultData implements ILastResultData, IScriptable
+	/**
+	 * The immutable list of results stored in the session.
+	 * 
+	 * @author Lonnie Pryor
+	 */
+	private static final class Snapshot implements Serializable
 	{
-		private int confidence = 0;
-		private String utterance = null;
-		private String inputMode = null;
-		private String interpretation = null;
+		private static final long serialVersionUID = 1L;
+
+		/** The results in the order they were added. */
+		final LastResultData[] results;
+
+		/**
+		 * Creates a new Snapshot.
+		 * 
+		 * @param results The results in the order they were added.
+		 */
+		Snapshot(LastResultData[] results)
+		{
+			this.results = results;
+		}
+	}
+
+	private static final class LastResultData implements ILastResultData, IScriptable, Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final int confidence;
+		private final String utterance;
+		private final String inputMode;
+		private final String interpretation;
 		
 		public LastResultData(int confidence, String utterance, String inputMode, String interpretation)
 		{
@@ -16,6 +16,7 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -42,6 +43,9 @@ import org.eclipse.vtp.framework.common.support.CustomDataType;
 import org.eclipse.vtp.framework.core.ILogger;
 import org.eclipse.vtp.framework.core.ISessionContext;
 import org.eclipse.vtp.framework.util.DateHelper;
+import org.eclipse.vtp.framework.util.IdentifierGenerator;
+import org.eclipse.vtp.framework.util.SecureIdentifierGenerator;
+import org.eclipse.vtp.framework.util.SequentialIdentifierGenerator;
 
 /**
  * A support implementation of the {@link IVariableRegistry} interface.
@@ -50,6 +54,34 @@ import org.eclipse.vtp.framework.util.DateHelper;
  */
 public class VariableRegistry implements IVariableRegistry, IScriptable, IVariableStorage
 {
+	/**
+	 * The system property that selects how record IDs are generated:
+	 * <code>sequential</code> (the default) for compact IDs or
+	 * <code>secure</code> for unguessable ones.
+	 */
+	public static final String ID_GENERATOR_PROPERTY = "org.eclipse.vtp.framework.common.variables.ids"; //$NON-NLS-1$
+
+	/**
+	 * Creates the generator of record IDs selected by the
+	 * {@link #ID_GENERATOR_PROPERTY} system property.
+	 * 
+	 * @return The generator of record IDs.
+	 */
+	private static IdentifierGenerator createIdentifierGenerator()
+	{
+		String generator = null;
+		try
+		{
+			generator = System.getProperty(ID_GENERATOR_PROPERTY);
+		}
+		catch (SecurityException e)
+		{
+		}
+		if ("secure".equalsIgnoreCase(generator)) //$NON-NLS-1$
+			return SecureIdentifierGenerator.getInstance();
+		return new SequentialIdentifierGenerator();
+	}
+
 
 	/** The context to use. */
 	private final ISessionContext context;
@@ -58,6 +90,8 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 	/** The variables in this registry by their internal ID. */
 	private final Map<String, IDataObject> variables = new HashMap<String, IDataObject>();
 	private final ILastResult lastResult;
+	/** The generator of record IDs. */
+	private final IdentifierGenerator recordIDs = createIdentifierGenerator();
 
 	/**
 	 * Creates a new VariableRegistry.
@@ -233,6 +267,16 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		return variable;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.vtp.framework.common.IVariableStorage#createRecordID()
+	 */
+	public String createRecordID()
+	{
+		return RECORD_PREFIX + recordIDs.createIdentifier();
+	}
+
 	/**
 	 * Returns the variable record with the specified ID or <code>null</code> if
 	 * no valid record can be found.
@@ -828,9 +872,11 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 
 			public Integer getValue()
 			{
-				return new Integer(((String[])ArrayObject.this.load()).length);
+				return new Integer(loadIDs().size());
 			}
 		};
+		/** The list of element IDs this instance last saved. */
+		private ElementIDList ownedIDs = null;
 
 		/**
 		 * Creates a new ArrayObject.
@@ -841,7 +887,7 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		ArrayObject()
 		{
 			super(VariableRegistry.this, null, dataTypeRegistry.getDataType(TYPE_NAME));
-			save(new String[0]);
+			save(ownedIDs = ElementIDList.valueOf(null));
 		}
 
 		/**
@@ -854,7 +900,51 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		{
 			super(VariableRegistry.this, id, dataTypeRegistry.getDataType(TYPE_NAME));
 			if (load() == null)
-				save(new String[0]);
+				save(ownedIDs = ElementIDList.valueOf(null));
+		}
+
+		/**
+		 * Returns the element IDs stored in this array's record.
+		 * 
+		 * @return The element IDs stored in this array's record.
+		 */
+		ElementIDList loadIDs()
+		{
+			return ElementIDList.valueOf(load());
+		}
+
+		/**
+		 * Returns the element IDs stored in this array's record in a form that may
+		 * be modified in place. The stored list is only modified directly if this
+		 * instance saved it; lists read from an enclosing scope or a restored
+		 * session are copied first.
+		 * 
+		 * @return The element IDs stored in this array's record.
+		 * @throws IllegalStateException If this object is read-only.
+		 */
+		ElementIDList editIDs() throws IllegalStateException
+		{
+			if (isReadOnly())
+				throw new IllegalStateException();
+			Object stored = load();
+			if (stored == null || stored != ownedIDs)
+				ownedIDs = ElementIDList.valueOf(stored).copy();
+			return ownedIDs;
+		}
+
+		/**
+		 * Returns the ID of an item after verifying it can be stored in this array.
+		 * 
+		 * @param item The item to store.
+		 * @return The ID of the item or <code>null</code>.
+		 * @throws IllegalArgumentException If the supplied item was not created by
+		 *           the registry that created this array.
+		 */
+		String toID(IDataObject item) throws IllegalArgumentException
+		{
+			if (item != null && !(item instanceof DataObject))
+				throw new IllegalArgumentException("item"); //$NON-NLS-1$
+			return item == null ? null : item.getId();
 		}
 
 		/*
@@ -874,12 +964,8 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		 */
 		public IDataObject getElement(int index) throws IndexOutOfBoundsException
 		{
-			if (index < 0)
-				throw new IndexOutOfBoundsException(String.valueOf(index));
-			String[] itemIDs = (String[])load();
-			if (index >= itemIDs.length)
-				throw new IndexOutOfBoundsException(String.valueOf(index));
-			return itemIDs[index] == null ? null : loadObject(itemIDs[index]);
+			String itemID = loadIDs().get(index);
+			return itemID == null ? null : loadObject(itemID);
 		}
 
 		/*
@@ -891,13 +977,27 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		public void addElement(IDataObject item) throws IllegalArgumentException,
 				IllegalStateException
 		{
-			if (item != null && !(item instanceof DataObject))
-				throw new IllegalArgumentException("item"); //$NON-NLS-1$
-			String[] oldIDs = (String[])load();
-			String[] newIDs = new String[oldIDs.length + 1];
-			System.arraycopy(oldIDs, 0, newIDs, 0, oldIDs.length);
-			newIDs[oldIDs.length] = item == null ? null : item.getId();
-			save(newIDs);
+			String itemID = toID(item);
+			ElementIDList itemIDs = editIDs();
+			itemIDs.add(itemID);
+			save(itemIDs);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.vtp.framework.common.IArrayObject#addElements(
+		 *      java.util.Collection)
+		 */
+		public void addElements(Collection<? extends IDataObject> items)
+				throws IllegalArgumentException, IllegalStateException
+		{
+			List<String> newIDs = new ArrayList<String>(items.size());
+			for (IDataObject item : items)
+				newIDs.add(toID(item));
+			ElementIDList itemIDs = editIDs();
+			itemIDs.addAll(newIDs);
+			save(itemIDs);
 		}
 
 		/*
@@ -912,19 +1012,12 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		{
 			if (index < 0)
 				throw new IndexOutOfBoundsException(String.valueOf(index));
-			if (item != null && !(item instanceof DataObject))
-				throw new IllegalArgumentException("item"); //$NON-NLS-1$
-			String[] oldIDs = (String[])load();
-			if (index > oldIDs.length)
+			String itemID = toID(item);
+			if (index > loadIDs().size())
 				throw new IndexOutOfBoundsException(String.valueOf(index));
-			String[] newIDs = new String[oldIDs.length + 1];
-			if (index > 0)
-				System.arraycopy(oldIDs, 0, newIDs, 0, index);
-			newIDs[index] = item == null ? null : item.getId();
-			if (index < oldIDs.length)
-				System.arraycopy(oldIDs, index, newIDs, index + 1, oldIDs.length
-						- index);
-			save(newIDs);
+			ElementIDList itemIDs = editIDs();
+			itemIDs.insert(index, itemID);
+			save(itemIDs);
 		}
 
 		/*
@@ -939,15 +1032,12 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		{
 			if (index < 0)
 				throw new IndexOutOfBoundsException(String.valueOf(index));
-			if (item != null && !(item instanceof DataObject))
-				throw new IllegalArgumentException("item"); //$NON-NLS-1$
-			String[] oldIDs = (String[])load();
-			if (index >= oldIDs.length)
+			String itemID = toID(item);
+			if (index >= loadIDs().size())
 				throw new IndexOutOfBoundsException(String.valueOf(index));
-			String[] newIDs = new String[oldIDs.length];
-			System.arraycopy(oldIDs, 0, newIDs, 0, oldIDs.length);
-			newIDs[index] = item == null ? null : item.getId();
-			save(newIDs);
+			ElementIDList itemIDs = editIDs();
+			itemIDs.set(index, itemID);
+			save(itemIDs);
 		}
 
 		/*
@@ -958,18 +1048,11 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		public void removeElement(int index) throws IllegalStateException,
 				IndexOutOfBoundsException
 		{
-			if (index < 0)
+			if (index < 0 || index >= loadIDs().size())
 				throw new IndexOutOfBoundsException(String.valueOf(index));
-			String[] oldIDs = (String[])load();
-			if (index >= oldIDs.length)
-				throw new IndexOutOfBoundsException(String.valueOf(index));
-			String[] newIDs = new String[oldIDs.length - 1];
-			if (index > 0)
-				System.arraycopy(oldIDs, 0, newIDs, 0, index);
-			if (index < newIDs.length)
-				System.arraycopy(oldIDs, index + 1, newIDs, index, newIDs.length
-						- index);
-			save(newIDs);
+			ElementIDList itemIDs = editIDs();
+			itemIDs.remove(index);
+			save(itemIDs);
 		}
 
 		/*
@@ -997,12 +1080,13 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 			if (!(object instanceof IArrayObject))
 				return false;
 			IArrayObject other = (IArrayObject)object;
-			String[] itemIDs = (String[])load();
-			if (itemIDs.length != other.getLength().getValue().intValue())
+			ElementIDList itemIDs = loadIDs();
+			if (itemIDs.size() != other.getLength().getValue().intValue())
 				return false;
-			for (int i = 0; i < itemIDs.length; ++i)
+			for (int i = 0; i < itemIDs.size(); ++i)
 			{
-				IDataObject ours = itemIDs[i] == null ? null : loadObject(itemIDs[i]);
+				String itemID = itemIDs.get(i);
+				IDataObject ours = itemID == null ? null : loadObject(itemID);
 				IDataObject theirs = other.getElement(i);
 				if (ours == theirs)
 					continue;
@@ -1022,7 +1106,7 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		 */
 		public boolean hasItem(int index)
 		{
-			return index >= 0 && index < ((String[])load()).length;
+			return index >= 0 && index < loadIDs().size();
 		}
 
 		/*
@@ -1064,7 +1148,7 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 					return false;
 				}
 			}
-			if (index == ((String[])load()).length)
+			if (index == loadIDs().size())
 			{
 				addElement((IDataObject)value);
 				return true;
@@ -1107,12 +1191,13 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 		public String toString()
 		{
 			StringBuffer buffer = new StringBuffer().append('[');
-			String[] itemIDs = (String[])load();
-			for (int i = 0; i < itemIDs.length; ++i)
+			ElementIDList itemIDs = loadIDs();
+			for (int i = 0; i < itemIDs.size(); ++i)
 			{
 				if (i > 0)
 					buffer.append(',');
-				buffer.append(itemIDs[i] == null ? null : loadObject(itemIDs[i]));
+				String itemID = itemIDs.get(i);
+				buffer.append(itemID == null ? null : loadObject(itemID));
 			}
 			return buffer.append(']').toString();
 		}
@@ -1205,10 +1290,10 @@ public class VariableRegistry implements IVariableRegistry, IScriptable, IVariab
 				return false;
 			}
 
-			String[] itemIDs = (String[])load();
-			for(int b = 0; b < itemIDs.length; b++)
+			ElementIDList itemIDs = loadIDs();
+			for(int b = 0; b < itemIDs.size(); b++)
 			{
-				IDataObject ido = loadObject(itemIDs[b]);
+				IDataObject ido = loadObject(itemIDs.get(b));
 				if(ido.isEqualTo(obj))
 				{
 					return clearItem(b);
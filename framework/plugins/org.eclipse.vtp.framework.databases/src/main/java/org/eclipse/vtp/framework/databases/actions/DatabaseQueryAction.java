@@ -18,12 +18,14 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -269,6 +271,7 @@ public class DatabaseQueryAction implements IAction
 			variable = null;
 		}
 		int resultCount = 0;
+		List<IDataObject> rows = array == null ? null : new ArrayList<IDataObject>();
 		for (int i = 0; (resultLength == 0 || i < resultLength) && resultSet.next(); ++i)
 		{
 			resultCount++;
@@ -278,9 +281,11 @@ public class DatabaseQueryAction implements IAction
 				mapping.setValue(variable, resultSet);
 			if (array == null)
 				break;
-			array.addElement(variable);
+			rows.add(variable);
 			variable = null;
 		}
+		if (array != null && !rows.isEmpty())
+			array.addElements(rows);
 		if (resultCount == 0 && array == null)
 		{
 			variables.clearVariable(resultName);
@@ -30,18 +30,28 @@ public interface DatabaseConstants
 	String NAME_COMPARISON = "comparison"; //$NON-NLS-1$
 	/** The "database" name constant. */
 	String NAME_DATABASE = "database"; //$NON-NLS-1$
+	/** The "acquire-timeout" name constant. */
+	String NAME_ACQUIRE_TIMEOUT = "acquire-timeout"; //$NON-NLS-1$
 	/** The "driver" name constant. */
 	String NAME_DRIVER = "driver"; //$NON-NLS-1$
+	/** The "idle-timeout" name constant. */
+	String NAME_IDLE_TIMEOUT = "idle-timeout"; //$NON-NLS-1$
 	/** The "jdbc-database" name constant. */
 	String NAME_JDBC_DATABASE = "jdbc-database"; //$NON-NLS-1$
 	/** The "jndi-database" name constant. */
 	String NAME_JNDI_DATABASE = "jndi-database"; //$NON-NLS-1$
+	/** The "leak-timeout" name constant. */
+	String NAME_LEAK_TIMEOUT = "leak-timeout"; //$NON-NLS-1$
 	/** The "mapping" name constant. */
 	String NAME_MAPPING = "mapping"; //$NON-NLS-1$
 	/** The "name" name constant. */
 	String NAME_NAME = "name"; //$NON-NLS-1$
 	/** The "password" name constant. */
 	String NAME_PASSWORD = "password"; //$NON-NLS-1$
+	/** The "pool-max-size" name constant. */
+	String NAME_POOL_MAX_SIZE = "pool-max-size"; //$NON-NLS-1$
+	/** The "pool-min-size" name constant. */
+	String NAME_POOL_MIN_SIZE = "pool-min-size"; //$NON-NLS-1$
 	/** The "query" name constant. */
 	String NAME_QUERY = "query"; //$NON-NLS-1$
 	/** The "result-cardinality" name constant. */
@@ -52,6 +62,8 @@ public interface DatabaseConstants
 	String NAME_RESULT_LIMIT = "result-limit"; //$NON-NLS-1$
 	/** The "result-type" name constant. */
 	String NAME_RESULT_TYPE = "result-type"; //$NON-NLS-1$
+	/** The "statement-cache-size" name constant. */
+	String NAME_STATEMENT_CACHE_SIZE = "statement-cache-size"; //$NON-NLS-1$
 	/** The "table" name constant. */
 	String NAME_TABLE = "table"; //$NON-NLS-1$
 	/** The "timeout" name constant. */
@@ -64,6 +76,8 @@ public interface DatabaseConstants
 	String NAME_URL = "url"; //$NON-NLS-1$
 	/** The "username" name constant. */
 	String NAME_USERNAME = "username"; //$NON-NLS-1$
+	/** The "validation-query" name constant. */
+	String NAME_VALIDATION_QUERY = "validation-query"; //$NON-NLS-1$
 	/** The "value" name constant. */
 	String NAME_VALUE = "value"; //$NON-NLS-1$
 	String NAME_SECURED = "secured";
@@ -25,6 +25,20 @@ public class JdbcDatabaseConfiguration extends DatabaseConfiguration
 	private String driver = ""; //$NON-NLS-1$
 	/** The URL to connect with. */
 	private String url = ""; //$NON-NLS-1$
+	/** The minimum number of connections to keep open. */
+	private int poolMinSize = 0;
+	/** The maximum number of connections to open, zero to disable pooling. */
+	private int poolMaxSize = 10;
+	/** The query used to validate idle connections or an empty string. */
+	private String validationQuery = ""; //$NON-NLS-1$
+	/** The number of seconds a connection may remain idle, zero for no limit. */
+	private int idleTimeout = 300;
+	/** The number of seconds to wait for a connection, zero for no limit. */
+	private int acquireTimeout = 30;
+	/** The number of seconds a connection may be held before being reported. */
+	private int leakTimeout = 0;
+	/** The number of prepared statements to cache per connection. */
+	private int statementCacheSize = 32;
 
 	/**
 	 * Creates a new JdbcDatabaseConfiguration.
@@ -73,6 +87,153 @@ public class JdbcDatabaseConfiguration extends DatabaseConfiguration
 		this.url = url == null ? "" : url; //$NON-NLS-1$
 	}
 
+	/**
+	 * Returns the minimum number of connections to keep open.
+	 * 
+	 * @return The minimum number of connections to keep open.
+	 */
+	public int getPoolMinSize()
+	{
+		return poolMinSize;
+	}
+
+	/**
+	 * Sets the minimum number of connections to keep open.
+	 * 
+	 * @param poolMinSize The minimum number of connections to keep open.
+	 */
+	public void setPoolMinSize(int poolMinSize)
+	{
+		this.poolMinSize = poolMinSize < 0 ? 0 : poolMinSize;
+	}
+
+	/**
+	 * Returns the maximum number of connections to open, zero if connections
+	 * are not pooled.
+	 * 
+	 * @return The maximum number of connections to open.
+	 */
+	public int getPoolMaxSize()
+	{
+		return poolMaxSize;
+	}
+
+	/**
+	 * Sets the maximum number of connections to open, zero if connections
+	 * should not be pooled.
+	 * 
+	 * @param poolMaxSize The maximum number of connections to open.
+	 */
+	public void setPoolMaxSize(int poolMaxSize)
+	{
+		this.poolMaxSize = poolMaxSize < 0 ? 0 : poolMaxSize;
+	}
+
+	/**
+	 * Returns the query used to validate idle connections.
+	 * 
+	 * @return The query used to validate idle connections or an empty string.
+	 */
+	public String getValidationQuery()
+	{
+		return validationQuery;
+	}
+
+	/**
+	 * Sets the query used to validate idle connections.
+	 * 
+	 * @param validationQuery The query used to validate idle connections.
+	 */
+	public void setValidationQuery(String validationQuery)
+	{
+		this.validationQuery = validationQuery == null ? "" : validationQuery; //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the number of seconds a connection may remain idle before closing.
+	 * 
+	 * @return The number of seconds a connection may remain idle.
+	 */
+	public int getIdleTimeout()
+	{
+		return idleTimeout;
+	}
+
+	/**
+	 * Sets the number of seconds a connection may remain idle before closing.
+	 * 
+	 * @param idleTimeout The number of seconds a connection may remain idle.
+	 */
+	public void setIdleTimeout(int idleTimeout)
+	{
+		this.idleTimeout = idleTimeout < 0 ? 0 : idleTimeout;
+	}
+
+	/**
+	 * Returns the number of seconds to wait for a connection to become
+	 * available, zero if there is no limit.
+	 * 
+	 * @return The number of seconds to wait for a connection.
+	 */
+	public int getAcquireTimeout()
+	{
+		return acquireTimeout;
+	}
+
+	/**
+	 * Sets the number of seconds to wait for a connection to become available,
+	 * zero if there should be no limit.
+	 * 
+	 * @param acquireTimeout The number of seconds to wait for a connection.
+	 */
+	public void setAcquireTimeout(int acquireTimeout)
+	{
+		this.acquireTimeout = acquireTimeout < 0 ? 0 : acquireTimeout;
+	}
+
+	/**
+	 * Returns the number of seconds a connection may be held before being
+	 * reported as leaked, zero if leaks are not reported.
+	 * 
+	 * @return The number of seconds a connection may be held.
+	 */
+	public int getLeakTimeout()
+	{
+		return leakTimeout;
+	}
+
+	/**
+	 * Sets the number of seconds a connection may be held before being reported
+	 * as leaked, zero if leaks should not be reported.
+	 * 
+	 * @param leakTimeout The number of seconds a connection may be held.
+	 */
+	public void setLeakTimeout(int leakTimeout)
+	{
+		this.leakTimeout = leakTimeout < 0 ? 0 : leakTimeout;
+	}
+
+	/**
+	 * Returns the number of prepared statements to cache per connection.
+	 * 
+	 * @return The number of prepared statements to cache per connection.
+	 */
+	public int getStatementCacheSize()
+	{
+		return statementCacheSize;
+	}
+
+	/**
+	 * Sets the number of prepared statements to cache per connection.
+	 * 
+	 * @param statementCacheSize The number of prepared statements to cache.
+	 */
+	public void setStatementCacheSize(int statementCacheSize)
+	{
+		this.statementCacheSize = statementCacheSize < 0 ? 0
+				: statementCacheSize;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -83,6 +244,26 @@ public class JdbcDatabaseConfiguration extends DatabaseConfiguration
 	{
 		driver = configurationElement.getAttribute(NAME_DRIVER);
 		url = configurationElement.getAttribute(NAME_URL);
+		if (configurationElement.hasAttribute(NAME_POOL_MIN_SIZE))
+			setPoolMinSize(Integer.parseInt(configurationElement
+					.getAttribute(NAME_POOL_MIN_SIZE)));
+		if (configurationElement.hasAttribute(NAME_POOL_MAX_SIZE))
+			setPoolMaxSize(Integer.parseInt(configurationElement
+					.getAttribute(NAME_POOL_MAX_SIZE)));
+		setValidationQuery(configurationElement
+				.getAttribute(NAME_VALIDATION_QUERY));
+		if (configurationElement.hasAttribute(NAME_IDLE_TIMEOUT))
+			setIdleTimeout(Integer.parseInt(configurationElement
+					.getAttribute(NAME_IDLE_TIMEOUT)));
+		if (configurationElement.hasAttribute(NAME_ACQUIRE_TIMEOUT))
+			setAcquireTimeout(Integer.parseInt(configurationElement
+					.getAttribute(NAME_ACQUIRE_TIMEOUT)));
+		if (configurationElement.hasAttribute(NAME_LEAK_TIMEOUT))
+			setLeakTimeout(Integer.parseInt(configurationElement
+					.getAttribute(NAME_LEAK_TIMEOUT)));
+		if (configurationElement.hasAttribute(NAME_STATEMENT_CACHE_SIZE))
+			setStatementCacheSize(Integer.parseInt(configurationElement
+					.getAttribute(NAME_STATEMENT_CACHE_SIZE)));
 		super.load(configurationElement);
 	}
 
@@ -96,6 +277,22 @@ public class JdbcDatabaseConfiguration extends DatabaseConfiguration
 	{
 		configurationElement.setAttribute(NAME_DRIVER, driver);
 		configurationElement.setAttribute(NAME_URL, url);
+		configurationElement.setAttribute(NAME_POOL_MIN_SIZE, String
+				.valueOf(poolMinSize));
+		configurationElement.setAttribute(NAME_POOL_MAX_SIZE, String
+				.valueOf(poolMaxSize));
+		if (validationQuery.length() > 0)
+			configurationElement.setAttribute(NAME_VALIDATION_QUERY,
+					validationQuery);
+		configurationElement.setAttribute(NAME_IDLE_TIMEOUT, String
+				.valueOf(idleTimeout));
+		configurationElement.setAttribute(NAME_ACQUIRE_TIMEOUT, String
+				.valueOf(acquireTimeout));
+		if (leakTimeout > 0)
+			configurationElement.setAttribute(NAME_LEAK_TIMEOUT, String
+					.valueOf(leakTimeout));
+		configurationElement.setAttribute(NAME_STATEMENT_CACHE_SIZE, String
+				.valueOf(statementCacheSize));
 		super.save(configurationElement);
 	}
 
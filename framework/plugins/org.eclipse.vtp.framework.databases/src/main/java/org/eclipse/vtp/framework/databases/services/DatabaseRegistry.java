@@ -11,6 +11,7 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.databases.services;
 
+import java.io.Closeable;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.SQLException;
@@ -42,10 +43,14 @@ import org.eclipse.vtp.framework.databases.configurations.JndiDatabaseConfigurat
 
 /**
  * Implementation of {@link IDatabaseRegistry}.
+ * <p>
+ * The registry is closed when its process is disposed, which closes the
+ * connection pools of its databases.
+ * </p>
  * 
  * @author Lonnie Pryor
  */
-public class DatabaseRegistry implements IDatabaseRegistry
+public class DatabaseRegistry implements IDatabaseRegistry, Closeable
 {
 	/** The context to use. */
 	private final IProcessContext context;
@@ -109,6 +114,19 @@ public class DatabaseRegistry implements IDatabaseRegistry
 		return databases.get(databaseName);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	public void close()
+	{
+		for (IDatabase database : databases.values())
+			if (database instanceof JdbcDatabase
+					&& ((JdbcDatabase)database).pool != null)
+				((JdbcDatabase)database).pool.close();
+	}
+
 	/**
 	 * The basic database implementation.
 	 * 
@@ -240,6 +258,8 @@ public class DatabaseRegistry implements IDatabaseRegistry
 		final Driver driver;
 		/** The URL to use. */
 		final String url;
+		/** The connection pool to use or <code>null</code>. */
+		final JdbcConnectionPool pool;
 
 		@SuppressWarnings({ "rawtypes", "unchecked" })
 		/**
@@ -266,6 +286,13 @@ public class DatabaseRegistry implements IDatabaseRegistry
 			}
 			this.driver = driver;
 			this.url = configuration.getUrl();
+			if (driver == null || configuration.getPoolMaxSize() <= 0)
+				this.pool = null;
+			else
+				this.pool = new JdbcConnectionPool(name, driver, getInfo(),
+						configuration, context);
+			if (pool != null)
+				pool.fill();
 		}
 
 		/*
@@ -277,12 +304,24 @@ public class DatabaseRegistry implements IDatabaseRegistry
 		{
 			if (driver == null)
 				return null;
+			if (pool != null)
+				return pool.getConnection();
+			return driver.connect(url, getInfo());
+		}
+
+		/**
+		 * Returns the properties to connect with.
+		 * 
+		 * @return The properties to connect with.
+		 */
+		Properties getInfo()
+		{
 			Properties info = new Properties();
 			if (username != null)
 				info.setProperty("user", username); //$NON-NLS-1$
 			if (password != null)
 				info.setProperty("password", password); //$NON-NLS-1$
-			return driver.connect(url, info);
+			return info;
 		}
 	}
 
@@ -0,0 +1,900 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.databases.services;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Dictionary;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.vtp.framework.core.ILogger;
+import org.eclipse.vtp.framework.core.IReporter;
+import org.eclipse.vtp.framework.databases.configurations.JdbcDatabaseConfiguration;
+
+/**
+ * A bounded pool of connections opened through a JDBC driver.
+ * <p>
+ * Connections handed out by the pool are proxies: closing one returns the
+ * underlying connection to the pool, and statements prepared through it are
+ * cached per connection and handed out again the next time the same SQL is
+ * prepared. Idle connections are validated before they are reused and closed
+ * once they exceed the idle timeout. Connections held longer than the leak
+ * timeout are reported once, along with the stack that acquired them.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+final class JdbcConnectionPool
+{
+	/** The interfaces implemented by connection proxies. */
+	private static final Class<?>[] CONNECTION_TYPES = { Connection.class };
+	/** The interfaces implemented by statement proxies. */
+	private static final Class<?>[] STATEMENT_TYPES = { PreparedStatement.class };
+
+	/** The name of the database. */
+	private final String name;
+	/** The driver to connect with. */
+	private final Driver driver;
+	/** The URL to connect to. */
+	private final String url;
+	/** The properties to connect with. */
+	private final Properties info;
+	/** The minimum number of connections to keep open. */
+	private final int minSize;
+	/** The maximum number of connections to open. */
+	private final int maxSize;
+	/** The query used to validate idle connections or <code>null</code>. */
+	private final String validationQuery;
+	/** The milliseconds a connection may remain idle, zero for no limit. */
+	private final long idleTimeout;
+	/** The milliseconds to wait for a connection, zero for no limit. */
+	private final long acquireTimeout;
+	/** The milliseconds a connection may be held, zero for no limit. */
+	private final long leakTimeout;
+	/** The number of prepared statements to cache per connection. */
+	private final int statementCacheSize;
+	/** The logger to report to. */
+	private final ILogger logger;
+	/** The idle connections, most recently used first. */
+	private final LinkedList<PooledConnection> idle = new LinkedList<PooledConnection>();
+	/** The connections currently handed out. */
+	private final Set<PooledConnection> active = new HashSet<PooledConnection>();
+	/** The number of connections currently being opened. */
+	private int opening = 0;
+	/** True once the pool has been closed. */
+	private boolean closed = false;
+	/** The number of connections handed out. */
+	private final AtomicLong acquisitions = new AtomicLong();
+	/** The total time spent waiting for connections in nanoseconds. */
+	private final AtomicLong waitTime = new AtomicLong();
+
+	/**
+	 * Creates a new JdbcConnectionPool.
+	 *
+	 * @param name The name of the database.
+	 * @param driver The driver to connect with.
+	 * @param info The properties to connect with.
+	 * @param configuration The configuration of the database.
+	 * @param logger The logger to report to.
+	 */
+	JdbcConnectionPool(String name, Driver driver, Properties info,
+			JdbcDatabaseConfiguration configuration, ILogger logger)
+	{
+		this.name = name;
+		this.driver = driver;
+		this.url = configuration.getUrl();
+		this.info = info;
+		this.maxSize = configuration.getPoolMaxSize();
+		this.minSize = Math.min(configuration.getPoolMinSize(), maxSize);
+		String validationQuery = configuration.getValidationQuery();
+		this.validationQuery = validationQuery.length() == 0 ? null
+				: validationQuery;
+		this.idleTimeout = configuration.getIdleTimeout() * 1000L;
+		this.acquireTimeout = configuration.getAcquireTimeout() * 1000L;
+		this.leakTimeout = configuration.getLeakTimeout() * 1000L;
+		this.statementCacheSize = configuration.getStatementCacheSize();
+		this.logger = logger;
+	}
+
+	/**
+	 * Returns a connection from the pool, waiting for one to be returned if the
+	 * pool is exhausted.
+	 *
+	 * @return A pooled connection or <code>null</code> if the driver does not
+	 *         accept the URL.
+	 * @throws SQLException If a connection cannot be obtained.
+	 */
+	Connection getConnection() throws SQLException
+	{
+		long start = System.nanoTime();
+		while (true)
+		{
+			List<PooledConnection> expired = new ArrayList<PooledConnection>();
+			List<PooledConnection> leaked = null;
+			PooledConnection pooled = null;
+			try
+			{
+				synchronized (this)
+				{
+					checkOpen();
+					long now = System.currentTimeMillis();
+					evict(now, expired);
+					leaked = findLeaks(now);
+					while (idle.isEmpty() && active.size() + opening >= maxSize)
+					{
+						long remaining = 0;
+						if (acquireTimeout > 0)
+						{
+							remaining = acquireTimeout - (System.nanoTime() - start)
+									/ 1000000L;
+							if (remaining <= 0)
+								throw new SQLException(
+										"Timed out waiting for a connection to database \"" //$NON-NLS-1$
+												+ name + "\""); //$NON-NLS-1$
+						}
+						try
+						{
+							wait(remaining);
+						}
+						catch (InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+							throw new SQLException(
+									"Interrupted waiting for a connection to database \"" //$NON-NLS-1$
+											+ name + "\""); //$NON-NLS-1$
+						}
+						checkOpen();
+					}
+					if (idle.isEmpty())
+						++opening;
+					else
+						active.add(pooled = idle.removeFirst());
+				}
+			}
+			finally
+			{
+				destroy(expired);
+				reportLeaks(leaked);
+			}
+			if (pooled == null)
+				pooled = open();
+			else if (!validate(pooled))
+			{
+				synchronized (this)
+				{
+					active.remove(pooled);
+					notifyAll();
+				}
+				pooled.destroy();
+				continue;
+			}
+			if (pooled == null)
+				return null;
+			long waited = System.nanoTime() - start;
+			acquisitions.incrementAndGet();
+			waitTime.addAndGet(waited);
+			pooled.acquired(leakTimeout > 0);
+			Connection connection = new ConnectionHandle(pooled).proxy;
+			report(waited);
+			return connection;
+		}
+	}
+
+	/**
+	 * Opens connections until the pool holds its minimum number of connections.
+	 * Failures are logged and leave the pool to open connections on demand.
+	 */
+	void fill()
+	{
+		while (true)
+		{
+			synchronized (this)
+			{
+				if (closed || idle.size() + active.size() + opening >= minSize)
+					return;
+				++opening;
+			}
+			PooledConnection pooled = null;
+			try
+			{
+				pooled = open();
+			}
+			catch (SQLException e)
+			{
+				Hashtable<String, Object> properties = new Hashtable<String, Object>();
+				properties.put("cause", e); //$NON-NLS-1$
+				logger.warn("Unable to open the minimum connections to database \"" //$NON-NLS-1$
+						+ name + "\": " + e.getMessage(), properties); //$NON-NLS-1$
+				return;
+			}
+			if (pooled == null)
+				return;
+			release(pooled);
+		}
+	}
+
+	/**
+	 * Closes the pool along with every connection it opened, including those
+	 * still handed out. Connections cannot be obtained from a closed pool.
+	 */
+	void close()
+	{
+		List<PooledConnection> connections;
+		synchronized (this)
+		{
+			if (closed)
+				return;
+			closed = true;
+			connections = new ArrayList<PooledConnection>(idle);
+			connections.addAll(active);
+			idle.clear();
+			active.clear();
+			notifyAll();
+		}
+		destroy(connections);
+	}
+
+	/**
+	 * Throws an exception if the pool has been closed. Must be called while
+	 * holding the lock on this pool.
+	 *
+	 * @throws SQLException If the pool has been closed.
+	 */
+	private void checkOpen() throws SQLException
+	{
+		if (closed)
+			throw new SQLException("The connection pool of database \"" //$NON-NLS-1$
+					+ name + "\" has been closed"); //$NON-NLS-1$
+	}
+
+	/**
+	 * Returns the number of connections currently handed out.
+	 *
+	 * @return The number of connections currently handed out.
+	 */
+	synchronized int getActiveCount()
+	{
+		return active.size();
+	}
+
+	/**
+	 * Returns the number of idle connections.
+	 *
+	 * @return The number of idle connections.
+	 */
+	synchronized int getIdleCount()
+	{
+		return idle.size();
+	}
+
+	/**
+	 * Returns the number of connections handed out.
+	 *
+	 * @return The number of connections handed out.
+	 */
+	long getAcquisitions()
+	{
+		return acquisitions.get();
+	}
+
+	/**
+	 * Returns the total time spent waiting for connections in milliseconds.
+	 *
+	 * @return The total time spent waiting for connections in milliseconds.
+	 */
+	long getWaitTime()
+	{
+		return waitTime.get() / 1000000L;
+	}
+
+	/**
+	 * Opens a new connection in a slot reserved by the caller.
+	 *
+	 * @return The new connection or <code>null</code> if the driver does not
+	 *         accept the URL.
+	 * @throws SQLException If the connection cannot be opened.
+	 */
+	private PooledConnection open() throws SQLException
+	{
+		PooledConnection pooled = null;
+		try
+		{
+			Connection connection = driver.connect(url, info);
+			if (connection != null)
+				pooled = new PooledConnection(connection);
+			return pooled;
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				--opening;
+				if (pooled == null)
+					notifyAll();
+				else if (closed)
+				{
+					pooled.destroy();
+					throw new SQLException("The connection pool of database \"" //$NON-NLS-1$
+							+ name + "\" has been closed"); //$NON-NLS-1$
+				}
+				else
+					active.add(pooled);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if an idle connection is still usable.
+	 *
+	 * @param pooled The connection to validate.
+	 * @return True if the connection is still usable.
+	 */
+	private boolean validate(PooledConnection pooled)
+	{
+		try
+		{
+			if (pooled.connection.isClosed())
+				return false;
+			if (validationQuery == null)
+				return true;
+			Statement statement = pooled.connection.createStatement();
+			try
+			{
+				statement.execute(validationQuery);
+			}
+			finally
+			{
+				statement.close();
+			}
+			return true;
+		}
+		catch (SQLException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Returns a connection to the pool.
+	 *
+	 * @param pooled The connection to return.
+	 */
+	private void release(PooledConnection pooled)
+	{
+		boolean reusable = false;
+		try
+		{
+			if (!pooled.connection.getAutoCommit())
+			{
+				pooled.connection.rollback();
+				pooled.connection.setAutoCommit(true);
+			}
+			pooled.connection.clearWarnings();
+			reusable = !pooled.connection.isClosed();
+		}
+		catch (SQLException e)
+		{
+			reusable = false;
+		}
+		pooled.acquiredBy = null;
+		synchronized (this)
+		{
+			active.remove(pooled);
+			if (closed)
+				reusable = false;
+			if (reusable)
+			{
+				pooled.lastUsed = System.currentTimeMillis();
+				idle.addFirst(pooled);
+			}
+			notifyAll();
+		}
+		if (!reusable)
+			pooled.destroy();
+	}
+
+	/**
+	 * Removes the connections that have been idle too long. Must be called
+	 * while holding the lock on this pool.
+	 *
+	 * @param now The current time.
+	 * @param expired The list to add the expired connections to.
+	 */
+	private void evict(long now, List<PooledConnection> expired)
+	{
+		if (idleTimeout <= 0)
+			return;
+		while (!idle.isEmpty()
+				&& idle.size() + active.size() + opening > minSize
+				&& now - idle.getLast().lastUsed >= idleTimeout)
+			expired.add(idle.removeLast());
+	}
+
+	/**
+	 * Finds the connections that have been held too long and have not yet been
+	 * reported. Must be called while holding the lock on this pool.
+	 *
+	 * @param now The current time.
+	 * @return The leaked connections or <code>null</code>.
+	 */
+	private List<PooledConnection> findLeaks(long now)
+	{
+		if (leakTimeout <= 0)
+			return null;
+		List<PooledConnection> leaked = null;
+		for (PooledConnection pooled : active)
+		{
+			if (pooled.acquiredBy == null || now - pooled.acquiredAt < leakTimeout)
+				continue;
+			if (leaked == null)
+				leaked = new ArrayList<PooledConnection>();
+			leaked.add(pooled);
+		}
+		return leaked;
+	}
+
+	/**
+	 * Reports connections that have been held too long.
+	 *
+	 * @param leaked The leaked connections or <code>null</code>.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void reportLeaks(List<PooledConnection> leaked)
+	{
+		if (leaked == null)
+			return;
+		for (PooledConnection pooled : leaked)
+		{
+			Throwable acquiredBy = pooled.acquiredBy;
+			pooled.acquiredBy = null;
+			if (acquiredBy == null)
+				continue;
+			Hashtable properties = new Hashtable();
+			properties.put("cause", acquiredBy); //$NON-NLS-1$
+			logger.warn("Connection to database \"" + name //$NON-NLS-1$
+					+ "\" has not been closed after " //$NON-NLS-1$
+					+ (System.currentTimeMillis() - pooled.acquiredAt) + "ms", //$NON-NLS-1$
+					properties);
+		}
+	}
+
+	/**
+	 * Reports the state of the pool after a connection is handed out.
+	 *
+	 * @param waited The nanoseconds spent acquiring the connection.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void report(long waited)
+	{
+		if (!logger.isReportingEnabled() || !logger.isDebugEnabled())
+			return;
+		Dictionary props = new Hashtable();
+		props.put("event", "dbpool.acquire"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("dbpool.database", name); //$NON-NLS-1$
+		synchronized (this)
+		{
+			props.put("dbpool.active", Integer.valueOf(active.size())); //$NON-NLS-1$
+			props.put("dbpool.idle", Integer.valueOf(idle.size())); //$NON-NLS-1$
+		}
+		props.put("dbpool.wait", Long.valueOf(waited / 1000000L)); //$NON-NLS-1$
+		props.put("dbpool.wait.total", Long.valueOf(getWaitTime())); //$NON-NLS-1$
+		props.put("dbpool.acquisitions", Long.valueOf(getAcquisitions())); //$NON-NLS-1$
+		logger.report(IReporter.SEVERITY_DEBUG, "Acquired connection to database \"" //$NON-NLS-1$
+				+ name + "\".", props); //$NON-NLS-1$
+	}
+
+	/**
+	 * Closes the supplied connections.
+	 *
+	 * @param expired The connections to close.
+	 */
+	private static void destroy(List<PooledConnection> expired)
+	{
+		for (PooledConnection pooled : expired)
+			pooled.destroy();
+	}
+
+	/**
+	 * Invokes a method on the underlying object of a proxy.
+	 *
+	 * @param target The object to invoke the method on.
+	 * @param method The method to invoke.
+	 * @param args The arguments to the method.
+	 * @return The result of the method.
+	 * @throws Throwable If the method throws an exception.
+	 */
+	private static Object delegate(Object target, Method method, Object[] args)
+			throws Throwable
+	{
+		try
+		{
+			return method.invoke(target, args);
+		}
+		catch (InvocationTargetException e)
+		{
+			throw e.getTargetException();
+		}
+	}
+
+	/**
+	 * Handles the methods declared by {@link Object} on a proxy.
+	 *
+	 * @param proxy The proxy the method was invoked on.
+	 * @param method The method that was invoked.
+	 * @param args The arguments to the method.
+	 * @return The result of the method.
+	 */
+	private static Object invokeObjectMethod(Object proxy, Method method,
+			Object[] args)
+	{
+		String methodName = method.getName();
+		if ("equals".equals(methodName)) //$NON-NLS-1$
+			return Boolean.valueOf(proxy == args[0]);
+		if ("hashCode".equals(methodName)) //$NON-NLS-1$
+			return Integer.valueOf(System.identityHashCode(proxy));
+		return proxy.getClass().getName() + '@'
+				+ Integer.toHexString(System.identityHashCode(proxy));
+	}
+
+	/**
+	 * A physical connection managed by the pool.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	private final class PooledConnection
+	{
+		/** The underlying connection. */
+		final Connection connection;
+		/** The cached statements in least-recently-used order. */
+		final Map<String, CachedStatement> statements;
+		/** The time this connection was last returned to the pool. */
+		long lastUsed = 0L;
+		/** The time this connection was last handed out. */
+		volatile long acquiredAt = 0L;
+		/** The stack that last acquired this connection or <code>null</code>. */
+		volatile Throwable acquiredBy = null;
+
+		/**
+		 * Creates a new PooledConnection.
+		 *
+		 * @param connection The underlying connection.
+		 */
+		PooledConnection(Connection connection)
+		{
+			this.connection = connection;
+			this.statements = new LinkedHashMap<String, CachedStatement>(16,
+					0.75f, true)
+			{
+				private static final long serialVersionUID = 1L;
+
+				protected boolean removeEldestEntry(
+						Map.Entry<String, CachedStatement> eldest)
+				{
+					if (size() <= statementCacheSize)
+						return false;
+					CachedStatement statement = eldest.getValue();
+					statement.cached = false;
+					if (!statement.inUse)
+						statement.destroy();
+					return true;
+				}
+			};
+		}
+
+		/**
+		 * Records that this connection was handed out.
+		 *
+		 * @param trace True to record the stack of the caller.
+		 */
+		void acquired(boolean trace)
+		{
+			acquiredAt = System.currentTimeMillis();
+			acquiredBy = trace ? new Throwable("Connection acquired") : null; //$NON-NLS-1$
+		}
+
+		/**
+		 * Returns a statement for the specified SQL, reusing a cached statement if
+		 * one is available.
+		 *
+		 * @param sql The SQL to prepare.
+		 * @return A statement for the specified SQL.
+		 * @throws SQLException If the statement cannot be prepared.
+		 */
+		synchronized CachedStatement prepare(String sql) throws SQLException
+		{
+			CachedStatement statement = statements.get(sql);
+			if (statement == null || statement.inUse)
+			{
+				statement = new CachedStatement(this, sql, connection
+						.prepareStatement(sql));
+				if (!statements.containsKey(sql))
+				{
+					statement.cached = true;
+					statements.put(sql, statement);
+				}
+			}
+			statement.inUse = true;
+			return statement;
+		}
+
+		/**
+		 * Returns a statement to the cache.
+		 *
+		 * @param statement The statement to return.
+		 */
+		synchronized void release(CachedStatement statement)
+		{
+			statement.inUse = false;
+			if (statement.cached)
+			{
+				try
+				{
+					statement.statement.clearParameters();
+					return;
+				}
+				catch (SQLException e)
+				{
+					statements.remove(statement.sql);
+					statement.cached = false;
+				}
+			}
+			statement.destroy();
+		}
+
+		/**
+		 * Closes the cached statements and the underlying connection.
+		 */
+		synchronized void destroy()
+		{
+			for (CachedStatement statement : statements.values())
+				statement.destroy();
+			statements.clear();
+			try
+			{
+				connection.close();
+			}
+			catch (SQLException e)
+			{
+				// The connection is being discarded.
+			}
+		}
+	}
+
+	/**
+	 * A prepared statement owned by a pooled connection.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	private static final class CachedStatement
+	{
+		/** The connection that owns the statement. */
+		final PooledConnection owner;
+		/** The SQL of the statement. */
+		final String sql;
+		/** The underlying statement. */
+		final PreparedStatement statement;
+		/** True if the statement is held in the cache of its connection. */
+		boolean cached = false;
+		/** True if the statement is currently handed out. */
+		boolean inUse = false;
+
+		/**
+		 * Creates a new CachedStatement.
+		 *
+		 * @param owner The connection that owns the statement.
+		 * @param sql The SQL of the statement.
+		 * @param statement The underlying statement.
+		 */
+		CachedStatement(PooledConnection owner, String sql,
+				PreparedStatement statement)
+		{
+			this.owner = owner;
+			this.sql = sql;
+			this.statement = statement;
+		}
+
+		/**
+		 * Closes the underlying statement.
+		 */
+		void destroy()
+		{
+			try
+			{
+				statement.close();
+			}
+			catch (SQLException e)
+			{
+				// The statement is being discarded.
+			}
+		}
+	}
+
+	/**
+	 * The proxy handed out for a pooled connection.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	private final class ConnectionHandle implements InvocationHandler
+	{
+		/** The pooled connection. */
+		final PooledConnection pooled;
+		/** The proxy for this handle. */
+		final Connection proxy;
+		/** The statements prepared through this handle. */
+		final List<StatementHandle> statements = new ArrayList<StatementHandle>();
+		/** True if this handle has been closed. */
+		boolean closed = false;
+
+		/**
+		 * Creates a new ConnectionHandle.
+		 *
+		 * @param pooled The pooled connection.
+		 */
+		ConnectionHandle(PooledConnection pooled)
+		{
+			this.pooled = pooled;
+			this.proxy = (Connection)Proxy.newProxyInstance(
+					JdbcConnectionPool.class.getClassLoader(), CONNECTION_TYPES, this);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+		 *      java.lang.reflect.Method, java.lang.Object[])
+		 */
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable
+		{
+			if (method.getDeclaringClass() == Object.class)
+				return invokeObjectMethod(proxy, method, args);
+			String methodName = method.getName();
+			int arity = args == null ? 0 : args.length;
+			if ("close".equals(methodName) && arity == 0) //$NON-NLS-1$
+			{
+				synchronized (this)
+				{
+					if (closed)
+						return null;
+					closed = true;
+				}
+				for (StatementHandle statement : statements)
+					statement.close();
+				statements.clear();
+				release(pooled);
+				return null;
+			}
+			if ("isClosed".equals(methodName) && arity == 0) //$NON-NLS-1$
+			{
+				synchronized (this)
+				{
+					if (closed)
+						return Boolean.TRUE;
+				}
+				return delegate(pooled.connection, method, args);
+			}
+			synchronized (this)
+			{
+				if (closed)
+					throw new SQLException("Connection is closed"); //$NON-NLS-1$
+			}
+			if ("prepareStatement".equals(methodName) && arity == 1 //$NON-NLS-1$
+					&& statementCacheSize > 0)
+			{
+				StatementHandle statement = new StatementHandle((Connection)proxy,
+						pooled.prepare((String)args[0]));
+				synchronized (this)
+				{
+					statements.add(statement);
+				}
+				return statement.proxy;
+			}
+			return delegate(pooled.connection, method, args);
+		}
+	}
+
+	/**
+	 * The proxy handed out for a cached statement.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	private static final class StatementHandle implements InvocationHandler
+	{
+		/** The connection proxy that prepared the statement. */
+		final Connection owner;
+		/** The cached statement. */
+		final CachedStatement statement;
+		/** The proxy for this handle. */
+		final PreparedStatement proxy;
+		/** True if this handle has been closed. */
+		boolean closed = false;
+
+		/**
+		 * Creates a new StatementHandle.
+		 *
+		 * @param owner The connection proxy that prepared the statement.
+		 * @param statement The cached statement.
+		 */
+		StatementHandle(Connection owner, CachedStatement statement)
+		{
+			this.owner = owner;
+			this.statement = statement;
+			this.proxy = (PreparedStatement)Proxy.newProxyInstance(
+					JdbcConnectionPool.class.getClassLoader(), STATEMENT_TYPES, this);
+		}
+
+		/**
+		 * Returns the statement to the cache of its connection.
+		 */
+		void close()
+		{
+			synchronized (this)
+			{
+				if (closed)
+					return;
+				closed = true;
+			}
+			statement.owner.release(statement);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 *
+		 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+		 *      java.lang.reflect.Method, java.lang.Object[])
+		 */
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable
+		{
+			if (method.getDeclaringClass() == Object.class)
+				return invokeObjectMethod(proxy, method, args);
+			String methodName = method.getName();
+			int arity = args == null ? 0 : args.length;
+			if ("close".equals(methodName) && arity == 0) //$NON-NLS-1$
+			{
+				close();
+				return null;
+			}
+			if ("isClosed".equals(methodName) && arity == 0) //$NON-NLS-1$
+			{
+				synchronized (this)
+				{
+					return Boolean.valueOf(closed);
+				}
+			}
+			synchronized (this)
+			{
+				if (closed)
+					throw new SQLException("Statement is closed"); //$NON-NLS-1$
+			}
+			if ("getConnection".equals(methodName) && arity == 0) //$NON-NLS-1$
+				return owner;
+			return delegate(statement.statement, method, args);
+		}
+	}
+}
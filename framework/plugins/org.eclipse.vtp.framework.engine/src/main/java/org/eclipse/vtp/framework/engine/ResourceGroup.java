@@ -13,27 +13,47 @@ package org.eclipse.vtp.framework.engine;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.URL;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.eclipse.vtp.framework.interactions.core.media.IResourceManager;
+import org.eclipse.vtp.framework.interactions.core.media.IStaticResourceManager;
 import org.osgi.framework.Bundle;
 
 /**
  * A group of public resources.
+ * <p>
+ * The <code>files.index</code> written when the application is exported is
+ * loaded once into an immutable set of paths. Paths that are not in the index,
+ * or every path when the bundle has no index, are probed in the bundle once and
+ * the outcome, including their absence, is remembered for the life of the
+ * group. The text of resources that platforms inline into their documents,
+ * such as grammars, is likewise read once; a new group is registered whenever
+ * the resources are redeployed, which discards everything remembered.
+ * </p>
  * 
  * @author Lonnie Pryor
  */
-public class ResourceGroup implements IResourceManager
+public class ResourceGroup implements IStaticResourceManager
 {
 	/** The bundle to load from. */
 	private final Bundle bundle;
 	/** The base path to publish. */
 	private final String path;
-	private final HashSet<String> index = new HashSet<String>();
+	/** The paths listed in the index of the bundle, relative to the base path. */
+	private final Set<String> index;
+	/** The outcome of probing the bundle for paths that are not indexed. */
+	private final ConcurrentMap<String, Boolean> probed = new ConcurrentHashMap<String, Boolean>();
+	/** The text of the resources that have been read, by path. */
+	private final ConcurrentMap<String, String> texts = new ConcurrentHashMap<String, String>();
 
 	/**
 	 * Creates a new ResourceGroup.
@@ -49,24 +69,7 @@ public class ResourceGroup implements IResourceManager
 		if (!path.endsWith("/")) //$NON-NLS-1$
 			path = path + "/"; //$NON-NLS-2$
 		this.path = path;
-		URL indexURL = bundle.getResource("files.index");
-		if(indexURL != null)
-		{
-			try
-			{
-				BufferedReader br = new BufferedReader(new InputStreamReader(indexURL.openConnection().getInputStream()));
-				String line = br.readLine();
-				while(line != null)
-				{
-					index.add(line);
-					line = br.readLine();
-				}
-			}
-			catch (IOException e)
-			{
-				e.printStackTrace();
-			}
-		}
+		this.index = loadIndex(bundle, path);
 	}
 
 	/**
@@ -77,10 +80,42 @@ public class ResourceGroup implements IResourceManager
 	 */
 	public URL getResource(String fullResourcePath)
 	{
-		System.out.println("resolving resource: " + path + fullResourcePath);
-		URL ret = bundle.getEntry(path + fullResourcePath);
-//		System.out.println("location: " + ret);
-		return ret;
+		return bundle.getEntry(path + fullResourcePath);
+	}
+
+	/**
+	 * Returns the text of the requested resource decoded as UTF-8, reading it
+	 * only the first time it is requested.
+	 * 
+	 * @param fullResourcePath The path of the resource to read.
+	 * @return The text of the requested resource or <code>null</code> if it
+	 *         does not exist.
+	 * @throws IOException If the resource cannot be read.
+	 */
+	public String getResourceText(String fullResourcePath) throws IOException
+	{
+		String text = texts.get(fullResourcePath);
+		if (text != null)
+			return text;
+		URL url = getResource(fullResourcePath);
+		if (url == null)
+			return null;
+		StringBuilder buffer = new StringBuilder();
+		InputStream in = url.openStream();
+		try
+		{
+			Reader reader = new InputStreamReader(in, "UTF-8"); //$NON-NLS-1$
+			char[] chars = new char[4096];
+			for (int len = reader.read(chars); len >= 0; len = reader.read(chars))
+				buffer.append(chars, 0, len);
+		}
+		finally
+		{
+			in.close();
+		}
+		text = buffer.toString();
+		String existing = texts.putIfAbsent(fullResourcePath, text);
+		return existing == null ? text : existing;
 	}
 
 	/*
@@ -117,7 +152,81 @@ public class ResourceGroup implements IResourceManager
 	 */
 	public boolean isFileResource(String fullFilePath)
 	{
-		return !isDirectoryResource(fullFilePath)
-		&& (index.contains(fullFilePath) || getResource(fullFilePath) != null);
+		if (isDirectoryResource(fullFilePath))
+			return false;
+		String key = normalize(fullFilePath);
+		if (index.contains(key))
+			return true;
+		Boolean exists = probed.get(key);
+		if (exists == null)
+		{
+			exists = Boolean.valueOf(getResource(fullFilePath) != null);
+			probed.putIfAbsent(key, exists);
+		}
+		return exists.booleanValue();
+	}
+
+	/**
+	 * Loads the index of the files in a bundle.
+	 * <p>
+	 * Entries are written relative to the project and so begin with the name of
+	 * the folder being published; that name is removed so entries can be
+	 * compared to the paths requested from this group.
+	 * </p>
+	 * 
+	 * @param bundle The bundle to load from.
+	 * @param path The base path to publish.
+	 * @return The indexed paths relative to the base path, empty if the bundle
+	 *         has no index.
+	 */
+	private static Set<String> loadIndex(Bundle bundle, String path)
+	{
+		URL indexURL = bundle.getResource("files.index"); //$NON-NLS-1$
+		if (indexURL == null)
+			return Collections.emptySet();
+		String folder = path.substring(
+				path.lastIndexOf('/', path.length() - 2) + 1);
+		Set<String> index = new HashSet<String>();
+		try
+		{
+			BufferedReader br = new BufferedReader(new InputStreamReader(
+					indexURL.openStream(), "UTF-8")); //$NON-NLS-1$
+			try
+			{
+				for (String line = br.readLine(); line != null; line = br
+						.readLine())
+				{
+					line = normalize(line.trim());
+					if (line.length() == 0)
+						continue;
+					if (line.startsWith(folder))
+						index.add(line.substring(folder.length()));
+					index.add(line);
+				}
+			}
+			finally
+			{
+				br.close();
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return Collections.unmodifiableSet(index);
+	}
+
+	/**
+	 * Removes the leading slashes from a path.
+	 * 
+	 * @param fullPath The path to normalize.
+	 * @return The path without leading slashes.
+	 */
+	private static String normalize(String fullPath)
+	{
+		int start = 0;
+		while (start < fullPath.length() && fullPath.charAt(start) == '/')
+			++start;
+		return start == 0 ? fullPath : fullPath.substring(start);
 	}
 }
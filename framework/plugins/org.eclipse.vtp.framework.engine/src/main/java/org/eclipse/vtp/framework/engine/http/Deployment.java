@@ -15,8 +15,10 @@ import java.lang.reflect.Method;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -53,6 +55,10 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 	private final Map<String, IResourceManager> resources = new HashMap<String, IResourceManager>();
 	/** The active sessions. */
 	private final Map<String, DeploymentSession> sessions = new HashMap<String, DeploymentSession>();
+	/** The number of sessions disposed of after they expired. */
+	private final AtomicLong expiredSessions = new AtomicLong();
+	/** The files uploaded to the sessions. */
+	private final RecordingSpool spool;
 	/** Method to use when unregistering as a session listener. */
 	private volatile Method unregisterSessionListener = null;
 
@@ -71,6 +77,7 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 		this.contributor = contributor;
 		this.reporter = reporter;
 		process = engine.createProcess(definition, this);
+		spool = new RecordingSpool(getID());
 		String[] resourceManagerIDs = (String[])properties.get("resources"); //$NON-NLS-1$
 		if (resourceManagerIDs != null)
 			for (int i = 0; i < resourceManagerIDs.length; ++i)
@@ -100,6 +107,122 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 		return list.toArray(new DeploymentSession[list.size()]);
 	}
 
+	/**
+	 * Returns the number of sessions currently active in this deployment.
+	 * 
+	 * @return The number of active sessions.
+	 */
+	public int getActiveSessionCount()
+	{
+		synchronized (sessions)
+		{
+			return sessions.size();
+		}
+	}
+
+	/**
+	 * Returns the number of sessions that were disposed of after they expired
+	 * without being ended.
+	 * 
+	 * @return The number of expired sessions.
+	 */
+	public long getExpiredSessionCount()
+	{
+		return expiredSessions.get();
+	}
+
+	/**
+	 * Returns the files uploaded to the sessions of this deployment.
+	 * 
+	 * @return The files uploaded to the sessions of this deployment.
+	 */
+	public RecordingSpool getSpool()
+	{
+		return spool;
+	}
+
+	/**
+	 * Removes and disposes of the sessions that have expired.
+	 * <p>
+	 * Sessions that are processing a request are never removed. The expired
+	 * sessions are removed while holding the session table's lock but are
+	 * disposed of after it is released.
+	 * </p>
+	 * 
+	 * @param now The time to test the sessions against.
+	 * @return The number of sessions that were disposed of.
+	 */
+	int disposeExpiredSessions(long now)
+	{
+		LinkedList<DeploymentSession> expired = null;
+		synchronized (sessions)
+		{
+			for (Iterator<DeploymentSession> i = sessions.values().iterator(); i
+					.hasNext();)
+			{
+				DeploymentSession session = i.next();
+				if (session.isValid(now) || session.isLocked())
+					continue;
+				i.remove();
+				if (expired == null)
+					expired = new LinkedList<DeploymentSession>();
+				expired.add(session);
+			}
+		}
+		if (expired == null)
+			return 0;
+		for (DeploymentSession session : expired)
+		{
+			try
+			{
+				session.dispose();
+			}
+			catch (RuntimeException e)
+			{
+				e.printStackTrace();
+			}
+			spool.release(session.getSessionID());
+		}
+		expiredSessions.addAndGet(expired.size());
+		return expired.size();
+	}
+
+	/**
+	 * Returns the locked session with the specified ID, creating it if
+	 * necessary.
+	 * <p>
+	 * The session is locked after the session table's lock is released, so it
+	 * is looked up again once locked to make sure it was not removed as expired
+	 * in between.
+	 * </p>
+	 * 
+	 * @param sessionID The ID of the session.
+	 * @return The locked session.
+	 */
+	private DeploymentSession lockSession(String sessionID)
+	{
+		while (true)
+		{
+			DeploymentSession session = null;
+			synchronized (sessions)
+			{
+				session = sessions.get(sessionID);
+				if (session == null)
+				{
+					session = new DeploymentSession(sessionID, process);
+					sessions.put(sessionID, session);
+				}
+			}
+			session.lock();
+			synchronized (sessions)
+			{
+				if (sessions.get(sessionID) == session)
+					return session;
+			}
+			session.unlock();
+		}
+	}
+
 	/**
 	 * ReTurns the deployment ID.
 	 * 
@@ -149,7 +272,7 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 	 */
 	public IDocument start(HttpSession httpSession,
 			HttpServletRequest httpRequest, HttpServletResponse httpReesponse,
-			String prefix, int depth, Map<Object, Object> variableValues, Map parameterValues, String entryName, String brand, boolean subdialog)
+			int depth, Map<Object, Object> variableValues, Map parameterValues, String entryName, String brand, boolean subdialog)
 	{
 		if (unregisterSessionListener == null) {
 			synchronized (this) {
@@ -174,13 +297,13 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 		session.lock();
 		try {
 			result = session.start(httpSession, httpRequest, httpReesponse,
-					prefix, depth, variableValues, parameterValues, entryName, brand, subdialog);
+					depth, variableValues, parameterValues, entryName, brand, subdialog);
 		} finally {
 			session.unlock();
 		}
 		IDocument document = null;
 		if (result == null || result.isTerminated())
-			document = abort(httpSession, httpRequest, httpReesponse, prefix, depth,
+			document = abort(httpSession, httpRequest, httpReesponse, depth,
 					variableValues, parameterValues);
 		if (result != null && result.getDocument() != null)
 			document = result.getDocument();
@@ -197,22 +320,14 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 	 */
 	public IDocument next(HttpSession httpSession,
 			HttpServletRequest httpRequest, HttpServletResponse httpReesponse,
-			String prefix, int depth, Map<Object, Object> variableValues, Map parameterValues)
+			int depth, Map<Object, Object> variableValues, Map parameterValues)
 	{
 		String sessionID = httpSession.getId();
-		DeploymentSession session = null; 
-		synchronized (sessions) {
-			session = sessions.get(sessionID);
-			if (session == null) {
-				session = new DeploymentSession(sessionID, process);
-				sessions.put(sessionID, session);
-			}
-		}
+		DeploymentSession session = lockSession(sessionID);
 		ResultDocument result = null;
-		session.lock();
 		try {
 			result = session.next(httpSession, httpRequest, httpReesponse,
-				prefix, depth, variableValues, parameterValues);
+				depth, variableValues, parameterValues);
 		} finally {
 			session.unlock();
 		}
@@ -224,14 +339,14 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 			System.out.println("Document: " + result.getDocument());
 		}
 		if (result == null)
-			document = abort(httpSession, httpRequest, httpReesponse, prefix, depth,
+			document = abort(httpSession, httpRequest, httpReesponse, depth,
 					variableValues, parameterValues);
 		if (result != null && result.getDocument() != null)
 			document = result.getDocument();
 		return document;
 	}
 	
-	public void end(HttpSession httpSession, String prefix, int depth)
+	public void end(HttpSession httpSession, int depth)
 	{
 		String sessionID = httpSession.getId();
 		synchronized (sessions)
@@ -239,8 +354,12 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 			DeploymentSession session = sessions.remove(sessionID);
 			System.out.println("Ending Session: " + session);
 			if(session != null)
-				session.end(httpSession, prefix, depth);
+				session.end(httpSession, depth);
 		}
+		// Recordings made in a subdialog are handed back to its caller, so they
+		// are kept until the top-level session ends or the HTTP session dies.
+		if (depth == 0)
+			spool.release(sessionID);
 	}
 
 	/**
@@ -253,20 +372,12 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 	 */
 	public IDocument abort(HttpSession httpSession,
 			HttpServletRequest httpRequest, HttpServletResponse httpReesponse,
-			String prefix, int depth, Map<Object, Object> variableValues, Map parameterValues)
+			int depth, Map<Object, Object> variableValues, Map parameterValues)
 	{
 		String sessionID = httpSession.getId();
-		DeploymentSession session = null; 
-		synchronized (sessions) {
-			session = sessions.get(sessionID);
-			if (session == null) {
-				session = new DeploymentSession(sessionID, process);
-				sessions.put(sessionID, session);
-			}
-		}
-		session.lock();
+		DeploymentSession session = lockSession(sessionID);
 		try {
-			return session.abort(httpSession, httpRequest, httpReesponse, prefix, depth,
+			return session.abort(httpSession, httpRequest, httpReesponse, depth,
 					variableValues, parameterValues);
 		} finally {
 			session.unlock();
@@ -274,6 +385,7 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 			{
 				sessions.remove(sessionID);
 			}
+			spool.release(sessionID);
 		}
 	}
 
@@ -283,6 +395,10 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 	 */
 	public void dispose()
 	{
+		spool.releaseAll();
+		IReporter processReporter = reporter.isReportingEnabled() ? (IReporter)process
+				.lookupService(IReporter.class.getName()) : null;
+		process.dispose();
 		synchronized (this) {
 			if (unregisterSessionListener != null) {
 				try {
@@ -293,11 +409,11 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 				}
 			}
 		}
-		if(reporter.isReportingEnabled())
+		if(processReporter != null)
 		{
 			Dictionary report = new Hashtable();
 			report.put("event", "process.stopped");
-			((IReporter)process.lookupService(IReporter.class.getName())).report(
+			processReporter.report(
 					IReporter.SEVERITY_INFO, "Process \"" + getID() + "\" Stopped", report);
 		}
 	}
@@ -424,5 +540,6 @@ public class Deployment implements IProcessDescriptor, IResourceManagerRegistry,
 			if (session != null)
 				session.fireDisposedEvent(se.getSession());
 		}
+		spool.release(se.getSession().getId());
 	}
 }
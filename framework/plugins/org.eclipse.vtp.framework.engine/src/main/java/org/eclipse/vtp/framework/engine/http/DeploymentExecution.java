@@ -11,13 +11,11 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.http;
 
-import java.net.URLEncoder;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.StringTokenizer;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -82,6 +80,8 @@ public class DeploymentExecution implements IExecutionDescriptor, ILinkFactory,
 	private ICommand command = null;
 	/** True if URL encoding is enabled. */
 	private boolean urlEncoded = true;
+	/** The context and servlet path that prefixes every link. */
+	private String linkPrefix = null;
 
 	/**
 	 * Creates a new DeploymentExecution.
@@ -634,37 +634,20 @@ public class DeploymentExecution implements IExecutionDescriptor, ILinkFactory,
 				this.path = path;
 				return;
 			}
-			StringBuffer buffer = new StringBuffer();
-			String contextPath = HttpUtils
-					.normalizePath(httpRequest.getContextPath());
-			if (!contextPath.equals("/")) //$NON-NLS-1$
-				buffer.append(contextPath);
-			String servletPath = HttpUtils
-					.normalizePath(httpRequest.getServletPath());
-			if (!servletPath.equals("/")) //$NON-NLS-1$
-				buffer.append(servletPath);
-			for (StringTokenizer st = new StringTokenizer(HttpUtils
-					.normalizePath(path), "/"); st.hasMoreTokens();) //$NON-NLS-1$
+			if (linkPrefix == null)
 			{
-				try
-				{
-					String token = URLEncoder.encode(st.nextToken(), "UTF-8"); //$NON-NLS-1$
-					StringBuffer b = new StringBuffer();
-					for (int i = 0; i < token.length(); ++i)
-					{
-						if (token.charAt(i) == '+')
-							b.append("%20"); //$NON-NLS-1$
-						else
-							b.append(token.charAt(i));
-					}
-					buffer.append('/').append(b.toString());
-				}
-				catch (Exception e)
-				{
-					e.printStackTrace();
-				}
+				StringBuilder buffer = new StringBuilder();
+				String contextPath = HttpUtils.normalizePath(httpRequest
+						.getContextPath());
+				if (!contextPath.equals("/")) //$NON-NLS-1$
+					buffer.append(contextPath);
+				String servletPath = HttpUtils.normalizePath(httpRequest
+						.getServletPath());
+				if (!servletPath.equals("/")) //$NON-NLS-1$
+					buffer.append(servletPath);
+				linkPrefix = buffer.toString();
 			}
-			this.path = buffer.toString();
+			this.path = linkPrefix.concat(HttpUtils.encodePath(path));
 			if(appendMode)
 			{
 				String[] mode = getParameters("MODE"); //$NON-NLS-1$
@@ -729,7 +712,8 @@ public class DeploymentExecution implements IExecutionDescriptor, ILinkFactory,
 		{
 			if (parameters.isEmpty())
 				return encode(path);
-			StringBuffer buffer = new StringBuffer(path).append('?');
+			StringBuilder buffer = new StringBuilder(path.length() + 64)
+					.append(path).append('?');
 			for (Iterator i = parameters.entrySet().iterator(); i.hasNext();)
 			{
 				Map.Entry entry = (Map.Entry)i.next();
@@ -737,22 +721,14 @@ public class DeploymentExecution implements IExecutionDescriptor, ILinkFactory,
 				String[] values = (String[])entry.getValue();
 				if (values.length == 0)
 					continue;
-				try
-				{
-					buffer.append(URLEncoder.encode(name, "UTF-8")); //$NON-NLS-1$
-					buffer.append('=');
-					for (int j = 0; j < values.length; ++j)
-					{
-						if (j > 0)
-							buffer.append(',');
-						buffer.append(URLEncoder.encode(values[j], "UTF-8")); //$NON-NLS-1$
-					}
-					buffer.append('&');
-				}
-				catch (Exception e)
+				HttpUtils.encode(name, false, buffer).append('=');
+				for (int j = 0; j < values.length; ++j)
 				{
-					e.printStackTrace();
+					if (j > 0)
+						buffer.append(',');
+					HttpUtils.encode(values[j], false, buffer);
 				}
+				buffer.append('&');
 			}
 			buffer.setLength(buffer.length() - 1);
 			return encode(buffer.toString());
@@ -13,11 +13,8 @@ package org.eclipse.vtp.framework.engine.http;
 
 import java.util.Date;
 import java.util.Dictionary;
-import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -53,7 +50,6 @@ public class DeploymentSession implements ISessionDescriptor
 {
 	/** The name of the session attribute the execution ID is stored in. */
 	private static final String EXECUTION_ID = "execution.id";
-	private static final String ROOT_CONTEXT = "root.session.";
 
 
 	private static void assignVariables(IVariableRegistry variableRegistry, Map variables, boolean copy)
@@ -136,14 +132,16 @@ public class DeploymentSession implements ISessionDescriptor
 	private final ISession session;
 	/** The HTTP session. */
 	private HttpSession httpSession = null;
-	/** Comment for qualifier. */
-	private String[] qualifier = null;
+	/** The connector state of the HTTP session. */
+	private SessionStateStore store = null;
 	/** The depth of this deployment session */
 	private int depth = 0;
 	/** The start time of the session */
 	private Date startTime;
-	private long timeout = Long.MAX_VALUE;
-	private long lastAccessed = System.currentTimeMillis();
+	/** The milliseconds this session may be idle before it expires. */
+	private volatile long timeout = Long.MAX_VALUE;
+	/** The time this session was last used. */
+	private volatile long lastAccessed = System.currentTimeMillis();
 	private final boolean[] editLock = { false };
 
 	/**
@@ -188,6 +186,7 @@ public class DeploymentSession implements ISessionDescriptor
 	
 	public void unlock () {
 		synchronized (editLock) {
+			lastAccessed = System.currentTimeMillis();
 			editLock[0] = false;
 			editLock.notifyAll();
 		}
@@ -213,17 +212,13 @@ public class DeploymentSession implements ISessionDescriptor
 	 */
 	public ResultDocument start(HttpSession httpSession,
 			HttpServletRequest httpRequest, HttpServletResponse httpReesponse,
-			String prefix, int depth, Map variableValues, Map parameterValues, String entryName, String brand, boolean subdialog)
+			int depth, Map variableValues, Map parameterValues, String entryName, String brand, boolean subdialog)
 	{
 		this.httpSession = httpSession;
-		this.timeout = (long)httpSession.getMaxInactiveInterval() * 1000L;
-		this.lastAccessed = httpSession.getLastAccessedTime();
+		this.timeout = getTimeout(httpSession);
+		this.lastAccessed = System.currentTimeMillis();
 		this.depth = depth;
-		this.qualifier = new String[depth + 1];
-		for(int i = 0; i <= depth; i++)
-		{
-			qualifier[i] = prefix + i + ".";
-		}
+		this.store = SessionStateStore.get(httpSession);
 		assignVariables((IVariableRegistry)session
 			.lookupService(IVariableRegistry.class.getName()), variableValues, false);
 		IBrandRegistry brands = (IBrandRegistry)session
@@ -286,17 +281,13 @@ public class DeploymentSession implements ISessionDescriptor
 	 */
 	public ResultDocument next(HttpSession httpSession,
 			HttpServletRequest httpRequest, HttpServletResponse httpReesponse,
-			String prefix, int depth, Map variableValues, Map parameterValues)
+			int depth, Map variableValues, Map parameterValues)
 	{
 		this.httpSession = httpSession;
-		this.timeout = httpSession.getMaxInactiveInterval() * 1000L;
-		this.lastAccessed = httpSession.getLastAccessedTime();
+		this.timeout = getTimeout(httpSession);
+		this.lastAccessed = System.currentTimeMillis();
 		this.depth = depth;
-		this.qualifier = new String[depth + 1];
-		for(int i = 0; i <= depth; i++)
-		{
-			qualifier[i] = prefix + i + ".";
-		}
+		this.store = SessionStateStore.get(httpSession);
 		assignVariables((IVariableRegistry)session
 				.lookupService(IVariableRegistry.class.getName()), variableValues, true);
 		startTime = (Date)getAttribute("session.starttime");
@@ -319,15 +310,11 @@ public class DeploymentSession implements ISessionDescriptor
 	 */
 	public IDocument abort(HttpSession httpSession,
 			HttpServletRequest httpRequest, HttpServletResponse httpReesponse,
-			String prefix, int depth, Map variableValues, Map parameterValues)
+			int depth, Map variableValues, Map parameterValues)
 	{
 		this.httpSession = httpSession;
 		this.depth = depth;
-		this.qualifier = new String[depth + 1];
-		for(int i = 0; i <= depth; i++)
-		{
-			qualifier[i] = prefix + i + ".";
-		}
+		this.store = SessionStateStore.get(httpSession);
 		try
 		{
 			assignVariables((IVariableRegistry)session
@@ -344,15 +331,11 @@ public class DeploymentSession implements ISessionDescriptor
 		}
 	}
 
-	public void end(HttpSession httpSession, String prefix, int depth)
+	public void end(HttpSession httpSession, int depth)
 	{
 		this.httpSession = httpSession;
 		this.depth = depth;
-		this.qualifier = new String[depth + 1];
-		for(int i = 0; i <= depth; i++)
-		{
-			qualifier[i] = prefix + i + ".";
-		}
+		this.store = SessionStateStore.get(httpSession);
 		fireDisposedEvent(httpSession);
 		httpSession.setAttribute("vtp.supressSessionDisposedEvent", Boolean.TRUE);
 		if (!"true".equals(getAttribute("fragment")))
@@ -372,6 +355,61 @@ public class DeploymentSession implements ISessionDescriptor
 		}
 	}
 
+	/**
+	 * Disposes of this session after it has expired without being ended.
+	 * <p>
+	 * The disposal is reported unless the HTTP session already reported it, the
+	 * services of the process session are released, and the references to the
+	 * HTTP session and its state are dropped.
+	 * </p>
+	 */
+	void dispose()
+	{
+		HttpSession httpSession = this.httpSession;
+		boolean suppressed = false;
+		if (httpSession != null)
+		{
+			try
+			{
+				suppressed = httpSession
+						.getAttribute("vtp.supressSessionDisposedEvent") == Boolean.TRUE; //$NON-NLS-1$
+			}
+			catch (IllegalStateException e)
+			{
+				// The HTTP session has already been invalidated.
+			}
+		}
+		if (!suppressed)
+		{
+			IReporter reporter = (IReporter)session.lookupService(IReporter.class
+					.getName());
+			if (reporter.isReportingEnabled())
+			{
+				Dictionary report = new Hashtable();
+				report.put("event", "session.disposed"); //$NON-NLS-1$ //$NON-NLS-2$
+				report.put("reason", "expired"); //$NON-NLS-1$ //$NON-NLS-2$
+				reporter.report(IReporter.SEVERITY_INFO, "Session \"" + id //$NON-NLS-1$
+						+ "\" disposed.", report); //$NON-NLS-1$
+			}
+		}
+		session.dispose();
+		this.httpSession = null;
+		this.store = null;
+	}
+
+	/**
+	 * Returns the milliseconds an HTTP session may be idle before it expires.
+	 * 
+	 * @param httpSession The HTTP session.
+	 * @return The milliseconds the session may be idle, {@link Long#MAX_VALUE}
+	 *         if it never expires.
+	 */
+	private static long getTimeout(HttpSession httpSession)
+	{
+		int interval = httpSession.getMaxInactiveInterval();
+		return interval <= 0 ? Long.MAX_VALUE : interval * 1000L;
+	}
+
 	/**
 	 * Returns the next execution ID.
 	 * 
@@ -379,11 +417,11 @@ public class DeploymentSession implements ISessionDescriptor
 	 */
 	private String getNextExecutionID()
 	{
-		Object executionID = httpSession.getAttribute(qualifier + EXECUTION_ID);
+		Object executionID = store.getAttribute(depth, EXECUTION_ID);
 		if (!(executionID instanceof Integer))
 			executionID = new Integer(0);
 		executionID = new Integer(((Integer)executionID).intValue() + 1);
-		httpSession.setAttribute(qualifier + EXECUTION_ID, executionID);
+		store.setAttribute(depth, EXECUTION_ID, executionID);
 		return executionID.toString();
 	}
 
@@ -431,17 +469,9 @@ public class DeploymentSession implements ISessionDescriptor
 	 */
 	public String[] getAttributeNames()
 	{
-		List<String> list = new LinkedList<String>();
-		if (httpSession != null)
-		{
-			for (Enumeration<String> e = httpSession.getAttributeNames(); e.hasMoreElements();)
-			{
-				String name = e.nextElement();
-				if (name.startsWith(qualifier[depth]))
-					list.add(name.substring(qualifier[depth].length()));
-			}
-		}
-		return list.toArray(new String[list.size()]);
+		if (store == null)
+			return new String[0];
+		return store.getAttributeNames(depth);
 	}
 
 	/*
@@ -452,21 +482,11 @@ public class DeploymentSession implements ISessionDescriptor
 	 */
 	public Object getAttribute(String attributeName) throws NullPointerException
 	{
-		if(httpSession == null || attributeName == null)
+		if(store == null || attributeName == null)
 			return null;
-		Object obj = null;
 		if(attributeName.startsWith("variable.records"))
-		{
-			for(int i = depth; i > -1; i--)
-			{
-				obj = httpSession.getAttribute(qualifier[i] + attributeName);
-				if(obj != null)
-					break;
-			}
-		}
-		else
-			obj = httpSession.getAttribute(qualifier[depth] + attributeName);
-		return obj;
+			return store.findAttribute(depth, attributeName);
+		return store.getAttribute(depth, attributeName);
 	}
 
 	/*
@@ -478,8 +498,8 @@ public class DeploymentSession implements ISessionDescriptor
 	public void setAttribute(String attributeName, Object attributeValue)
 			throws NullPointerException
 	{
-		if (httpSession != null)
-			httpSession.setAttribute(qualifier[depth] + attributeName, attributeValue);
+		if (store != null)
+			store.setAttribute(depth, attributeName, attributeValue);
 	}
 
 	/*
@@ -490,70 +510,98 @@ public class DeploymentSession implements ISessionDescriptor
 	 */
 	public void clearAttribute(String attributeName) throws NullPointerException
 	{
-		if (httpSession != null)
-			httpSession.removeAttribute(qualifier[depth] + attributeName);
+		if (store != null)
+			store.removeAttribute(depth, attributeName);
 	}
 	
 	public Object getInheritedAttribute(String attributeName) throws NullPointerException
 	{
-		if(httpSession == null || attributeName == null)
+		if(store == null || attributeName == null)
 			return null;
-		Object obj = null;
-		for(int i = depth - 1; i > -1; i--)
-		{
-			obj = httpSession.getAttribute(qualifier[i] + attributeName);
-			if(obj != null)
-				break;
-		}
-		return obj;
+		return store.findAttribute(depth - 1, attributeName);
 	}
 
 	public boolean isValid()
 	{
-		if(System.currentTimeMillis() - lastAccessed >= timeout)
-		{
-			return false;
-		}
-		return true;
+		return isValid(System.currentTimeMillis());
 	}
 
-	@Override
-	public String[] getRootAttributeNames()
+	/**
+	 * Returns true if this session has not expired at the specified time.
+	 * <p>
+	 * The HTTP session is shared by every deployment a call passes through, so
+	 * its last access time is used along with this session's own, and a session
+	 * whose call is currently in a subdialog deeper than this session never
+	 * expires.
+	 * </p>
+	 * 
+	 * @param now The time to test against.
+	 * @return True if this session has not expired at the specified time.
+	 */
+	boolean isValid(long now)
 	{
-		List<String> list = new LinkedList<String>();
+		long lastAccessed = this.lastAccessed;
+		HttpSession httpSession = this.httpSession;
+		SessionStateStore store = this.store;
 		if (httpSession != null)
 		{
-			for (Enumeration<String> e = httpSession.getAttributeNames(); e.hasMoreElements();)
+			try
 			{
-				String name = e.nextElement();
-				if (name.startsWith(ROOT_CONTEXT))
-					list.add(name.substring(ROOT_CONTEXT.length()));
+				lastAccessed = Math.max(lastAccessed, httpSession
+						.getLastAccessedTime());
+			}
+			catch (IllegalStateException e)
+			{
+				// The HTTP session has already been invalidated.
+				return false;
 			}
 		}
-		return list.toArray(new String[list.size()]);
+		if (store != null && store.getDepth() > depth)
+			return true;
+		return now - lastAccessed < timeout;
+	}
+
+	/**
+	 * Returns true if a request is currently being processed in this session.
+	 * 
+	 * @return True if a request is currently being processed in this session.
+	 */
+	boolean isLocked()
+	{
+		synchronized (editLock)
+		{
+			return editLock[0];
+		}
+	}
+
+	@Override
+	public String[] getRootAttributeNames()
+	{
+		if (store == null)
+			return new String[0];
+		return store.getRootAttributeNames();
 	}
 
 	@Override
 	public Object getRootAttribute(String attributeName)
 		throws NullPointerException
 	{
-		return httpSession == null ? null : httpSession.getAttribute(ROOT_CONTEXT
-			+ attributeName);
+		return store == null ? null : store.getRootAttribute(attributeName);
 	}
 
 	@Override
 	public void setRootAttribute(String attributeName, Object attributeValue)
 		throws NullPointerException
 	{
-		if (httpSession != null)
-			httpSession.setAttribute(ROOT_CONTEXT + attributeName, attributeValue);
+		if (store != null)
+			store.setRootAttribute(attributeName, attributeValue);
 	}
 
 	@Override
 	public void clearRootAttribute(String attributeName)
 		throws NullPointerException
 	{
-		if (httpSession != null)
-			httpSession.removeAttribute(ROOT_CONTEXT + attributeName);
+		if (store != null)
+			store.removeRootAttribute(attributeName);
 	}
 }
@@ -0,0 +1,174 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.engine.http;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of the deployments served by a connector.
+ * <p>
+ * Instances are never modified after construction; the connector builds a new
+ * table whenever a process is deployed or undeployed and publishes it through
+ * a volatile field, so request threads can route calls without locking.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+final class DeploymentTable
+{
+	/** The table with no deployments. */
+	static final DeploymentTable EMPTY = new DeploymentTable(
+			Collections.<String, Deployment> emptyMap(),
+			Collections.<String, Deployment> emptyMap());
+	/** Ordering of paths by longest-first. */
+	private static final Comparator<String> PATH_SORT = new Comparator<String>()
+	{
+		public int compare(String left, String right)
+		{
+			int difference = right.length() - left.length();
+			if (difference == 0)
+				difference = left.compareTo(right);
+			return difference;
+		}
+	};
+
+	/** The deployments indexed by deployment ID. */
+	private final Map<String, Deployment> deploymentsByID;
+	/** The deployments indexed by normalized path. */
+	private final Map<String, Deployment> deploymentsByPath;
+	/** The deployments ordered by path, longest-first. */
+	private final Map<String, Deployment> sortedDeployments;
+
+	/**
+	 * Creates a new DeploymentTable.
+	 *
+	 * @param deploymentsByID The deployments indexed by deployment ID.
+	 * @param deploymentsByPath The deployments indexed by normalized path.
+	 */
+	DeploymentTable(Map<String, Deployment> deploymentsByID,
+			Map<String, Deployment> deploymentsByPath)
+	{
+		this.deploymentsByID = Collections
+				.unmodifiableMap(new HashMap<String, Deployment>(deploymentsByID));
+		this.deploymentsByPath = new HashMap<String, Deployment>(deploymentsByPath);
+		Map<String, Deployment> sorted = new TreeMap<String, Deployment>(PATH_SORT);
+		sorted.putAll(deploymentsByPath);
+		this.sortedDeployments = Collections.unmodifiableMap(sorted);
+	}
+
+	/**
+	 * Returns the deployment with the specified ID.
+	 *
+	 * @param deploymentID The ID of the deployment.
+	 * @return The deployment with the specified ID or <code>null</code>.
+	 */
+	Deployment getDeploymentByID(String deploymentID)
+	{
+		if (deploymentID == null)
+			return null;
+		return deploymentsByID.get(deploymentID);
+	}
+
+	/**
+	 * Returns the deployment registered at exactly the specified path.
+	 *
+	 * @param path The normalized path of the deployment.
+	 * @return The deployment at the specified path or <code>null</code>.
+	 */
+	Deployment getDeploymentByPath(String path)
+	{
+		if (path == null)
+			return null;
+		return deploymentsByPath.get(path);
+	}
+
+	/**
+	 * Returns the deployments indexed by deployment ID.
+	 *
+	 * @return The deployments indexed by deployment ID.
+	 */
+	Map<String, Deployment> getDeploymentsByID()
+	{
+		return deploymentsByID;
+	}
+
+	/**
+	 * Returns the deployments indexed by path, ordered longest-first.
+	 *
+	 * @return The deployments indexed by path, ordered longest-first.
+	 */
+	Map<String, Deployment> getDeploymentsByPath()
+	{
+		return sortedDeployments;
+	}
+
+	/**
+	 * Finds the deployment with the longest path that is equal to the supplied
+	 * path or is a prefix of it ending at a segment boundary.
+	 * <p>
+	 * Each candidate prefix is probed with a single hash lookup, from the full
+	 * path back towards the root, so the cost depends on the depth of the
+	 * requested path rather than on the number of deployments.
+	 * </p>
+	 *
+	 * @param pathInfo The path of the request.
+	 * @return The matching route or <code>null</code> if no deployment matches.
+	 */
+	Route route(String pathInfo)
+	{
+		if (pathInfo == null || deploymentsByPath.isEmpty())
+			return null;
+		Deployment deployment = deploymentsByPath.get(pathInfo);
+		if (deployment != null)
+			return new Route(deployment, null);
+		for (int i = pathInfo.lastIndexOf('/'); i >= 0; i = pathInfo
+				.lastIndexOf('/', i - 1))
+		{
+			deployment = deploymentsByPath.get(pathInfo.substring(0, i));
+			if (deployment != null)
+				return new Route(deployment, pathInfo.length() > i + 1 ? pathInfo
+						.substring(i + 1) : null);
+			if (i == 0)
+				break;
+		}
+		return null;
+	}
+
+	/**
+	 * The result of routing a request path to a deployment.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	static final class Route
+	{
+		/** The matched deployment. */
+		final Deployment deployment;
+		/** The name of the requested entry point or <code>null</code>. */
+		final String entryName;
+
+		/**
+		 * Creates a new Route.
+		 *
+		 * @param deployment The matched deployment.
+		 * @param entryName The name of the requested entry point.
+		 */
+		Route(Deployment deployment, String entryName)
+		{
+			this.deployment = deployment;
+			this.entryName = entryName;
+		}
+	}
+}
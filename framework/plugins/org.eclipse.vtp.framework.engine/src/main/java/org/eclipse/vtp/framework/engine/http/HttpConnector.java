@@ -18,26 +18,25 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.URL;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
-import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXResult;
 
 import org.apache.commons.fileupload.FileItem;
-import org.apache.commons.fileupload.disk.DiskFileItemFactory;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.apache.commons.fileupload.servlet.ServletRequestContext;
 import org.eclipse.vtp.framework.common.IArrayObject;
@@ -51,14 +50,17 @@ import org.eclipse.vtp.framework.common.IVariableRegistry;
 import org.eclipse.vtp.framework.core.IReporter;
 import org.eclipse.vtp.framework.engine.ResourceGroup;
 import org.eclipse.vtp.framework.interactions.core.platforms.IDocument;
+import org.eclipse.vtp.framework.interactions.core.support.Widget;
 import org.eclipse.vtp.framework.spi.IProcessDefinition;
 import org.eclipse.vtp.framework.spi.IProcessEngine;
-import org.eclipse.vtp.framework.util.Guid;
+import org.eclipse.vtp.framework.util.TeeContentHandler;
 import org.eclipse.vtp.framework.util.XMLWriter;
 import org.osgi.framework.Bundle;
 import org.osgi.service.http.HttpService;
 import org.osgi.service.http.NamespaceException;
 import org.osgi.service.log.LogService;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 
 /**
  * The HTTP connection strategy.
@@ -87,17 +89,6 @@ public class HttpConnector
 	private static final String DEPLOYMENT_ID = "deployment.id";
 	/** The name of the session attribute the deployment ID is stored in. */
 	private static final String ENTRY_POINT_NAME = "entry.point.name";
-	/** Ordering of paths by longest-first. */
-	private static final Comparator<String> PATH_SORT = new Comparator<String>()
-	{
-		public int compare(String left, String right)
-		{
-			int difference = right.length() - left.length();
-			if (difference == 0)
-				difference = left.compareTo(right);
-			return difference;
-		}
-	};
 	/** The process engine to use. */
 
 	/** The log to use. */
@@ -128,7 +119,11 @@ public class HttpConnector
 	/** The currently deployed processes. */
 	private final Map<String, Deployment> deploymentsByID = new HashMap<String, Deployment>();
 	/** The currently deployed processes. */
-	private final Map<String, Deployment> deploymentsByPath = new TreeMap<String, Deployment>(PATH_SORT);
+	private final Map<String, Deployment> deploymentsByPath = new HashMap<String, Deployment>();
+	/** The snapshot of the deployments that requests are routed with. */
+	private volatile DeploymentTable deployments = DeploymentTable.EMPTY;
+	/** The thread that disposes of expired sessions or <code>null</code>. */
+	private HttpThread reaper = null;
 
 	/**
 	 * Creates a new HttpConnector.
@@ -224,7 +219,12 @@ public class HttpConnector
 	{
 		Deployment deployment = deploymentsByKey.remove(key);
 		if (deployment != null)
+		{
 			deploymentsByPath.remove(deployment.getPath());
+			removeDeploymentID(deployment);
+			publishDeployments();
+			deployment.dispose();
+		}
 		String definitionID = (String)properties.get("definition.id"); //$NON-NLS-1$
 		String deploymentID = (String)properties.get("deployment.id");
 		String path = (String)properties.get("path");
@@ -276,11 +276,9 @@ public class HttpConnector
 			return;
 		deploymentsByKey.put(key, deployment);
 		deploymentsByID.put(deploymentID, deployment);
-		if (path == null)
-			return;
-//		if (deploymentsByPath.containsKey(path))
-//			return;
-		deploymentsByPath.put(path, deployment);
+		if (path != null)
+			deploymentsByPath.put(deployment.getPath(), deployment);
+		publishDeployments();
 	}
 
 	/**
@@ -294,8 +292,46 @@ public class HttpConnector
 		if (deployment == null)
 			return;
 		deploymentsByPath.remove(deployment.getPath());
+		removeDeploymentID(deployment);
+		publishDeployments();
 		deployment.dispose();
 	}
+
+	/**
+	 * Removes the ID entry of a deployment that is no longer served. Must be
+	 * called while holding this connector's monitor.
+	 * 
+	 * @param deployment The deployment that is no longer served.
+	 */
+	private void removeDeploymentID(Deployment deployment)
+	{
+		for (Iterator<Deployment> i = deploymentsByID.values().iterator(); i
+				.hasNext();)
+			if (i.next() == deployment)
+				i.remove();
+	}
+
+	/**
+	 * Returns the deployments currently served by this connector. Undeployed
+	 * and replaced deployments are never included.
+	 * 
+	 * @return The deployments currently served by this connector.
+	 */
+	Deployment[] getDeployments()
+	{
+		Collection<Deployment> values = deployments.getDeploymentsByID()
+				.values();
+		return values.toArray(new Deployment[values.size()]);
+	}
+
+	/**
+	 * Publishes a new snapshot of the current deployments to request threads.
+	 * Must be called while holding this connector's monitor.
+	 */
+	private void publishDeployments()
+	{
+		deployments = new DeploymentTable(deploymentsByID, deploymentsByPath);
+	}
 	
 	/**
 	 * Serves up a site that can be used to examine and modify active sessions.
@@ -305,7 +341,7 @@ public class HttpConnector
 	 * @throws ServletException If the processing fails.
 	 * @throws IOException If the connection fails.
 	 */
-	public synchronized void examine(HttpServletRequest req, HttpServletResponse res)
+	public void examine(HttpServletRequest req, HttpServletResponse res)
 			throws ServletException, IOException
 	{
 		String cmd = req.getParameter("cmd");
@@ -314,9 +350,10 @@ public class HttpConnector
 		String variable = req.getParameter("variable");
 		String action = req.getParameter("action");
 		String value = req.getParameter("value");
+		DeploymentTable deployments = this.deployments;
 		Deployment deployment = null;
 		if (process != null)
-			deployment = deploymentsByPath.get(process);
+			deployment = deployments.getDeploymentByPath(process);
 		DeploymentSession deploymentSession = null;
 		if (session != null)
 			deploymentSession = deployment.getActiveSession(session);
@@ -405,7 +442,7 @@ public class HttpConnector
 				out.println("</ul>");
 			} else {
 				out.println("<p>Select the application to examine:</p><ul>");
-				for (Object o : deploymentsByPath.keySet()) {
+				for (Object o : deployments.getDeploymentsByPath().keySet()) {
 					out.print("<li><a href=\"");
 					out.print(base);
 					out.print("sessions&process=");
@@ -461,9 +498,10 @@ public class HttpConnector
 	public void process(HttpServletRequest req, HttpServletResponse res)
 			throws ServletException, IOException
 	{
+		HttpSession httpSession = req.getSession();
 		try
 		{
-			invokeProcessEngine(req, res, req.getSession(), HttpUtils
+			invokeProcessEngine(req, res, httpSession, HttpUtils
 					.normalizePath(req.getPathInfo()), Collections.emptyMap(),
 					new HashMap<String, String[]>(), false);
 		}
@@ -471,6 +509,10 @@ public class HttpConnector
 		{
 			e.printStackTrace();
 		}
+		finally
+		{
+			SessionStateStore.flush(httpSession);
+		}
 	}
 
 	/**
@@ -492,45 +534,25 @@ public class HttpConnector
 			throws IOException, ServletException
 	{
 		boolean newSession = false;
-		Integer depth = (Integer)httpSession.getAttribute("connector.depth");
-		if (depth == null)
-		{
-			depth = new Integer(0);
-		}
-		String prefix = "connector.attributes.";
-		String fullPrefix = prefix + depth.intValue() + ".";
+		SessionStateStore store = SessionStateStore.get(httpSession);
+		int depth = store.getDepth();
 		if (embeddedInvocation)
-			httpSession.setAttribute(fullPrefix + "fragment", "true");
+			store.setAttribute(depth, "fragment", "true");
 		Deployment deployment = null;
 		String brand = null;
 		String entryName = null;
 		boolean subdialog = false;
 		if (!pathInfo.startsWith(PATH_PREFIX))
 		{
-			System.out.println("invoking process engine for new session: " + pathInfo);
 			newSession = true;
-			synchronized (this)
+			DeploymentTable.Route route = deployments.route(pathInfo);
+			if (route != null)
 			{
-				for (String path : deploymentsByPath.keySet())
-				{
-					System.out.println("Comparing to deployment: " + path);
-					if (pathInfo.equals(path) || pathInfo.startsWith(path)
-							&& pathInfo.length() > path.length()
-							&& pathInfo.charAt(path.length()) == '/')
-					{
-						deployment = deploymentsByPath.get(path);
-						System.out.println("Matching deployment found: " + deployment);
-						brand = req.getParameter("BRAND");
-						if(req.getParameter("SUBDIALOG") != null)
-							subdialog = Boolean.parseBoolean(req.getParameter("SUBDIALOG"));
-						if (pathInfo.length() > path.length() + 1)
-						{
-							entryName = pathInfo.substring(path.length() + 1);
-							System.out.println("Entry point name: " + entryName);
-						}
-						break;
-					}
-				}
+				deployment = route.deployment;
+				entryName = route.entryName;
+				brand = req.getParameter("BRAND");
+				if(req.getParameter("SUBDIALOG") != null)
+					subdialog = Boolean.parseBoolean(req.getParameter("SUBDIALOG"));
 			}
 			if (deployment == null)
 			{
@@ -542,8 +564,7 @@ public class HttpConnector
 				return;
 			}
 			pathInfo = NEXT_PATH;
-			httpSession.setAttribute(fullPrefix + DEPLOYMENT_ID, deployment
-					.getProcessID());
+			store.setAttribute(depth, DEPLOYMENT_ID, deployment.getProcessID());
 		}
 		else if(pathInfo.equals(LOG_PATH))
 		{
@@ -559,12 +580,8 @@ public class HttpConnector
 		}
 		else
 		{
-			String deploymentID = (String)httpSession.getAttribute(fullPrefix
-					+ DEPLOYMENT_ID);
-			synchronized (this)
-			{
-				deployment = deploymentsByID.get(deploymentID);
-			}
+			String deploymentID = (String)store.getAttribute(depth, DEPLOYMENT_ID);
+			deployment = deployments.getDeploymentByID(deploymentID);
 			if (deployment == null)
 			{
 				res.sendError(HttpServletResponse.SC_FORBIDDEN);
@@ -572,46 +589,43 @@ public class HttpConnector
 			}
 		}
 		if (subdialog)
-			httpSession.setAttribute(fullPrefix + "subdialog", "true");
+			store.setAttribute(depth, "subdialog", "true");
 		if (pathInfo.equals(INDEX_PATH))
 		{
 			writeIndex(res, deployment);
 			return;
 		}
-		ServletFileUpload upload = new ServletFileUpload(new DiskFileItemFactory());
 		if (ServletFileUpload.isMultipartContent(new ServletRequestContext(
 				req)))
 		{
-			System.out.println("ServletFileUpload.isMultipartContent(new ServletRequestContext(httpRequest)) is true");
+			RecordingSpool spool = deployment.getSpool();
+			List items = null;
 			try
 			{
-				List items = upload.parseRequest(req);
+				items = new ServletFileUpload(spool.getFactory()).parseRequest(req);
 				for (int i = 0; i < items.size(); i++)
 				{
 					FileItem fui = (FileItem)items.get(i);
 					if (fui.isFormField() || "text/plain".equals(fui.getContentType()))
 					{
-						System.out.println("Form Field: " + fui.getFieldName() + " | " + fui.getString());
 						parameterValues
 								.put(fui.getFieldName(), new String[] { fui.getString() });
+						fui.delete();
 					}
 					else
 					{
-						File temp = File.createTempFile(Guid.createGUID(), ".tmp");
-						fui.write(temp);
-						parameterValues.put(fui.getFieldName(), new String[] { temp
+						File file = spool.keep(httpSession.getId(), fui);
+						parameterValues.put(fui.getFieldName(), new String[] { file
 								.getAbsolutePath() });
-						fui.delete();
-						System.out.println("File Upload: " + fui.getFieldName());
-						System.out.println("\tTemp file name: " + temp.getAbsolutePath());
-						System.out.println("\tContent Type: " + fui.getContentType());
-						System.out.println("\tSize: " + fui.getSize());
 					}
 				}
 			}
 			catch (Exception e)
 			{
 				e.printStackTrace();
+				if (items != null)
+					for (int i = 0; i < items.size(); i++)
+						((FileItem)items.get(i)).delete();
 			}
 		}
 		for (Enumeration e = req.getParameterNames(); e.hasMoreElements();)
@@ -619,29 +633,17 @@ public class HttpConnector
 			String key = (String)e.nextElement();
 			parameterValues.put(key, req.getParameterValues(key));
 		}
-		for(String key : parameterValues.keySet())
-		{
-			String[] values = parameterValues.get(key);
-			if(values == null || values.length == 0)
-				System.out.println(key + " empty");
-			else
-			{
-				System.out.println(key + " " + values[0]);
-				for(int i = 1; i < values.length; i++)
-					System.out.println("\t" + values[i]);
-			}
-		}
 		IDocument document = null;
 		if (pathInfo.equals(ABORT_PATH))
-			document = deployment.abort(httpSession, req, res, prefix, depth.intValue(),
+			document = deployment.abort(httpSession, req, res, depth,
 					variableValues, parameterValues);
 		else if (pathInfo.equals(NEXT_PATH))
 		{
 			if (brand == null && !newSession)
-				document = deployment.next(httpSession, req, res, prefix, depth.intValue(),
+				document = deployment.next(httpSession, req, res, depth,
 						variableValues, parameterValues);
 			else
-				document = deployment.start(httpSession, req, res, prefix, depth.intValue(),
+				document = deployment.start(httpSession, req, res, depth,
 						variableValues, parameterValues, entryName, brand, subdialog);
 		}
 		else
@@ -660,16 +662,10 @@ public class HttpConnector
 			if (cd.getTarget() == null)
 			{
 				@SuppressWarnings("unchecked")
-				Map<String, Map<String, Object>> outgoing = (Map<String, Map<String, Object>>)httpSession.getAttribute(fullPrefix + "outgoing-data");
-				int newDepth = depth.intValue() - 1;
-				if (newDepth == 0)
-					httpSession.removeAttribute("connector.depth");
-				else
-					httpSession.setAttribute("connector.depth", new Integer(newDepth));
-				String oldFullPrefix = fullPrefix;
-				fullPrefix = prefix + newDepth + ".";
-				Object[] params = (Object[])httpSession.getAttribute(fullPrefix
-						+ "exitparams");
+				Map<String, Map<String, Object>> outgoing = (Map<String, Map<String, Object>>)store.getAttribute(depth, "outgoing-data");
+				int newDepth = depth - 1;
+				store.setDepth(newDepth);
+				Object[] params = (Object[])store.getAttribute(newDepth, "exitparams");
 				if (params != null)
 					for (int i = 0; i < params.length; i += 2)
 						parameterValues.put((String)params[i], (String[])params[i + 1]);
@@ -691,15 +687,8 @@ public class HttpConnector
 						}
 					}
 				}
-				deployment.end(httpSession, prefix, depth.intValue());
-				for (@SuppressWarnings("rawtypes")
-					Enumeration e = httpSession.getAttributeNames(); e
-						.hasMoreElements();)
-				{
-					String name = (String)e.nextElement();
-					if (name.startsWith(oldFullPrefix))
-						httpSession.removeAttribute(name);
-				}
+				deployment.end(httpSession, depth);
+				store.clearAttributes(depth);
 				invokeProcessEngine(req, res, httpSession, NEXT_PATH, variables,
 						parameterValues, newDepth > 0);
 				return;
@@ -713,19 +702,18 @@ public class HttpConnector
 					params[i] = paramNames[i / 2];
 					params[i + 1] = cd.getParameterValues(paramNames[i / 2]);
 				}
-				httpSession.setAttribute(fullPrefix + "exitparams", params);
+				store.setAttribute(depth, "exitparams", params);
 				String[] variableNames = cd.getVariableNames();
 				Map<Object, Object> variables = new HashMap<Object, Object>(variableNames.length);
 				for (int i = 0; i < variableNames.length; ++i)
 					variables
 							.put(variableNames[i], cd.getVariableValue(variableNames[i]));
-				httpSession.setAttribute("connector.depth", new Integer(depth
-						.intValue() + 1));
-				fullPrefix = prefix + (depth.intValue() + 1) + ".";
+				int newDepth = depth + 1;
+				store.setDepth(newDepth);
 				String deploymentId = cd.getTarget().substring(0, cd.getTarget().lastIndexOf('(') - 1);
 				String entryPointName = cd.getTarget().substring(cd.getTarget().lastIndexOf('(') + 1, cd.getTarget().length() - 1);
-				httpSession.setAttribute(fullPrefix + DEPLOYMENT_ID, deploymentId);
-				httpSession.setAttribute(fullPrefix + ENTRY_POINT_NAME, entryPointName);
+				store.setAttribute(newDepth, DEPLOYMENT_ID, deploymentId);
+				store.setAttribute(newDepth, ENTRY_POINT_NAME, entryPointName);
 				Map<String, Map<String, Object>> outgoing = new HashMap<String, Map<String, Object>>();
 				String[] outPaths = cd.getOutgoingPaths();
 				for (int i = 0; i < outPaths.length; ++i)
@@ -736,7 +724,7 @@ public class HttpConnector
 						map.put(names[j], cd.getOutgoingDataValue(outPaths[i], names[j]));
 					outgoing.put(outPaths[i], map);
 				}
-				httpSession.setAttribute(fullPrefix + "outgoing-data", outgoing);
+				store.setAttribute(newDepth, "outgoing-data", outgoing);
 				invokeProcessEngine(req, res, httpSession, "/" + deploymentId + "/" + entryPointName, variables,
 						parameterValues, true);
 				return;
@@ -747,28 +735,57 @@ public class HttpConnector
 			res.setHeader("Cache-Control", "max-age=0, no-cache");
 		res.setContentType(document.getContentType());
 		OutputStream writer = res.getOutputStream();
+		XMLWriter xmlWriter = new XMLWriter(writer);
+		xmlWriter.setCompactElements(true);
+		ByteArrayOutputStream logged = null;
+		XMLWriter logWriter = null;
+		ContentHandler handler = xmlWriter;
+		if(reporter.isSeverityEnabled(IReporter.SEVERITY_INFO) && !document.isSecured())
+		{
+			logged = new ByteArrayOutputStream();
+			logWriter = new XMLWriter(logged);
+			logWriter.setCompactElements(true);
+			handler = new TeeContentHandler(xmlWriter, logWriter);
+		}
+		writeDocument(document, handler);
+		xmlWriter.flush();
+		if (logged != null)
+		{
+			logWriter.flush();
+			System.out.println(new String(logged.toByteArray(), "UTF-8"));
+		}
+		writer.flush();
+		writer.close();
+	}
+
+	/**
+	 * Writes a document to a content handler. Widget documents are streamed
+	 * directly into the handler; other documents are run through an identity
+	 * transform.
+	 * 
+	 * @param document The document to write.
+	 * @param handler The handler to write the document to.
+	 * @throws ServletException If the document cannot be written.
+	 */
+	private void writeDocument(IDocument document, ContentHandler handler)
+			throws ServletException
+	{
 		try
 		{
-			Transformer transformer = TransformerFactory.newInstance().newTransformer();
-			XMLWriter xmlWriter = new XMLWriter(writer);
-			xmlWriter.setCompactElements(true);
-			transformer.transform(document.toXMLSource(), xmlWriter
-					.toXMLResult());
-			if(reporter.isSeverityEnabled(IReporter.SEVERITY_INFO) && !document.isSecured())
-			{
-				ByteArrayOutputStream baos = new ByteArrayOutputStream();
-				xmlWriter = new XMLWriter(baos);
-				xmlWriter.setCompactElements(true);
-				transformer.transform(document.toXMLSource(), xmlWriter.toXMLResult());
-				System.out.println(new String(baos.toByteArray(), "UTF-8"));
-			}
+			if (document instanceof Widget)
+				((Widget)document).writeWidget(handler);
+			else
+				TransformerFactory.newInstance().newTransformer().transform(
+						document.toXMLSource(), new SAXResult(handler));
+		}
+		catch (SAXException e)
+		{
+			throw new ServletException(e);
 		}
 		catch (TransformerException e)
 		{
 			throw new ServletException(e);
 		}
-		writer.flush();
-		writer.close();
 	}
 
 	/**
@@ -852,6 +869,8 @@ public class HttpConnector
 					null, context);
 			this.servletPath = servletPath;
 			open = true;
+			reaper = new HttpThread(this);
+			reaper.start();
 		}
 		catch (NamespaceException e)
 		{
@@ -880,6 +899,11 @@ public class HttpConnector
 		if (!open)
 			return;
 		open = false;
+		if (reaper != null)
+		{
+			reaper.stop();
+			reaper = null;
+		}
 		try
 		{
 			if (servletPath != null)
@@ -923,16 +947,22 @@ public class HttpConnector
 			writer.print(deploymentID);
 			writer.println("</p>");
 		}
-		synchronized (this)
-		{
-			for (Map.Entry<String, Deployment> entry : deploymentsByPath.entrySet())
-			{
-				writer.print("<p><a href=\"");
-				writer.print(res.encodeURL(entry.getKey()));
-				writer.print("\">");
-				writer.print(entry.getValue().getProcessID());
-				writer.println("</a></p>");
-			}
+		for (Map.Entry<String, Deployment> entry : deployments
+				.getDeploymentsByPath().entrySet())
+		{
+			writer.print("<p><a href=\"");
+			writer.print(res.encodeURL(entry.getKey()));
+			writer.print("\">");
+			writer.print(entry.getValue().getProcessID());
+			writer.print("</a> (active sessions: ");
+			writer.print(entry.getValue().getActiveSessionCount());
+			writer.print(", expired sessions: ");
+			writer.print(entry.getValue().getExpiredSessionCount());
+			writer.print(", spooled files: ");
+			writer.print(entry.getValue().getSpool().getFileCount());
+			writer.print(", spooled bytes: ");
+			writer.print(entry.getValue().getSpool().getSize());
+			writer.println(")</p>");
 		}
 		writer.println("</body>");
 		writer.println("</html>");
@@ -12,12 +12,25 @@
 package org.eclipse.vtp.framework.engine.http;
 
 /**
- * HTTPCleanup.
+ * The background thread that removes abandoned sessions from the deployments
+ * of a connector.
+ * <p>
+ * Calls that are dropped without a final request leave their sessions behind
+ * until the servlet container expires the HTTP session, which may never be
+ * reported to the connector. This thread sweeps the deployments at a fixed
+ * interval and disposes of every session that has been idle for longer than
+ * the timeout of its HTTP session.
+ * </p>
  * 
  * @author Lonnie Pryor
  */
 public class HttpThread implements Runnable
 {
+	/** The system property that sets the milliseconds between sweeps. */
+	public static final String INTERVAL_PROPERTY = "org.eclipse.vtp.framework.engine.http.reaper.interval"; //$NON-NLS-1$
+	/** The default milliseconds between sweeps. */
+	private static final long DEFAULT_INTERVAL = 30L * 1000L;
+
 	private static final int STATE_INACTIVE = 0;
 	private static final int STATE_STARTING = 1;
 	private static final int STATE_STARTED = 2;
@@ -25,15 +38,34 @@ public class HttpThread implements Runnable
 	private static final int STATE_STOPPING = 4;
 	private static final int STATE_STOPPED = 5;
 
+	/** The connector whose deployments are swept. */
+	private final HttpConnector connector;
+	/** The milliseconds between sweeps. */
+	private final long interval;
 	/** The state of this helper. */
 	private int state = STATE_INACTIVE;
 
 	/**
-	 * Creates a new HTTPCleanup.
+	 * Creates a new HttpThread.
 	 * 
+	 * @param connector The connector whose deployments are swept.
 	 */
-	public HttpThread()
+	public HttpThread(HttpConnector connector)
 	{
+		this.connector = connector;
+		long interval = DEFAULT_INTERVAL;
+		String value = System.getProperty(INTERVAL_PROPERTY);
+		if (value != null)
+		{
+			try
+			{
+				interval = Long.parseLong(value.trim());
+			}
+			catch (NumberFormatException e)
+			{
+			}
+		}
+		this.interval = interval < 1000L ? 1000L : interval;
 	}
 
 	public synchronized void start() throws IllegalStateException
@@ -41,7 +73,9 @@ public class HttpThread implements Runnable
 		if (state != STATE_INACTIVE)
 			throw new IllegalStateException();
 		state = STATE_STARTING;
-		new Thread(this, getClass().getName()).start();
+		Thread thread = new Thread(this, "VTP Session Reaper"); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.start();
 		while (state == STATE_STARTING)
 		{
 			try
@@ -66,20 +100,21 @@ public class HttpThread implements Runnable
 		{
 			if (state != STATE_STARTING)
 				throw new IllegalStateException();
-			state = STATE_STARTED;
-			notify();
+			state = STATE_RUNNING;
+			notifyAll();
 		}
 		try
 		{
 			while (true)
 			{
+				long delay = cleanup();
 				synchronized (this)
 				{
 					if (state != STATE_RUNNING)
 						return;
 					try
 					{
-						wait(cleanup());
+						wait(delay);
 					}
 					catch (InterruptedException e)
 					{
@@ -92,7 +127,7 @@ public class HttpThread implements Runnable
 			synchronized (this)
 			{
 				state = STATE_STOPPED;
-				notify();
+				notifyAll();
 			}
 		}
 	}
@@ -102,7 +137,7 @@ public class HttpThread implements Runnable
 		if (state != STATE_RUNNING)
 			return;
 		state = STATE_STOPPING;
-		notify();
+		notifyAll();
 		while (state == STATE_STOPPING)
 		{
 			try
@@ -116,9 +151,26 @@ public class HttpThread implements Runnable
 		state = STATE_INACTIVE;
 	}
 
+	/**
+	 * Disposes of the expired sessions of every deployment.
+	 * 
+	 * @return The milliseconds to wait before the next sweep.
+	 */
 	private long cleanup()
 	{
-		return 0;
+		long start = System.currentTimeMillis();
+		try
+		{
+			Deployment[] deployments = connector.getDeployments();
+			for (int i = 0; i < deployments.length; ++i)
+				deployments[i].disposeExpiredSessions(start);
+		}
+		catch (RuntimeException e)
+		{
+			e.printStackTrace();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		return elapsed < 0 || elapsed >= interval ? 1L : interval - elapsed;
 	}
 
 }
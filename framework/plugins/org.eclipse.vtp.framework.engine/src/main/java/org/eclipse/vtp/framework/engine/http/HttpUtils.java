@@ -11,7 +11,10 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.http;
 
+import java.nio.charset.Charset;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Utilities for the HTTP connector system.
@@ -20,6 +23,15 @@ import java.util.StringTokenizer;
  */
 public class HttpUtils
 {
+	/** The character set URLs are encoded in. */
+	private static final Charset UTF_8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+	/** The hexadecimal digits used in escape sequences. */
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray(); //$NON-NLS-1$
+	/** The maximum number of encoded paths to remember. */
+	private static final int MAXIMUM_ENCODED_PATHS = 1024;
+	/** The encoded form of recently used paths. */
+	private static final ConcurrentMap<String, String> encodedPaths = new ConcurrentHashMap<String, String>();
+
 	/**
 	 * Normalizes the supplied path so that it always starts with '/', never
 	 * contains consecutive instances of '/', and never ends with '/' except for
@@ -59,4 +71,86 @@ public class HttpUtils
 		}
 		return sb == null ? "/" : sb.toString(); //$NON-NLS-1$
 	}
+
+	/**
+	 * Normalizes the supplied path and URL-encodes each of its segments, using
+	 * "%20" for spaces. The result is empty if the normalized path is "/".
+	 * 
+	 * @param path The path to encode.
+	 * @return The normalized and encoded path.
+	 */
+	public static String encodePath(String path)
+	{
+		String encoded = encodedPaths.get(path);
+		if (encoded == null)
+		{
+			StringBuilder buffer = new StringBuilder(path.length() + 16);
+			for (StringTokenizer st = new StringTokenizer(normalizePath(path),
+					"/"); st.hasMoreTokens();) //$NON-NLS-1$
+				encode(st.nextToken(), true, buffer.append('/'));
+			encoded = buffer.toString();
+			if (encodedPaths.size() >= MAXIMUM_ENCODED_PATHS)
+				encodedPaths.clear();
+			encodedPaths.put(path, encoded);
+		}
+		return encoded;
+	}
+
+	/**
+	 * Appends the <code>application/x-www-form-urlencoded</code> form of a
+	 * string in UTF-8, producing the same output as
+	 * {@link java.net.URLEncoder#encode(String, String)}.
+	 * 
+	 * @param value The string to encode.
+	 * @param pathSegment True to encode spaces as "%20" instead of "+".
+	 * @param buffer The buffer to append to.
+	 * @return The supplied buffer.
+	 */
+	public static StringBuilder encode(String value, boolean pathSegment,
+			StringBuilder buffer)
+	{
+		int length = value.length();
+		for (int i = 0; i < length;)
+		{
+			char c = value.charAt(i);
+			if (isUnreserved(c))
+			{
+				buffer.append(c);
+				++i;
+			}
+			else if (c == ' ')
+			{
+				buffer.append(pathSegment ? "%20" : "+"); //$NON-NLS-1$ //$NON-NLS-2$
+				++i;
+			}
+			else
+			{
+				int start = i;
+				while (++i < length)
+				{
+					c = value.charAt(i);
+					if (c == ' ' || isUnreserved(c))
+						break;
+				}
+				byte[] bytes = value.substring(start, i).getBytes(UTF_8);
+				for (int j = 0; j < bytes.length; ++j)
+					buffer.append('%').append(HEX_DIGITS[(bytes[j] >> 4) & 0xf])
+							.append(HEX_DIGITS[bytes[j] & 0xf]);
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns true if a character is never escaped when URL-encoded.
+	 * 
+	 * @param c The character to test.
+	 * @return True if the character is never escaped when URL-encoded.
+	 */
+	private static boolean isUnreserved(char c)
+	{
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+				|| (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.'
+				|| c == '*';
+	}
 }
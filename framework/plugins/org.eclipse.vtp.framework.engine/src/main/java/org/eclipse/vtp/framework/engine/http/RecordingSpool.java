@@ -0,0 +1,211 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.engine.http;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.fileupload.FileItem;
+import org.apache.commons.fileupload.disk.DiskFileItemFactory;
+import org.eclipse.vtp.framework.util.Guid;
+
+/**
+ * The directory that holds the files uploaded to the sessions of a deployment.
+ * <p>
+ * Parts of a multipart request no larger than the in-memory threshold are
+ * kept in memory while the request is parsed; larger parts are streamed into
+ * this directory. Every file kept for a session is deleted when the session is
+ * released, whether its top-level dialog ended normally, was aborted, or
+ * expired. Files recorded in a subdialog outlive the subdialog so they can be
+ * returned to its caller.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+public class RecordingSpool
+{
+	/** The system property that sets the directory spools are created in. */
+	public static final String DIRECTORY_PROPERTY = "org.eclipse.vtp.framework.engine.http.spool.directory"; //$NON-NLS-1$
+	/** The system property that sets the in-memory threshold in bytes. */
+	public static final String THRESHOLD_PROPERTY = "org.eclipse.vtp.framework.engine.http.spool.threshold"; //$NON-NLS-1$
+	/** The default in-memory threshold in bytes. */
+	private static final int DEFAULT_THRESHOLD = 64 * 1024;
+
+	/** The directory files are kept in. */
+	private final File directory;
+	/** The factory that parses multipart requests into this spool. */
+	private final DiskFileItemFactory factory;
+	/** The files kept for each session. */
+	private final Map<String, List<File>> filesBySession = new HashMap<String, List<File>>();
+	/** The number of files kept. */
+	private final AtomicInteger fileCount = new AtomicInteger();
+	/** The number of bytes kept. */
+	private final AtomicLong size = new AtomicLong();
+
+	/**
+	 * Creates a new RecordingSpool.
+	 *
+	 * @param deploymentID The ID of the deployment that owns the spool.
+	 */
+	public RecordingSpool(String deploymentID)
+	{
+		String root = System.getProperty(DIRECTORY_PROPERTY);
+		if (root == null || root.trim().length() == 0)
+			root = new File(System.getProperty("java.io.tmpdir"), "vtp-spool") //$NON-NLS-1$ //$NON-NLS-2$
+					.getPath();
+		StringBuilder name = new StringBuilder(deploymentID == null ? "default" //$NON-NLS-1$
+				: deploymentID);
+		for (int i = 0; i < name.length(); ++i)
+		{
+			char c = name.charAt(i);
+			if (!Character.isLetterOrDigit(c) && c != '.' && c != '-')
+				name.setCharAt(i, '_');
+		}
+		this.directory = new File(root.trim(), name.toString());
+		int threshold = DEFAULT_THRESHOLD;
+		String value = System.getProperty(THRESHOLD_PROPERTY);
+		if (value != null)
+		{
+			try
+			{
+				threshold = Integer.parseInt(value.trim());
+			}
+			catch (NumberFormatException e)
+			{
+			}
+		}
+		this.factory = new DiskFileItemFactory(threshold < 0 ? 0 : threshold,
+				directory);
+	}
+
+	/**
+	 * Returns the factory that parses multipart requests into this spool.
+	 *
+	 * @return The factory that parses multipart requests into this spool.
+	 * @throws IOException If the spool directory cannot be created.
+	 */
+	public DiskFileItemFactory getFactory() throws IOException
+	{
+		if (!directory.isDirectory() && !directory.mkdirs()
+				&& !directory.isDirectory())
+			throw new IOException("Unable to create spool directory: " //$NON-NLS-1$
+					+ directory);
+		return factory;
+	}
+
+	/**
+	 * Keeps an uploaded file until the specified session is released.
+	 *
+	 * @param sessionID The ID of the session that owns the file.
+	 * @param item The uploaded file.
+	 * @return The file the upload was written to.
+	 * @throws Exception If the file cannot be written.
+	 */
+	public File keep(String sessionID, FileItem item) throws Exception
+	{
+		File file = new File(getFactory().getRepository(), Guid.createGUID()
+				+ ".tmp"); //$NON-NLS-1$
+		try
+		{
+			item.write(file);
+		}
+		finally
+		{
+			item.delete();
+		}
+		synchronized (filesBySession)
+		{
+			List<File> files = filesBySession.get(sessionID);
+			if (files == null)
+				filesBySession.put(sessionID, files = new LinkedList<File>());
+			files.add(file);
+		}
+		fileCount.incrementAndGet();
+		size.addAndGet(file.length());
+		return file;
+	}
+
+	/**
+	 * Deletes the files kept for the specified session.
+	 *
+	 * @param sessionID The ID of the session to release.
+	 */
+	public void release(String sessionID)
+	{
+		List<File> files;
+		synchronized (filesBySession)
+		{
+			files = filesBySession.remove(sessionID);
+		}
+		if (files != null)
+			delete(files);
+	}
+
+	/**
+	 * Deletes the files kept for every session.
+	 */
+	public void releaseAll()
+	{
+		List<File> files = new LinkedList<File>();
+		synchronized (filesBySession)
+		{
+			for (List<File> list : filesBySession.values())
+				files.addAll(list);
+			filesBySession.clear();
+		}
+		delete(files);
+	}
+
+	/**
+	 * Returns the number of files kept.
+	 *
+	 * @return The number of files kept.
+	 */
+	public int getFileCount()
+	{
+		return fileCount.get();
+	}
+
+	/**
+	 * Returns the number of bytes kept.
+	 *
+	 * @return The number of bytes kept.
+	 */
+	public long getSize()
+	{
+		return size.get();
+	}
+
+	/**
+	 * Deletes files that were kept for sessions.
+	 *
+	 * @param files The files to delete.
+	 */
+	private void delete(List<File> files)
+	{
+		for (File file : files)
+		{
+			long length = file.length();
+			if (file.delete() || !file.exists())
+			{
+				fileCount.decrementAndGet();
+				size.addAndGet(-length);
+			}
+		}
+	}
+}
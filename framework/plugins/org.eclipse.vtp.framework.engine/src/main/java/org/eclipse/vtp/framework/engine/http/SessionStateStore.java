@@ -0,0 +1,503 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.engine.http;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpSession;
+
+/**
+ * The connector state kept for a single HTTP session.
+ * <p>
+ * The small attributes the engine keeps for a call are held here in one
+ * session attribute: a root frame shared by every invocation depth and one
+ * frame per subdialog depth. Variable records are kept apart from them in
+ * {@link #RECORD_SEGMENTS} segments per depth, each bound to the HTTP session
+ * as its own attribute. A request only re-binds the attributes it modified, so
+ * replicating containers ship the segments holding changed records rather
+ * than every record of the call. Lookups are single map hits and enumerating
+ * a frame never touches attributes stored by anything else in the HTTP
+ * session.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+public final class SessionStateStore implements Serializable
+{
+	private static final long serialVersionUID = 1L;
+	/** The name of the HTTP session attribute the store is kept in. */
+	private static final String ATTRIBUTE_NAME = "connector.state"; //$NON-NLS-1$
+	/** The prefix of the names of variable records. */
+	private static final String RECORD_PREFIX = "variable.records."; //$NON-NLS-1$
+	/** The number of record segments per depth. */
+	private static final int RECORD_SEGMENTS = 16;
+	/** The attribute names of the record segments of the shallower depths. */
+	private static final String[][] SEGMENT_NAMES = new String[8][RECORD_SEGMENTS];
+	/** An empty array of attribute names. */
+	private static final String[] NO_NAMES = {};
+
+	static
+	{
+		for (int i = 0; i < SEGMENT_NAMES.length; ++i)
+			for (int j = 0; j < RECORD_SEGMENTS; ++j)
+				SEGMENT_NAMES[i][j] = ATTRIBUTE_NAME + "." + i + "." + j; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	/**
+	 * Returns the store bound to the supplied HTTP session, creating it if
+	 * necessary.
+	 *
+	 * @param httpSession The HTTP session.
+	 * @return The store bound to the supplied HTTP session.
+	 */
+	public static SessionStateStore get(HttpSession httpSession)
+	{
+		SessionStateStore store = (SessionStateStore)httpSession
+				.getAttribute(ATTRIBUTE_NAME);
+		if (store != null)
+			return store;
+		synchronized (httpSession)
+		{
+			store = (SessionStateStore)httpSession.getAttribute(ATTRIBUTE_NAME);
+			if (store == null)
+			{
+				store = new SessionStateStore();
+				httpSession.setAttribute(ATTRIBUTE_NAME, store);
+			}
+		}
+		store.bind(httpSession);
+		return store;
+	}
+
+	/**
+	 * Re-binds the parts of the store that were modified to the supplied HTTP
+	 * session, so that containers that replicate sessions pick up the changes.
+	 *
+	 * @param httpSession The HTTP session.
+	 */
+	public static void flush(HttpSession httpSession)
+	{
+		try
+		{
+			SessionStateStore store = (SessionStateStore)httpSession
+					.getAttribute(ATTRIBUTE_NAME);
+			if (store == null)
+				return;
+			store.flushSegments(httpSession);
+			if (store.clean())
+				httpSession.setAttribute(ATTRIBUTE_NAME, store);
+		}
+		catch (IllegalStateException e)
+		{
+			// The session was invalidated while processing the request.
+		}
+	}
+
+	/** The attributes shared by all depths. */
+	private final Map<String, Object> root = new HashMap<String, Object>();
+	/** The attributes of each depth. */
+	private final List<Map<String, Object>> frames = new ArrayList<Map<String, Object>>();
+	/** The current invocation depth. */
+	private int depth = 0;
+	/** True if this store was modified since it was last flushed. */
+	private transient boolean dirty = false;
+	/** The HTTP session the record segments are bound to. */
+	private transient HttpSession httpSession = null;
+	/** The record segments used since the last flush by attribute name. */
+	private transient Map<String, RecordSegment> segments = null;
+
+	/**
+	 * Creates a new SessionStateStore.
+	 */
+	private SessionStateStore()
+	{
+	}
+
+	/**
+	 * Returns the current invocation depth.
+	 *
+	 * @return The current invocation depth.
+	 */
+	public synchronized int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * Sets the current invocation depth.
+	 *
+	 * @param depth The current invocation depth.
+	 */
+	public synchronized void setDepth(int depth)
+	{
+		this.depth = depth;
+		dirty = true;
+	}
+
+	/**
+	 * Returns the names of the attributes at the specified depth.
+	 *
+	 * @param depth The depth to enumerate.
+	 * @return The names of the attributes at the specified depth.
+	 */
+	public synchronized String[] getAttributeNames(int depth)
+	{
+		Map<String, Object> frame = frame(depth, false);
+		List<String> names = null;
+		for (int i = 0; i < RECORD_SEGMENTS; ++i)
+		{
+			RecordSegment segment = segment(depth, i, false);
+			if (segment == null || segment.records.isEmpty())
+				continue;
+			if (names == null)
+				names = new ArrayList<String>(frame == null ? 0 : frame.size());
+			names.addAll(segment.records.keySet());
+		}
+		if (names == null)
+			return frame == null ? NO_NAMES : frame.keySet().toArray(
+					new String[frame.size()]);
+		if (frame != null)
+			names.addAll(frame.keySet());
+		return names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * Returns the value of an attribute at the specified depth.
+	 *
+	 * @param depth The depth to search.
+	 * @param name The name of the attribute.
+	 * @return The value of the attribute or <code>null</code>.
+	 */
+	public synchronized Object getAttribute(int depth, String name)
+	{
+		if (name.startsWith(RECORD_PREFIX))
+		{
+			RecordSegment segment = segment(depth, segmentOf(name), false);
+			return segment == null ? null : segment.records.get(name);
+		}
+		Map<String, Object> frame = frame(depth, false);
+		return frame == null ? null : frame.get(name);
+	}
+
+	/**
+	 * Returns the value of an attribute at the deepest depth at or above
+	 * <code>depth</code> that defines it.
+	 *
+	 * @param depth The depth to start searching at.
+	 * @param name The name of the attribute.
+	 * @return The value of the attribute or <code>null</code>.
+	 */
+	public synchronized Object findAttribute(int depth, String name)
+	{
+		if (name.startsWith(RECORD_PREFIX))
+		{
+			int index = segmentOf(name);
+			for (int i = depth; i >= 0; --i)
+			{
+				RecordSegment segment = segment(i, index, false);
+				if (segment == null)
+					continue;
+				Object value = segment.records.get(name);
+				if (value != null)
+					return value;
+			}
+			return null;
+		}
+		for (int i = Math.min(depth, frames.size() - 1); i >= 0; --i)
+		{
+			Map<String, Object> frame = frames.get(i);
+			if (frame == null)
+				continue;
+			Object value = frame.get(name);
+			if (value != null)
+				return value;
+		}
+		return null;
+	}
+
+	/**
+	 * Sets the value of an attribute at the specified depth. A
+	 * <code>null</code> value removes the attribute.
+	 *
+	 * @param depth The depth to modify.
+	 * @param name The name of the attribute.
+	 * @param value The value of the attribute.
+	 */
+	public synchronized void setAttribute(int depth, String name, Object value)
+	{
+		if (value == null)
+			removeAttribute(depth, name);
+		else if (name.startsWith(RECORD_PREFIX))
+		{
+			RecordSegment segment = segment(depth, segmentOf(name), true);
+			if (segment != null)
+			{
+				segment.records.put(name, value);
+				segment.dirty = true;
+			}
+		}
+		else
+		{
+			frame(depth, true).put(name, value);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Removes an attribute at the specified depth.
+	 *
+	 * @param depth The depth to modify.
+	 * @param name The name of the attribute.
+	 */
+	public synchronized void removeAttribute(int depth, String name)
+	{
+		if (name.startsWith(RECORD_PREFIX))
+		{
+			RecordSegment segment = segment(depth, segmentOf(name), false);
+			if (segment != null && segment.records.remove(name) != null)
+				segment.dirty = true;
+			return;
+		}
+		Map<String, Object> frame = frame(depth, false);
+		if (frame != null && frame.remove(name) != null)
+			dirty = true;
+	}
+
+	/**
+	 * Removes all the attributes at the specified depth.
+	 *
+	 * @param depth The depth to clear.
+	 */
+	public synchronized void clearAttributes(int depth)
+	{
+		Map<String, Object> frame = frame(depth, false);
+		if (frame != null && !frame.isEmpty())
+		{
+			frame.clear();
+			dirty = true;
+		}
+		for (int i = 0; i < RECORD_SEGMENTS; ++i)
+		{
+			RecordSegment segment = segment(depth, i, false);
+			if (segment != null && !segment.records.isEmpty())
+			{
+				segment.records.clear();
+				segment.dirty = true;
+			}
+		}
+	}
+
+	/**
+	 * Returns the names of the root attributes.
+	 *
+	 * @return The names of the root attributes.
+	 */
+	public synchronized String[] getRootAttributeNames()
+	{
+		return root.keySet().toArray(new String[root.size()]);
+	}
+
+	/**
+	 * Returns the value of a root attribute.
+	 *
+	 * @param name The name of the attribute.
+	 * @return The value of the attribute or <code>null</code>.
+	 */
+	public synchronized Object getRootAttribute(String name)
+	{
+		return root.get(name);
+	}
+
+	/**
+	 * Sets the value of a root attribute. A <code>null</code> value removes the
+	 * attribute.
+	 *
+	 * @param name The name of the attribute.
+	 * @param value The value of the attribute.
+	 */
+	public synchronized void setRootAttribute(String name, Object value)
+	{
+		if (value == null)
+			removeRootAttribute(name);
+		else
+		{
+			root.put(name, value);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Removes a root attribute.
+	 *
+	 * @param name The name of the attribute.
+	 */
+	public synchronized void removeRootAttribute(String name)
+	{
+		if (root.remove(name) != null)
+			dirty = true;
+	}
+
+	/**
+	 * Binds this store to the HTTP session that holds its record segments.
+	 *
+	 * @param httpSession The HTTP session.
+	 */
+	private synchronized void bind(HttpSession httpSession)
+	{
+		this.httpSession = httpSession;
+	}
+
+	/**
+	 * Re-binds the record segments that were modified to the supplied HTTP
+	 * session and forgets the segments used by the request.
+	 *
+	 * @param httpSession The HTTP session.
+	 */
+	private synchronized void flushSegments(HttpSession httpSession)
+	{
+		if (segments == null)
+			return;
+		for (Iterator<Map.Entry<String, RecordSegment>> i = segments.entrySet()
+				.iterator(); i.hasNext();)
+		{
+			Map.Entry<String, RecordSegment> entry = i.next();
+			RecordSegment segment = entry.getValue();
+			if (!segment.dirty)
+				continue;
+			segment.dirty = false;
+			if (segment.records.isEmpty())
+				httpSession.removeAttribute(entry.getKey());
+			else
+				httpSession.setAttribute(entry.getKey(), segment);
+		}
+		segments = null;
+	}
+
+	/**
+	 * Clears the modified flag.
+	 *
+	 * @return True if this store was modified since it was last flushed.
+	 */
+	private synchronized boolean clean()
+	{
+		boolean result = dirty;
+		dirty = false;
+		return result;
+	}
+
+	/**
+	 * Returns the index of the record segment that holds the named record.
+	 *
+	 * @param name The name of the record.
+	 * @return The index of the record segment that holds the named record.
+	 */
+	private static int segmentOf(String name)
+	{
+		return (name.hashCode() & 0x7fffffff) % RECORD_SEGMENTS;
+	}
+
+	/**
+	 * Returns a record segment, loading it from the HTTP session the first time
+	 * it is used by a request.
+	 *
+	 * @param depth The depth of the segment.
+	 * @param index The index of the segment.
+	 * @param create True to create the segment if it does not exist.
+	 * @return The record segment or <code>null</code>.
+	 */
+	private RecordSegment segment(int depth, int index, boolean create)
+	{
+		if (depth < 0)
+			return null;
+		String name = depth < SEGMENT_NAMES.length ? SEGMENT_NAMES[depth][index]
+				: ATTRIBUTE_NAME + "." + depth + "." + index; //$NON-NLS-1$ //$NON-NLS-2$
+		RecordSegment segment = segments == null ? null : segments.get(name);
+		if (segment != null)
+			return segment;
+		if (httpSession != null)
+		{
+			try
+			{
+				segment = (RecordSegment)httpSession.getAttribute(name);
+			}
+			catch (IllegalStateException e)
+			{
+				// The session was invalidated while processing the request.
+				return null;
+			}
+		}
+		if (segment == null)
+		{
+			if (!create)
+				return null;
+			segment = new RecordSegment();
+		}
+		if (segments == null)
+			segments = new HashMap<String, RecordSegment>();
+		segments.put(name, segment);
+		return segment;
+	}
+
+	/**
+	 * Returns the frame for the specified depth.
+	 *
+	 * @param depth The depth of the frame.
+	 * @param create True to create the frame if it does not exist.
+	 * @return The frame for the specified depth or <code>null</code>.
+	 */
+	private Map<String, Object> frame(int depth, boolean create)
+	{
+		if (depth < 0)
+			return null;
+		if (depth < frames.size())
+		{
+			Map<String, Object> frame = frames.get(depth);
+			if (frame == null && create)
+				frames.set(depth, frame = new HashMap<String, Object>());
+			return frame;
+		}
+		if (!create)
+			return null;
+		while (frames.size() < depth)
+			frames.add(null);
+		Map<String, Object> frame = new HashMap<String, Object>();
+		frames.add(frame);
+		return frame;
+	}
+
+	/**
+	 * The variable records of one segment of a depth.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	private static final class RecordSegment implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		/** The records by name. */
+		final Map<String, Object> records = new HashMap<String, Object>();
+		/** True if the segment was modified since it was last flushed. */
+		transient boolean dirty = false;
+
+		/**
+		 * Creates a new RecordSegment.
+		 */
+		RecordSegment()
+		{
+		}
+	}
+}
@@ -18,7 +18,6 @@ import java.io.StringWriter;
 import java.net.URL;
 import java.text.DateFormat;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.Dictionary;
 import java.util.Enumeration;
 import java.util.Hashtable;
@@ -55,8 +54,17 @@ import org.w3c.dom.Document;
 public class Activator extends AbstractReporter implements BundleActivator,
 		LogListener, ServiceTrackerCustomizer
 {
+	/** The line separator of the platform. */
+	private static final String LINE_SEPARATOR = System.getProperty(
+			"line.separator", "\n"); //$NON-NLS-1$ //$NON-NLS-2$
 	private static final String[] REPORT_LEVELS = { "ERROR", "WARN", "INFO",
 			"DEBUG" };
+	/** The system property that sets the capacity of the report queue. */
+	public static final String QUEUE_SIZE_PROPERTY = "org.eclipse.vtp.reporting.queue.size"; //$NON-NLS-1$
+	/** The system property that sets the overflow policy of the report queue. */
+	public static final String OVERFLOW_PROPERTY = "org.eclipse.vtp.reporting.overflow"; //$NON-NLS-1$
+	/** The system property that sets the sampling rate of the report queue. */
+	public static final String SAMPLE_RATE_PROPERTY = "org.eclipse.vtp.reporting.sample"; //$NON-NLS-1$
 
 	/** The service tracker that tracks the log service. */
 	private BundleContext context = null;
@@ -71,6 +79,20 @@ public class Activator extends AbstractReporter implements BundleActivator,
 	/** The service tracker that tracks the reporter services. */
 	private ServiceTracker reporters = null;
 	private int activeLogLevel = 3;
+	/** The queue reports are delivered through or <code>null</code>. */
+	private volatile ReportQueue queue = null;
+	/** The buffer report lines are written to before being printed. */
+	private final StringBuilder output = new StringBuilder(8192);
+	/** The calendar used to format report times. */
+	private final Calendar calendar = Calendar.getInstance();
+	/** The format of the "time" report property. */
+	private final DateFormat timeFormat = DateFormat.getDateTimeInstance();
+	/** The second the cached time strings were formatted for. */
+	private long cachedSecond = -1;
+	/** The cached line prefix time for the current second. */
+	private String cachedPrefixTime = null;
+	/** The cached "time" property for the current second. */
+	private String cachedTime = null;
 
 	/**
 	 * Creates a new Activator.
@@ -80,117 +102,124 @@ public class Activator extends AbstractReporter implements BundleActivator,
 	}
 
 	/**
-	 * Builds a report .
+	 * Returns the integer value of a system property.
+	 * 
+	 * @param name The name of the property.
+	 * @param defaultValue The value to use if the property is not a number.
+	 * @return The integer value of the property.
+	 */
+	private static int getIntProperty(String name, int defaultValue)
+	{
+		String value = System.getProperty(name);
+		if (value == null)
+			return defaultValue;
+		try
+		{
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Updates the cached time strings for the specified time.
+	 * 
+	 * @param time The time to format.
+	 */
+	private void updateTime(long time)
+	{
+		long second = time / 1000L;
+		if (second == cachedSecond)
+			return;
+		calendar.setTimeInMillis(time);
+		StringBuilder buffer = new StringBuilder(19);
+		buffer.append(calendar.get(Calendar.YEAR));
+		buffer.append('/');
+		format(buffer, calendar.get(Calendar.MONTH) + 1, 2);
+		buffer.append('/');
+		format(buffer, calendar.get(Calendar.DATE), 2);
+		buffer.append('|');
+		format(buffer, calendar.get(Calendar.HOUR_OF_DAY), 2);
+		buffer.append(':');
+		format(buffer, calendar.get(Calendar.MINUTE), 2);
+		buffer.append(':');
+		format(buffer, calendar.get(Calendar.SECOND), 2);
+		cachedPrefixTime = buffer.toString();
+		cachedTime = timeFormat.format(calendar.getTime());
+		cachedSecond = second;
+	}
+
+	/**
+	 * Appends a report to the output buffer.
 	 * 
 	 * @param severity
 	 * @param categories
 	 * @param message
 	 * @param properties
-	 * @return
+	 * @param time
 	 */
-	private String buildReport(int severity, String[] categories, String message,
-			Dictionary properties)
+	private void buildReport(int severity, String[] categories, String message,
+			Dictionary properties, long time)
 	{
 		// Create the line prefix.
-		StringBuffer buffer = new StringBuffer(REPORT_LEVELS[Math.max(0, Math.min(
+		int start = output.length();
+		output.append(REPORT_LEVELS[Math.max(0, Math.min(
 				REPORT_LEVELS.length - 1, severity - 1))]);
-		Calendar calendar = Calendar.getInstance();
-		calendar.setTime(new Date());
-		buffer.append('|').append(calendar.get(Calendar.YEAR));
-		buffer.append('/').append(format(calendar.get(Calendar.MONTH) + 1, 2));
-		buffer.append('/').append(format(calendar.get(Calendar.DATE), 2));
-		buffer.append('|').append(format(calendar.get(Calendar.HOUR_OF_DAY), 2));
-		buffer.append(':').append(format(calendar.get(Calendar.MINUTE), 2));
-		buffer.append(':').append(format(calendar.get(Calendar.SECOND), 2));
+		updateTime(time);
+		output.append('|').append(cachedPrefixTime);
 		Object id = properties.remove("process.id"); //$NON-NLS-1$
 		if (id != null)
-			buffer.append('|').append("p=").append(id); //$NON-NLS-1$
+			output.append('|').append("p=").append(id); //$NON-NLS-1$
 		id = properties.remove("session.id"); //$NON-NLS-1$
 		if (id != null)
-			buffer.append('|').append("s=").append(id); //$NON-NLS-1$
+			output.append('|').append("s=").append(id); //$NON-NLS-1$
 		id = properties.remove("execution.id"); //$NON-NLS-1$
 		if (id != null)
-			buffer.append('|').append("e=").append(format(id.toString(), 4)); //$NON-NLS-1$
+			format(output.append('|').append("e="), id.toString(), 4); //$NON-NLS-1$
 		id = properties.remove("action.id"); //$NON-NLS-1$
 		// if (id != null)
 		// buffer.append('|').append("a=").append(id); //$NON-NLS-1$
-		buffer.append('>');
-		String prefix = buffer.toString();
+		output.append('>');
+		int prefixEnd = output.length();
 		// Write the report.
-		StringWriter stringWriter = new StringWriter();
-		PrintWriter printWriter = new PrintWriter(stringWriter);
-		printWriter.print(prefix);
-		printWriter.print(' ');
-		printWriter.print(message);
-		// Append a line listing the categories, if any.
-//		if (categories != null)
-//		{
-//			printWriter.println();
-//			printWriter.print(prefix);
-//			printWriter.print("\tcategories:"); //$NON-NLS-1$
-//			for (int i = 0; i < categories.length; ++i)
-//			{
-//				if (categories[i] != null)
-//				{
-//					printWriter.print(' ');
-//					printWriter.print(categories[i]);
-//				}
-//			}
-//		}
-		if (properties != null)
+		output.append(' ');
+		output.append(message);
+		Object t = properties.get("cause"); //$NON-NLS-1$
+		if (t instanceof Throwable)
 		{
-			Object t = properties.get("cause"); //$NON-NLS-1$
-			if (t instanceof Throwable)
-				properties.remove("cause"); //$NON-NLS-1$
-			else
-				t = null;
-//			if (!properties.isEmpty())
-//			{
-//				printWriter.println();
-//				printWriter.print(prefix);
-//				printWriter.print("\tproperties:"); //$NON-NLS-1$
-//				for (Enumeration e = properties.keys(); e.hasMoreElements();)
-//				{
-//					Object key = e.nextElement();
-//					Object value = properties.get(key);
-//					printWriter.println();
-//					printWriter.print(prefix);
-//					printWriter.print("\t\t"); //$NON-NLS-1$
-//					printWriter.print(key);
-//					printWriter.print('=');
-//					printWriter.print(value);
-//				}
-//			}
-			if (t != null)
+			properties.remove("cause"); //$NON-NLS-1$
+			String prefix = output.substring(start, prefixEnd);
+			StringWriter causeStringWriter = new StringWriter();
+			PrintWriter causePrintWriter = new PrintWriter(causeStringWriter);
+			((Throwable)t).printStackTrace(causePrintWriter);
+			causePrintWriter.flush();
+			for (StringTokenizer st = new StringTokenizer(causeStringWriter
+					.toString(), "\r\n"); st.hasMoreTokens();) //$NON-NLS-1$
 			{
-				StringWriter causeStringWriter = new StringWriter();
-				PrintWriter causePrintWriter = new PrintWriter(causeStringWriter);
-				((Throwable)t).printStackTrace(causePrintWriter);
-				causePrintWriter.flush();
-				for (StringTokenizer st = new StringTokenizer(causeStringWriter
-						.toString(), "\r\n"); st.hasMoreTokens();) //$NON-NLS-1$
-				{
-					printWriter.println();
-					printWriter.print(prefix);
-					printWriter.print('\t');
-					printWriter.print(st.nextToken());
-				}
+				output.append(LINE_SEPARATOR);
+				output.append(prefix);
+				output.append('\t');
+				output.append(st.nextToken());
 			}
 		}
-		return stringWriter.toString();
+		output.append(LINE_SEPARATOR);
 	}
 
-	private String format(int number, int minLength)
+	private void format(StringBuilder buffer, int number, int minLength)
 	{
-		return format(String.valueOf(number), minLength);
+		if (number >= 0 && number < 10 && minLength == 2)
+			buffer.append('0').append((char)('0' + number));
+		else
+			format(buffer, String.valueOf(number), minLength);
 	}
 
-	private String format(String number, int minLength)
+	private void format(StringBuilder buffer, String number, int minLength)
 	{
-		StringBuffer buffer = new StringBuffer(minLength);
 		for (int i = number.length(); i < minLength; ++i)
-			buffer.append(0);
-		return buffer.append(number).toString();
+			buffer.append('0');
+		buffer.append(number);
 	}
 
 	/*
@@ -217,25 +246,59 @@ public class Activator extends AbstractReporter implements BundleActivator,
 	protected void doReport(int severity, String[] categories, String message,
 			Dictionary properties)
 	{
-		Object[] reporters = this.reporters.getServices();
 		if (properties == null)
 			properties = new Hashtable();
-		if (properties.get("scope") == null) //$NON-NLS-1$
-			properties.put("scope", "host"); //$NON-NLS-1$ //$NON-NLS-2$
-		Object type = properties.get("type"); //$NON-NLS-1$
-		if (type == null || "report".equalsIgnoreCase(type.toString())) { //$NON-NLS-1$
-			properties.put("type", type = "report"); //$NON-NLS-1$ //$NON-NLS-2$
-			if (properties.get("time") == null) //$NON-NLS-1$
-				properties.put("time", //$NON-NLS-1$
-						DateFormat.getDateTimeInstance().format(new Date()));
-			if (reporters != null)
-				for (int i = 0; i < reporters.length; ++i)
-					((IReporter)reporters[i]).report(severity, categories, message,
-							properties);
+		else if (properties instanceof Hashtable)
+			properties = (Dictionary)((Hashtable)properties).clone();
+		ReportQueue.Report report = new ReportQueue.Report(severity, categories,
+				message, properties, System.currentTimeMillis());
+		ReportQueue queue = this.queue;
+		if (queue == null || !queue.offer(report))
+			deliver(new ReportQueue.Report[] { report }, 1);
+	}
+
+	/**
+	 * Publishes a batch of reports to the reporter services and the console.
+	 * 
+	 * @param reports The reports to publish.
+	 * @param count The number of reports in the batch.
+	 */
+	private synchronized void deliver(ReportQueue.Report[] reports, int count)
+	{
+		Object[] reporters = this.reporters == null ? null : this.reporters
+				.getServices();
+		for (int r = 0; r < count; ++r)
+		{
+			ReportQueue.Report report = reports[r];
+			Dictionary properties = report.properties;
+			if (properties.get("scope") == null) //$NON-NLS-1$
+				properties.put("scope", "host"); //$NON-NLS-1$ //$NON-NLS-2$
+			Object type = properties.get("type"); //$NON-NLS-1$
+			if (type == null || "report".equalsIgnoreCase(type.toString())) { //$NON-NLS-1$
+				properties.put("type", type = "report"); //$NON-NLS-1$ //$NON-NLS-2$
+				if (properties.get("time") == null) //$NON-NLS-1$
+				{
+					updateTime(report.time);
+					properties.put("time", cachedTime); //$NON-NLS-1$
+				}
+				if (reporters != null)
+					for (int i = 0; i < reporters.length; ++i)
+						((IReporter)reporters[i]).report(report.severity,
+								report.categories, report.message, properties);
+			}
+			else if (!"log".equalsIgnoreCase(type.toString())) //$NON-NLS-1$
+				continue;
+			buildReport(report.severity, report.categories, report.message,
+					properties, report.time);
+		}
+		if (output.length() > 0)
+		{
+			System.out.print(output);
+			System.out.flush();
+			output.setLength(0);
+			if (output.capacity() > 65536)
+				output.trimToSize();
 		}
-		else if (!"log".equalsIgnoreCase(type.toString())) //$NON-NLS-1$
-			return;
-		System.out.println(buildReport(severity, categories, message, properties));
 	}
 
 	/*
@@ -284,6 +347,20 @@ public class Activator extends AbstractReporter implements BundleActivator,
 		logReader.open();
 		reporters = new ServiceTracker(context, IReporter.class.getName(), null);
 		reporters.open();
+		int queueSize = getIntProperty(QUEUE_SIZE_PROPERTY, 8192);
+		if (queueSize > 0)
+		{
+			queue = new ReportQueue(queueSize, ReportQueue.parseOverflow(System
+					.getProperty(OVERFLOW_PROPERTY)), getIntProperty(
+					SAMPLE_RATE_PROPERTY, 10))
+			{
+				protected void deliver(Report[] reports, int count)
+				{
+					Activator.this.deliver(reports, count);
+				}
+			};
+			queue.start();
+		}
 		log = new LogTracker(context);
 		log.open();
 		URL staticConfig = context.getBundle().getResource("META-INF/services/" //$NON-NLS-1$
@@ -349,6 +426,12 @@ public class Activator extends AbstractReporter implements BundleActivator,
 		Dictionary report = new Hashtable();
 		report.put("event", "host.stopped");
 		report(IReporter.SEVERITY_INFO, "Host Stopped", report);
+		ReportQueue queue = this.queue;
+		if (queue != null)
+		{
+			this.queue = null;
+			queue.close(5000);
+		}
 		try
 		{
 			if (processEngineManager != null)
@@ -456,6 +539,20 @@ public class Activator extends AbstractReporter implements BundleActivator,
 			{
 				ci.println("Usage: vtplogging getLevel");
 				ci.println("Usage: vtplogging setLevel level(ERROR | WARN | INFO | DEBUG)");
+				ci.println("Usage: vtplogging stats");
+				return;
+			}
+			if("stats".equalsIgnoreCase(command))
+			{
+				ReportQueue queue = Activator.this.queue;
+				if(queue == null)
+				{
+					ci.println("Reports are delivered synchronously");
+					return;
+				}
+				ci.println("Enqueued: " + queue.getEnqueued());
+				ci.println("Dropped: " + queue.getDropped());
+				ci.println("Pending: " + queue.getPending() + "/" + queue.getCapacity());
 				return;
 			}
 			if("getLevel".equalsIgnoreCase(command))
@@ -0,0 +1,384 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.engine.osgi;
+
+import java.util.Dictionary;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.vtp.framework.core.IReporter;
+
+/**
+ * A bounded, lock-free queue of reports drained in batches by a background
+ * thread.
+ * <p>
+ * Any number of threads may offer reports; a single daemon thread removes
+ * them in batches and passes each batch to {@link #deliver(Report[], int)}.
+ * What happens when the queue is full is decided by the overflow policy:
+ * </p>
+ * <ul>
+ * <li><code>block</code>: the reporting thread waits for space (default).</li>
+ * <li><code>drop</code>: the report is discarded.</li>
+ * <li><code>sample</code>: once the queue is three quarters full only errors,
+ * warnings, and one in every <code>sampleRate</code> other reports are
+ * accepted; reports that still do not fit are discarded.</li>
+ * </ul>
+ *
+ * @author Lonnie Pryor
+ */
+abstract class ReportQueue implements Runnable
+{
+	/** The overflow policy that waits for space. */
+	static final int OVERFLOW_BLOCK = 0;
+	/** The overflow policy that discards reports. */
+	static final int OVERFLOW_DROP = 1;
+	/** The overflow policy that samples low severity reports. */
+	static final int OVERFLOW_SAMPLE = 2;
+	/** The maximum number of reports delivered at once. */
+	private static final int BATCH_SIZE = 256;
+	/** The nanoseconds the consumer sleeps when the queue is empty. */
+	private static final long IDLE_NANOS = 100L * 1000L * 1000L;
+	/** The nanoseconds a blocked producer waits before retrying. */
+	private static final long BLOCK_NANOS = 100L * 1000L;
+
+	/**
+	 * Returns the overflow policy with the specified name.
+	 *
+	 * @param name The name of the policy.
+	 * @return The overflow policy with the specified name, {@link #OVERFLOW_BLOCK}
+	 *         if the name is not recognized.
+	 */
+	static int parseOverflow(String name)
+	{
+		if ("drop".equalsIgnoreCase(name)) //$NON-NLS-1$
+			return OVERFLOW_DROP;
+		if ("sample".equalsIgnoreCase(name)) //$NON-NLS-1$
+			return OVERFLOW_SAMPLE;
+		return OVERFLOW_BLOCK;
+	}
+
+	/** The mask that maps positions to slots. */
+	private final int mask;
+	/** The sequence numbers that coordinate access to each slot. */
+	private final AtomicLongArray sequences;
+	/** The reports waiting in each slot. */
+	private final AtomicReferenceArray<Report> slots;
+	/** The position the next report is offered at. */
+	private final AtomicLong tail = new AtomicLong();
+	/** The position the next report is removed from, written by the consumer. */
+	private volatile long head = 0;
+	/** The overflow policy. */
+	private final int overflow;
+	/** One in how many low severity reports are accepted while sampling. */
+	private final int sampleRate;
+	/** The number of reports accepted into the queue. */
+	private final AtomicLong enqueued = new AtomicLong();
+	/** The number of reports discarded because the queue was full. */
+	private final AtomicLong dropped = new AtomicLong();
+	/** The number of low severity reports seen while sampling. */
+	private final AtomicLong sampled = new AtomicLong();
+	/** The thread that delivers reports. */
+	private final Thread consumer;
+	/** True while the consumer is parked waiting for reports. */
+	private volatile boolean idle = false;
+	/** True once the queue has been closed. */
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates a new ReportQueue.
+	 *
+	 * @param capacity The minimum number of reports the queue holds.
+	 * @param overflow The overflow policy.
+	 * @param sampleRate One in how many low severity reports are accepted while
+	 *          sampling.
+	 */
+	ReportQueue(int capacity, int overflow, int sampleRate)
+	{
+		int size = 2;
+		while (size < capacity && size < (1 << 30))
+			size <<= 1;
+		this.mask = size - 1;
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; ++i)
+			sequences.set(i, i);
+		this.slots = new AtomicReferenceArray<Report>(size);
+		this.overflow = overflow;
+		this.sampleRate = sampleRate < 1 ? 1 : sampleRate;
+		this.consumer = new Thread(this, "VTP Reporting"); //$NON-NLS-1$
+		this.consumer.setDaemon(true);
+	}
+
+	/**
+	 * Starts delivering reports.
+	 */
+	void start()
+	{
+		consumer.start();
+	}
+
+	/**
+	 * Stops accepting reports and waits for the queued reports to be
+	 * delivered.
+	 *
+	 * @param timeout The milliseconds to wait for the queue to drain.
+	 */
+	void close(long timeout)
+	{
+		closed = true;
+		LockSupport.unpark(consumer);
+		try
+		{
+			consumer.join(timeout);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		drainRemaining();
+	}
+
+	/**
+	 * Offers a report to the queue.
+	 *
+	 * @param report The report to queue.
+	 * @return True if the report was queued or deliberately discarded, false if
+	 *         the caller must deliver the report itself.
+	 */
+	boolean offer(Report report)
+	{
+		if (closed || Thread.currentThread() == consumer || !consumer.isAlive())
+			return false;
+		if (overflow == OVERFLOW_SAMPLE
+				&& report.severity > IReporter.SEVERITY_WARN
+				&& tail.get() - head > (mask + 1) - ((mask + 1) >> 2)
+				&& sampled.incrementAndGet() % sampleRate != 0)
+		{
+			dropped.incrementAndGet();
+			return true;
+		}
+		while (!tryOffer(report))
+		{
+			if (overflow != OVERFLOW_BLOCK)
+			{
+				dropped.incrementAndGet();
+				return true;
+			}
+			if (closed || !consumer.isAlive())
+				return false;
+			LockSupport.unpark(consumer);
+			LockSupport.parkNanos(BLOCK_NANOS);
+		}
+		enqueued.incrementAndGet();
+		if (idle)
+			LockSupport.unpark(consumer);
+		// A report queued while the queue closes may be missed by the consumer.
+		if (closed)
+			drainRemaining();
+		return true;
+	}
+
+	/**
+	 * Returns the number of reports accepted into the queue.
+	 *
+	 * @return The number of reports accepted into the queue.
+	 */
+	long getEnqueued()
+	{
+		return enqueued.get();
+	}
+
+	/**
+	 * Returns the number of reports discarded because the queue was full.
+	 *
+	 * @return The number of reports discarded because the queue was full.
+	 */
+	long getDropped()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * Returns the number of reports waiting to be delivered.
+	 *
+	 * @return The number of reports waiting to be delivered.
+	 */
+	int getPending()
+	{
+		return (int)Math.max(0, tail.get() - head);
+	}
+
+	/**
+	 * Returns the number of reports the queue holds.
+	 *
+	 * @return The number of reports the queue holds.
+	 */
+	int getCapacity()
+	{
+		return mask + 1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see java.lang.Runnable#run()
+	 */
+	public void run()
+	{
+		Report[] batch = new Report[BATCH_SIZE];
+		while (true)
+		{
+			int count = 0;
+			for (Report report = poll(); report != null; report = poll())
+			{
+				batch[count++] = report;
+				if (count == batch.length)
+					break;
+			}
+			if (count > 0)
+			{
+				try
+				{
+					deliver(batch, count);
+				}
+				catch (Throwable t)
+				{
+					t.printStackTrace();
+				}
+				for (int i = 0; i < count; ++i)
+					batch[i] = null;
+				continue;
+			}
+			if (closed)
+				return;
+			idle = true;
+			if (tail.get() == head && !closed)
+				LockSupport.parkNanos(this, IDLE_NANOS);
+			idle = false;
+		}
+	}
+
+	/**
+	 * Delivers the reports left in the queue after the consumer has stopped.
+	 */
+	private synchronized void drainRemaining()
+	{
+		if (consumer.isAlive())
+			return;
+		Report[] batch = new Report[1];
+		for (Report report = poll(); report != null; report = poll())
+		{
+			batch[0] = report;
+			try
+			{
+				deliver(batch, 1);
+			}
+			catch (Throwable t)
+			{
+				t.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Delivers a batch of reports on the consumer thread, or on the thread
+	 * closing the queue for reports left behind by the consumer.
+	 *
+	 * @param reports The reports to deliver.
+	 * @param count The number of reports in the batch.
+	 */
+	protected abstract void deliver(Report[] reports, int count);
+
+	/**
+	 * Attempts to claim a slot for a report.
+	 *
+	 * @param report The report to queue.
+	 * @return True if the report was queued, false if the queue is full.
+	 */
+	private boolean tryOffer(Report report)
+	{
+		while (true)
+		{
+			long position = tail.get();
+			int index = (int)position & mask;
+			long difference = sequences.get(index) - position;
+			if (difference == 0)
+			{
+				if (tail.compareAndSet(position, position + 1))
+				{
+					slots.lazySet(index, report);
+					sequences.set(index, position + 1);
+					return true;
+				}
+			}
+			else if (difference < 0)
+				return false;
+		}
+	}
+
+	/**
+	 * Removes the next report from the queue.
+	 *
+	 * @return The next report or <code>null</code> if the queue is empty.
+	 */
+	private Report poll()
+	{
+		long position = head;
+		int index = (int)position & mask;
+		if (sequences.get(index) != position + 1)
+			return null;
+		Report report = slots.get(index);
+		slots.lazySet(index, null);
+		sequences.lazySet(index, position + mask + 1);
+		head = position + 1;
+		return report;
+	}
+
+	/**
+	 * A report waiting to be delivered.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	static final class Report
+	{
+		/** The severity of the report. */
+		final int severity;
+		/** The categories of the report or <code>null</code>. */
+		final String[] categories;
+		/** The message of the report or <code>null</code>. */
+		final String message;
+		/** The properties of the report. */
+		final Dictionary properties;
+		/** The time the report was made. */
+		final long time;
+
+		/**
+		 * Creates a new Report.
+		 *
+		 * @param severity The severity of the report.
+		 * @param categories The categories of the report or <code>null</code>.
+		 * @param message The message of the report or <code>null</code>.
+		 * @param properties The properties of the report.
+		 * @param time The time the report was made.
+		 */
+		Report(int severity, String[] categories, String message,
+				Dictionary properties, long time)
+		{
+			this.severity = severity;
+			this.categories = categories;
+			this.message = message;
+			this.properties = properties;
+			this.time = time;
+		}
+	}
+}
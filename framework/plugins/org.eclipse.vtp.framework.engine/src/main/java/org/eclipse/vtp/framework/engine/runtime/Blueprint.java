@@ -100,35 +100,11 @@ public class Blueprint
 	
 	public void solidifyConfigurations(IContext serviceRegistry)
 	{
-		Iterator i = processServiceIndex.values().iterator();
-		while(i.hasNext())
-		{
-			List<Configurable> list = (List<Configurable>)i.next();
-			for(Configurable configurable : list)
-				configurable.solidifyConfigurations(serviceRegistry);
-		}
-		i = sessionServiceIndex.values().iterator();
-		while(i.hasNext())
-		{
-			List<Configurable> list = (List<Configurable>)i.next();
-			for(Configurable configurable : list)
-				configurable.solidifyConfigurations(serviceRegistry);
-		}
-		i = executionServiceIndex.values().iterator();
-		while(i.hasNext())
-		{
-			List<Configurable> list = (List<Configurable>)i.next();
-			for(Configurable configurable : list)
-				configurable.solidifyConfigurations(serviceRegistry);
-		}
-		i = actionServiceIndex.values().iterator();
-		while(i.hasNext())
-		{
-			List<Configurable> list = (List<Configurable>)i.next();
-			for(Configurable configurable : list)
-				configurable.solidifyConfigurations(serviceRegistry);
-		}
-		i = executableIndex.values().iterator();
+		solidifyServices(processServiceIndex, serviceRegistry);
+		solidifyServices(sessionServiceIndex, serviceRegistry);
+		solidifyServices(executionServiceIndex, serviceRegistry);
+		solidifyServices(actionServiceIndex, serviceRegistry);
+		Iterator i = executableIndex.values().iterator();
 		while(i.hasNext())
 		{
 			Configurable configurable = (Configurable)i.next();
@@ -136,24 +112,40 @@ public class Blueprint
 		}
 	}
 
-	public Collection getProcessServices(String identifier)
+	/**
+	 * Solidifies the configurations of the services in an index.
+	 * 
+	 * @param serviceIndex The index of service arrays by identifier.
+	 * @param serviceRegistry The service registry to solidify with.
+	 */
+	private void solidifyServices(Map serviceIndex, IContext serviceRegistry)
+	{
+		for (Iterator i = serviceIndex.values().iterator(); i.hasNext();)
+		{
+			Service[] services = (Service[])i.next();
+			for (int j = 0; j < services.length; ++j)
+				services[j].solidifyConfigurations(serviceRegistry);
+		}
+	}
+
+	public Service[] getProcessServices(String identifier)
 	{
-		return (List)processServiceIndex.get(identifier);
+		return (Service[])processServiceIndex.get(identifier);
 	}
 
-	public Collection getSessionServices(String identifier)
+	public Service[] getSessionServices(String identifier)
 	{
-		return (List)sessionServiceIndex.get(identifier);
+		return (Service[])sessionServiceIndex.get(identifier);
 	}
 
-	public Collection getExecutionServices(String identifier)
+	public Service[] getExecutionServices(String identifier)
 	{
-		return (List)executionServiceIndex.get(identifier);
+		return (Service[])executionServiceIndex.get(identifier);
 	}
 
-	public Collection getActionServices(String identifier)
+	public Service[] getActionServices(String identifier)
 	{
-		return (List)actionServiceIndex.get(identifier);
+		return (Service[])actionServiceIndex.get(identifier);
 	}
 
 	public Executable getExecutable(String instanceID)
@@ -207,11 +199,11 @@ public class Blueprint
 	}
 
 	/**
-	 * Builds a map of service lists indexed by identifiers.
+	 * Builds a map of service arrays indexed by identifiers.
 	 * 
 	 * @param definition The process definition.
 	 * @param serviceDescriptors The environment service descriptors.
-	 * @return A Map of service lists indexed by identifiers.
+	 * @return A Map of service arrays indexed by identifiers.
 	 */
 	private Map buildServices(IProcessDefinition definition,
 			List serviceDescriptors)
@@ -231,6 +223,12 @@ public class Blueprint
 				list.addLast(service);
 			}
 		}
+		for (Iterator i = serviceIndex.entrySet().iterator(); i.hasNext();)
+		{
+			Map.Entry entry = (Map.Entry)i.next();
+			List list = (List)entry.getValue();
+			entry.setValue(list.toArray(new Service[list.size()]));
+		}
 		return Collections.unmodifiableMap(new HashMap(serviceIndex));
 	}
 
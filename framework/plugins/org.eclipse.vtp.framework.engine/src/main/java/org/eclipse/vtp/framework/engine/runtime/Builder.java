@@ -11,12 +11,6 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.runtime;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
-
 import org.eclipse.vtp.framework.core.IContext;
 
 /**
@@ -50,43 +44,19 @@ public abstract class Builder
 	{
 		if (instance != null)
 			throw new IllegalStateException();
-		Constructor[] constructors = getConstructors();
-		List arguments = new ArrayList();
-		for (int i = 0; instance == null && i < constructors.length; ++i)
-		{
-			Class[] parameterTypes = constructors[i].getParameterTypes();
-			if (parameterTypes.length == 0)
-				instance = RuntimeUtils.createInstance(constructors[i], new Object[0]);
-			else
-			{
-				for (int j = 0; j < parameterTypes.length; ++j)
-				{
-					Object value = resolveDependency(parameterTypes[j]);
-					if (value == null)
-					{
-						System.err.println("Could not locate: " + parameterTypes[j].getName() + " while resolving " + constructors[0].getDeclaringClass().getName());
-						arguments.clear();
-						break;
-					}
-					arguments.add(value);
-				}
-				if (arguments.isEmpty())
-					continue;
-				instance = RuntimeUtils.createInstance(constructors[i], arguments
-						.toArray());
-			}
-		}
+		InjectionPlan plan = getPlan();
+		instance = plan.create(this);
 		if (instance == null)
 		{
 			if(registry != null)
 			{
 				registry.error("Unable to create: "
-					+ constructors[0].getDeclaringClass().getName());
+					+ plan.getTypeName());
 			}
 			else
 			{
 				System.err.println("Unable to create: "
-					+ constructors[0].getDeclaringClass().getName());
+					+ plan.getTypeName());
 			}
 		}
 		return instance;
@@ -102,30 +72,29 @@ public abstract class Builder
 	{
 		if (instance == null)
 			throw new IllegalStateException();
-		Method[] mutators = getMutators();
-		for (int i = 0; i < mutators.length; ++i)
-		{
-			Object value = resolveDependency(mutators[i].getParameterTypes()[0]);
-			if (value != null
-					&& (!value.getClass().isArray() || ((Object[])value).length > 0))
-				RuntimeUtils.setProperty(instance, mutators[i], value);
-		}
+		getPlan().configure(instance, this);
 		instance = null;
 	}
 
 	/**
-	 * Returns the constructors for the component.
+	 * Returns the registry dependencies are resolved from, creating it if
+	 * necessary.
 	 * 
-	 * @return The constructors for the component.
+	 * @return The registry dependencies are resolved from.
 	 */
-	protected abstract Constructor[] getConstructors();
+	IContext getRegistry()
+	{
+		if (registry == null)
+			registry = createServiceRegistry();
+		return registry;
+	}
 
 	/**
-	 * Returns the mutator methods of the component.
+	 * Returns the plan used to create and configure the component.
 	 * 
-	 * @return The mutator methods of the component.
+	 * @return The plan used to create and configure the component.
 	 */
-	protected abstract Method[] getMutators();
+	abstract InjectionPlan getPlan();
 
 	/**
 	 * Creates a service registry for the current scope.
@@ -133,36 +102,4 @@ public abstract class Builder
 	 * @return A new service registry for the current scope.
 	 */
 	protected abstract IContext createServiceRegistry();
-
-	/**
-	 * Resolves a dependency on the specified type.
-	 * 
-	 * @param type The type to find.
-	 * @return The value of the resolved dependency or <code>null</code> if the
-	 *         dependency could not be resolved.
-	 */
-	private Object resolveDependency(Class type)
-	{
-		if (registry == null)
-			registry = createServiceRegistry();
-		Object value = null;
-		if (type.isArray())
-		{
-			Object[] values = registry.lookupAll(type.getComponentType()
-					.getName());
-			List results = new ArrayList(values.length);
-			for (int i = 0; i < values.length; ++i)
-				if (type.getComponentType().isInstance(values[i]))
-					results.add(values[i]);
-			value = results.toArray((Object[])Array.newInstance(type
-					.getComponentType(), results.size()));
-		}
-		else
-		{
-			value = registry.lookup(type.getName());
-			if (value != null && !type.isInstance(value))
-				value = null;
-		}
-		return value;
-	}
 }
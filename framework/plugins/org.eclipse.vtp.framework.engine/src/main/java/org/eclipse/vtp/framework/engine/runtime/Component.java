@@ -42,6 +42,8 @@ public abstract class Component
 	protected final Constructor[] constructors;
 	/** The mutator methods of the component. */
 	protected final Method[] mutators;
+	/** The plan used to create and configure instances of the component. */
+	final InjectionPlan plan;
 
 	/**
 	 * Creates a new Component.
@@ -84,5 +86,6 @@ public abstract class Component
 			mutators.add(methods[i]);
 		}
 		this.mutators = (Method[])mutators.toArray(new Method[mutators.size()]);
+		this.plan = new InjectionPlan(this.constructors, this.mutators);
 	}
 }
@@ -11,8 +11,6 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.runtime;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -164,14 +162,9 @@ public abstract class Configurable extends Component
 	{
 		return new Builder()
 		{
-			protected Constructor[] getConstructors()
+			InjectionPlan getPlan()
 			{
-				return constructors;
-			}
-
-			protected Method[] getMutators()
-			{
-				return mutators;
+				return plan;
 			}
 
 			protected IContext createServiceRegistry()
@@ -11,8 +11,6 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.runtime;
 
-import java.lang.reflect.Constructor;
-import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -92,14 +90,9 @@ public class Configuration extends Component
 			throw new NullPointerException("serviceRegistry"); //$NON-NLS-1$
 		Builder builder = new Builder()
 		{
-			protected Constructor[] getConstructors()
+			InjectionPlan getPlan()
 			{
-				return constructors;
-			}
-
-			protected Method[] getMutators()
-			{
-				return mutators;
+				return plan;
 			}
 
 			protected IContext createServiceRegistry()
@@ -11,7 +11,6 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.runtime;
 
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Set;
@@ -90,7 +89,7 @@ public class Execution extends Scope implements IExecution
 	 * @see org.eclipse.vtp.framework.engine.runtime.Scope#getServices(
 	 *      java.lang.String)
 	 */
-	protected Collection getServices(String identifier)
+	protected Service[] getServices(String identifier)
 	{
 		return session.process.blueprint.getExecutionServices(identifier);
 	}
@@ -331,7 +330,7 @@ public class Execution extends Scope implements IExecution
 			Object[] all = lookupAllInScope(identifier);
 			if (provided == null)
 				return all;
-			Object[] result = new Object[all.length];
+			Object[] result = new Object[all.length + 1];
 			result[0] = provided;
 			System.arraycopy(all, 0, result, 1, all.length);
 			return result;
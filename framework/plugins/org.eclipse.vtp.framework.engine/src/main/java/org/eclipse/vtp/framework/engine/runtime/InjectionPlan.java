@@ -0,0 +1,234 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.engine.runtime;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+
+import org.eclipse.vtp.framework.core.IContext;
+
+/**
+ * The dependencies of a component, analyzed once when the component is
+ * deployed.
+ * <p>
+ * A plan holds the constructors of a component in the order they are tried,
+ * the dependencies of each constructor, and the mutators that are injected
+ * after construction. Builders execute the plan for every instance without
+ * inspecting the component type again.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+final class InjectionPlan
+{
+	/** The constructors in the order they are tried. */
+	private final Constructor[] constructors;
+	/** The dependencies of each constructor. */
+	private final Dependency[][] constructorDependencies;
+	/** The mutator methods. */
+	private final Method[] mutators;
+	/** The dependency of each mutator method. */
+	private final Dependency[] mutatorDependencies;
+
+	/**
+	 * Creates a new InjectionPlan.
+	 *
+	 * @param constructors The constructors in the order they are tried.
+	 * @param mutators The mutator methods.
+	 */
+	InjectionPlan(Constructor[] constructors, Method[] mutators)
+	{
+		this.constructors = constructors;
+		this.constructorDependencies = new Dependency[constructors.length][];
+		for (int i = 0; i < constructors.length; ++i)
+		{
+			makeAccessible(constructors[i]);
+			Class[] types = constructors[i].getParameterTypes();
+			Dependency[] dependencies = new Dependency[types.length];
+			for (int j = 0; j < types.length; ++j)
+				dependencies[j] = new Dependency(types[j]);
+			constructorDependencies[i] = dependencies;
+		}
+		this.mutators = mutators;
+		this.mutatorDependencies = new Dependency[mutators.length];
+		for (int i = 0; i < mutators.length; ++i)
+		{
+			makeAccessible(mutators[i]);
+			mutatorDependencies[i] = new Dependency(mutators[i]
+					.getParameterTypes()[0]);
+		}
+	}
+
+	/**
+	 * Returns the type the plan creates, for use in messages.
+	 *
+	 * @return The name of the type the plan creates.
+	 */
+	String getTypeName()
+	{
+		return constructors.length == 0 ? "<unknown>" //$NON-NLS-1$
+				: constructors[0].getDeclaringClass().getName();
+	}
+
+	/**
+	 * Creates an instance using the first constructor whose dependencies can
+	 * all be resolved.
+	 *
+	 * @param builder The builder that supplies the registry to resolve
+	 *          dependencies from.
+	 * @return The new instance or <code>null</code> if no constructor could be
+	 *         satisfied.
+	 * @throws IllegalStateException If the constructor fails.
+	 */
+	Object create(Builder builder) throws IllegalStateException
+	{
+		for (int i = 0; i < constructors.length; ++i)
+		{
+			Dependency[] dependencies = constructorDependencies[i];
+			Object[] arguments = new Object[dependencies.length];
+			int j = 0;
+			for (; j < dependencies.length; ++j)
+			{
+				Object value = dependencies[j].resolve(builder.getRegistry());
+				if (value == null)
+				{
+					System.err.println("Could not locate: "
+							+ dependencies[j].type.getName() + " while resolving "
+							+ getTypeName());
+					break;
+				}
+				arguments[j] = value;
+			}
+			if (j < dependencies.length)
+				continue;
+			try
+			{
+				return constructors[i].newInstance(arguments);
+			}
+			catch (Exception e)
+			{
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Injects the resolvable dependencies of an instance through its mutators.
+	 *
+	 * @param instance The instance to configure.
+	 * @param builder The builder that supplies the registry to resolve
+	 *          dependencies from.
+	 * @throws IllegalStateException If a mutator fails.
+	 */
+	void configure(Object instance, Builder builder)
+			throws IllegalStateException
+	{
+		for (int i = 0; i < mutators.length; ++i)
+		{
+			Object value = mutatorDependencies[i].resolve(builder.getRegistry());
+			if (value == null
+					|| (mutatorDependencies[i].componentType != null && Array
+							.getLength(value) == 0))
+				continue;
+			try
+			{
+				mutators[i].invoke(instance, value);
+			}
+			catch (Exception e)
+			{
+				throw new IllegalStateException(e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Suppresses access checks on a constructor or method if permitted.
+	 *
+	 * @param member The constructor or method.
+	 */
+	private static void makeAccessible(AccessibleObject member)
+	{
+		try
+		{
+			member.setAccessible(true);
+		}
+		catch (SecurityException e)
+		{
+		}
+	}
+
+	/**
+	 * A single injected dependency.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	private static final class Dependency
+	{
+		/** The declared type of the dependency. */
+		final Class type;
+		/** The component type if the dependency is an array. */
+		final Class componentType;
+		/** The identifier the dependency is looked up by. */
+		final String identifier;
+		/** The empty array of the dependency's type, if it is an array. */
+		final Object[] empty;
+
+		/**
+		 * Creates a new Dependency.
+		 *
+		 * @param type The declared type of the dependency.
+		 */
+		Dependency(Class type)
+		{
+			this.type = type;
+			this.componentType = type.isArray() ? type.getComponentType() : null;
+			this.identifier = componentType == null ? type.getName()
+					: componentType.getName();
+			this.empty = componentType == null
+					|| componentType.isPrimitive() ? null : (Object[])Array
+					.newInstance(componentType, 0);
+		}
+
+		/**
+		 * Resolves the dependency.
+		 *
+		 * @param registry The registry to resolve the dependency from.
+		 * @return The resolved value or <code>null</code> if it could not be
+		 *         resolved.
+		 */
+		Object resolve(IContext registry)
+		{
+			if (componentType == null)
+			{
+				Object value = registry.lookup(identifier);
+				return value != null && type.isInstance(value) ? value : null;
+			}
+			if (empty == null)
+				return null;
+			Object[] values = registry.lookupAll(identifier);
+			int count = 0;
+			for (int i = 0; i < values.length; ++i)
+				if (componentType.isInstance(values[i]))
+					++count;
+			if (count == 0)
+				return empty;
+			Object[] results = (Object[])Array.newInstance(componentType, count);
+			for (int i = 0, j = 0; i < values.length; ++i)
+				if (componentType.isInstance(values[i]))
+					results[j++] = values[i];
+			return results;
+		}
+	}
+}
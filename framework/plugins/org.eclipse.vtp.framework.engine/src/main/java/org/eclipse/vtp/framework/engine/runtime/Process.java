@@ -11,7 +11,6 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.runtime;
 
-import java.util.Collection;
 import java.util.Set;
 
 import org.eclipse.core.runtime.IExtensionRegistry;
@@ -91,7 +90,7 @@ public class Process extends Scope implements IProcess
 	 * @see org.eclipse.vtp.framework.engine.runtime.Scope#getServices(
 	 *      java.lang.String)
 	 */
-	protected Collection getServices(String identifier)
+	protected Service[] getServices(String identifier)
 	{
 		return blueprint.getProcessServices(identifier);
 	}
@@ -140,6 +139,16 @@ public class Process extends Scope implements IProcess
 		return new Session(this, descriptor);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.vtp.framework.spi.IProcess#dispose()
+	 */
+	public void dispose()
+	{
+		releaseServices();
+	}
+
 	/**
 	 * Implementation of the generic context.
 	 * 
@@ -205,7 +214,7 @@ public class Process extends Scope implements IProcess
 			Object[] all = lookupAllInScope(identifier);
 			if (provided == null)
 				return all;
-			Object[] result = new Object[all.length];
+			Object[] result = new Object[all.length + 1];
 			result[0] = provided;
 			System.arraycopy(all, 0, result, 1, all.length);
 			return result;
@@ -11,9 +11,9 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.runtime;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -28,12 +28,38 @@ import java.util.Map;
  */
 public abstract class Scope
 {
+	/** The shared result of lookups that find nothing. */
+	static final Object[] NO_SERVICES = {};
+
+	/**
+	 * Returns the concatenation of two lookup results. Empty results are never
+	 * copied, so when only one of the results contains services it is returned
+	 * as is, and when neither does the shared empty result is returned.
+	 * 
+	 * @param first The first result or <code>null</code>.
+	 * @param second The second result or <code>null</code>.
+	 * @return The concatenation of the two results.
+	 */
+	static Object[] concat(Object[] first, Object[] second)
+	{
+		if (first == null || first.length == 0)
+			return second == null || second.length == 0 ? NO_SERVICES : second;
+		if (second == null || second.length == 0)
+			return first;
+		Object[] results = new Object[first.length + second.length];
+		System.arraycopy(first, 0, results, 0, first.length);
+		System.arraycopy(second, 0, results, first.length, second.length);
+		return results;
+	}
+
 	/** The implicit service index. */
 	private final Map implicitServices = new HashMap();
 	/** The declared service index. */
 	private final Map declaredServices = new HashMap();
 	/** The current queue of builders to configure. */
 	private List builderQueue = null;
+	/** True once the services of this scope have been released. */
+	private boolean released = false;
 
 	/**
 	 * Creates a new Scope.
@@ -44,41 +70,48 @@ public abstract class Scope
 	
 	protected void registerImplicitServices(String identifier, Object[] services)
 	{
-		implicitServices.put(identifier, Arrays.asList(services));
+		implicitServices.put(identifier, services.clone());
 	}
 
 	protected Object lookupInScope(String identifier)
 	{
-		Collection implicitServices = (Collection)this.implicitServices
-				.get(identifier);
-		if (implicitServices != null && !implicitServices.isEmpty())
-			return implicitServices.iterator().next();
-		Collection declaredServices = getServices(identifier);
-		if (declaredServices != null && !declaredServices.isEmpty())
-			return ((Service)declaredServices.iterator().next()).getInstance(this);
+		if (!implicitServices.isEmpty())
+		{
+			Object[] implicitServices = (Object[])this.implicitServices
+					.get(identifier);
+			if (implicitServices != null && implicitServices.length > 0)
+				return implicitServices[0];
+		}
+		Service[] declaredServices = getServices(identifier);
+		if (declaredServices != null)
+			return declaredServices[0].getInstance(this);
 		return null;
 	}
 
 	protected Object[] lookupAllInScope(String identifier)
 	{
-		Collection implicitServices = (Collection)this.implicitServices
-				.get(identifier);
-		Collection declaredServices = getServices(identifier);
-		List results = new ArrayList((implicitServices == null ? 0
-				: implicitServices.size())
-				+ (declaredServices == null ? 0 : declaredServices.size()));
-		if (implicitServices != null && !implicitServices.isEmpty())
-			results.addAll(implicitServices);
-		if (declaredServices != null && !declaredServices.isEmpty())
+		Object[] implicitServices = this.implicitServices.isEmpty() ? null
+				: (Object[])this.implicitServices.get(identifier);
+		Service[] declaredServices = getServices(identifier);
+		if (declaredServices == null)
+			return implicitServices == null ? NO_SERVICES : implicitServices
+					.clone();
+		Object[] results = new Object[declaredServices.length];
+		int count = 0;
+		for (int i = 0; i < declaredServices.length; ++i)
 		{
-			for (Iterator i = declaredServices.iterator(); i.hasNext();)
-			{
-				Object instance = ((Service)i.next()).getInstance(this);
-				if (instance != null)
-					results.add(instance);
-			}
+			Object instance = declaredServices[i].getInstance(this);
+			if (instance != null)
+				results[count++] = instance;
+		}
+		if (count < results.length)
+		{
+			Object[] instances = new Object[count];
+			System.arraycopy(results, 0, instances, 0, count);
+			results = instances;
 		}
-		return results.toArray();
+		return implicitServices == null ? results : concat(implicitServices
+				.clone(), results);
 	}
 
 	protected Object getServiceInstance(Service service)
@@ -86,6 +119,8 @@ public abstract class Scope
 		String id = service.getDescriptorID();
 		synchronized (declaredServices)
 		{
+			if (released)
+				return null;
 			Object instance = declaredServices.get(id);
 			if (instance == null && !declaredServices.containsKey(id))
 			{
@@ -134,5 +169,47 @@ public abstract class Scope
 		}
 	}
 
-	protected abstract Collection getServices(String identifier);
+	/**
+	 * Releases the service instances created in this scope, closing those that
+	 * implement {@link Closeable}. Declared services are not created again once
+	 * released; looking them up afterwards finds nothing.
+	 */
+	protected void releaseServices()
+	{
+		List instances;
+		synchronized (declaredServices)
+		{
+			released = true;
+			instances = new ArrayList(declaredServices.values());
+			declaredServices.clear();
+		}
+		implicitServices.clear();
+		for (Iterator i = instances.iterator(); i.hasNext();)
+		{
+			Object instance = i.next();
+			if (!(instance instanceof Closeable))
+				continue;
+			try
+			{
+				((Closeable)instance).close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			catch (RuntimeException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Returns the services declared in this scope with the specified identifier.
+	 * 
+	 * @param identifier The identifier of the services to return.
+	 * @return The services declared in this scope with the specified identifier
+	 *         or <code>null</code> if there are none.
+	 */
+	protected abstract Service[] getServices(String identifier);
 }
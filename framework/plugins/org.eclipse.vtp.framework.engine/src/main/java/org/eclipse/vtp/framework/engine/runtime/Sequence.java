@@ -11,7 +11,6 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.runtime;
 
-import java.util.Collection;
 
 import org.eclipse.vtp.framework.core.IActionResult;
 import org.eclipse.vtp.framework.engine.support.AbstractActionContext;
@@ -134,7 +133,7 @@ public class Sequence extends Scope
 	 * @see org.eclipse.vtp.framework.engine.runtime.Scope#getServices(
 	 *      java.lang.String)
 	 */
-	protected Collection getServices(String identifier)
+	protected Service[] getServices(String identifier)
 	{
 		return execution.session.process.blueprint.getActionServices(identifier);
 	}
@@ -14,8 +14,6 @@ package org.eclipse.vtp.framework.engine.runtime;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
 
 import org.eclipse.vtp.framework.core.IActionContext;
@@ -152,34 +150,31 @@ public class Service extends Configurable
 	 */
 	protected Object[] lookupAllSiblingServices(String identifier, Scope scope)
 	{
-		List results = new LinkedList();
+		Object provided = null;
 		if (scope instanceof Process)
 		{
 			Process process = (Process)scope;
 			if (process.context.getProvidedServiceIdentifiers().contains(identifier))
-				results.add(process.context.getDescriptor().getService(identifier));
+				provided = process.context.getDescriptor().getService(identifier);
 		}
 		else if (scope instanceof Session)
 		{
 			Session session = (Session)scope;
 			if (session.context.getProvidedServiceIdentifiers().contains(identifier))
-				results.add(session.context.getDescriptor().getService(identifier));
+				provided = session.context.getDescriptor().getService(identifier);
 		}
 		else if (scope instanceof Execution)
 		{
 			Execution execution = (Execution)scope;
 			if (execution.context.getProvidedServiceIdentifiers()
 					.contains(identifier))
-				results.add(execution.context.getDescriptor().getService(identifier));
+				provided = execution.context.getDescriptor().getService(identifier);
 		}
-		if (!identifiers.contains(identifier))
-		{
-			Object[] services = scope.lookupAllInScope(identifier);
-			if (services != null)
-				for (int i = 0; i < services.length; ++i)
-					results.add(services[i]);
-		}
-		return results.toArray();
+		Object[] services = identifiers.contains(identifier) ? null : scope
+				.lookupAllInScope(identifier);
+		if (provided == null)
+			return Scope.concat(services, null);
+		return Scope.concat(new Object[] { provided }, services);
 	}
 
 	/*
@@ -275,16 +270,8 @@ public class Service extends Configurable
 				throw new NullPointerException("identifier"); //$NON-NLS-1$
 			if (isReservedIdentifier(identifier))
 				return new Object[] { this };
-			List results = new LinkedList();
-			Object[] configs = lookupAllConfigurations(identifier, this);
-			if (configs != null)
-				for (int i = 0; i < configs.length; ++i)
-					results.add(configs[i]);
-			Object[] services = lookupAllSiblingServices(identifier, process);
-			if (services != null)
-				for (int i = 0; i < services.length; ++i)
-					results.add(services[i]);
-			return results.toArray();
+			return Scope.concat(lookupAllConfigurations(identifier, this),
+					lookupAllSiblingServices(identifier, process));
 		}
 
 		/*
@@ -355,20 +342,9 @@ public class Service extends Configurable
 				throw new NullPointerException("identifier"); //$NON-NLS-1$
 			if (isReservedIdentifier(identifier))
 				return new Object[] { this };
-			List results = new LinkedList();
-			Object[] configs = lookupAllConfigurations(identifier, this);
-			if (configs != null)
-				for (int i = 0; i < configs.length; ++i)
-					results.add(configs[i]);
-			Object[] services = lookupAllSiblingServices(identifier, session);
-			if (services != null)
-				for (int i = 0; i < services.length; ++i)
-					results.add(services[i]);
-			services = session.process.context.lookupAll(identifier);
-			if (services != null)
-				for (int i = 0; i < services.length; ++i)
-					results.add(services[i]);
-			return results.toArray();
+			return Scope.concat(Scope.concat(lookupAllConfigurations(identifier,
+					this), lookupAllSiblingServices(identifier, session)), session.process.context
+					.lookupAll(identifier));
 		}
 
 		/*
@@ -442,20 +418,9 @@ public class Service extends Configurable
 				throw new NullPointerException("identifier"); //$NON-NLS-1$
 			if (isReservedIdentifier(identifier))
 				return new Object[] { this };
-			List results = new LinkedList();
-			Object[] configs = lookupAllConfigurations(identifier, this);
-			if (configs != null)
-				for (int i = 0; i < configs.length; ++i)
-					results.add(configs[i]);
-			Object[] services = lookupAllSiblingServices(identifier, execution);
-			if (services != null)
-				for (int i = 0; i < services.length; ++i)
-					results.add(services[i]);
-			services = execution.session.context.lookupAll(identifier);
-			if (services != null)
-				for (int i = 0; i < services.length; ++i)
-					results.add(services[i]);
-			return results.toArray();
+			return Scope.concat(Scope.concat(lookupAllConfigurations(identifier,
+					this), lookupAllSiblingServices(identifier, execution)), execution.session.context
+					.lookupAll(identifier));
 		}
 
 		/*
@@ -527,20 +492,9 @@ public class Service extends Configurable
 				throw new NullPointerException("identifier"); //$NON-NLS-1$
 			if (isReservedIdentifier(identifier))
 				return new Object[] { this };
-			List results = new LinkedList();
-			Object[] configs = lookupAllConfigurations(identifier, this);
-			if (configs != null)
-				for (int i = 0; i < configs.length; ++i)
-					results.add(configs[i]);
-			Object[] services = lookupAllSiblingServices(identifier, sequence);
-			if (services != null)
-				for (int i = 0; i < services.length; ++i)
-					results.add(services[i]);
-			services = sequence.execution.context.lookupAll(identifier);
-			if (services != null)
-				for (int i = 0; i < services.length; ++i)
-					results.add(services[i]);
-			return results.toArray();
+			return Scope.concat(Scope.concat(lookupAllConfigurations(identifier,
+					this), lookupAllSiblingServices(identifier, sequence)), sequence.execution.context
+					.lookupAll(identifier));
 		}
 
 		/*
@@ -11,7 +11,6 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.runtime;
 
-import java.util.Collection;
 import java.util.Date;
 import java.util.Set;
 
@@ -52,13 +51,23 @@ public class Session extends Scope implements ISession
 		this.context = new Context(descriptor);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.vtp.framework.spi.ISession#dispose()
+	 */
+	public void dispose()
+	{
+		releaseServices();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see org.eclipse.vtp.framework.engine.runtime.Scope#getServices(
 	 *      java.lang.String)
 	 */
-	protected Collection getServices(String identifier)
+	protected Service[] getServices(String identifier)
 	{
 		return process.blueprint.getSessionServices(identifier);
 	}
@@ -192,7 +201,7 @@ public class Session extends Scope implements ISession
 			Object[] all = lookupAllInScope(identifier);
 			if (provided == null)
 				return all;
-			Object[] result = new Object[all.length];
+			Object[] result = new Object[all.length + 1];
 			result[0] = provided;
 			System.arraycopy(all, 0, result, 1, all.length);
 			return result;
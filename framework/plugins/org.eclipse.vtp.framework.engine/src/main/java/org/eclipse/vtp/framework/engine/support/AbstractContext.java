@@ -11,8 +11,6 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.engine.support;
 
-import java.util.LinkedList;
-
 import org.eclipse.vtp.framework.core.IContext;
 
 /**
@@ -23,6 +21,9 @@ import org.eclipse.vtp.framework.core.IContext;
 public abstract class AbstractContext extends AbstractLogger implements
 		IContext
 {
+	/** The shared result of lookups that find nothing. */
+	private static final Object[] NO_SERVICES = {};
+
 	/**
 	 * Creates a new AbstractContext.
 	 */
@@ -138,17 +139,48 @@ public abstract class AbstractContext extends AbstractLogger implements
 		Object service = lookupReservedService(identifier);
 		if (service != null)
 			return new Object[] { service };
-		LinkedList results = new LinkedList();
-		Object[] services = lookupAllLocalServices(identifier);
+		Object[] local = lookupAllLocalServices(identifier);
+		Object[] inherited = lookupAllInheritedServices(identifier);
+		int count = countServices(local) + countServices(inherited);
+		if (count == 0)
+			return NO_SERVICES;
+		Object[] results = new Object[count];
+		count = copyServices(local, results, 0);
+		copyServices(inherited, results, count);
+		return results;
+	}
+
+	/**
+	 * Counts the services in a lookup result.
+	 * 
+	 * @param services The lookup result or <code>null</code>.
+	 * @return The number of non-<code>null</code> services in the result.
+	 */
+	private static int countServices(Object[] services)
+	{
+		int count = 0;
 		if (services != null)
 			for (int i = 0; i < services.length; ++i)
 				if (services[i] != null)
-					results.addLast(services[i]);
-		services = lookupAllInheritedServices(identifier);
+					++count;
+		return count;
+	}
+
+	/**
+	 * Copies the services in a lookup result into an array.
+	 * 
+	 * @param services The lookup result or <code>null</code>.
+	 * @param results The array to copy into.
+	 * @param offset The index to start copying at.
+	 * @return The index after the last service copied.
+	 */
+	private static int copyServices(Object[] services, Object[] results,
+			int offset)
+	{
 		if (services != null)
 			for (int i = 0; i < services.length; ++i)
 				if (services[i] != null)
-					results.addLast(services[i]);
-		return results.toArray();
+					results[offset++] = services[i];
+		return offset;
 	}
 }
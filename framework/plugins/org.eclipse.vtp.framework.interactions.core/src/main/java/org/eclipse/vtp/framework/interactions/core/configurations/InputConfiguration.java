@@ -15,9 +15,11 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import org.eclipse.vtp.framework.common.IBrand;
 import org.eclipse.vtp.framework.core.IConfiguration;
 import org.eclipse.vtp.framework.interactions.core.media.IInputGrammarFactory;
 import org.eclipse.vtp.framework.interactions.core.media.InputGrammar;
+import org.eclipse.vtp.framework.interactions.core.media.ResolutionIndex;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
@@ -33,6 +35,15 @@ public class InputConfiguration implements IConfiguration,
 	private final IInputGrammarFactory inputFactory;
 	/** Index of input grammars by brand, interaction type, and language. */
 	private final Map items = new HashMap();
+	/** The resolutions of items along the brand hierarchy. */
+	private final ResolutionIndex<InputGrammar> index = new ResolutionIndex<InputGrammar>()
+	{
+		protected InputGrammar lookup(IBrand brand, String interactionTypeID,
+				String languageID)
+		{
+			return getItem(brand.getName(), interactionTypeID, languageID);
+		}
+	};
 
 	/**
 	 * Creates a new InputConfiguration.
@@ -61,6 +72,22 @@ public class InputConfiguration implements IConfiguration,
 		return (InputGrammar)items.get(brandName + interactionTypeID + languageID);
 	}
 
+	/**
+	 * Resolves the item configured for the specified brand or the nearest of its
+	 * ancestors, interaction type, and language.
+	 * 
+	 * @param brand The brand to start the search at.
+	 * @param interactionTypeID The ID of the interaction type to find the item
+	 *          for.
+	 * @param languageID The ID of the language to find the item for.
+	 * @return The item and the brand it is configured for.
+	 */
+	public ResolutionIndex.Resolution<InputGrammar> resolveItem(IBrand brand,
+			String interactionTypeID, String languageID)
+	{
+		return index.resolve(brand, interactionTypeID, languageID);
+	}
+
 	/**
 	 * Sets the item configured for the specified brand, interaction type, and
 	 * language.
@@ -92,6 +119,7 @@ public class InputConfiguration implements IConfiguration,
 			items.remove(key);
 		else
 			items.put(key, item);
+		index.clear();
 	}
 
 	/*
@@ -102,6 +130,7 @@ public class InputConfiguration implements IConfiguration,
 	public void load(Element configurationElement)
 	{
 		items.clear();
+		index.clear();
 		NodeList itemElements = configurationElement.getElementsByTagNameNS(
 				NAMESPACE_URI, NAME_INPUT_ITEM);
 		for (int i = 0; i < itemElements.getLength(); ++i)
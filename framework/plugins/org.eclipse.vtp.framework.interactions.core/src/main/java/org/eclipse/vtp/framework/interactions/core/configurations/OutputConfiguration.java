@@ -15,8 +15,10 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import org.eclipse.vtp.framework.common.IBrand;
 import org.eclipse.vtp.framework.core.IConfiguration;
 import org.eclipse.vtp.framework.interactions.core.media.IContentFactory;
+import org.eclipse.vtp.framework.interactions.core.media.ResolutionIndex;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
@@ -31,6 +33,13 @@ public class OutputConfiguration implements IConfiguration,
 	private final IContentFactory contentFactory;
 	/** Index of content arrays by brand, interaction type, and language. */
 	private final Map<String, OutputNode[]> items = new HashMap<String, OutputNode[]>();
+	/** The resolutions of items along the brand hierarchy. */
+	private final ResolutionIndex<OutputNode[]> index = new ResolutionIndex<OutputNode[]>() {
+		protected OutputNode[] lookup(IBrand brand, String interactionTypeID,
+				String languageID) {
+			return getItem(brand.getName(), interactionTypeID, languageID);
+		}
+	};
 
 	/**
 	 * Creates a new OutputConfiguration.
@@ -60,6 +69,23 @@ public class OutputConfiguration implements IConfiguration,
 		return items.get(brandName + interactionTypeID + languageID);
 	}
 
+	/**
+	 * Resolves the item configured for the specified brand or the nearest of
+	 * its ancestors, interaction type, and language.
+	 * 
+	 * @param brand
+	 *            The brand to start the search at.
+	 * @param interactionTypeID
+	 *            The ID of the interaction type to find the item for.
+	 * @param languageID
+	 *            The ID of the language to find the item for.
+	 * @return The item and the brand it is configured for.
+	 */
+	public ResolutionIndex.Resolution<OutputNode[]> resolveItem(IBrand brand,
+			String interactionTypeID, String languageID) {
+		return index.resolve(brand, interactionTypeID, languageID);
+	}
+
 	/**
 	 * Sets the item configured for the specified brand, interaction type, and
 	 * language.
@@ -94,6 +120,7 @@ public class OutputConfiguration implements IConfiguration,
 			items.remove(key);
 		else
 			items.put(key, item);
+		index.clear();
 	}
 
 	/*
@@ -104,6 +131,7 @@ public class OutputConfiguration implements IConfiguration,
 	 */
 	public void load(Element configurationElement) {
 		items.clear();
+		index.clear();
 		NodeList outputItemElements = configurationElement
 				.getElementsByTagNameNS(NAMESPACE_URI, NAME_OUTPUT_ITEM);
 		for (int i = 0; i < outputItemElements.getLength(); ++i) {
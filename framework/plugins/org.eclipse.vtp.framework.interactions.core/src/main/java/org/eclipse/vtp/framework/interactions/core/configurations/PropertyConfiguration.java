@@ -15,7 +15,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import org.eclipse.vtp.framework.common.IBrand;
 import org.eclipse.vtp.framework.core.IConfiguration;
+import org.eclipse.vtp.framework.interactions.core.media.ResolutionIndex;
 import org.eclipse.vtp.framework.util.XMLUtilities;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -36,6 +38,15 @@ public class PropertyConfiguration implements IConfiguration,
 	public static final String VARIABLE = "variable";
 	/** Index of values by brand, interaction type, and language. */
 	private final Map<String, Value> items = new HashMap<String, Value>();
+	/** The resolutions of values along the brand hierarchy. */
+	private final ResolutionIndex<Value> index = new ResolutionIndex<Value>()
+	{
+		protected Value lookup(IBrand brand, String interactionTypeID,
+				String languageID)
+		{
+			return getItem(brand.getName(), interactionTypeID, languageID);
+		}
+	};
 
 	/**
 	 * Creates a new PropertyConfiguration.
@@ -65,6 +76,23 @@ public class PropertyConfiguration implements IConfiguration,
 		return items.get(key);
 	}
 
+	/**
+	 * Resolves the item configured for the specified brand or the nearest of its
+	 * ancestors, interaction type, and language.
+	 * 
+	 * @param brand The brand to start the search at.
+	 * @param interactionTypeID The ID of the interaction type to find the item
+	 *          for or an empty string.
+	 * @param languageID The ID of the language to find the item for or an empty
+	 *          string.
+	 * @return The item and the brand it is configured for.
+	 */
+	public ResolutionIndex.Resolution<Value> resolveItem(IBrand brand,
+			String interactionTypeID, String languageID)
+	{
+		return index.resolve(brand, interactionTypeID, languageID);
+	}
+
 	/**
 	 * Sets the item configured for the specified brand, interaction type, and
 	 * language.
@@ -98,6 +126,7 @@ public class PropertyConfiguration implements IConfiguration,
 			items.remove(key);
 		else
 			items.put(key, value);
+		index.clear();
 	}
 
 	public void setItem(String brandName, String interactionTypeID, String language, String type, String value)
@@ -113,6 +142,7 @@ public class PropertyConfiguration implements IConfiguration,
 	public void load(Element configurationElement)
 	{
 		items.clear();
+		index.clear();
 		NodeList propertyItemElements = configurationElement
 				.getElementsByTagNameNS(NAMESPACE_URI, NAME_PROPERTY_ITEM);
 		for (int i = 0; i < propertyItemElements.getLength(); ++i)
@@ -11,6 +11,8 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.interactions.core.media;
 
+import org.eclipse.vtp.framework.common.IBrand;
+
 public interface IMediaProviderRegistry
 {
 	String[] getMediaProviderIDs();
@@ -19,4 +21,7 @@ public interface IMediaProviderRegistry
 
 	String lookupMediaProviderID(String brandPath,
 			String interactionTypeID, String langugageID);
+
+	ResolutionIndex.Resolution<String> resolveMediaProviderID(IBrand brand,
+			String interactionTypeID, String languageID);
 }
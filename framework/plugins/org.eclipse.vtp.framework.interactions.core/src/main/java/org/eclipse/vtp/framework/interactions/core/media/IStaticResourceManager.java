@@ -0,0 +1,25 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.interactions.core.media;
+
+/**
+ * A resource manager whose resources do not change once it has been created.
+ * <p>
+ * Answers obtained from a static resource manager, including the absence of a
+ * resource, may be remembered for as long as the manager is in use.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+public interface IStaticResourceManager extends IResourceManager
+{
+}
@@ -0,0 +1,172 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.interactions.core.media;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.vtp.framework.common.IBrand;
+
+/**
+ * Memoizes the resolution of a value along the brand hierarchy.
+ * <p>
+ * A resolution starts at a brand and walks up its parents until
+ * {@link #lookup(IBrand, String, String)} returns a value. The outcome,
+ * including the absence of a value, is remembered for each combination of
+ * starting brand, interaction type, and language so that later resolutions are
+ * answered with hash lookups alone. Brands are compared by identity, so an
+ * index must not outlive the brands of the process it was created in.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ * @param <T> The type of value being resolved.
+ */
+public abstract class ResolutionIndex<T>
+{
+	/** The resolution that records that no value was found. */
+	@SuppressWarnings("rawtypes")
+	private static final Resolution NOT_FOUND = new Resolution(null, null);
+
+	/** The memoized resolutions by brand, interaction type, and language. */
+	private final ConcurrentMap<IBrand, ConcurrentMap<String, ConcurrentMap<String, Resolution<T>>>> resolutions = new ConcurrentHashMap<IBrand, ConcurrentMap<String, ConcurrentMap<String, Resolution<T>>>>();
+
+	/**
+	 * Creates a new ResolutionIndex.
+	 */
+	protected ResolutionIndex()
+	{
+	}
+
+	/**
+	 * Resolves a value starting at the specified brand.
+	 *
+	 * @param brand The brand to start at.
+	 * @param interactionTypeID The ID of the interaction type.
+	 * @param languageID The ID of the language.
+	 * @return The resolution of the value, never <code>null</code>.
+	 */
+	@SuppressWarnings("unchecked")
+	public Resolution<T> resolve(IBrand brand, String interactionTypeID,
+			String languageID)
+	{
+		if (brand == null)
+			return NOT_FOUND;
+		if (interactionTypeID == null)
+			interactionTypeID = ""; //$NON-NLS-1$
+		if (languageID == null)
+			languageID = ""; //$NON-NLS-1$
+		ConcurrentMap<String, ConcurrentMap<String, Resolution<T>>> byInteractionType = resolutions
+				.get(brand);
+		if (byInteractionType == null)
+		{
+			byInteractionType = new ConcurrentHashMap<String, ConcurrentMap<String, Resolution<T>>>();
+			ConcurrentMap<String, ConcurrentMap<String, Resolution<T>>> existing = resolutions
+					.putIfAbsent(brand, byInteractionType);
+			if (existing != null)
+				byInteractionType = existing;
+		}
+		ConcurrentMap<String, Resolution<T>> byLanguage = byInteractionType
+				.get(interactionTypeID);
+		if (byLanguage == null)
+		{
+			byLanguage = new ConcurrentHashMap<String, Resolution<T>>();
+			ConcurrentMap<String, Resolution<T>> existing = byInteractionType
+					.putIfAbsent(interactionTypeID, byLanguage);
+			if (existing != null)
+				byLanguage = existing;
+		}
+		Resolution<T> resolution = byLanguage.get(languageID);
+		if (resolution == null)
+		{
+			resolution = NOT_FOUND;
+			for (IBrand b = brand; b != null; b = b.getParentBrand())
+			{
+				T value = lookup(b, interactionTypeID, languageID);
+				if (value != null)
+				{
+					resolution = new Resolution<T>(b, value);
+					break;
+				}
+			}
+			byLanguage.put(languageID, resolution);
+		}
+		return resolution;
+	}
+
+	/**
+	 * Discards all the memoized resolutions.
+	 */
+	public void clear()
+	{
+		resolutions.clear();
+	}
+
+	/**
+	 * Returns the value configured directly on the specified brand.
+	 *
+	 * @param brand The brand to search.
+	 * @param interactionTypeID The ID of the interaction type.
+	 * @param languageID The ID of the language.
+	 * @return The value configured directly on the brand or <code>null</code>
+	 *         if there is none.
+	 */
+	protected abstract T lookup(IBrand brand, String interactionTypeID,
+			String languageID);
+
+	/**
+	 * The outcome of resolving a value along the brand hierarchy.
+	 *
+	 * @author Lonnie Pryor
+	 * @param <T> The type of value that was resolved.
+	 */
+	public static final class Resolution<T>
+	{
+		/** The brand the value was found on. */
+		private final IBrand brand;
+		/** The value that was found. */
+		private final T value;
+
+		/**
+		 * Creates a new Resolution.
+		 *
+		 * @param brand The brand the value was found on.
+		 * @param value The value that was found.
+		 */
+		Resolution(IBrand brand, T value)
+		{
+			this.brand = brand;
+			this.value = value;
+		}
+
+		/**
+		 * Returns the brand the value was found on.
+		 *
+		 * @return The brand the value was found on or <code>null</code> if no
+		 *         value was found.
+		 */
+		public IBrand getBrand()
+		{
+			return brand;
+		}
+
+		/**
+		 * Returns the value that was found.
+		 *
+		 * @return The value that was found or <code>null</code> if no value was
+		 *         found.
+		 */
+		public T getValue()
+		{
+			return value;
+		}
+	}
+}
@@ -90,6 +90,7 @@ import org.eclipse.vtp.framework.interactions.core.media.IResourceManager;
 import org.eclipse.vtp.framework.interactions.core.media.InlineInputGrammar;
 import org.eclipse.vtp.framework.interactions.core.media.InputGrammar;
 import org.eclipse.vtp.framework.interactions.core.media.MediaRenderingManager;
+import org.eclipse.vtp.framework.interactions.core.media.ResolutionIndex;
 import org.eclipse.vtp.framework.interactions.core.media.TextContent;
 import org.eclipse.vtp.framework.spi.ICommandProcessor;
 
@@ -171,23 +172,14 @@ public class Conversation implements IConversation {
 		String interactionTypeID = interactionTypeSelection
 				.getSelectedInteractionType().getId();
 		String languageID = languageSelection.getSelectedLanguage();
-		OutputNode[] nodes = null;
-		IBrand brand = brandSelection.getSelectedBrand();
-		while (brand != null && nodes == null) {
-			nodes = configuration.getItem(brand.getName(), interactionTypeID,
-					languageID);
-			if (nodes == null)
-				brand = brand.getParentBrand();
-		}
+		ResolutionIndex.Resolution<OutputNode[]> item = configuration
+				.resolveItem(brandSelection.getSelectedBrand(),
+						interactionTypeID, languageID);
+		OutputNode[] nodes = item.getValue();
 		if (nodes == null)
 			return Collections.emptyList();
-		String mediaProviderID = null;
-		while (brand != null && mediaProviderID == null) {
-			mediaProviderID = mediaProviderRegistry.lookupMediaProviderID(
-					brand.getId(), interactionTypeID, languageID);
-			if (mediaProviderID == null)
-				brand = brand.getParentBrand();
-		}
+		String mediaProviderID = mediaProviderRegistry.resolveMediaProviderID(
+				item.getBrand(), interactionTypeID, languageID).getValue();
 		if (mediaProviderID == null)
 			return Collections.emptyList();
 		List<Content> results = new LinkedList<Content>();
@@ -236,35 +228,24 @@ public class Conversation implements IConversation {
 		String interactionTypeID = interactionTypeSelection
 				.getSelectedInteractionType().getId();
 		String languageID = languageSelection.getSelectedLanguage();
-		Content[] result = null;
 		IBrand brand = brandSelection.getSelectedBrand();
-		// while (brand != null && result == null)
-		// {
-		// result = configuration.getItem(brand.getName(), interactionTypeID,
-		// languageID);
-		// if (result == null)
-		// brand = brand.getParentBrand();
-		// }
-		// if (result == null)
-		// return relativePath;
 		String mediaProviderID = null;
 		while (brand != null && mediaProviderID == null) {
-			mediaProviderID = mediaProviderRegistry.lookupMediaProviderID(
-					brand.getId(), interactionTypeID, languageID);
-			if (mediaProviderID != null) {
-				IMediaProvider provider = mediaProviderRegistry
-						.getMediaProvider(mediaProviderID);
-				if (provider != null) {
-					IResourceManager resourceManager = provider
-							.getResourceManager();
-					if (resourceManager != null) {
-						if (resourceManager.isFileResource(relativePath))
-							break;
-					}
+			ResolutionIndex.Resolution<String> resolution = mediaProviderRegistry
+					.resolveMediaProviderID(brand, interactionTypeID, languageID);
+			if (resolution.getValue() == null)
+				break;
+			IMediaProvider provider = mediaProviderRegistry
+					.getMediaProvider(resolution.getValue());
+			if (provider != null) {
+				IResourceManager resourceManager = provider
+						.getResourceManager();
+				if (resourceManager != null) {
+					if (resourceManager.isFileResource(relativePath))
+						mediaProviderID = resolution.getValue();
 				}
 			}
-			mediaProviderID = null;
-			brand = brand.getParentBrand();
+			brand = resolution.getBrand().getParentBrand();
 		}
 		if (mediaProviderID == null)
 		{
@@ -291,23 +272,14 @@ public class Conversation implements IConversation {
 		String interactionTypeID = interactionTypeSelection
 				.getSelectedInteractionType().getId();
 		String languageID = languageSelection.getSelectedLanguage();
-		InputGrammar result = null;
-		IBrand brand = brandSelection.getSelectedBrand();
-		while (brand != null && result == null) {
-			result = configuration.getItem(brand.getName(), interactionTypeID,
-					languageID);
-			if (result == null)
-				brand = brand.getParentBrand();
-		}
+		ResolutionIndex.Resolution<InputGrammar> item = configuration
+				.resolveItem(brandSelection.getSelectedBrand(),
+						interactionTypeID, languageID);
+		InputGrammar result = item.getValue();
 		if (result == null)
 			return null;
-		String mediaProviderID = null;
-		while (brand != null && mediaProviderID == null) {
-			mediaProviderID = mediaProviderRegistry.lookupMediaProviderID(
-					brand.getId(), interactionTypeID, languageID);
-			if (mediaProviderID == null)
-				brand = brand.getParentBrand();
-		}
+		String mediaProviderID = mediaProviderRegistry.resolveMediaProviderID(
+				item.getBrand(), interactionTypeID, languageID).getValue();
 		if (mediaProviderID == null)
 			return null;
 		if (result.isDataAware())
@@ -331,26 +303,16 @@ public class Conversation implements IConversation {
 		String interactionTypeID = interactionTypeSelection
 				.getSelectedInteractionType().getId();
 		String languageID = languageSelection.getSelectedLanguage();
-		InputGrammar result = null;
-		IBrand brand = brandSelection.getSelectedBrand();
-		while (brand != null && result == null) {
-			result = configuration.getItem(brand.getName(), interactionTypeID,
-					languageID);
-			if (result == null)
-				brand = brand.getParentBrand();
-		}
-		if (result == null)
+		ResolutionIndex.Resolution<InputGrammar> item = configuration
+				.resolveItem(brandSelection.getSelectedBrand(),
+						interactionTypeID, languageID);
+		if (item.getValue() == null)
 		{
 			input.setProperty("value", relativePath);
 			return input;
 		}
-		String mediaProviderID = null;
-		while (brand != null && mediaProviderID == null) {
-			mediaProviderID = mediaProviderRegistry.lookupMediaProviderID(
-					brand.getId(), interactionTypeID, languageID);
-			if (mediaProviderID == null)
-				brand = brand.getParentBrand();
-		}
+		String mediaProviderID = mediaProviderRegistry.resolveMediaProviderID(
+				item.getBrand(), interactionTypeID, languageID).getValue();
 		if (mediaProviderID == null)
 		{
 			input.setProperty("value", relativePath);
@@ -386,17 +348,9 @@ public class Conversation implements IConversation {
 				.getSelectedInteractionType().getId();
 		String languageID = languageSelection.getSelectedLanguage();
 		String result = null;
-		PropertyConfiguration.Value value = null;
-		IBrand brand = brandSelection.getSelectedBrand();
-		while (brand != null) {
-			value = configuration
-					.getItem(
-							brand.getName(),
-							useInteractionType ? interactionTypeID : "", useLanguage ? languageID : ""); //$NON-NLS-1$
-			if (value != null)
-				break;
-			brand = brand.getParentBrand();
-		}
+		PropertyConfiguration.Value value = configuration.resolveItem(
+				brandSelection.getSelectedBrand(),
+				useInteractionType ? interactionTypeID : "", useLanguage ? languageID : "").getValue(); //$NON-NLS-1$ //$NON-NLS-2$
 		if (value == null)
 			return null;
 		if (PropertyConfiguration.VARIABLE.equals(value.getType())) {
@@ -18,6 +18,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.eclipse.vtp.framework.common.IBrand;
 import org.eclipse.vtp.framework.core.IProcessContext;
 import org.eclipse.vtp.framework.interactions.core.configurations.MediaProviderBindingConfiguration;
 import org.eclipse.vtp.framework.interactions.core.configurations.MediaProviderConfiguration;
@@ -33,6 +34,7 @@ import org.eclipse.vtp.framework.interactions.core.media.IMediaProviderRegistry;
 import org.eclipse.vtp.framework.interactions.core.media.IResourceManager;
 import org.eclipse.vtp.framework.interactions.core.media.IResourceManagerRegistry;
 import org.eclipse.vtp.framework.interactions.core.media.ISharedContentProvider;
+import org.eclipse.vtp.framework.interactions.core.media.ResolutionIndex;
 
 /**
  * Implementation of {@link IMediaProviderRegistry}.
@@ -45,6 +47,16 @@ public class MediaProviderRegistry implements IMediaProviderRegistry
 	private final Map mediaProviders;
 	/** The media providers by ID. */
 	private final Map mediaProviderIndex;
+	/** The resolutions of media provider IDs along the brand hierarchy. */
+	private final ResolutionIndex<String> resolutions = new ResolutionIndex<String>()
+	{
+		protected String lookup(IBrand brand, String interactionTypeID,
+				String languageID)
+		{
+			return lookupMediaProviderID(brand.getId(), interactionTypeID,
+					languageID);
+		}
+	};
 
 	/**
 	 * Creates a new MediaProviderRegistry.
@@ -111,6 +123,20 @@ public class MediaProviderRegistry implements IMediaProviderRegistry
 				+ langugageID);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.vtp.framework.interactions.core.media.
+	 *      IMediaProviderRegistry#resolveMediaProviderID(
+	 *      org.eclipse.vtp.framework.common.IBrand, java.lang.String,
+	 *      java.lang.String)
+	 */
+	public ResolutionIndex.Resolution<String> resolveMediaProviderID(
+			IBrand brand, String interactionTypeID, String languageID)
+	{
+		return resolutions.resolve(brand, interactionTypeID, languageID);
+	}
+
 	/**
 	 * Implementation of {@link IMediaProvider}.
 	 * 
@@ -0,0 +1,68 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.interactions.core.services;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The platform identifiers selected for each combination of selection
+ * parameters in a process.
+ * <p>
+ * The selections are kept by a process-scoped service because the platforms
+ * registered differ between processes; a selection made in one process never
+ * applies to another or outlives a redeployment.
+ * </p>
+ * 
+ * @author Lonnie Pryor
+ */
+public class PlatformSelections
+{
+	/** The maximum number of remembered selections. */
+	private static final int MAXIMUM_SELECTIONS = 256;
+
+	/** The platform identifiers selected for each combination of parameters. */
+	private final ConcurrentMap<String, String> selections = new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Creates a new PlatformSelections.
+	 */
+	public PlatformSelections()
+	{
+	}
+
+	/**
+	 * Returns the platform identifier selected for a combination of selection
+	 * parameters.
+	 * 
+	 * @param key The key that identifies the selection parameters.
+	 * @return The selected platform identifier or <code>null</code>.
+	 */
+	public String get(String key)
+	{
+		return selections.get(key);
+	}
+
+	/**
+	 * Remembers the platform identifier selected for a combination of
+	 * selection parameters.
+	 * 
+	 * @param key The key that identifies the selection parameters.
+	 * @param identifier The selected platform identifier.
+	 */
+	public void put(String key, String identifier)
+	{
+		if (selections.size() >= MAXIMUM_SELECTIONS)
+			selections.clear();
+		selections.put(key, identifier);
+	}
+}
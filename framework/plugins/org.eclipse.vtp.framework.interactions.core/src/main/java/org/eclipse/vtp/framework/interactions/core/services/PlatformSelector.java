@@ -17,6 +17,13 @@ import org.eclipse.vtp.framework.interactions.core.platforms.IPlatformSelector;
 
 /**
  * Implementation of the platform selector.
+ * <p>
+ * The platform is selected from the request parameters on the first turn of a
+ * session and the identifier it was found under is pinned to the session, so
+ * later turns resolve the platform with a single lookup. The identifier chosen
+ * for each combination of parameter values is also remembered by the
+ * {@link PlatformSelections} of the process.
+ * </p>
  * 
  * @author Lonnie Pryor
  */
@@ -27,6 +34,8 @@ public class PlatformSelector implements IPlatformSelector
 			"ACCEPT", "MODE" }; //$NON-NLS-1$ //$NON-NLS-2$
 	/** The qualifier prefixes generated for each parameter name. */
 	private static final String[] PREFIXES;
+	/** The session attribute the selected platform identifier is pinned to. */
+	private static final String SELECTION_ATTRIBUTE = "platform.selection"; //$NON-NLS-1$
 
 	/** Generate the qualifier prefixes. */
 	static
@@ -46,51 +55,113 @@ public class PlatformSelector implements IPlatformSelector
 
 	/** The context to search in. */
 	private final IExecutionContext context;
+	/** The selections remembered by the process. */
+	private final PlatformSelections selections;
+	/** The platform selected for this execution. */
 	private IPlatform selectedPlatform = null;
 
 	/**
 	 * Creates a new PlatformSelector.
 	 * 
 	 * @param context The context to search in.
+	 * @param selections The selections remembered by the process.
 	 */
-	public PlatformSelector(IExecutionContext context)
+	public PlatformSelector(IExecutionContext context,
+			PlatformSelections selections)
 	{
 		this.context = context;
+		this.selections = selections;
 		selectedPlatform = selectPlatform();
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Selects the platform for the current execution, preferring the platform
+	 * pinned to the session.
 	 * 
-	 * @see org.eclipse.vtp.framework.interactions.core.platforms.
-	 *      IPlatformSelector#selectPlatform()
+	 * @return The selected platform or <code>null</code> if none is available.
 	 */
 	public IPlatform selectPlatform()
 	{
-		for (int i = 0; i < PARAMETERS.length; ++i)
+		Object pinned = context.getAttribute(SELECTION_ATTRIBUTE);
+		if (pinned instanceof String)
 		{
-			String[] values = context.getParameters(PARAMETERS[i]);
-			if (values == null)
-				continue;
-			for (int j = 0; j < values.length; ++j)
+			IPlatform platform = lookupPlatform((String)pinned);
+			if (platform != null)
+				return platform;
+		}
+		String key = getSelectionKey();
+		String identifier = selections.get(key);
+		IPlatform platform = identifier == null ? null
+				: lookupPlatform(identifier);
+		if (platform == null)
+		{
+			identifier = null;
+			for (int i = 0; platform == null && i < PARAMETERS.length; ++i)
 			{
-				if (values[j] == null)
+				String[] values = context.getParameters(PARAMETERS[i]);
+				if (values == null)
 					continue;
-				System.out.println("Looking up platform: " + PREFIXES[i] + values[j]);
-				Object platform = context.lookup(PREFIXES[i] + values[j]);
-				System.out.println(platform);
-				if (platform instanceof IPlatform)
-					return (IPlatform)platform;
+				for (int j = 0; platform == null && j < values.length; ++j)
+				{
+					if (values[j] == null)
+						continue;
+					identifier = PREFIXES[i] + values[j];
+					platform = lookupPlatform(identifier);
+				}
 			}
+			if (platform == null)
+			{
+				identifier = IPlatform.class.getName();
+				platform = lookupPlatform(identifier);
+			}
+			if (platform == null)
+				return null;
+			selections.put(key, identifier);
 		}
-		Object platform = context.lookup(IPlatform.class.getName());
-		if (platform instanceof IPlatform)
-			return (IPlatform)platform;
-		return null;
+		context.setAttribute(SELECTION_ATTRIBUTE, identifier);
+		return platform;
 	}
-	
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.vtp.framework.interactions.core.platforms.
+	 *      IPlatformSelector#getSelectedPlatform()
+	 */
 	public IPlatform getSelectedPlatform()
 	{
 		return this.selectedPlatform;
 	}
+
+	/**
+	 * Returns the key that identifies the selection parameters of the current
+	 * execution.
+	 * 
+	 * @return The key that identifies the selection parameters.
+	 */
+	private String getSelectionKey()
+	{
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < PARAMETERS.length; ++i)
+		{
+			String[] values = context.getParameters(PARAMETERS[i]);
+			if (values != null)
+				for (int j = 0; j < values.length; ++j)
+					if (values[j] != null)
+						key.append(i).append('=').append(values[j]).append('\n');
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Looks up the platform registered under an identifier.
+	 * 
+	 * @param identifier The identifier to look up.
+	 * @return The platform or <code>null</code> if none is registered.
+	 */
+	private IPlatform lookupPlatform(String identifier)
+	{
+		Object platform = context.lookup(identifier);
+		return platform instanceof IPlatform ? (IPlatform)platform : null;
+	}
 }
@@ -67,7 +67,9 @@ public abstract class Widget
 			throw new NullPointerException("writer"); //$NON-NLS-1$
 		try
 		{
-			writeWidget(new XMLWriter(outputStream));
+			XMLWriter writer = new XMLWriter(outputStream);
+			writeWidget(writer);
+			writer.flush();
 		}
 		catch (SAXException e)
 		{
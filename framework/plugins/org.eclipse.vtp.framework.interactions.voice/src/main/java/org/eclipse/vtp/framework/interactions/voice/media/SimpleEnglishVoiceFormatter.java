@@ -367,22 +367,11 @@ public class SimpleEnglishVoiceFormatter extends VoiceFormatter
 					s = "star";
 				else if(s.equals("#"))
 					s = "pound";
-				if(resourceManager.isFileResource("/DTMF/Dtmf-" + s + ".vox"))
+				String audioPath = findAudioPath(resourceManager, "/DTMF/Dtmf-" + s);
+				if(audioPath != null)
 				{
 					AudioContent ac = new AudioContent();
-					ac.setStaticPath("/DTMF/Dtmf-" + s + ".vox");
-					ret.add(ac);
-				}
-				else if(resourceManager.isFileResource("/DTMF/Dtmf-" + s + ".wav"))
-				{
-					AudioContent ac = new AudioContent();
-					ac.setStaticPath("/DTMF/Dtmf-" + s + ".wav");
-					ret.add(ac);
-				}
-				else if(resourceManager.isFileResource("/DTMF/Dtmf-" + s + ".au"))
-				{
-					AudioContent ac = new AudioContent();
-					ac.setStaticPath("/DTMF/Dtmf-" + s + ".au");
+					ac.setStaticPath(audioPath);
 					ret.add(ac);
 				}
 			}
@@ -393,22 +382,11 @@ public class SimpleEnglishVoiceFormatter extends VoiceFormatter
 			{
 				if(!Character.isDigit(chars[i]))
 					continue;
-				if(resourceManager.isFileResource("/Digits/" + new String(chars, i, 1) + ".vox"))
-				{
-					AudioContent ac = new AudioContent();
-					ac.setStaticPath("/Digits/" + new String(chars, i, 1) + ".vox");
-					ret.add(ac);
-				}
-				else if(resourceManager.isFileResource("/Digits/" + new String(chars, i, 1) + ".wav"))
-				{
-					AudioContent ac = new AudioContent();
-					ac.setStaticPath("/Digits/" + new String(chars, i, 1) + ".wav");
-					ret.add(ac);
-				}
-				else if(resourceManager.isFileResource("/Digits/" + new String(chars, i, 1) + ".au"))
+				String audioPath = findAudioPath(resourceManager, "/Digits/" + chars[i]);
+				if(audioPath != null)
 				{
 					AudioContent ac = new AudioContent();
-					ac.setStaticPath("/Digits/" + new String(chars, i, 1) + ".au");
+					ac.setStaticPath(audioPath);
 					ret.add(ac);
 				}
 				else
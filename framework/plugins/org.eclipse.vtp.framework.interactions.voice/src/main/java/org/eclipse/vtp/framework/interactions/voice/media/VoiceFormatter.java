@@ -4,11 +4,16 @@ import java.math.BigDecimal;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.vtp.framework.interactions.core.media.Content;
 import org.eclipse.vtp.framework.interactions.core.media.FormattableContent;
 import org.eclipse.vtp.framework.interactions.core.media.IFormatter;
 import org.eclipse.vtp.framework.interactions.core.media.IResourceManager;
+import org.eclipse.vtp.framework.interactions.core.media.IStaticResourceManager;
 import org.eclipse.vtp.framework.interactions.core.media.TextContent;
 
 public abstract class VoiceFormatter implements IFormatter
@@ -18,6 +23,13 @@ public abstract class VoiceFormatter implements IFormatter
     protected static final BigDecimal ZERO = new BigDecimal("0");
 	/** Convenience member for -1 as a BigDecimal */
     protected static final BigDecimal NEGATIVE_ONE = new BigDecimal("-1");
+	/** The audio file extensions in the order they are tried. */
+	private static final String[] AUDIO_EXTENSIONS = { ".vox", ".wav", ".au" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	/** The path recorded when no audio file exists. */
+	private static final String NO_AUDIO = ""; //$NON-NLS-1$
+
+	/** The resolved audio paths by resource manager and path without extension. */
+	private final Map<IResourceManager, ConcurrentMap<String, String>> audioPaths = new WeakHashMap<IResourceManager, ConcurrentMap<String, String>>();
 
 	public VoiceFormatter()
 	{
@@ -59,34 +71,76 @@ public abstract class VoiceFormatter implements IFormatter
     protected Content getAudioContent(IResourceManager resourceManager, String path, String filename,
             String defaultText)
     {
-    	Content ret = null;
-    	if(resourceManager.isFileResource(path + filename + ".vox"))
-    	{
-    		AudioContent ac = new AudioContent();
-    		ac.setStaticPath(path + filename + ".vox");
-    		ret = ac;
-    	}
-    	else if(resourceManager.isFileResource(path + filename + ".wav"))
+    	String audioPath = findAudioPath(resourceManager, path + filename);
+    	if(audioPath != null)
     	{
     		AudioContent ac = new AudioContent();
-    		ac.setStaticPath(path + filename + ".wav");
-    		ret = ac;
+    		ac.setStaticPath(audioPath);
+    		return ac;
     	}
-    	else if(resourceManager.isFileResource(path + filename + ".au"))
-    	{
-    		AudioContent ac = new AudioContent();
-    		ac.setStaticPath(path + filename + ".au");
-    		ret = ac;
-    	}
-    	else
-    	{
-    		TextContent tc = new TextContent();
-    		tc.setStaticText(defaultText + " ");
-    		ret = tc;
-    	}
-    	return ret;
+    	TextContent tc = new TextContent();
+    	tc.setStaticText(defaultText + " ");
+    	return tc;
     }
-    
+
+	/**
+	 * Returns the path of the first audio file that exists for the specified
+	 * path without an extension, trying the extensions in the order described
+	 * by {@link #getAudioContent(IResourceManager, String, String, String)}.
+	 * <p>
+	 * When the resource manager is an {@link IStaticResourceManager} the
+	 * outcome, including the absence of a file, is remembered for that manager
+	 * so repeated formatting of the same token does not probe the resources
+	 * again.
+	 * </p>
+	 * 
+	 * @param resourceManager Provides access to the available file resources.
+	 * @param basePath The path to the file minus the extension.
+	 * @return The path of the audio file or <code>null</code> if none exists.
+	 */
+	protected String findAudioPath(IResourceManager resourceManager,
+			String basePath)
+	{
+		if (!(resourceManager instanceof IStaticResourceManager))
+			return probeAudioPath(resourceManager, basePath);
+		ConcurrentMap<String, String> resolved;
+		synchronized (audioPaths)
+		{
+			resolved = audioPaths.get(resourceManager);
+			if (resolved == null)
+			{
+				resolved = new ConcurrentHashMap<String, String>();
+				audioPaths.put(resourceManager, resolved);
+			}
+		}
+		String audioPath = resolved.get(basePath);
+		if (audioPath == null)
+		{
+			audioPath = probeAudioPath(resourceManager, basePath);
+			if (audioPath == null)
+				audioPath = NO_AUDIO;
+			resolved.put(basePath, audioPath);
+		}
+		return audioPath == NO_AUDIO ? null : audioPath;
+	}
+
+	/**
+	 * Probes the resources for the first audio file that exists for the
+	 * specified path without an extension.
+	 * 
+	 * @param resourceManager Provides access to the available file resources.
+	 * @param basePath The path to the file minus the extension.
+	 * @return The path of the audio file or <code>null</code> if none exists.
+	 */
+	private static String probeAudioPath(IResourceManager resourceManager,
+			String basePath)
+	{
+		for (int i = 0; i < AUDIO_EXTENSIONS.length; ++i)
+			if (resourceManager.isFileResource(basePath + AUDIO_EXTENSIONS[i]))
+				return basePath + AUDIO_EXTENSIONS[i];
+		return null;
+	}
+
 	public List<Content> formatDate(Calendar cal, String formatDefinition, String formatOptions, IResourceManager resourceManager)
 	{
 		return formatDate(cal.getTime(), formatDefinition, formatOptions, resourceManager);
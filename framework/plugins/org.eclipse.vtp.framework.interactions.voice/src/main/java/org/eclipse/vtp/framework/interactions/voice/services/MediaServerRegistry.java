@@ -0,0 +1,184 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.interactions.voice.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import org.eclipse.vtp.framework.core.IProcessContext;
+
+/**
+ * The media servers audio files are served from, in failover order.
+ * <p>
+ * The servers are read from the <code>media-server-count</code> and
+ * <code>media-server-<i>n</i></code> JNDI environment entries the first time
+ * they are needed and kept until {@link #refresh()} is called. As a process
+ * scoped service the list is also resolved again whenever the process is
+ * redeployed. The chain of URIs generated for each audio path is memoized.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+public class MediaServerRegistry
+{
+	/** The JNDI name of the number of media servers. */
+	public static final String COUNT_NAME = "java:comp/env/media-server-count"; //$NON-NLS-1$
+	/** The prefix of the JNDI names of the media servers. */
+	public static final String SERVER_NAME_PREFIX = "java:comp/env/media-server-"; //$NON-NLS-1$
+	/** The maximum number of audio paths to memoize chains for. */
+	private static final int MAXIMUM_CHAINS = 1024;
+	/** The chain used when no media servers are configured. */
+	private static final String[] NO_SERVERS = {};
+
+	/** The context to use. */
+	private final IProcessContext context;
+	/** The memoized chains by audio path. */
+	private final Map<String, String[]> chains = new LinkedHashMap<String, String[]>(
+			16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest)
+		{
+			return size() > MAXIMUM_CHAINS;
+		}
+	};
+	/** The media server prefixes or <code>null</code> if not yet resolved. */
+	private volatile String[] servers = null;
+
+	/**
+	 * Creates a new MediaServerRegistry.
+	 *
+	 * @param context The context to use.
+	 */
+	public MediaServerRegistry(IProcessContext context)
+	{
+		this.context = context;
+	}
+
+	/**
+	 * Returns the prefixes of the configured media servers in failover order.
+	 * An element is <code>null</code> if that server could not be resolved.
+	 *
+	 * @return The prefixes of the configured media servers.
+	 */
+	public String[] getServers()
+	{
+		String[] servers = this.servers;
+		if (servers == null)
+			this.servers = servers = resolveServers();
+		return servers.clone();
+	}
+
+	/**
+	 * Returns the URIs an audio path is served from in failover order. An
+	 * element is <code>null</code> if the corresponding server could not be
+	 * resolved.
+	 *
+	 * @param path The path of the audio file.
+	 * @return The URIs the audio file is served from.
+	 */
+	public String[] getChain(String path)
+	{
+		String[] chain = null;
+		synchronized (chains)
+		{
+			chain = chains.get(path);
+		}
+		if (chain != null)
+			return chain;
+		String[] servers = this.servers;
+		if (servers == null)
+			this.servers = servers = resolveServers();
+		if (servers.length == 0)
+			chain = NO_SERVERS;
+		else
+		{
+			chain = new String[servers.length];
+			for (int i = 0; i < servers.length; ++i)
+			{
+				if (servers[i] == null)
+					continue;
+				if (!servers[i].endsWith("/") && !path.startsWith("/")) //$NON-NLS-1$ //$NON-NLS-2$
+					chain[i] = servers[i] + "/" + path; //$NON-NLS-1$
+				else
+					chain[i] = servers[i] + path;
+			}
+		}
+		synchronized (chains)
+		{
+			if (this.servers == servers)
+				chains.put(path, chain);
+		}
+		return chain;
+	}
+
+	/**
+	 * Discards the resolved media servers and memoized chains so they are read
+	 * from JNDI again the next time they are needed.
+	 */
+	public void refresh()
+	{
+		synchronized (chains)
+		{
+			servers = null;
+			chains.clear();
+		}
+	}
+
+	/**
+	 * Reads the media server prefixes from JNDI.
+	 *
+	 * @return The media server prefixes.
+	 */
+	protected String[] resolveServers()
+	{
+		try
+		{
+			InitialContext jndiContext = new InitialContext();
+			String countString = (String)jndiContext.lookup(COUNT_NAME);
+			if (countString == null)
+				return NO_SERVERS;
+			int count = 0;
+			try
+			{
+				count = Integer.parseInt(countString);
+			}
+			catch (NumberFormatException e)
+			{
+			}
+			if (count <= 0)
+				return NO_SERVERS;
+			String[] servers = new String[count];
+			for (int i = 0; i < count; ++i)
+			{
+				try
+				{
+					servers[i] = (String)jndiContext.lookup(SERVER_NAME_PREFIX + (i + 1));
+				}
+				catch (NamingException e)
+				{
+				}
+			}
+			if (context != null && context.isDebugEnabled())
+				context.debug("Resolved " + count + " media server(s)."); //$NON-NLS-1$ //$NON-NLS-2$
+			return servers;
+		}
+		catch (NamingException e)
+		{
+			return NO_SERVERS;
+		}
+	}
+}
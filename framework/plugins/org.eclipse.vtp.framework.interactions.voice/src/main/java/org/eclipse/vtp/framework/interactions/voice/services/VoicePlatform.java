@@ -20,9 +20,6 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.naming.InitialContext;
-import javax.naming.NamingException;
-
 import org.eclipse.vtp.framework.common.IBrand;
 import org.eclipse.vtp.framework.common.IBrandSelection;
 import org.eclipse.vtp.framework.core.IExecutionContext;
@@ -94,6 +91,8 @@ public class VoicePlatform extends AbstractPlatform implements VXMLConstants
 	/** The media provider. */
 	private IMediaProvider mediaProvider;
 	private final IExecutionContext context;
+	/** The media servers to generate audio chains for. */
+	private MediaServerRegistry mediaServers = null;
 
 	/**
 	 * Creates a new VoicePlatform.
@@ -167,56 +166,40 @@ public class VoicePlatform extends AbstractPlatform implements VXMLConstants
 	
 	public AudioOutput generateAudioChain(ILinkFactory links, String path)
 	{
-		AudioOutput output = new AudioOutput(links.createResourceLink(path).toString());
 		if(path.startsWith("http://"))
-			return output;
-		try
+			return new AudioOutput(links.createResourceLink(path).toString());
+		String[] chain = getMediaServers().getChain(path);
+		AudioOutput output = new AudioOutput(chain.length > 0 && chain[0] != null
+				? chain[0] : links.createResourceLink(path).toString());
+		AudioOutput current = output;
+		for(int i = 1; i < chain.length; i++)
 		{
-			InitialContext jndiContext = new InitialContext();
-			String mediaServerCountString = (String)jndiContext.lookup("java:comp/env/media-server-count");
-			if(mediaServerCountString != null)
+			if(chain[i] != null)
 			{
-				int count = 0;
-				try
-				{
-					count = Integer.parseInt(mediaServerCountString);
-				}
-				catch (NumberFormatException e)
-				{
-				}
-				AudioOutput current = output;
-				for(int i = 1; i < count + 1; i++)
-				{
-					try
-					{
-						String serverPrefix = (String)jndiContext.lookup("java:comp/env/media-server-" + i);
-						if(serverPrefix != null)
-						{
-							String fullPath = serverPrefix + path;
-							if(!serverPrefix.endsWith("/") && !path.startsWith("/"))
-								fullPath = serverPrefix + "/" + path;
-							if(i == 1)
-							{
-								current.setAudioFileURI(fullPath); 
-							}
-							else
-							{
-								AudioOutput ao = new AudioOutput(fullPath);
-								current.addOutput(ao);
-								current = ao;
-							}
-						}
-					}
-					catch (NamingException e)
-					{
-					}
-				}
+				AudioOutput ao = new AudioOutput(chain[i]);
+				current.addOutput(ao);
+				current = ao;
 			}
 		}
-		catch (NamingException e)
+		return output;
+	}
+
+	/**
+	 * Returns the media servers audio chains are generated for.
+	 * 
+	 * @return The media servers audio chains are generated for.
+	 */
+	protected MediaServerRegistry getMediaServers()
+	{
+		if(mediaServers == null)
 		{
+			Object registry = context.lookup(MediaServerRegistry.class.getName());
+			if(registry instanceof MediaServerRegistry)
+				mediaServers = (MediaServerRegistry)registry;
+			else
+				mediaServers = new MediaServerRegistry(context);
 		}
-		return output;
+		return mediaServers;
 	}
 
 	/**
@@ -22,6 +22,15 @@ import org.mozilla.javascript.ScriptableObject;
 
 /**
  * Implementation of the JavaScript context.
+ * <p>
+ * The context created by the provider builds the standard objects and the
+ * process scriptables once so they can be shared by every thread. The layer
+ * holding the scriptables is sealed; the standard objects are not, so scripts
+ * may still extend built-in prototypes such as <code>String.prototype</code>.
+ * Nested contexts layer their scriptables over the scope of their
+ * owner; a layer is only built when the first script runs in it, and a nested
+ * context with no scriptables of its own is not created at all.
+ * </p>
  * 
  * @author Lonnie Pryor
  */
@@ -29,8 +38,16 @@ public class JavaScriptContext implements IScriptingContext
 {
 	/** The application class loader. */
 	private final ClassLoader applicationClassLoader;
-	/** The scope of this context. */
-	private final ScriptableObject scope;
+	/** The cache of compiled scripts or <code>null</code>. */
+	private final ScriptCache scriptCache;
+	/** The statistics of the process. */
+	private final ScopeStatistics statistics;
+	/** The context this context is layered over or <code>null</code>. */
+	private final JavaScriptContext owner;
+	/** The scriptables of this context. */
+	private final IScriptable[] scriptables;
+	/** The scope of this context or <code>null</code> if not yet built. */
+	private volatile ScriptableObject scope = null;
 
 	/**
 	 * Creates a new JavaScriptContext.
@@ -41,12 +58,51 @@ public class JavaScriptContext implements IScriptingContext
 	 */
 	public JavaScriptContext(ClassLoader applicationClassLoader,
 			String scriptingLanguage, IScriptable[] scriptables)
+	{
+		this(applicationClassLoader, null, scriptingLanguage, scriptables);
+	}
+
+	/**
+	 * Creates a new JavaScriptContext.
+	 * 
+	 * @param applicationClassLoader The application class loader.
+	 * @param scriptCache The cache of compiled scripts or <code>null</code>.
+	 * @param scriptingLanguage The scripting language that was requested.
+	 * @param scriptables The scriptables to initialize.
+	 */
+	public JavaScriptContext(ClassLoader applicationClassLoader,
+			ScriptCache scriptCache, String scriptingLanguage,
+			IScriptable[] scriptables)
+	{
+		this(applicationClassLoader, scriptCache, null, scriptingLanguage,
+				scriptables);
+	}
+
+	/**
+	 * Creates a new JavaScriptContext.
+	 * 
+	 * @param applicationClassLoader The application class loader.
+	 * @param scriptCache The cache of compiled scripts or <code>null</code>.
+	 * @param statistics The statistics to update or <code>null</code>.
+	 * @param scriptingLanguage The scripting language that was requested.
+	 * @param scriptables The scriptables to initialize.
+	 */
+	public JavaScriptContext(ClassLoader applicationClassLoader,
+			ScriptCache scriptCache, ScopeStatistics statistics,
+			String scriptingLanguage, IScriptable[] scriptables)
 	{
 		this.applicationClassLoader = applicationClassLoader;
+		this.scriptCache = scriptCache;
+		this.statistics = statistics == null ? new ScopeStatistics()
+				: statistics;
+		this.owner = null;
+		this.scriptables = scriptables;
+		this.statistics.contextCreated();
 		Context ctx = Context.enter();
 		try
 		{
 			scope = new Scope(ctx.initStandardObjects(), scriptables);
+			this.statistics.scopeBuilt();
 		}
 		finally
 		{
@@ -63,15 +119,35 @@ public class JavaScriptContext implements IScriptingContext
 	public JavaScriptContext(IScriptable[] scriptables, JavaScriptContext owner)
 	{
 		applicationClassLoader = owner.applicationClassLoader;
-		Context.enter();
-		try
-		{
-			scope = new Scope(owner.scope, scriptables);
-		}
-		finally
+		scriptCache = owner.scriptCache;
+		statistics = owner.statistics;
+		this.owner = owner;
+		this.scriptables = scriptables;
+		statistics.contextCreated();
+	}
+
+	/**
+	 * Returns the scope of this context, building it and the scopes it is
+	 * layered over if necessary.
+	 * 
+	 * @return The scope of this context.
+	 */
+	private ScriptableObject getScope()
+	{
+		ScriptableObject scope = this.scope;
+		if (scope == null)
 		{
-			Context.exit();
+			synchronized (this)
+			{
+				scope = this.scope;
+				if (scope == null)
+				{
+					this.scope = scope = new Scope(owner.getScope(), scriptables);
+					statistics.scopeBuilt();
+				}
+			}
 		}
+		return scope;
 	}
 
 	/*
@@ -83,6 +159,8 @@ public class JavaScriptContext implements IScriptingContext
 	 */
 	public IScriptingContext createScriptingContext(IScriptable[] content)
 	{
+		if (content == null || content.length == 0)
+			return this;
 		return new JavaScriptContext(content, this);
 	}
 
@@ -93,6 +171,7 @@ public class JavaScriptContext implements IScriptingContext
 	 */
 	public IScriptingEngine createScriptingEngine()
 	{
+		statistics.engineCreated();
 		return new ScriptingEngine();
 	}
 
@@ -105,6 +184,8 @@ public class JavaScriptContext implements IScriptingContext
 	{
 		/** The scriptable instance for this engine. */
 		private Scriptable instance = null;
+		/** The hosts created by scripts run by this engine. */
+		private final JavaScriptObject.WrapperCache wrappers = new JavaScriptObject.WrapperCache();
 
 		/*
 		 * (non-Javadoc)
@@ -116,15 +197,21 @@ public class JavaScriptContext implements IScriptingContext
 		{
 			Context ctx = Context.enter();
 			ctx.setOptimizationLevel(-1);
+			Object previousWrappers = wrappers.install(ctx);
 			try
 			{
 				ctx.setApplicationClassLoader(applicationClassLoader);
+				statistics.scriptExecuted();
 				if (instance == null)
 				{
+					ScriptableObject scope = getScope();
 					instance = ctx.newObject(scope);
 					instance.setPrototype(scope);
 					instance.setParentScope(null);
 				}
+				if (scriptCache != null && scriptCache.isEnabled())
+					return JavaScriptObject.jsToJava(scriptCache.getScript(ctx, script)
+							.exec(ctx, instance));
 				return JavaScriptObject.jsToJava(ctx.evaluateString(instance, script,
 						"<script>", 0, null)); //$NON-NLS-1$
 			}
@@ -141,6 +228,7 @@ public class JavaScriptContext implements IScriptingContext
 			}
 			finally
 			{
+				wrappers.uninstall(ctx, previousWrappers);
 				Context.exit();
 			}
 		}
@@ -12,6 +12,10 @@
 package org.eclipse.vtp.framework.javascript;
 
 import java.util.Calendar;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.vtp.framework.common.IScriptable;
 import org.mozilla.javascript.BaseFunction;
@@ -23,6 +27,14 @@ import org.mozilla.javascript.Wrapper;
 
 /**
  * A Rhino host for implementations of {@link IScriptable}.
+ * <p>
+ * The functions of a scriptable are defined once on a sealed prototype shared
+ * by every host with the same set of functions; a host binds a function to its
+ * scriptable the first time the function is read through it. While a script
+ * runs, the hosts created for values it reaches are kept in the
+ * {@link WrapperCache} of the running engine, so repeated property accesses
+ * return the same host.
+ * </p>
  * 
  * @author Lonnie Pryor
  */
@@ -30,6 +42,53 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 {
 	/** Comment for serialVersionUID. */
 	private static final long serialVersionUID = 1L;
+	/** The shared function prototypes by function names. */
+	private static final ConcurrentMap<String, Prototype> prototypes = new ConcurrentHashMap<String, Prototype>();
+
+	/**
+	 * Returns a host for the specified scriptable, reusing the host created
+	 * earlier by the running engine if there is one.
+	 * 
+	 * @param scriptable The scriptable to host.
+	 * @return A host for the specified scriptable.
+	 */
+	static JavaScriptObject wrap(IScriptable scriptable)
+	{
+		Context ctx = Context.getCurrentContext();
+		Object cache = ctx == null ? null : ctx
+				.getThreadLocal(WrapperCache.class);
+		if (cache instanceof WrapperCache)
+			return ((WrapperCache)cache).get(scriptable);
+		return new JavaScriptObject(scriptable);
+	}
+
+	/**
+	 * Returns the shared prototype that defines the functions of the specified
+	 * scriptable.
+	 * 
+	 * @param scriptable The scriptable to return the prototype for.
+	 * @return The shared prototype that defines the functions of the scriptable.
+	 */
+	private static Prototype getPrototype(IScriptable scriptable)
+	{
+		String[] functionNames = scriptable.getFunctionNames();
+		boolean hasValue = scriptable.hasValue();
+		StringBuilder key = new StringBuilder(hasValue ? "+" : "-"); //$NON-NLS-1$ //$NON-NLS-2$
+		if (functionNames != null)
+			for (int i = 0; i < functionNames.length; ++i)
+				if (functionNames[i] != null)
+					key.append(functionNames[i]).append(',');
+		String id = key.toString();
+		Prototype prototype = prototypes.get(id);
+		if (prototype == null)
+		{
+			prototype = new Prototype(functionNames, hasValue);
+			Prototype existing = prototypes.putIfAbsent(id, prototype);
+			if (existing != null)
+				prototype = existing;
+		}
+		return prototype;
+	}
 
 	/**
 	 * Converts a Java object into a JavaScript object.
@@ -52,7 +111,7 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 			return output;
 		}
 		if (object instanceof IScriptable)
-			return new JavaScriptObject((IScriptable)object);
+			return wrap((IScriptable)object);
 		if(object instanceof Calendar)
 			return object;
 		return Context.javaToJS(object, start);
@@ -97,8 +156,10 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 
 	/** The scriptable to manage. */
 	private final IScriptable scriptable;
-	/** The names of the functions. */
-	private final String[] functionNames;
+	/** The shared prototype that defines the functions. */
+	private final Prototype functions;
+	/** The functions bound to this host or <code>null</code> if none yet. */
+	private volatile ConcurrentMap<String, Function> boundFunctions = null;
 
 	/**
 	 * Creates a new ScriptableHost.
@@ -108,16 +169,8 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 	public JavaScriptObject(IScriptable scriptable)
 	{
 		this.scriptable = scriptable;
-		functionNames = scriptable.getFunctionNames();
-		if (functionNames != null)
-			for (int i = 0; i < functionNames.length; ++i)
-				if (functionNames[i] != null)
-					defineProperty(functionNames[i], new Function(functionNames[i]),
-							ScriptableObject.PERMANENT | ScriptableObject.READONLY | ScriptableObject.DONTENUM);
-		if (scriptable.hasValue())
-			defineProperty("valueOf", //$NON-NLS-1$
-					new Function("valueOf"), //$NON-NLS-1$
-					ScriptableObject.PERMANENT | ScriptableObject.READONLY | ScriptableObject.DONTENUM);
+		this.functions = getPrototype(scriptable);
+		setPrototype(functions);
 		if(!scriptable.isMutable())
 			sealObject();
 	}
@@ -137,6 +190,8 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 	{
 		Object[] parentIds = super.getIds();
 		Object[] ids = scriptable.getPropertyNames();
+		if (parentIds.length == 0)
+			return ids;
 		Object[] allIds = new Object[parentIds.length + ids.length];
 		System.arraycopy(parentIds, 0, allIds, 0, parentIds.length);
 		System.arraycopy(ids, 0, allIds, parentIds.length, ids.length);
@@ -162,7 +217,8 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 	 */
 	public boolean has(String name, Scriptable start)
 	{
-		return super.has(name, start) || scriptable.hasEntry(name);
+		return super.has(name, start) || functions.has(name, functions)
+				|| scriptable.hasEntry(name);
 	}
 
 	/*
@@ -186,9 +242,41 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 	{
 		if (super.has(name, start))
 			return super.get(name, start);
+		if (functions.has(name, functions))
+			return getBoundFunction(name);
 		return javaToJS(scriptable.getEntry(name), this);
 	}
 
+	/**
+	 * Returns the named function bound to the scriptable of this host, so it
+	 * keeps working when called detached from this host.
+	 * 
+	 * @param name The name of the function.
+	 * @return The named function bound to the scriptable of this host.
+	 */
+	private Function getBoundFunction(String name)
+	{
+		ConcurrentMap<String, Function> bound = boundFunctions;
+		if (bound == null)
+		{
+			synchronized (this)
+			{
+				if ((bound = boundFunctions) == null)
+					boundFunctions = bound = new ConcurrentHashMap<String, Function>(
+							4, 0.75f, 1);
+			}
+		}
+		Function function = bound.get(name);
+		if (function == null)
+		{
+			function = new Function(name, scriptable);
+			Function existing = bound.putIfAbsent(name, function);
+			if (existing != null)
+				function = existing;
+		}
+		return function;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -215,14 +303,8 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 			super.put(name, start, value);
 			return;
 		}
-		for (int i = 0; i < functionNames.length; ++i)
-		{
-			if (functionNames[i].equals(name))
-			{
-				super.put(name, start, value);
-				return;
-			}
-		}
+		if (functions.has(name, functions))
+			return;
 		scriptable.setEntry(name, jsToJava(value));
 	}
 
@@ -243,7 +325,7 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 	 */
 	public void delete(String name)
 	{
-		if (!super.has(name, this))
+		if (!super.has(name, this) && !functions.has(name, functions))
 			scriptable.clearEntry(name);
 	}
 
@@ -258,17 +340,138 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 	}
 
 	/**
-	 * A function on a scriptable.
+	 * Keeps the hosts created while scripts run in one engine. An engine is
+	 * used by one action at a time, so the hosts live no longer than the
+	 * action that reached them.
+	 * <p>
+	 * Hosts are keyed by the identity of the scriptable they manage. Data
+	 * objects are loaded once per ID by their registry, so this is equivalent to
+	 * keying on the data object ID without calling into the object.
+	 * </p>
 	 * 
 	 * @author Lonnie Pryor
 	 */
-	private final class Function extends BaseFunction
+	static final class WrapperCache
+	{
+		/** The maximum number of hosts to keep. */
+		private static final int MAXIMUM_SIZE = 1024;
+
+		/** The hosts by scriptable. */
+		private final Map<IScriptable, JavaScriptObject> wrappers = new IdentityHashMap<IScriptable, JavaScriptObject>();
+
+		/**
+		 * Creates a new WrapperCache.
+		 */
+		WrapperCache()
+		{
+		}
+
+		/**
+		 * Makes this cache the one used by the current Rhino context.
+		 * 
+		 * @param ctx The current Rhino context.
+		 * @return The cache that was used before or <code>null</code>.
+		 */
+		Object install(Context ctx)
+		{
+			Object previous = ctx.getThreadLocal(WrapperCache.class);
+			ctx.putThreadLocal(WrapperCache.class, this);
+			return previous;
+		}
+
+		/**
+		 * Restores the cache that was used before {@link #install(Context)}.
+		 * 
+		 * @param ctx The current Rhino context.
+		 * @param previous The cache that was used before or <code>null</code>.
+		 */
+		void uninstall(Context ctx, Object previous)
+		{
+			if (previous == null)
+				ctx.removeThreadLocal(WrapperCache.class);
+			else
+				ctx.putThreadLocal(WrapperCache.class, previous);
+		}
+
+		/**
+		 * Returns the host for the specified scriptable.
+		 * 
+		 * @param scriptable The scriptable to host.
+		 * @return The host for the specified scriptable.
+		 */
+		JavaScriptObject get(IScriptable scriptable)
+		{
+			synchronized (wrappers)
+			{
+				JavaScriptObject wrapper = wrappers.get(scriptable);
+				if (wrapper == null)
+				{
+					if (wrappers.size() >= MAXIMUM_SIZE)
+						wrappers.clear();
+					wrappers.put(scriptable, wrapper = new JavaScriptObject(scriptable));
+				}
+				return wrapper;
+			}
+		}
+	}
+
+	/**
+	 * The sealed prototype that defines a set of functions.
+	 * 
+	 * @author Lonnie Pryor
+	 */
+	private static final class Prototype extends ScriptableObject
+	{
+		/** Comment for serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Creates a new Prototype.
+		 * 
+		 * @param functionNames The names of the functions or <code>null</code>.
+		 * @param hasValue True to define the <code>valueOf</code> function.
+		 */
+		Prototype(String[] functionNames, boolean hasValue)
+		{
+			if (functionNames != null)
+				for (int i = 0; i < functionNames.length; ++i)
+					if (functionNames[i] != null)
+						defineProperty(functionNames[i], new Function(functionNames[i]),
+								ScriptableObject.PERMANENT | ScriptableObject.READONLY | ScriptableObject.DONTENUM);
+			if (hasValue)
+				defineProperty("valueOf", //$NON-NLS-1$
+						new Function("valueOf"), //$NON-NLS-1$
+						ScriptableObject.PERMANENT | ScriptableObject.READONLY | ScriptableObject.DONTENUM);
+			sealObject();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.mozilla.javascript.ScriptableObject#getClassName()
+		 */
+		public String getClassName()
+		{
+			return JavaScriptObject.class.getName();
+		}
+	}
+
+	/**
+	 * A function on a scriptable. Functions on the shared prototypes are invoked
+	 * on the scriptable of the host they are called through; functions bound by
+	 * a host are always invoked on its scriptable.
+	 * 
+	 * @author Lonnie Pryor
+	 */
+	private static final class Function extends BaseFunction
 	{
 		/** Comment for serialVersionUID. */
 		private static final long serialVersionUID = 1L;
 
 		/** The name of the function. */
 		private final String name;
+		/** The scriptable the function is bound to or <code>null</code>. */
+		private final IScriptable owner;
 
 		/**
 		 * Creates a new FunctionInstance.
@@ -276,8 +479,21 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 		 * @param name The name of the function.
 		 */
 		Function(String name)
+		{
+			this(name, null);
+		}
+
+		/**
+		 * Creates a new FunctionInstance.
+		 * 
+		 * @param name The name of the function.
+		 * @param owner The scriptable to bind the function to or
+		 *          <code>null</code>.
+		 */
+		Function(String name, IScriptable owner)
 		{
 			this.name = name;
+			this.owner = owner;
 		}
 
 		/*
@@ -300,24 +516,32 @@ public class JavaScriptObject extends ScriptableObject implements Wrapper
 		public Object call(Context ctx, Scriptable scope, Scriptable thisObj,
 				Object[] args)
 		{
+			IScriptable scriptable = owner;
+			if (scriptable == null)
+			{
+				if (!(thisObj instanceof JavaScriptObject))
+					throw Context.reportRuntimeError("Function " + name //$NON-NLS-1$
+							+ " must be called on the object it belongs to."); //$NON-NLS-1$
+				scriptable = ((JavaScriptObject)thisObj).scriptable;
+			}
 			if ("valueOf".equals(name)) //$NON-NLS-1$
 			{
 				Object value = scriptable;
 				while (value != null && value instanceof IScriptable)
 				{
-					IScriptable scriptable = (IScriptable)value;
-					if (scriptable.hasValue())
-						value = scriptable.toValue();
+					IScriptable current = (IScriptable)value;
+					if (current.hasValue())
+						value = current.toValue();
 					else
 						value = null;
 				}
-				return javaToJS(value, this);
+				return javaToJS(value, thisObj);
 			}
 			for (int i = 0; i < args.length; ++i)
 				args[i] = jsToJava(args[i]);
 			try
 			{
-				return javaToJS(scriptable.invokeFunction(name, args), this);
+				return javaToJS(scriptable.invokeFunction(name, args), thisObj);
 			}
 			catch(Exception ex)
 			{
@@ -0,0 +1,171 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.javascript;
+
+import java.util.Dictionary;
+import java.util.Hashtable;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.vtp.framework.core.IReporter;
+
+/**
+ * Counts the scripting work done by the contexts of a process.
+ * <p>
+ * Comparing the number of scopes built to the number of scripts executed
+ * shows how well the scope layers are being reused across the actions of an
+ * execution. When created with a reporter, the counters are reported as a
+ * <code>scripting.statistics</code> event every {@link #REPORT_INTERVAL}
+ * scripts at debug severity, along with the counters of the script cache of
+ * the process if there is one.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+public class ScopeStatistics
+{
+	/** The number of scripts executed between periodic reports. */
+	public static final long REPORT_INTERVAL = 10000L;
+
+	/** The reporter to report to or <code>null</code>. */
+	private final IReporter reporter;
+	/** The script cache to report on or <code>null</code>. */
+	private final ScriptCache scriptCache;
+	/** The number of contexts created. */
+	private final AtomicLong contexts = new AtomicLong();
+	/** The number of scopes built. */
+	private final AtomicLong scopes = new AtomicLong();
+	/** The number of engines created. */
+	private final AtomicLong engines = new AtomicLong();
+	/** The number of scripts executed. */
+	private final AtomicLong executions = new AtomicLong();
+
+	/**
+	 * Creates a new ScopeStatistics.
+	 */
+	public ScopeStatistics()
+	{
+		this(null, null);
+	}
+
+	/**
+	 * Creates a new ScopeStatistics.
+	 *
+	 * @param reporter The reporter to report to or <code>null</code>.
+	 * @param scriptCache The script cache to report on or <code>null</code>.
+	 */
+	public ScopeStatistics(IReporter reporter, ScriptCache scriptCache)
+	{
+		this.reporter = reporter;
+		this.scriptCache = scriptCache;
+	}
+
+	/**
+	 * Returns the number of contexts created.
+	 *
+	 * @return The number of contexts created.
+	 */
+	public long getContexts()
+	{
+		return contexts.get();
+	}
+
+	/**
+	 * Returns the number of scopes built.
+	 *
+	 * @return The number of scopes built.
+	 */
+	public long getScopes()
+	{
+		return scopes.get();
+	}
+
+	/**
+	 * Returns the number of engines created.
+	 *
+	 * @return The number of engines created.
+	 */
+	public long getEngines()
+	{
+		return engines.get();
+	}
+
+	/**
+	 * Returns the number of scripts executed.
+	 *
+	 * @return The number of scripts executed.
+	 */
+	public long getExecutions()
+	{
+		return executions.get();
+	}
+
+	/**
+	 * Reports the current counters as a <code>scripting.statistics</code>
+	 * event if a reporter was supplied and reporting is enabled.
+	 *
+	 * @param severity The severity to report at.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void report(int severity)
+	{
+		if (reporter == null || !reporter.isReportingEnabled())
+			return;
+		Dictionary props = new Hashtable();
+		props.put("event", "scripting.statistics"); //$NON-NLS-1$ //$NON-NLS-2$
+		props.put("scripting.contexts", Long.valueOf(getContexts())); //$NON-NLS-1$
+		props.put("scripting.scopes", Long.valueOf(getScopes())); //$NON-NLS-1$
+		props.put("scripting.engines", Long.valueOf(getEngines())); //$NON-NLS-1$
+		props.put("scripting.executions", Long.valueOf(getExecutions())); //$NON-NLS-1$
+		if (scriptCache != null)
+		{
+			props.put("scripting.cache.hits", Long.valueOf(scriptCache.getHits())); //$NON-NLS-1$
+			props.put("scripting.cache.misses", Long.valueOf(scriptCache.getMisses())); //$NON-NLS-1$
+			props.put("scripting.cache.compile", Long.valueOf(scriptCache //$NON-NLS-1$
+					.getCompileTime() / 1000000L));
+			props.put("scripting.cache.size", Integer.valueOf(scriptCache.getSize())); //$NON-NLS-1$
+		}
+		reporter.report(severity, "Scripting statistics", props); //$NON-NLS-1$
+	}
+
+	/**
+	 * Records that a context was created.
+	 */
+	void contextCreated()
+	{
+		contexts.incrementAndGet();
+	}
+
+	/**
+	 * Records that a scope was built.
+	 */
+	void scopeBuilt()
+	{
+		scopes.incrementAndGet();
+	}
+
+	/**
+	 * Records that an engine was created.
+	 */
+	void engineCreated()
+	{
+		engines.incrementAndGet();
+	}
+
+	/**
+	 * Records that a script was executed.
+	 */
+	void scriptExecuted()
+	{
+		if (executions.incrementAndGet() % REPORT_INTERVAL == 0)
+			report(IReporter.SEVERITY_DEBUG);
+	}
+}
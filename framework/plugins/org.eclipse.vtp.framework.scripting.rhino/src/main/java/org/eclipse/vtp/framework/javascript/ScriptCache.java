@@ -0,0 +1,285 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.javascript;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
+
+/**
+ * A bounded cache of compiled scripts keyed by their source text.
+ * <p>
+ * Scripts are first compiled for the interpreter. If an optimization level of
+ * zero or higher is configured, a script that has been executed
+ * <code>hotThreshold</code> times is recompiled to byte code at that level.
+ * The cache is configured through the following system properties:
+ * </p>
+ * <ul>
+ * <li><code>org.eclipse.vtp.javascript.cache.size</code>: the maximum number
+ * of compiled scripts to retain; zero disables the cache (default 512).</li>
+ * <li><code>org.eclipse.vtp.javascript.optimization</code>: the Rhino
+ * optimization level used for hot scripts; -1 keeps every script interpreted
+ * (default -1).</li>
+ * <li><code>org.eclipse.vtp.javascript.cache.hot</code>: the number of
+ * executions after which a script is considered hot (default 16).</li>
+ * </ul>
+ *
+ * @author Lonnie Pryor
+ */
+public class ScriptCache
+{
+	/** The system property that sets the size of the cache. */
+	public static final String SIZE_PROPERTY = "org.eclipse.vtp.javascript.cache.size"; //$NON-NLS-1$
+	/** The system property that sets the optimization level of hot scripts. */
+	public static final String OPTIMIZATION_PROPERTY = "org.eclipse.vtp.javascript.optimization"; //$NON-NLS-1$
+	/** The system property that sets the number of executions of a hot script. */
+	public static final String HOT_PROPERTY = "org.eclipse.vtp.javascript.cache.hot"; //$NON-NLS-1$
+	/** The name given to compiled scripts. */
+	private static final String SOURCE_NAME = "<script>"; //$NON-NLS-1$
+
+	/**
+	 * Returns the integer value of a system property.
+	 *
+	 * @param name The name of the property.
+	 * @param defaultValue The value to use if the property is not a number.
+	 * @return The integer value of the property.
+	 */
+	private static int getIntProperty(String name, int defaultValue)
+	{
+		String value = System.getProperty(name);
+		if (value == null)
+			return defaultValue;
+		try
+		{
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return defaultValue;
+		}
+	}
+
+	/** The maximum number of scripts to retain. */
+	private final int maximumSize;
+	/** The optimization level of hot scripts. */
+	private final int optimizationLevel;
+	/** The number of executions after which a script is hot. */
+	private final int hotThreshold;
+	/** The cached entries in least-recently-used order. */
+	private final Map<String, Entry> entries;
+	/** The number of lookups that found a compiled script. */
+	private final AtomicLong hits = new AtomicLong();
+	/** The number of lookups that compiled a script. */
+	private final AtomicLong misses = new AtomicLong();
+	/** The total time spent compiling scripts in nanoseconds. */
+	private final AtomicLong compileTime = new AtomicLong();
+
+	/**
+	 * Creates a new ScriptCache configured from the system properties.
+	 */
+	public ScriptCache()
+	{
+		this(getIntProperty(SIZE_PROPERTY, 512), getIntProperty(
+				OPTIMIZATION_PROPERTY, -1), getIntProperty(HOT_PROPERTY, 16));
+	}
+
+	/**
+	 * Creates a new ScriptCache.
+	 *
+	 * @param maximumSize The maximum number of scripts to retain.
+	 * @param optimizationLevel The optimization level of hot scripts.
+	 * @param hotThreshold The number of executions after which a script is hot.
+	 */
+	public ScriptCache(int maximumSize, int optimizationLevel, int hotThreshold)
+	{
+		this.maximumSize = maximumSize < 0 ? 0 : maximumSize;
+		this.optimizationLevel = optimizationLevel < -1 ? -1
+				: optimizationLevel > 9 ? 9 : optimizationLevel;
+		this.hotThreshold = hotThreshold < 1 ? 1 : hotThreshold;
+		final int limit = this.maximumSize;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+			{
+				return size() > limit;
+			}
+		};
+	}
+
+	/**
+	 * Returns true if this cache retains compiled scripts.
+	 *
+	 * @return True if this cache retains compiled scripts.
+	 */
+	public boolean isEnabled()
+	{
+		return maximumSize > 0;
+	}
+
+	/**
+	 * Returns the compiled form of the supplied script, compiling it if
+	 * necessary.
+	 *
+	 * @param ctx The current context.
+	 * @param script The source text of the script.
+	 * @return The compiled form of the supplied script.
+	 */
+	public Script getScript(Context ctx, String script)
+	{
+		Entry entry = null;
+		synchronized (entries)
+		{
+			entry = entries.get(script);
+		}
+		if (entry == null)
+		{
+			misses.incrementAndGet();
+			entry = new Entry(compile(ctx, script, -1));
+			synchronized (entries)
+			{
+				Entry existing = entries.get(script);
+				if (existing == null)
+					entries.put(script, entry);
+				else
+					entry = existing;
+			}
+			return entry.script;
+		}
+		hits.incrementAndGet();
+		if (optimizationLevel >= 0 && !entry.optimized
+				&& entry.executions.incrementAndGet() == hotThreshold)
+		{
+			try
+			{
+				entry.script = compile(ctx, script, optimizationLevel);
+			}
+			catch (RuntimeException e)
+			{
+				// Keep using the interpreted form.
+			}
+			catch (LinkageError e)
+			{
+				// Keep using the interpreted form.
+			}
+			entry.optimized = true;
+		}
+		return entry.script;
+	}
+
+	/**
+	 * Returns the number of lookups that found a compiled script.
+	 *
+	 * @return The number of lookups that found a compiled script.
+	 */
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Returns the number of lookups that compiled a script.
+	 *
+	 * @return The number of lookups that compiled a script.
+	 */
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Returns the total time spent compiling scripts in nanoseconds.
+	 *
+	 * @return The total time spent compiling scripts in nanoseconds.
+	 */
+	public long getCompileTime()
+	{
+		return compileTime.get();
+	}
+
+	/**
+	 * Returns the number of scripts currently retained.
+	 *
+	 * @return The number of scripts currently retained.
+	 */
+	public int getSize()
+	{
+		synchronized (entries)
+		{
+			return entries.size();
+		}
+	}
+
+	/**
+	 * Discards all the compiled scripts.
+	 */
+	public void clear()
+	{
+		synchronized (entries)
+		{
+			entries.clear();
+		}
+	}
+
+	/**
+	 * Compiles a script at the specified optimization level.
+	 *
+	 * @param ctx The current context.
+	 * @param script The source text of the script.
+	 * @param level The optimization level to compile at.
+	 * @return The compiled script.
+	 */
+	private Script compile(Context ctx, String script, int level)
+	{
+		int previousLevel = ctx.getOptimizationLevel();
+		long start = System.nanoTime();
+		ctx.setOptimizationLevel(level);
+		try
+		{
+			return ctx.compileString(script, SOURCE_NAME, 0, null);
+		}
+		finally
+		{
+			ctx.setOptimizationLevel(previousLevel);
+			compileTime.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * A compiled script and its execution statistics.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	private static final class Entry
+	{
+		/** The compiled script. */
+		volatile Script script;
+		/** True if the script has been considered for byte code compilation. */
+		volatile boolean optimized = false;
+		/** The number of times the script was found in the cache. */
+		final AtomicLong executions = new AtomicLong();
+
+		/**
+		 * Creates a new Entry.
+		 *
+		 * @param script The compiled script.
+		 */
+		Entry(Script script)
+		{
+			this.script = script;
+		}
+	}
+}
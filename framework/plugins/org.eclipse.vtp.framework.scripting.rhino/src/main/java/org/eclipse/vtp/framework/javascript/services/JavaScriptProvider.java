@@ -11,21 +11,35 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.javascript.services;
 
+import java.io.Closeable;
+
 import org.eclipse.vtp.framework.common.IScriptable;
 import org.eclipse.vtp.framework.common.IScriptingContext;
 import org.eclipse.vtp.framework.common.IScriptingProvider;
 import org.eclipse.vtp.framework.core.IProcessContext;
+import org.eclipse.vtp.framework.core.IReporter;
 import org.eclipse.vtp.framework.javascript.JavaScriptContext;
+import org.eclipse.vtp.framework.javascript.ScopeStatistics;
+import org.eclipse.vtp.framework.javascript.ScriptCache;
 
 /**
  * Implementation of the scripting provider for JavaScript.
+ * <p>
+ * The scripting statistics of the process, including the effectiveness of
+ * its script cache, are reported periodically while it runs and once more
+ * when it is disposed.
+ * </p>
  * 
  * @author Lonnie Pryor
  */
-public class JavaScriptProvider implements IScriptingProvider
+public class JavaScriptProvider implements IScriptingProvider, Closeable
 {
 	/** The application class loader. */
 	private final ClassLoader applicatioClassLoader;
+	/** The compiled scripts shared by every context of the process. */
+	private final ScriptCache scriptCache = new ScriptCache();
+	/** The scripting statistics of the process. */
+	private final ScopeStatistics statistics;
 
 	/**
 	 * Creates a new JavaScriptProvider.
@@ -34,6 +48,7 @@ public class JavaScriptProvider implements IScriptingProvider
 	 */
 	public JavaScriptProvider(final IProcessContext context)
 	{
+		statistics = new ScopeStatistics(context, scriptCache);
 		applicatioClassLoader = new ClassLoader()
 		{
 			@SuppressWarnings({ "unchecked", "rawtypes" })
@@ -54,7 +69,27 @@ public class JavaScriptProvider implements IScriptingProvider
 	public IScriptingContext createScriptingContext(String scriptingLanuage,
 			IScriptable[] content)
 	{
-		return new JavaScriptContext(applicatioClassLoader, scriptingLanuage,
-				content);
+		return new JavaScriptContext(applicatioClassLoader, scriptCache,
+				statistics, scriptingLanuage, content);
+	}
+
+	/**
+	 * Returns the scripting statistics of the contexts created by this provider.
+	 * 
+	 * @return The scripting statistics of the contexts created by this provider.
+	 */
+	public ScopeStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.Closeable#close()
+	 */
+	public void close()
+	{
+		statistics.report(IReporter.SEVERITY_INFO);
 	}
 }
@@ -59,4 +59,10 @@ public interface IProcess
 	 */
 	ISession createSession(ISessionDescriptor descriptor)
 			throws NullPointerException;
+
+	/**
+	 * Disposes this process and releases the services it created. Services
+	 * that implement {@link java.io.Closeable} are closed.
+	 */
+	void dispose();
 }
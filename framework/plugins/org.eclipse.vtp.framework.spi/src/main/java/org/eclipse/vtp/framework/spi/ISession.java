@@ -69,6 +69,12 @@ public interface ISession
 	IExecution createExecution(IExecutionDescriptor descriptor)
 			throws NullPointerException;;
 
+	/**
+	 * Disposes this session and releases the services it created. Services
+	 * that implement {@link java.io.Closeable} are closed.
+	 */
+	void dispose();
+
 	/**
 	 * Returns the process that created this session.
 	 * 
@@ -0,0 +1,30 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.util;
+
+/**
+ * A source of unique identifiers.
+ * 
+ * @author Lonnie Pryor
+ * @see SequentialIdentifierGenerator
+ * @see SecureIdentifierGenerator
+ */
+public interface IdentifierGenerator
+{
+	/**
+	 * Creates a new identifier that is different from every identifier this
+	 * generator has created before.
+	 * 
+	 * @return A new identifier.
+	 */
+	String createIdentifier();
+}
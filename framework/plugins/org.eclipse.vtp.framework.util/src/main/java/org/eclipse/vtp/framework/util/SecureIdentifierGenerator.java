@@ -0,0 +1,84 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.util;
+
+import java.security.SecureRandom;
+
+/**
+ * Generates unguessable identifiers from a shared {@link SecureRandom}.
+ * <p>
+ * Identifiers are random (version 4) 128 bit numbers encoded as 32 character
+ * hex strings, the same format produced by {@link Guid}.
+ * </p>
+ * 
+ * @author Lonnie Pryor
+ */
+public final class SecureIdentifierGenerator implements IdentifierGenerator
+{
+	/** The shared instance. */
+	private static final SecureIdentifierGenerator INSTANCE = new SecureIdentifierGenerator();
+	/** The hex digits. */
+	private static final char[] DIGITS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	/**
+	 * Returns the shared instance.
+	 * 
+	 * @return The shared instance.
+	 */
+	public static SecureIdentifierGenerator getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/** The source of random bytes. */
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * Creates a new SecureIdentifierGenerator.
+	 */
+	private SecureIdentifierGenerator()
+	{
+	}
+
+	/**
+	 * Fills a buffer with random bytes.
+	 * 
+	 * @param buffer The buffer to fill.
+	 */
+	void nextBytes(byte[] buffer)
+	{
+		random.nextBytes(buffer);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.vtp.framework.util.IdentifierGenerator#createIdentifier()
+	 */
+	public String createIdentifier()
+	{
+		byte[] buffer = new byte[16];
+		random.nextBytes(buffer);
+		buffer[6] &= 0x0f;
+		buffer[6] |= 0x40;
+		buffer[8] &= 0x3f;
+		buffer[8] |= 0x80;
+		buffer[10] |= 0x80;
+		char[] chars = new char[32];
+		for (int i = 0; i < buffer.length; ++i)
+		{
+			chars[i * 2] = DIGITS[(buffer[i] >> 4) & 0x0f];
+			chars[i * 2 + 1] = DIGITS[buffer[i] & 0x0f];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,102 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates compact identifiers from a prefix and a counter.
+ * <p>
+ * Each identifier is the prefix followed by the next value of a counter in
+ * base 36. Unless a prefix is supplied, every generator picks a random 13
+ * character prefix, so identifiers from different generators do not collide
+ * even when their counters overlap. Identifiers from this class are cheap but
+ * predictable; use {@link SecureIdentifierGenerator} where they must not be
+ * guessable.
+ * </p>
+ * 
+ * @author Lonnie Pryor
+ */
+public class SequentialIdentifierGenerator implements IdentifierGenerator
+{
+	/** The length of random prefixes. */
+	private static final int PREFIX_LENGTH = 13;
+
+	/**
+	 * Creates a random prefix.
+	 * 
+	 * @return A random prefix.
+	 */
+	private static String createPrefix()
+	{
+		byte[] buffer = new byte[8];
+		SecureIdentifierGenerator.getInstance().nextBytes(buffer);
+		long bits = 0;
+		for (int i = 0; i < buffer.length; ++i)
+			bits = (bits << 8) | (buffer[i] & 0xff);
+		String digits = Long.toString(bits >>> 1, Character.MAX_RADIX);
+		StringBuilder prefix = new StringBuilder(PREFIX_LENGTH);
+		for (int i = digits.length(); i < PREFIX_LENGTH; ++i)
+			prefix.append('0');
+		return prefix.append(digits).toString();
+	}
+
+	/** The prefix of the identifiers. */
+	private final String prefix;
+	/** The counter that makes identifiers unique. */
+	private final AtomicLong counter = new AtomicLong();
+
+	/**
+	 * Creates a new SequentialIdentifierGenerator with a random prefix.
+	 */
+	public SequentialIdentifierGenerator()
+	{
+		this(createPrefix());
+	}
+
+	/**
+	 * Creates a new SequentialIdentifierGenerator.
+	 * 
+	 * @param prefix The prefix of the identifiers, which must not be shared
+	 *          with any other generator in the same identifier space and
+	 *          should end with a character that is not a base 36 digit.
+	 * @throws NullPointerException If the supplied prefix is <code>null</code>.
+	 */
+	public SequentialIdentifierGenerator(String prefix)
+			throws NullPointerException
+	{
+		if (prefix == null)
+			throw new NullPointerException("prefix"); //$NON-NLS-1$
+		this.prefix = prefix;
+	}
+
+	/**
+	 * Returns the prefix of the identifiers.
+	 * 
+	 * @return The prefix of the identifiers.
+	 */
+	public String getPrefix()
+	{
+		return prefix;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.eclipse.vtp.framework.util.IdentifierGenerator#createIdentifier()
+	 */
+	public String createIdentifier()
+	{
+		return prefix.concat(Long.toString(counter.incrementAndGet(),
+				Character.MAX_RADIX));
+	}
+}
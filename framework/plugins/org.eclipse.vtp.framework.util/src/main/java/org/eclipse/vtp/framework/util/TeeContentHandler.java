@@ -0,0 +1,178 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods),
+ *    T.D. Barnes (OpenMethods) - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.util;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+
+/**
+ * A content handler that forwards every event to two other handlers, allowing
+ * a single pass over a document to feed both the response and a log copy.
+ *
+ * @author Lonnie Pryor
+ */
+public class TeeContentHandler implements ContentHandler
+{
+	/** The first handler to forward events to. */
+	private final ContentHandler first;
+	/** The second handler to forward events to. */
+	private final ContentHandler second;
+
+	/**
+	 * Creates a new TeeContentHandler.
+	 *
+	 * @param first The first handler to forward events to.
+	 * @param second The second handler to forward events to.
+	 */
+	public TeeContentHandler(ContentHandler first, ContentHandler second)
+	{
+		if (first == null)
+			throw new NullPointerException("first"); //$NON-NLS-1$
+		if (second == null)
+			throw new NullPointerException("second"); //$NON-NLS-1$
+		this.first = first;
+		this.second = second;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#setDocumentLocator(org.xml.sax.Locator)
+	 */
+	public void setDocumentLocator(Locator locator)
+	{
+		first.setDocumentLocator(locator);
+		second.setDocumentLocator(locator);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#startDocument()
+	 */
+	public void startDocument() throws SAXException
+	{
+		first.startDocument();
+		second.startDocument();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#endDocument()
+	 */
+	public void endDocument() throws SAXException
+	{
+		first.endDocument();
+		second.endDocument();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#startPrefixMapping(java.lang.String,
+	 *      java.lang.String)
+	 */
+	public void startPrefixMapping(String prefix, String uri)
+			throws SAXException
+	{
+		first.startPrefixMapping(prefix, uri);
+		second.startPrefixMapping(prefix, uri);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#endPrefixMapping(java.lang.String)
+	 */
+	public void endPrefixMapping(String prefix) throws SAXException
+	{
+		first.endPrefixMapping(prefix);
+		second.endPrefixMapping(prefix);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#startElement(java.lang.String,
+	 *      java.lang.String, java.lang.String, org.xml.sax.Attributes)
+	 */
+	public void startElement(String uri, String localName, String name,
+			Attributes atts) throws SAXException
+	{
+		first.startElement(uri, localName, name, atts);
+		second.startElement(uri, localName, name, atts);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#endElement(java.lang.String,
+	 *      java.lang.String, java.lang.String)
+	 */
+	public void endElement(String uri, String localName, String name)
+			throws SAXException
+	{
+		first.endElement(uri, localName, name);
+		second.endElement(uri, localName, name);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#characters(char[], int, int)
+	 */
+	public void characters(char[] ch, int start, int length)
+			throws SAXException
+	{
+		first.characters(ch, start, length);
+		second.characters(ch, start, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#ignorableWhitespace(char[], int, int)
+	 */
+	public void ignorableWhitespace(char[] ch, int start, int length)
+			throws SAXException
+	{
+		first.ignorableWhitespace(ch, start, length);
+		second.ignorableWhitespace(ch, start, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#processingInstruction(java.lang.String,
+	 *      java.lang.String)
+	 */
+	public void processingInstruction(String target, String data)
+			throws SAXException
+	{
+		first.processingInstruction(target, data);
+		second.processingInstruction(target, data);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see org.xml.sax.ContentHandler#skippedEntity(java.lang.String)
+	 */
+	public void skippedEntity(String name) throws SAXException
+	{
+		first.skippedEntity(name);
+		second.skippedEntity(name);
+	}
+}
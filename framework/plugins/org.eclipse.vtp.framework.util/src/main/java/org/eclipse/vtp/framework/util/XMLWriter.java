@@ -11,7 +11,9 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.util;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -28,13 +30,70 @@ import org.xml.sax.SAXException;
 
 /**
  * A pretty-printing XML encoder.
+ * <p>
+ * Output is encoded as UTF-8 into an internal buffer that is written to the
+ * output stream when it fills up, when the document ends, and when
+ * {@link #flush()} is called. Writers on the same thread reuse one buffer
+ * between documents.
+ * </p>
  * 
  * @author Lonnie Pryor
  */
 public class XMLWriter implements ContentHandler
 {
+	/** The size of the output buffer. */
+	private static final int BUFFER_SIZE = 8192;
+	/** The encoded XML declaration. */
+	private static final byte[] DECLARATION = encode("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n"); //$NON-NLS-1$
+	/** The encoded line break. */
+	private static final byte[] NEWLINE = encode("\r\n"); //$NON-NLS-1$
+	/** The encoded end of an empty element. */
+	private static final byte[] EMPTY_ELEMENT_END = encode(" />"); //$NON-NLS-1$
+	/** The encoded start of an end tag. */
+	private static final byte[] END_TAG_START = encode("</"); //$NON-NLS-1$
+	/** The encoded start of a processing instruction. */
+	private static final byte[] PI_START = encode("<?"); //$NON-NLS-1$
+	/** The encoded end of a processing instruction. */
+	private static final byte[] PI_END = encode(" ?>"); //$NON-NLS-1$
+	/** The encoded start of an attribute value. */
+	private static final byte[] VALUE_START = encode("=\""); //$NON-NLS-1$
+	/** The encoded apostrophe entity. */
+	private static final byte[] APOS = encode("&apos;"); //$NON-NLS-1$
+	/** The encoded quote entity. */
+	private static final byte[] QUOT = encode("&quot;"); //$NON-NLS-1$
+	/** The encoded ampersand entity. */
+	private static final byte[] AMP = encode("&amp;"); //$NON-NLS-1$
+	/** The encoded less than entity. */
+	private static final byte[] LT = encode("&lt;"); //$NON-NLS-1$
+	/** The encoded greater than entity. */
+	private static final byte[] GT = encode("&gt;"); //$NON-NLS-1$
+	/** The buffer available to the next writer on each thread. */
+	private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>();
+
+	/**
+	 * Encodes a constant token.
+	 * 
+	 * @param token The token to encode.
+	 * @return The encoded token.
+	 */
+	private static byte[] encode(String token)
+	{
+		try
+		{
+			return token.getBytes("UTF-8"); //$NON-NLS-1$
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/** The output stream to write to. */
 	private OutputStream output = null;
+	/** The output buffer or <code>null</code> if none is held. */
+	private byte[] buffer = null;
+	/** The number of bytes in the output buffer. */
+	private int count = 0;
 	/** The character to use for indentation. */
 	private char indentCharacter = '\t';
 	private char deepIndentCharacter = ' ';
@@ -80,15 +139,39 @@ public class XMLWriter implements ContentHandler
 	}
 
 	/**
-	 * Sets the output stream to write to.
+	 * Sets the output stream to write to. Any output buffered for the previous
+	 * stream is written to it first.
 	 * 
 	 * @param output The output stream to write to.
 	 */
 	public void setOutput(OutputStream output)
 	{
+		if (count > 0 && this.output != null)
+		{
+			try
+			{
+				drain();
+			}
+			catch (IOException e)
+			{
+				count = 0;
+			}
+		}
 		this.output = output;
 	}
 
+	/**
+	 * Writes any buffered output to the output stream and flushes the stream.
+	 * 
+	 * @throws IOException If the output cannot be written.
+	 */
+	public void flush() throws IOException
+	{
+		drain();
+		if (output != null)
+			output.flush();
+	}
+
 	/**
 	 * Sets the character to use for indentation.
 	 * 
@@ -155,12 +238,14 @@ public class XMLWriter implements ContentHandler
 		newPrefixes.clear();
 		parentElementIncomplete = false;
 		afterCDATA = false;
-			try {
-				output.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n".getBytes("UTF-8")); //$NON-NLS-1$
-			} catch (Exception e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+		try
+		{
+			write(DECLARATION);
+		}
+		catch (IOException e)
+		{
+			throw new SAXException(e);
+		}
 	}
 
 	/*
@@ -171,18 +256,24 @@ public class XMLWriter implements ContentHandler
 	public void endDocument() throws SAXException
 	{
 		afterEndElement = false;
-		try {
-			output.write("\r".getBytes("UTF-8"));
-			output.write("\n".getBytes("UTF-8"));
-			afterCDATA = false;
-			parentElementIncomplete = false;
-			newPrefixes.clear();
-			prefixesByNamespaceURI.clear();
-			namespaceURIsByPrefix.clear();
-			elementDepth = 0;
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		afterCDATA = false;
+		parentElementIncomplete = false;
+		newPrefixes.clear();
+		prefixesByNamespaceURI.clear();
+		namespaceURIsByPrefix.clear();
+		elementDepth = 0;
+		try
+		{
+			write(NEWLINE);
+			drain();
+		}
+		catch (IOException e)
+		{
+			throw new SAXException(e);
+		}
+		finally
+		{
+			releaseBuffer();
 		}
 	}
 
@@ -221,19 +312,18 @@ public class XMLWriter implements ContentHandler
 			Attributes atts) throws SAXException
 	{
 		afterEndElement = false;
-		try {
+		try
+		{
 			ensureParentElementIsComplete();
 			// Open the start tag.
-			output.write("\r".getBytes("UTF-8"));
-			output.write("\n".getBytes("UTF-8"));
+			write(NEWLINE);
 			indent();
-			output.write("<".getBytes("UTF-8"));
+			write('<');
 			writeName(uri, localName, name);
 			// Write the prefix mappings.
 			for (String prefix : newPrefixes)
 			{
-				output.write("\r".getBytes("UTF-8"));
-				output.write("\n".getBytes("UTF-8"));
+				write(NEWLINE);
 				deepIndent();
 				String xmlns = stackedIndexPeek(namespaceURIsByPrefix, prefix);
 				if (prefix.length() == 0)
@@ -249,8 +339,7 @@ public class XMLWriter implements ContentHandler
 					continue;
 				if(!compactElements)
 				{
-					output.write("\r".getBytes("UTF-8"));
-					output.write("\n".getBytes("UTF-8"));
+					write(NEWLINE);
 					deepIndent();
 				}
 				writeNameValuePair(atts.getURI(i), atts.getLocalName(i),
@@ -259,9 +348,10 @@ public class XMLWriter implements ContentHandler
 			parentElementIncomplete = true;
 			afterCDATA = false;
 			++elementDepth;
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		}
+		catch (IOException e)
+		{
+			throw new SAXException(e);
 		}
 	}
 
@@ -274,29 +364,30 @@ public class XMLWriter implements ContentHandler
 	public void endElement(String uri, String localName, String name)
 			throws SAXException
 	{
-		try {
-		--elementDepth;
-		if (parentElementIncomplete)
+		try
 		{
-				output.write(" />".getBytes("UTF-8")); //$NON-NLS-1$
-			parentElementIncomplete = false;
-		}
-		else
-		{
-			if(!compactElements || afterEndElement)
+			--elementDepth;
+			if (parentElementIncomplete)
 			{
-				output.write("\r".getBytes("UTF-8"));
-				output.write("\n".getBytes("UTF-8"));
-				indent();
+				write(EMPTY_ELEMENT_END);
+				parentElementIncomplete = false;
 			}
-			output.write("</".getBytes("UTF-8")); //$NON-NLS-1$
-			writeName(uri, localName, name);
-			output.write(">".getBytes("UTF-8"));
+			else
+			{
+				if(!compactElements || afterEndElement)
+				{
+					write(NEWLINE);
+					indent();
+				}
+				write(END_TAG_START);
+				writeName(uri, localName, name);
+				write('>');
+			}
+			afterCDATA = false;
 		}
-		afterCDATA = false;
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		catch (IOException e)
+		{
+			throw new SAXException(e);
 		}
 		afterEndElement = true;
 	}
@@ -311,20 +402,21 @@ public class XMLWriter implements ContentHandler
 			throws SAXException
 	{
 		afterEndElement = true;
-		try {
+		try
+		{
 			ensureParentElementIsComplete();
-			output.write("\r".getBytes("UTF-8"));
-			output.write("\n".getBytes("UTF-8"));
+			write(NEWLINE);
 			indent();
-			output.write("<?".getBytes("UTF-8")); //$NON-NLS-1$
-			output.write(target.getBytes("UTF-8"));
-			output.write(" ".getBytes("UTF-8"));
-			output.write(data.getBytes("UTF-8"));
-			output.write(" ?>".getBytes("UTF-8")); //$NON-NLS-1$
+			write(PI_START);
+			write(target);
+			write(' ');
+			write(data);
+			write(PI_END);
 			afterCDATA = false;
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		}
+		catch (IOException e)
+		{
+			throw new SAXException(e);
 		}
 	}
 
@@ -335,66 +427,67 @@ public class XMLWriter implements ContentHandler
 	 */
 	public void characters(char[] ch, int start, int length) throws SAXException
 	{
-		try {
+		try
+		{
 			if (!afterCDATA)
 			{
 				ensureParentElementIsComplete();
 				if(!compactElements)
 				{
-					output.write("\r".getBytes("UTF-8"));
-					output.write("\n".getBytes("UTF-8"));
+					write(NEWLINE);
 					indent();
 				}
 			}
 			boolean hadCR = false;
-			for (int i = 0; i < length; ++i)
+			int end = start + length;
+			for (int i = start; i < end; ++i)
 			{
-				char c = ch[start + i];
+				char c = ch[i];
 				if (c == '\n' || hadCR)
 				{
 					hadCR = false;
-					output.write("\r".getBytes("UTF-8"));
-					output.write("\n".getBytes("UTF-8"));
+					write(NEWLINE);
 					indent();
+					// The character after a lone carriage return is not escaped.
 					if (c != '\n')
-						output.write(Character.toString(c).getBytes("UTF-8"));
+						writeCharacter(c);
+					continue;
 				}
-				else
+				switch (c)
 				{
-					switch (c)
-					{
-					case '\r':
-						hadCR = true;
-						break;
-					case '\'':
-						output.write("&apos;".getBytes("UTF-8"));
-						break;
-					case '"':
-						output.write("&quot;".getBytes("UTF-8"));
-						break;
-					case '&':
-						output.write("&amp;".getBytes("UTF-8"));
-						break;
-					case '<':
-						output.write("&lt;".getBytes("UTF-8"));
-						break;
-					case '>':
-						output.write("&gt;".getBytes("UTF-8"));
-						break;
-					default:
-						output.write(Character.toString(c).getBytes("UTF-8"));
-					}
+				case '\r':
+					hadCR = true;
+					break;
+				case '\'':
+					write(APOS);
+					break;
+				case '"':
+					write(QUOT);
+					break;
+				case '&':
+					write(AMP);
+					break;
+				case '<':
+					write(LT);
+					break;
+				case '>':
+					write(GT);
+					break;
+				default:
+					int run = i + 1;
+					while (run < end && !isSpecial(ch[run]))
+						++run;
+					writeCharacters(ch, i, run);
+					i = run - 1;
 				}
 			}
 			if (hadCR)
-			{
-				output.write("\r".getBytes("UTF-8"));
-				output.write("\n".getBytes("UTF-8"));
-			}
+				write(NEWLINE);
 			afterCDATA = true;
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		}
+		catch (IOException e)
+		{
+			throw new SAXException(e);
 		}
 	}
 
@@ -419,51 +512,66 @@ public class XMLWriter implements ContentHandler
 		// Ignore skipped entities.
 	}
 
+	/**
+	 * Returns true if a character of character data needs special handling.
+	 * 
+	 * @param c The character to test.
+	 * @return True if the character needs special handling.
+	 */
+	private static boolean isSpecial(char c)
+	{
+		switch (c)
+		{
+		case '\n':
+		case '\r':
+		case '\'':
+		case '"':
+		case '&':
+		case '<':
+		case '>':
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	/**
 	 * Ensures that the ">" character is written to close the parent element start
 	 * tag if it is still open.
+	 * 
+	 * @throws IOException If the output cannot be written.
 	 */
-	private void ensureParentElementIsComplete()
+	private void ensureParentElementIsComplete() throws IOException
 	{
 		if (parentElementIncomplete)
 		{
-			try {
-				output.write(">".getBytes("UTF-8"));
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
+			write('>');
 			parentElementIncomplete = false;
 		}
 	}
 
 	/**
 	 * Intents to the current level.
+	 * 
+	 * @throws IOException If the output cannot be written.
 	 */
-	private void indent()
+	private void indent() throws IOException
 	{
-		try {
-			for (int i = 0; i < elementDepth; ++i)
-				for (int j = 0; j < indentSize; ++j)
-					output.write(Character.toString(indentCharacter).getBytes("UTF-8"));
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		int total = elementDepth * indentSize;
+		for (int i = 0; i < total; ++i)
+			writeCharacter(indentCharacter);
 	}
 
 	/**
 	 * Intents to the current level plus the deep indent.
+	 * 
+	 * @throws IOException If the output cannot be written.
 	 */
-	private void deepIndent()
+	private void deepIndent() throws IOException
 	{
-		try {
-			indent();
-			for (int i = 0; i < deepIndentSize; ++i)
-				output.write(Character.toString(deepIndentCharacter).getBytes("UTF-8"));
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		indent();
+		for (int i = 0; i < deepIndentSize; ++i)
+			writeCharacter(deepIndentCharacter);
 	}
 
 	/**
@@ -472,34 +580,31 @@ public class XMLWriter implements ContentHandler
 	 * @param uri The URI of the element or an empty string.
 	 * @param localName The local name of the element or an empty string.
 	 * @param qualifiedName The qualified name of the element or an empty string.
+	 * @throws IOException If the output cannot be written.
 	 */
 	private void writeName(String uri, String localName, String qualifiedName)
+			throws IOException
 	{
-		try {
-			if (uri == null || uri.length() == 0)
-			{
-				if (qualifiedName == null || qualifiedName.length() == 0)
-					output.write(localName.getBytes("UTF-8"));
-				else
-					output.write(qualifiedName.getBytes("UTF-8"));
-			}
-			else if (localName == null || localName.length() == 0)
-				output.write(qualifiedName.getBytes("UTF-8"));
+		if (uri == null || uri.length() == 0)
+		{
+			if (qualifiedName == null || qualifiedName.length() == 0)
+				write(localName);
+			else
+				write(qualifiedName);
+		}
+		else if (localName == null || localName.length() == 0)
+			write(qualifiedName);
+		else
+		{
+			String prefix = stackedIndexPeek(prefixesByNamespaceURI, uri);
+			if (prefix == null || prefix.length() == 0)
+				write(localName);
 			else
 			{
-				String prefix = stackedIndexPeek(prefixesByNamespaceURI, uri);
-				if (prefix == null || prefix.length() == 0)
-					output.write(localName.getBytes("UTF-8"));
-				else
-				{
-					output.write(prefix.getBytes("UTF-8"));
-					output.write(":".getBytes("UTF-8"));
-					output.write(localName.getBytes("UTF-8"));
-				}
+				write(prefix);
+				write(':');
+				write(localName);
 			}
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
 		}
 	}
 
@@ -509,44 +614,208 @@ public class XMLWriter implements ContentHandler
 	 * @param uri The URI of the element or an empty string.
 	 * @param localName The local name of the element or an empty string.
 	 * @param qualifiedName The qualified name of the element or an empty string.
+	 * @throws IOException If the output cannot be written.
 	 */
 	private void writeNameValuePair(String uri, String localName,
-			String qualifiedName, String value)
-	{
-		try {
-			if(compactElements)
-				output.write(" ".getBytes("UTF-8"));
-			writeName(uri, localName, qualifiedName);
-			output.write("=".getBytes("UTF-8"));
-			output.write("\"".getBytes("UTF-8"));
-			if (value != null)
+			String qualifiedName, String value) throws IOException
+	{
+		if(compactElements)
+			write(' ');
+		writeName(uri, localName, qualifiedName);
+		write(VALUE_START);
+		if (value != null)
+		{
+			int length = value.length();
+			for (int i = 0; i < length; i++)
 			{
-				for (int i = 0; i < value.length(); i++)
+				char c = value.charAt(i);
+				switch (c)
 				{
-					switch (value.charAt(i))
-					{
-					case '"':
-						output.write("&quot;".getBytes("UTF-8"));
-						break;
-					case '&':
-						output.write("&amp;".getBytes("UTF-8"));
-						break;
-					case '<':
-						output.write("&lt;".getBytes("UTF-8"));
-						break;
-					case '>':
-						output.write("&gt;".getBytes("UTF-8"));
-						break;
-					default:
-						output.write(Character.toString(value.charAt(i)).getBytes("UTF-8"));
-					}
+				case '"':
+					write(QUOT);
+					break;
+				case '&':
+					write(AMP);
+					break;
+				case '<':
+					write(LT);
+					break;
+				case '>':
+					write(GT);
+					break;
+				default:
+					writeCharacter(c);
 				}
 			}
-			output.write("\"".getBytes("UTF-8"));
-		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
 		}
+		write('"');
+	}
+
+	/**
+	 * Writes an ASCII character to the buffer.
+	 * 
+	 * @param b The ASCII character to write.
+	 * @throws IOException If the output cannot be written.
+	 */
+	private void write(char b) throws IOException
+	{
+		byte[] buffer = buffer();
+		if (count == buffer.length)
+			drain();
+		buffer[count++] = (byte)b;
+	}
+
+	/**
+	 * Writes encoded bytes to the buffer.
+	 * 
+	 * @param bytes The bytes to write.
+	 * @throws IOException If the output cannot be written.
+	 */
+	private void write(byte[] bytes) throws IOException
+	{
+		byte[] buffer = buffer();
+		if (count + bytes.length > buffer.length)
+			drain();
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	/**
+	 * Writes a string to the buffer, encoding surrogate pairs together as
+	 * {@link String#getBytes(String)} does.
+	 * 
+	 * @param string The string to write.
+	 * @throws IOException If the output cannot be written.
+	 */
+	private void write(String string) throws IOException
+	{
+		int length = string.length();
+		for (int i = 0; i < length; ++i)
+		{
+			char c = string.charAt(i);
+			if (c < 0x80)
+			{
+				write(c);
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(string.charAt(i + 1)))
+			{
+				int codePoint = Character.toCodePoint(c, string.charAt(++i));
+				byte[] buffer = buffer();
+				if (count + 4 > buffer.length)
+					drain();
+				buffer[count++] = (byte)(0xf0 | (codePoint >> 18));
+				buffer[count++] = (byte)(0x80 | ((codePoint >> 12) & 0x3f));
+				buffer[count++] = (byte)(0x80 | ((codePoint >> 6) & 0x3f));
+				buffer[count++] = (byte)(0x80 | (codePoint & 0x3f));
+			}
+			else
+				writeCharacter(c);
+		}
+	}
+
+	/**
+	 * Writes a run of character data to the buffer.
+	 * 
+	 * @param ch The characters to write from.
+	 * @param start The index of the first character to write.
+	 * @param end The index after the last character to write.
+	 * @throws IOException If the output cannot be written.
+	 */
+	private void writeCharacters(char[] ch, int start, int end)
+			throws IOException
+	{
+		byte[] buffer = buffer();
+		for (int i = start; i < end; ++i)
+		{
+			char c = ch[i];
+			if (c < 0x80)
+			{
+				if (count == buffer.length)
+					drain();
+				buffer[count++] = (byte)c;
+			}
+			else
+				writeCharacter(c);
+		}
+	}
+
+	/**
+	 * Writes a single character to the buffer. Characters are encoded one at a
+	 * time, so each half of a surrogate pair is written as "?", matching
+	 * <code>Character.toString(c).getBytes("UTF-8")</code>.
+	 * 
+	 * @param c The character to write.
+	 * @throws IOException If the output cannot be written.
+	 */
+	private void writeCharacter(char c) throws IOException
+	{
+		byte[] buffer = buffer();
+		if (count + 3 > buffer.length)
+			drain();
+		if (c < 0x80)
+			buffer[count++] = (byte)c;
+		else if (c < 0x800)
+		{
+			buffer[count++] = (byte)(0xc0 | (c >> 6));
+			buffer[count++] = (byte)(0x80 | (c & 0x3f));
+		}
+		else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)
+			buffer[count++] = (byte)'?';
+		else
+		{
+			buffer[count++] = (byte)(0xe0 | (c >> 12));
+			buffer[count++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+			buffer[count++] = (byte)(0x80 | (c & 0x3f));
+		}
+	}
+
+	/**
+	 * Returns the output buffer, taking the buffer of the current thread if
+	 * necessary.
+	 * 
+	 * @return The output buffer.
+	 */
+	private byte[] buffer()
+	{
+		byte[] buffer = this.buffer;
+		if (buffer == null)
+		{
+			buffer = buffers.get();
+			if (buffer == null)
+				buffer = new byte[BUFFER_SIZE];
+			else
+				buffers.set(null);
+			this.buffer = buffer;
+		}
+		return buffer;
+	}
+
+	/**
+	 * Returns the output buffer to the current thread once it is empty.
+	 */
+	private void releaseBuffer()
+	{
+		if (buffer != null && count == 0)
+		{
+			if (buffers.get() == null)
+				buffers.set(buffer);
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Writes the buffered output to the output stream.
+	 * 
+	 * @throws IOException If the output cannot be written.
+	 */
+	private void drain() throws IOException
+	{
+		if (count == 0)
+			return;
+		int length = count;
+		count = 0;
+		output.write(buffer, 0, length);
 	}
 
 	/**
@@ -12,21 +12,19 @@
  -------------------------------------------------------------------------*/
 package org.eclipse.vtp.framework.webservices.actions;
 
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.io.OutputStreamWriter;
+import java.io.StringWriter;
 import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Dictionary;
 import java.util.Hashtable;
 import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
@@ -54,6 +52,7 @@ import org.eclipse.vtp.framework.webservices.configurations.document.ElseDocumen
 import org.eclipse.vtp.framework.webservices.configurations.document.ForLoopDocumentItem;
 import org.eclipse.vtp.framework.webservices.configurations.document.InputDocumentStructure;
 import org.eclipse.vtp.framework.webservices.configurations.document.TextDocumentItem;
+import org.eclipse.vtp.framework.webservices.services.WebServiceClient;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -72,6 +71,8 @@ public class WebServiceCallAction implements IAction
 	private final WebServiceConfiguration configuration;
 	private final IScriptingService scriptingService;
 	private final IBrandSelection brandSelection;
+	/** The HTTP client to use. */
+	private final WebServiceClient client;
 
 	/**
 	 * Creates a new WebServiceCallAction.
@@ -80,18 +81,21 @@ public class WebServiceCallAction implements IAction
 	 * @param types The data type registry to use.
 	 * @param variables The variable registry to use.
 	 * @param webServices The web service registry to use.
+	 * @param client The HTTP client to use.
 	 * @param configuration The configuration to use.
 	 */
 	public WebServiceCallAction(IActionContext context,
 								IVariableRegistry variables,
 								IScriptingService scriptingService,
 								IBrandSelection brandSelection,
+								WebServiceClient client,
 								WebServiceConfiguration configuration)
 	{
 		this.context = context;
 		this.variables = variables;
 		this.scriptingService = scriptingService;
 		this.brandSelection = brandSelection;
+		this.client = client;
 		this.configuration = configuration;
 	}
 
@@ -111,15 +115,6 @@ public class WebServiceCallAction implements IAction
 		}
 		try
 		{
-			StringBuilder payload = new StringBuilder();
-			payload.append("<SOAP-ENV:Envelope");
-			payload.append(" xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\">");//\"\r\n");
-//			payload.append("\tSOAP-ENV:encodingStyle=\"http://schemas.xmlsoap.org/soap/encoding/\">");
-			payload.append("<SOAP-ENV:Body>");
-			InputDocumentStructure structure = configuration.getInputStructure();
-			processDocumentItemContainer(payload, structure);
-			payload.append("</SOAP-ENV:Body>");
-			payload.append("</SOAP-ENV:Envelope>");
 			URL url = null;
 			String urlType = configuration.getURLType();
 			if(urlType.equals(WebServiceConfiguration.STATIC))
@@ -133,34 +128,47 @@ public class WebServiceCallAction implements IAction
 			}
 			if(url != null)
 			{
-				HttpURLConnection con = (HttpURLConnection)url.openConnection();
-				con.setDoOutput(true);
-				con.setRequestMethod("POST");
-				con.setRequestProperty("Content-Type", "text/xml; charset=\"utf-8\"");
-				con.setRequestProperty("SOAPAction", configuration.getSoapAction() == null ? "" : "\"" + configuration.getSoapAction() + "\"");
-				OutputStream out = con.getOutputStream();
-				Writer ps = new OutputStreamWriter(out);
-				ps.write(payload.toString());
-				context.debug(payload.toString());
-				ps.flush();
-				ps.close();
+				WebServiceClient.RequestBody body = new WebServiceClient.RequestBody()
+				{
+					public void writeTo(Writer out) throws IOException
+					{
+						if(context.isDebugEnabled())
+						{
+							StringWriter payload = new StringWriter();
+							writeEnvelope(payload);
+							context.debug(payload.toString());
+							out.write(payload.toString());
+						}
+						else
+							writeEnvelope(out);
+					}
+				};
+				HttpURLConnection con = client.post(url, configuration.getSoapAction() == null ? "" : "\"" + configuration.getSoapAction() + "\"",
+						body, configuration.getConnectTimeout(), configuration.getReadTimeout());
 				int rc = con.getResponseCode();
 				if(rc == 200)
 				{
-					DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-					factory.setNamespaceAware(true);
-					DocumentBuilder builder = factory.newDocumentBuilder();
-					Document document = builder.parse(con.getInputStream());
+					DocumentBuilder builder = client.newDocumentBuilder();
+					Document document = null;
+					InputStream in = con.getInputStream();
+					try
+					{
+						document = builder.parse(in);
+					}
+					finally
+					{
+						client.release(in);
+					}
+					Transformer transformer = client.newTransformer();
 					Element rootElement = document.getDocumentElement();
 					if(!rootElement.getLocalName().equals("Envelope"))
 					{
 						if(context.isErrorEnabled())
 						{
 							context.error("Webservice returned invalid document");
-							ByteArrayOutputStream baos = new ByteArrayOutputStream();
-							Transformer transformer = TransformerFactory.newInstance().newTransformer();
-							transformer.transform(new DOMSource(document), new StreamResult(baos));
-							context.error(baos.toString());
+							StringWriter raw = new StringWriter();
+							transformer.transform(new DOMSource(document), new StreamResult(raw));
+							context.error(raw.toString());
 							if(context.isReportingEnabled())
 							{
 								Dictionary props = new Hashtable();
@@ -180,49 +188,40 @@ public class WebServiceCallAction implements IAction
 					{
 						Element headerElement = headerElementList.get(0);
 						List<Element> entryList = XMLUtilities.getChildElements(headerElement);
+						List<IDataObject> headerObjects = new ArrayList<IDataObject>(entryList.size());
 						for(Element entryElement : entryList)
 						{
-							ByteArrayOutputStream baos = new ByteArrayOutputStream();
-							Transformer transformer = TransformerFactory.newInstance().newTransformer();
-							transformer.transform(new DOMSource(entryElement), new StreamResult(baos));
+							StringWriter raw = new StringWriter();
+							transformer.transform(new DOMSource(entryElement), new StreamResult(raw));
 							IDataObject headerObject = variables.createVariable("WSHeader");
 							IStringObject nameObject = (IStringObject)variables.createVariable(IStringObject.TYPE_NAME);
 							nameObject.setValue(entryElement.getLocalName());
 							IStringObject rawContent = (IStringObject)variables.createVariable(IStringObject.TYPE_NAME);
-							rawContent.setValue(baos.toString());
+							rawContent.setValue(raw.toString());
 							headerObject.setField("name", nameObject);
 							headerObject.setField("rawContent", rawContent);
+							headerObjects.add(headerObject);
 						}
+						headerArrayObject.addElements(headerObjects);
 					}
 					List<Element> bodyElementList = XMLUtilities.getElementsByTagNameNS(rootElement, SOAP_ENVELOPE_URI, "Body", true);
 					if(bodyElementList.size() > 0)
 					{
 						Element bodyElement = bodyElementList.get(0);
-						ByteArrayOutputStream baos = new ByteArrayOutputStream();
-						Transformer transformer = TransformerFactory.newInstance().newTransformer();
-						transformer.transform(new DOMSource(bodyElement), new StreamResult(baos));
+						StringWriter raw = new StringWriter();
+						transformer.transform(new DOMSource(bodyElement), new StreamResult(raw));
 						IStringObject rawContent = (IStringObject)variables.createVariable(IStringObject.TYPE_NAME);
-						rawContent.setValue(baos.toString());
+						rawContent.setValue(raw.toString());
 						resultObject.setField("rawContent", rawContent);
 					}
 				}
 				else
 				{
+					String error = client.readError(con);
 					if(context.isErrorEnabled())
 					{
 						context.error("Web service call failed: " + Integer.toString(rc));
-						ByteArrayOutputStream baos = new ByteArrayOutputStream();
-						InputStream in = con.getErrorStream();
-						byte[] buf = new byte[1024];
-						int len = in.read(buf);
-						while(len != -1)
-						{
-							baos.write(buf, 0, len);
-							len = in.read(buf);
-						}
-						in.close();
-						con.disconnect();
-						context.debug(baos.toString());
+						context.debug(error);
 					}
 					if(context.isReportingEnabled())
 					{
@@ -262,7 +261,19 @@ public class WebServiceCallAction implements IAction
 		return context.createResult(IActionResult.RESULT_NAME_DEFAULT);
 	}
 
-	private void processDocumentItemContainer(StringBuilder payload, DocumentItemContainer container)
+	private void writeEnvelope(Writer payload) throws IOException
+	{
+		payload.append("<SOAP-ENV:Envelope");
+		payload.append(" xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\">");//\"\r\n");
+//		payload.append("\tSOAP-ENV:encodingStyle=\"http://schemas.xmlsoap.org/soap/encoding/\">");
+		payload.append("<SOAP-ENV:Body>");
+		InputDocumentStructure structure = configuration.getInputStructure();
+		processDocumentItemContainer(payload, structure);
+		payload.append("</SOAP-ENV:Body>");
+		payload.append("</SOAP-ENV:Envelope>");
+	}
+
+	private void processDocumentItemContainer(Writer payload, DocumentItemContainer container) throws IOException
 	{
 		List<DocumentItem> children = container.getItems();
 		for(DocumentItem child : children)
@@ -326,7 +337,7 @@ public class WebServiceCallAction implements IAction
 		}
 	}
 	
-	private void processConditionalContainerSet(StringBuilder payload, ConditionalContainerSet container)
+	private void processConditionalContainerSet(Writer payload, ConditionalContainerSet container) throws IOException
 	{
 		IScriptingEngine engine = scriptingService.createScriptingEngine("JavaScript");
 		ConditionalDocumentItem ifItem = container.getIf();
@@ -31,6 +31,10 @@ public class WebServiceConfiguration implements IConfiguration,
 	private String url = null;
 	private String soapActionType = STATIC;
 	private String soapAction = null;
+	/** The milliseconds to wait for a connection, zero for no limit. */
+	private int connectTimeout = 10000;
+	/** The milliseconds to wait for a response, zero for no limit. */
+	private int readTimeout = 60000;
 	
 	private InputDocumentStructure inputStructure = new InputDocumentStructure();
 	
@@ -87,6 +91,46 @@ public class WebServiceConfiguration implements IConfiguration,
 		this.soapAction = soapAction;
 	}
 	
+	/**
+	 * Returns the milliseconds to wait for a connection, zero for no limit.
+	 * 
+	 * @return The milliseconds to wait for a connection.
+	 */
+	public int getConnectTimeout()
+	{
+		return connectTimeout;
+	}
+
+	/**
+	 * Sets the milliseconds to wait for a connection, zero for no limit.
+	 * 
+	 * @param connectTimeout The milliseconds to wait for a connection.
+	 */
+	public void setConnectTimeout(int connectTimeout)
+	{
+		this.connectTimeout = connectTimeout < 0 ? 0 : connectTimeout;
+	}
+
+	/**
+	 * Returns the milliseconds to wait for a response, zero for no limit.
+	 * 
+	 * @return The milliseconds to wait for a response.
+	 */
+	public int getReadTimeout()
+	{
+		return readTimeout;
+	}
+
+	/**
+	 * Sets the milliseconds to wait for a response, zero for no limit.
+	 * 
+	 * @param readTimeout The milliseconds to wait for a response.
+	 */
+	public void setReadTimeout(int readTimeout)
+	{
+		this.readTimeout = readTimeout < 0 ? 0 : readTimeout;
+	}
+	
 	public InputDocumentStructure getInputStructure()
 	{
 		return this.inputStructure;
@@ -139,6 +183,12 @@ public class WebServiceConfiguration implements IConfiguration,
 			soapAction = serviceElement.getAttribute(NAME_SOAP_ACTION);
 			urlType = serviceElement.getAttribute(NAME_URL_TYPE);
 			url = serviceElement.getAttribute(NAME_URL);
+			if (serviceElement.hasAttribute(NAME_CONNECT_TIMEOUT))
+				setConnectTimeout(Integer.parseInt(serviceElement
+						.getAttribute(NAME_CONNECT_TIMEOUT)));
+			if (serviceElement.hasAttribute(NAME_READ_TIMEOUT))
+				setReadTimeout(Integer.parseInt(serviceElement
+						.getAttribute(NAME_READ_TIMEOUT)));
 		}
 		List<Element> inputStructureElementList = XMLUtilities.getElementsByTagName(configurationElement, NAME_INPUT_STRUCTURE, true);
 		if(inputStructureElementList.size() > 0)
@@ -177,6 +227,10 @@ public class WebServiceConfiguration implements IConfiguration,
 		serviceElement.setAttribute(NAME_SOAP_ACTION, soapAction);
 		serviceElement.setAttribute(NAME_URL_TYPE, urlType);
 		serviceElement.setAttribute(NAME_URL, url);
+		serviceElement.setAttribute(NAME_CONNECT_TIMEOUT, String
+				.valueOf(connectTimeout));
+		serviceElement.setAttribute(NAME_READ_TIMEOUT, String
+				.valueOf(readTimeout));
 		Element inputStructureElement = configurationElement.getOwnerDocument().createElementNS(null, NAME_INPUT_STRUCTURE);
 		configurationElement.appendChild(inputStructureElement);
 		inputStructure.writeConfiguration(inputStructureElement);
@@ -35,6 +35,10 @@ public interface WebServiceConstants
 	String NAME_SOAP_ACTION = "soap-action";
 	String NAME_URL_TYPE = "url-type";
 	String NAME_URL = "url";
+	/** The "connect-timeout" name constant. */
+	String NAME_CONNECT_TIMEOUT = "connect-timeout"; //$NON-NLS-1$
+	/** The "read-timeout" name constant. */
+	String NAME_READ_TIMEOUT = "read-timeout"; //$NON-NLS-1$
 	String NAME_OUTPUT = "output";
 	String NAME_PROCESS = "process";
 	String NAME_INPUT_STRUCTURE = "input-structure";
@@ -0,0 +1,220 @@
+/*--------------------------------------------------------------------------
+ * Copyright (c) 2004, 2006-2007 OpenMethods, LLC
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Trip Gilman (OpenMethods), Lonnie G. Pryor (OpenMethods)
+ *    - initial API and implementation
+ -------------------------------------------------------------------------*/
+package org.eclipse.vtp.framework.webservices.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+
+/**
+ * The HTTP client shared by the web service calls of a process.
+ * <p>
+ * Request bodies are encoded as UTF-8 and written straight to the socket with
+ * chunked streaming as they are generated, and every response is read to the end and closed
+ * rather than disconnected, which lets the connection return to the keep-alive
+ * cache the runtime maintains for each host. The XML parser and transformer
+ * factories are created once and shared.
+ * </p>
+ *
+ * @author Lonnie Pryor
+ */
+public class WebServiceClient
+{
+	/** The content type of SOAP requests. */
+	public static final String SOAP_CONTENT_TYPE = "text/xml; charset=\"utf-8\""; //$NON-NLS-1$
+	/** The length of request body chunks, zero for the runtime default. */
+	private static final int CHUNK_LENGTH = 0;
+	/** The maximum number of bytes of an error response to read. */
+	private static final int MAXIMUM_ERROR_LENGTH = 64 * 1024;
+
+	/** The factory for XML parsers. */
+	private final DocumentBuilderFactory documentBuilderFactory;
+	/** The factory for XML transformers. */
+	private final TransformerFactory transformerFactory;
+
+	/**
+	 * Creates a new WebServiceClient.
+	 */
+	public WebServiceClient()
+	{
+		documentBuilderFactory = DocumentBuilderFactory.newInstance();
+		documentBuilderFactory.setNamespaceAware(true);
+		transformerFactory = TransformerFactory.newInstance();
+	}
+
+	/**
+	 * Posts a request body to the specified URL. If the body cannot be written
+	 * the connection is dropped rather than completing a truncated request.
+	 *
+	 * @param url The URL to post to.
+	 * @param soapAction The value of the SOAPAction header or <code>null</code>
+	 *          to omit it.
+	 * @param body The request body.
+	 * @param connectTimeout The milliseconds to wait for a connection, zero for
+	 *          no limit.
+	 * @param readTimeout The milliseconds to wait for the response, zero for no
+	 *          limit.
+	 * @return The connection the request was sent on.
+	 * @throws IOException If the request cannot be sent.
+	 */
+	public HttpURLConnection post(URL url, String soapAction,
+			RequestBody body, int connectTimeout, int readTimeout)
+			throws IOException
+	{
+		URLConnection connection = url.openConnection();
+		if (!(connection instanceof HttpURLConnection))
+			throw new IOException("Not an HTTP URL: " + url); //$NON-NLS-1$
+		HttpURLConnection con = (HttpURLConnection)connection;
+		con.setConnectTimeout(connectTimeout);
+		con.setReadTimeout(readTimeout);
+		con.setDoOutput(true);
+		con.setRequestMethod("POST"); //$NON-NLS-1$
+		con.setRequestProperty("Content-Type", SOAP_CONTENT_TYPE); //$NON-NLS-1$
+		if (soapAction != null)
+			con.setRequestProperty("SOAPAction", soapAction); //$NON-NLS-1$
+		con.setChunkedStreamingMode(CHUNK_LENGTH);
+		boolean sent = false;
+		try
+		{
+			Writer out = new BufferedWriter(new OutputStreamWriter(
+					con.getOutputStream(), "UTF-8")); //$NON-NLS-1$
+			body.writeTo(out);
+			out.close();
+			sent = true;
+		}
+		finally
+		{
+			if (!sent)
+				con.disconnect();
+		}
+		return con;
+	}
+
+	/**
+	 * Returns a new XML parser.
+	 *
+	 * @return A new XML parser.
+	 * @throws ParserConfigurationException If a parser cannot be created.
+	 */
+	public DocumentBuilder newDocumentBuilder()
+			throws ParserConfigurationException
+	{
+		synchronized (documentBuilderFactory)
+		{
+			return documentBuilderFactory.newDocumentBuilder();
+		}
+	}
+
+	/**
+	 * Returns a new identity transformer.
+	 *
+	 * @return A new identity transformer.
+	 * @throws TransformerConfigurationException If a transformer cannot be
+	 *           created.
+	 */
+	public Transformer newTransformer() throws TransformerConfigurationException
+	{
+		synchronized (transformerFactory)
+		{
+			return transformerFactory.newTransformer();
+		}
+	}
+
+	/**
+	 * Reads the remainder of a response and closes it so the connection can be
+	 * reused.
+	 *
+	 * @param in The response stream or <code>null</code>.
+	 */
+	public void release(InputStream in)
+	{
+		if (in == null)
+			return;
+		try
+		{
+			byte[] buffer = new byte[4096];
+			while (in.read(buffer) >= 0)
+				;
+		}
+		catch (IOException e)
+		{
+		}
+		finally
+		{
+			try
+			{
+				in.close();
+			}
+			catch (IOException e)
+			{
+			}
+		}
+	}
+
+	/**
+	 * Reads the error response of a failed request and releases the connection.
+	 *
+	 * @param con The connection the request was sent on.
+	 * @return The start of the error response.
+	 */
+	public String readError(HttpURLConnection con)
+	{
+		InputStream in = con.getErrorStream();
+		if (in == null)
+			return ""; //$NON-NLS-1$
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try
+		{
+			byte[] buffer = new byte[4096];
+			for (int len = in.read(buffer); len >= 0
+					&& baos.size() < MAXIMUM_ERROR_LENGTH; len = in.read(buffer))
+				baos.write(buffer, 0, len);
+		}
+		catch (IOException e)
+		{
+		}
+		finally
+		{
+			release(in);
+		}
+		return baos.toString();
+	}
+
+	/**
+	 * The body of a request, written while the request is being sent.
+	 *
+	 * @author Lonnie Pryor
+	 */
+	public static interface RequestBody
+	{
+		/**
+		 * Writes the body of a request.
+		 *
+		 * @param out The writer to write the body to.
+		 * @throws IOException If the body cannot be written.
+		 */
+		void writeTo(Writer out) throws IOException;
+	}
+}
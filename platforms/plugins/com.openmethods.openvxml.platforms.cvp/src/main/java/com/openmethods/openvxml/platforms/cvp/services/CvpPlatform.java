@@ -11,11 +11,8 @@
  -------------------------------------------------------------------------*/
 package com.openmethods.openvxml.platforms.cvp.services;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigDecimal;
-import java.net.URL;
 
 import org.eclipse.vtp.framework.core.IExecutionContext;
 import org.eclipse.vtp.framework.engine.ResourceGroup;
@@ -240,7 +237,6 @@ public class CvpPlatform extends VoicePlatform
 				{
 					Input input = inputRequestCommand.getInput();
 					String path = input.getProperty("original-path");
-					System.out.println("Original grammar path: " + path);
 					if(path.startsWith("dtmf:"))
 					{
 						field
@@ -257,7 +253,6 @@ public class CvpPlatform extends VoicePlatform
 							query = path.substring(queryIndex);
 							path = path.substring(0, queryIndex);
 						}
-						System.out.println("grammar query string: " + query);
 						String lastPart = path;
 						int lastSlashIndex = path.lastIndexOf('/');
 						if(lastSlashIndex != -1)
@@ -267,9 +262,7 @@ public class CvpPlatform extends VoicePlatform
 						}
 						else
 							path = "";
-						System.out.println("grammar last path part: " + lastPart);
 						int lastExtensionIndex = lastPart.lastIndexOf('.');
-						System.out.println("extension index: " + lastExtensionIndex);
 						if(lastExtensionIndex != -1)
 						{
 							if(!".regex".equals(lastPart.substring(lastExtensionIndex)))
@@ -279,9 +272,16 @@ public class CvpPlatform extends VoicePlatform
 							}
 							IMediaProvider provider = mediaProviderRegistry.getMediaProvider(input.getProperty("media-provider"));
 							ResourceGroup manager = (ResourceGroup)provider.getResourceManager();
-							URL url = manager.getResource(path + lastPart + query);
-							System.out.println("resource URL: " + url);
-							if(url == null)
+							String contents = null;
+							try
+							{
+								contents = manager.getResourceText(path + lastPart + query);
+							}
+							catch (IOException e)
+							{
+								e.printStackTrace();
+							}
+							if(contents == null)
 							{
 								field
 								.addGrammar(new ExternalGrammar("dtmf", links
@@ -290,31 +290,9 @@ public class CvpPlatform extends VoicePlatform
 							}
 							else
 							{
-								try
-								{
-									byte[] buf = new byte[1024];
-									InputStream in = url.openConnection().getInputStream();
-									ByteArrayOutputStream baos = new ByteArrayOutputStream();
-									int len = in.read(buf);
-									while(len != -1)
-									{
-										baos.write(buf, 0, len);
-										len = in.read(buf);
-									}
-									in.close();
-									String contents = baos.toString();
-									RegexGrammar rg = new RegexGrammar("dtmf");
-									rg.setContents(contents);
-									field.addGrammar(rg);
-								}
-								catch (IOException e)
-								{
-									e.printStackTrace();
-									field
-									.addGrammar(new ExternalGrammar("dtmf", links
-											.createResourceLink(inputRequestCommand.getInputValue())
-											.toString()));
-								}
+								RegexGrammar rg = new RegexGrammar("dtmf");
+								rg.setContents(contents);
+								field.addGrammar(rg);
 							}
 						}
 						else